@@ -0,0 +1,43 @@
+package hr.fer.zemris.zavrsni.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. The program accepts the usual JMH options, and
+ * always adds the GC profiler, so the allocation rate of every benchmark
+ * is reported next to its score, unless it has been given already.
+ * <p>
+ * The benchmarks are packaged by the {@code benchmarks} Maven profile:
+ * <pre>
+ * mvn -P benchmarks package
+ * java -jar target/benchmarks.jar [regexp] [JMH options]
+ * </pre>
+ *
+ * @author Luka Cupic
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp()) {
+			cmd.showHelp();
+			return;
+		}
+		if (cmd.shouldList()) {
+			new Runner(cmd).list();
+			return;
+		}
+
+		Options options = cmd;
+		boolean profiled = cmd.getProfilers().stream()
+				.anyMatch(profiler -> profiler.getKlass().equals(GCProfiler.class.getName()));
+		if (!profiled) {
+			options = new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class).build();
+		}
+		new Runner(options).run();
+	}
+}
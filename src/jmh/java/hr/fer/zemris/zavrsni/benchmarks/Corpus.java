@@ -0,0 +1,227 @@
+package hr.fer.zemris.zavrsni.benchmarks;
+
+import hr.fer.zemris.zavrsni.ranking.CosineSimilarity;
+import hr.fer.zemris.zavrsni.ranking.Dataset;
+import hr.fer.zemris.zavrsni.ranking.OkapiBM25;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates the synthetic texts and datasets the benchmarks run on. The
+ * words follow Zipf's law over a fixed vocabulary, whose most frequent
+ * words are English stop words and whose other words are made of random
+ * syllables with common English suffixes, so both the stop word filter
+ * and the stemmer have work to do. All the generated data depends only on
+ * the given seeds, so the runs are comparable.
+ *
+ * @author Luka Cupic
+ */
+public class Corpus {
+
+	/**
+	 * The number of distinct words.
+	 */
+	public static final int VOCABULARY_SIZE = 20_000;
+
+	/**
+	 * The number of words of a generated document.
+	 */
+	public static final int DOCUMENT_LENGTH = 300;
+
+	/**
+	 * The most frequent words.
+	 */
+	private static final String[] STOP_WORDS = {
+			"the", "of", "and", "to", "a", "in", "is", "that", "for", "it", "as", "with", "was", "on", "by"
+	};
+
+	private static final String[] SYLLABLES = {
+			"ba", "con", "de", "fi", "gra", "hel", "in", "jo", "ker", "lu", "ma", "nor", "op", "pre", "qua",
+			"ro", "sta", "tem", "ul", "ver", "wor", "xe", "yo", "zan", "ment", "proc", "sys", "al", "ter", "mon"
+	};
+
+	private static final String[] SUFFIXES = {
+			"", "", "", "s", "ing", "ed", "ation", "ness", "ful", "ly", "er", "ize", "ement"
+	};
+
+	/**
+	 * The words, from the most to the least frequent.
+	 */
+	private static final String[] WORDS = createWords();
+
+	/**
+	 * The cumulative probabilities of the {@link #WORDS}.
+	 */
+	private static final double[] CUMULATIVE = createDistribution();
+
+	/**
+	 * The directory holding the generated datasets, which are reused by the
+	 * later runs.
+	 */
+	private static final Path DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "zavrsni-benchmarks");
+
+	/**
+	 * The name of the file marking a completely generated dataset.
+	 */
+	private static final String COMPLETE = "complete";
+
+	private static String[] createWords() {
+		Random random = new Random(42);
+		String[] words = new String[VOCABULARY_SIZE];
+		System.arraycopy(STOP_WORDS, 0, words, 0, STOP_WORDS.length);
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = STOP_WORDS.length; i < words.length; i++) {
+			sb.setLength(0);
+			for (int n = 1 + random.nextInt(3); n > 0; n--) {
+				sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			}
+			sb.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+			words[i] = sb.toString();
+		}
+		return words;
+	}
+
+	private static double[] createDistribution() {
+		double[] cumulative = new double[WORDS.length];
+		double sum = 0;
+		for (int i = 0; i < cumulative.length; i++) {
+			sum += 1.0 / (i + 1);
+			cumulative[i] = sum;
+		}
+		for (int i = 0; i < cumulative.length; i++) {
+			cumulative[i] /= sum;
+		}
+		return cumulative;
+	}
+
+	/**
+	 * Picks a random word.
+	 *
+	 * @param random the source of randomness
+	 * @return the word
+	 */
+	public static String word(Random random) {
+		int i = Arrays.binarySearch(CUMULATIVE, random.nextDouble());
+		return WORDS[Math.min(i < 0 ? -i - 1 : i, WORDS.length - 1)];
+	}
+
+	/**
+	 * Generates a text with the given number of words, separated by spaces,
+	 * with a line break and a punctuation mark here and there.
+	 *
+	 * @param random the source of randomness
+	 * @param words  the number of words
+	 * @return the text
+	 */
+	public static String text(Random random, int words) {
+		StringBuilder sb = new StringBuilder(words * 8);
+		for (int i = 0; i < words; i++) {
+			if (i > 0) sb.append(i % 12 == 0 ? ".\n" : " ");
+			sb.append(word(random));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Generates a query of the given number of words. The words are picked
+	 * uniformly from the vocabulary, without the stop words, so the queries
+	 * mix frequent and rare words.
+	 *
+	 * @param random the source of randomness
+	 * @param words  the number of words
+	 * @return the query
+	 */
+	public static String query(Random random, int words) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i > 0) sb.append(' ');
+			sb.append(WORDS[STOP_WORDS.length + random.nextInt(WORDS.length - STOP_WORDS.length)]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets a dataset of the given number of PDF documents, generating it if
+	 * it does not exist yet.
+	 *
+	 * @param documents the number of documents
+	 * @return the directory holding the documents
+	 * @throws IOException if the documents cannot be written
+	 */
+	public static synchronized Path dataset(int documents) throws IOException {
+		Path dir = DIRECTORY.resolve("dataset-" + documents);
+		if (Files.exists(dir.resolve(COMPLETE))) {
+			return dir.resolve("documents");
+		}
+
+		Path docs = Files.createDirectories(dir.resolve("documents"));
+		Random random = new Random(documents);
+		for (int i = 0; i < documents; i++) {
+			writePDF(docs.resolve("doc" + i + ".pdf"), text(random, DOCUMENT_LENGTH));
+		}
+		Files.createFile(dir.resolve(COMPLETE));
+		return docs;
+	}
+
+	/**
+	 * Writes the given text into a single page PDF document.
+	 *
+	 * @param path the path to the document
+	 * @param text the text
+	 * @throws IOException if the document cannot be written
+	 */
+	private static void writePDF(Path path, String text) throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			PDPage page = new PDPage();
+			doc.addPage(page);
+			try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+				content.beginText();
+				content.setFont(PDType1Font.HELVETICA, 8);
+				content.setLeading(10);
+				content.newLineAtOffset(40, 750);
+				for (String line : text.split("\n")) {
+					content.showText(line);
+					content.newLine();
+				}
+				content.endText();
+			}
+			doc.save(path.toFile());
+		}
+	}
+
+	/**
+	 * Builds the index of the given dataset with the given ranking function,
+	 * in a new temporary directory, without the cache of the texts.
+	 *
+	 * @param dataset  the directory holding the documents
+	 * @param function the name of the ranking function, {@code cosine} or {@code bm25}
+	 * @return the dataset holding the built index
+	 * @throws IOException if the index cannot be built
+	 */
+	public static Dataset index(Path dataset, String function) throws IOException {
+		RankingFunction ranking;
+		switch (function) {
+			case "cosine":
+				ranking = new CosineSimilarity();
+				break;
+			case "bm25":
+				ranking = new OkapiBM25();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown ranking function: " + function);
+		}
+		Path directory = Files.createTempDirectory("zavrsni-index");
+		return Dataset.build(dataset, directory, ranking, Dataset.DEFAULT_SIMILARITY_THRESHOLD, null);
+	}
+}
@@ -0,0 +1,52 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.benchmarks.Corpus;
+import hr.fer.zemris.zavrsni.ranking.Dataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the whole index of a synthetic dataset from scratch:
+ * parsing the PDF documents, analyzing their texts, writing the index and
+ * calculating the similarities.
+ *
+ * @author Luka Cupic
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestionBenchmark {
+
+	@Param({"1000"})
+	public int documents;
+
+	private Path dataset;
+
+	@Setup
+	public void setUp() throws IOException {
+		dataset = Corpus.dataset(documents);
+	}
+
+	@Benchmark
+	public MappedIndex build() throws IOException {
+		try (Dataset built = Corpus.index(dataset, "cosine")) {
+			return built.getIndex();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package hr.fer.zemris.zavrsni.input;
+
+import hr.fer.zemris.zavrsni.benchmarks.Corpus;
+import hr.fer.zemris.zavrsni.utils.TextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning the text of a document into the processed words: the
+ * splitting into words, the stemming, and the whole analysis.
+ *
+ * @author Luka Cupic
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+
+	/**
+	 * The number of words of the text.
+	 */
+	@Param({"1000", "100000"})
+	public int words;
+
+	private String text;
+
+	private String[] distinctWords;
+
+	private Stemmer stemmer;
+
+	@Setup
+	public void setUp() {
+		text = Corpus.text(new Random(words), words);
+
+		Random random = new Random(0);
+		distinctWords = new String[1000];
+		for (int i = 0; i < distinctWords.length; i++) {
+			distinctWords[i] = Corpus.word(random);
+		}
+		stemmer = new Stemmer();
+	}
+
+	@Benchmark
+	public List<String> getWordsFromText() {
+		return TextUtils.getWordsFromText(text);
+	}
+
+	/**
+	 * Stems 1000 words, without the cache of the stems.
+	 */
+	@Benchmark
+	public void stripAffixes(Blackhole blackhole) {
+		for (String word : distinctWords) {
+			blackhole.consume(stemmer.stripAffixes(word));
+		}
+	}
+
+	@Benchmark
+	public List<String> process() throws IOException {
+		return InputProcessor.process(new QueryReader(text));
+	}
+}
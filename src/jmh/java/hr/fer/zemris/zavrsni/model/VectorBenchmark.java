@@ -0,0 +1,94 @@
+package hr.fer.zemris.zavrsni.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dot products and the cosines of the dense and the sparse
+ * vectors. The dense vectors span the whole vocabulary, like the IDF
+ * vector, while the sparse vectors hold only the words of a document.
+ *
+ * @author Luka Cupic
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VectorBenchmark {
+
+	/**
+	 * The dimension of the vectors (the size of the vocabulary).
+	 */
+	@Param({"1000", "100000"})
+	public int dimension;
+
+	/**
+	 * The number of non-zero components of the sparse vectors.
+	 */
+	@Param({"100"})
+	public int nonZeros;
+
+	private Vector v1, v2;
+
+	private SparseVector s1, s2;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(dimension);
+		v1 = dense(random);
+		v2 = dense(random);
+		s1 = sparse(random);
+		s2 = sparse(random);
+	}
+
+	private Vector dense(Random random) {
+		double[] values = new double[dimension];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextDouble();
+		}
+		return new Vector(values);
+	}
+
+	private SparseVector sparse(Random random) {
+		int[] indices = random.ints(0, dimension).distinct().limit(Math.min(nonZeros, dimension)).sorted().toArray();
+		float[] values = new float[indices.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 1 + random.nextInt(5);
+		}
+		return new SparseVector(indices, values);
+	}
+
+	@Benchmark
+	public double denseDot() {
+		return v1.dot(v2);
+	}
+
+	@Benchmark
+	public double denseCos() {
+		return v1.cos(v2);
+	}
+
+	@Benchmark
+	public double sparseDot() {
+		return s1.dot(s2);
+	}
+
+	@Benchmark
+	public double sparseCos() {
+		return s1.cos(s2);
+	}
+}
@@ -0,0 +1,91 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.benchmarks.Corpus;
+import hr.fer.zemris.zavrsni.input.InputProcessor;
+import hr.fer.zemris.zavrsni.input.QueryReader;
+import hr.fer.zemris.zavrsni.model.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures answering the queries with each ranking function over the
+ * synthetic datasets of several sizes. The queries are analyzed in
+ * advance, so only the scoring is measured.
+ *
+ * @author Luka Cupic
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+	/**
+	 * The number of queries cycled through.
+	 */
+	private static final int QUERIES = 64;
+
+	/**
+	 * The number of the results of a query.
+	 */
+	private static final int RESULTS = 10;
+
+	@Param({"cosine", "bm25"})
+	public String function;
+
+	@Param({"1000", "10000"})
+	public int documents;
+
+	/**
+	 * The number of words of a query.
+	 */
+	@Param({"3"})
+	public int queryLength;
+
+	private Dataset dataset;
+
+	private List<List<String>> queries;
+
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		dataset = Corpus.index(Corpus.dataset(documents), function);
+
+		Random random = new Random(queryLength);
+		queries = new ArrayList<>();
+		for (int i = 0; i < QUERIES; i++) {
+			queries.add(InputProcessor.process(new QueryReader(Corpus.query(random, queryLength))));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		dataset.close();
+	}
+
+	@Benchmark
+	public List<Result> process() throws IOException {
+		List<String> query = queries.get(next);
+		next = (next + 1) % QUERIES;
+		return dataset.getFunction().process(dataset.getIndex(), query, 0, RESULTS);
+	}
+}
@@ -0,0 +1,57 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.benchmarks.Corpus;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calculating the similarities between all the documents of the
+ * synthetic datasets of several sizes, with each ranking function.
+ *
+ * @author Luka Cupic
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimilarityBenchmark {
+
+	@Param({"cosine", "bm25"})
+	public String function;
+
+	@Param({"1000", "10000"})
+	public int documents;
+
+	private Dataset dataset;
+
+	@Setup
+	public void setUp() throws IOException {
+		dataset = Corpus.index(Corpus.dataset(documents), function);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		dataset.close();
+	}
+
+	@Benchmark
+	public SimilarityList calculateSimilarities() {
+		return dataset.calculateSimilarities(dataset.getIndex());
+	}
+}
@@ -1,16 +1,19 @@
 package hr.fer.zemris.zavrsni;
 
 import hr.fer.zemris.zavrsni.gui.GraphViewer;
-import hr.fer.zemris.zavrsni.input.InputProcessor;
+import hr.fer.zemris.zavrsni.input.DocumentReader;
 import hr.fer.zemris.zavrsni.input.PDFReader;
 import hr.fer.zemris.zavrsni.input.QueryReader;
 import hr.fer.zemris.zavrsni.model.Document;
 import hr.fer.zemris.zavrsni.model.Result;
-import hr.fer.zemris.zavrsni.ranking.RankingFunction;
+import hr.fer.zemris.zavrsni.ranking.Dataset;
+import hr.fer.zemris.zavrsni.ranking.IndexSearcher;
+import hr.fer.zemris.zavrsni.ranking.QueryCache;
 import hr.fer.zemris.zavrsni.utils.GUIUtils;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -37,7 +40,19 @@ public class GUI extends JFrame {
     private static final int WIDTH = 1920;
     private static final int HEIGHT = 1080;
 
-    private static RankingFunction function;
+    /**
+     * The maximum number of results shown for a query.
+     */
+    private static final int MAX_RESULTS = 100;
+
+    private static Dataset dataset;
+
+    private static IndexSearcher searcher;
+
+    /**
+     * The reader of the last query or document searched for.
+     */
+    private static DocumentReader input;
 
     public GUI() {
         setSize(WIDTH, HEIGHT);
@@ -77,7 +92,8 @@ public class GUI extends JFrame {
         if (chooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) {
             System.exit(1);
         }
-        function = Initializer.init(chooser.getSelectedFile().toPath());
+        dataset = Initializer.init(chooser.getSelectedFile().toPath());
+        searcher = dataset.newSearcher(new QueryCache());
     }
 
     private JTabbedPane createTabbedPane() {
@@ -97,7 +113,7 @@ public class GUI extends JFrame {
 
     private JPanel createTab1() {
         JPanel panel = new JPanel();
-        panel.add(GraphViewer.createViewer(WIDTH, HEIGHT));
+        panel.add(GraphViewer.createViewer(WIDTH, HEIGHT, searcher, dataset.getSimilarityThreshold()));
         return panel;
     }
 
@@ -133,10 +149,11 @@ public class GUI extends JFrame {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton button = new JButton("Visualize");
         button.addActionListener(e -> {
+            if (input == null) return;
             try {
-                Document doc = function.createDocument(InputProcessor.process());
+                Document doc = searcher.createDocument(input);
                 doc.setCustom(true);
-                GraphViewer.createViewer(WIDTH - 100, HEIGHT - 100, doc);
+                GraphViewer.createViewer(WIDTH - 100, HEIGHT - 100, doc, searcher, dataset.getSimilarityThreshold());
             } catch (IOException e1) {
                 e1.printStackTrace();
             }
@@ -169,8 +186,8 @@ public class GUI extends JFrame {
         return (l) -> {
             List<Result> results = null;
             try {
-                InputProcessor.setReader(new QueryReader(textField.getText()));
-                results = function.process(InputProcessor.process());
+                input = new QueryReader(textField.getText());
+                results = searcher.search(textField.getText(), 0, MAX_RESULTS);
             } catch (IOException ex) {
                 GUIUtils.showErrorMessage(null, "Could not process query!");
                 System.exit(1);
@@ -183,7 +200,7 @@ public class GUI extends JFrame {
         };
     }
 
-    private static ActionListener createLoadDocumentListener(JLabel label, JTable table) {
+    private static ActionListener createLoadDocumentListener(JLabel label, JCheckBox similar, JTable table) {
         return (l) -> {
             JFileChooser chooser = new JFileChooser();
             chooser.setCurrentDirectory(new File("."));
@@ -198,7 +215,7 @@ public class GUI extends JFrame {
 
             List<Result> results = null;
             try {
-                results = processDocument(document);
+                results = processDocument(document, similar.isSelected());
             } catch (IOException ex) {
                 GUIUtils.showErrorMessage(null, "Could not process document!");
                 System.exit(1);
@@ -241,7 +258,7 @@ public class GUI extends JFrame {
     }
 
     private JPanel createPanel3Form(JTable table) {
-        JPanel form = new JPanel(new GridLayout(1, 3));
+        JPanel form = new JPanel(new GridLayout(1, 4));
 
         JLabel label = new JLabel("Document");
         form.add(label);
@@ -251,8 +268,11 @@ public class GUI extends JFrame {
 
         JButton button = new JButton("Browse...");
 
-        button.addActionListener(createLoadDocumentListener(docLabel, table));
+        JCheckBox similar = new JCheckBox("Similar documents only (fast)");
+
+        button.addActionListener(createLoadDocumentListener(docLabel, similar, table));
         form.add(button);
+        form.add(similar);
 
         form.setBorder(BorderFactory.createTitledBorder("Enter Query"));
         return form;
@@ -263,11 +283,14 @@ public class GUI extends JFrame {
     /**
      * Processes the user Document input and returns the list of results.
      *
+     * @param document the path to the document
+     * @param similar  whether to search only the similar documents, found
+     *                 through the MinHash signatures
      * @return list of results
      */
-    private static List<Result> processDocument(Path document) throws IOException {
-        InputProcessor.setReader(new PDFReader(document));
-        return function.process(InputProcessor.process());
+    private static List<Result> processDocument(Path document, boolean similar) throws IOException {
+        input = new PDFReader(document);
+        return similar ? searcher.findSimilar(input, MAX_RESULTS) : searcher.search(input, 0, MAX_RESULTS);
     }
 
     public static void main(String[] args) {
@@ -1,116 +1,109 @@
 package hr.fer.zemris.zavrsni;
 
+import hr.fer.zemris.zavrsni.index.IndexFormat;
+import hr.fer.zemris.zavrsni.index.Manifest;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.input.TextCache;
 import hr.fer.zemris.zavrsni.ranking.CosineSimilarity;
-import hr.fer.zemris.zavrsni.ranking.RankingFunction;
+import hr.fer.zemris.zavrsni.ranking.Dataset;
 import hr.fer.zemris.zavrsni.utils.GUIUtils;
 import hr.fer.zemris.zavrsni.utils.IOUtils;
-import hr.fer.zemris.zavrsni.utils.MD5Visitor;
 import org.apache.commons.codec.digest.DigestUtils;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.function.Consumer;
 
 /**
  * @author Luka Cupic
  */
 public class Initializer {
 
-	/**
-	 * The path to the file containing the stop words.
-	 */
-	public static final String STOP_WORDS_PATH = "src/main/resources/stop_words.txt";
-
 	/**
 	 * The user home directory.
 	 */
 	private static final String HOME_DIR = IOUtils.getUserHomeDir();
 
 	/**
-	 * The path to the serialized dataset file.
+	 * The prefix of the index directory name.
 	 */
-	private static final String DATASET_INFO_PREFIX = "info";
+	private static final String INDEX_PREFIX = "index";
 
 	/**
-	 * The path to the dataset directory MD5 hash file.
+	 * The name of the directory holding the cache of the extracted texts.
 	 */
-	private static final String MD5_PREFIX = "md5";
-
-	public static String datasetInfoFilename;
-
-	public static String md5Filename;
+	private static final String TEXT_CACHE_DIR = "texts";
 
 	/**
 	 * Initializes the dataset information.
-	 * The method recovers the dataset info from the serialized file,
-	 * if any, or recreates the dataset info from scratch and stores
-	 * it in the serialized file for later use.
+	 * The method opens the index of the dataset, if any, and updates
+	 * it with the changes of the dataset, or rebuilds the index from
+	 * scratch. In both cases, the index is stored on disk for later use.
 	 *
 	 * @param dataset the path to the dataset
-	 * @return the ranking function responsible for comparing the documents
+	 * @return the dataset, holding its index and the ranking function
+	 * responsible for comparing the documents
 	 * @throws IOException if an error occurs while initializing the dataset
 	 */
-	public static RankingFunction init(Path dataset) throws IOException {
-		IOUtils.createUserHomeDir(); // create the user home directory if it doesn't exist
-		constructFilenames(dataset); // construct dataset info and md5 filenames
-
-		RankingFunction function;
-		if (isDatasetCorrect(dataset)) {
-			function = new CosineSimilarity();
-			RankingFunction.datasetInfo = IOUtils.deserialize(datasetInfoFilename);
-		} else {
-			GUIUtils.showPlainMessage(null, "Dataset changes detected. Reloading dataset\n" +
-					"Please wait");
-			function = new CosineSimilarity(dataset);
-		}
-		return function;
+	public static Dataset init(Path dataset) throws IOException {
+		return init(dataset, message -> GUIUtils.showPlainMessage(null, message));
 	}
 
 	/**
-	 * Creates a unique name for each of the dataset info and md5 files.
+	 * Initializes the dataset information, reporting the progress to the
+	 * given consumer of messages instead of showing them in dialogs.
 	 *
-	 * @param dataset the path to the dataset
+	 * @param dataset  the path to the dataset
+	 * @param messages the consumer of the progress messages
+	 * @return the dataset, holding its index and the ranking function
+	 * responsible for comparing the documents
+	 * @throws IOException if an error occurs while initializing the dataset
+	 * @see #init(Path)
 	 */
-	private static void constructFilenames(Path dataset) {
-		String filename = DigestUtils.md5Hex(dataset.toString());
+	public static Dataset init(Path dataset, Consumer<String> messages) throws IOException {
+		IOUtils.createUserHomeDir(); // create the user home directory if it doesn't exist
+		Path indexDirectory = indexDirectory(dataset); // construct index directory name
+		TextCache textCache = TextCache.open(Paths.get(HOME_DIR).resolve(TEXT_CACHE_DIR), TextCache.DEFAULT_MAX_SIZE, true);
+
+		MappedIndex index = null;
+		if (IndexFormat.isComplete(indexDirectory)) {
+			try {
+				index = MappedIndex.open(indexDirectory);
+			} catch (IOException e) {
+				// the index is unreadable, so rebuild it
+			}
+		}
 
-		datasetInfoFilename = DATASET_INFO_PREFIX + "_" + filename + ".ser";
-		datasetInfoFilename = Paths.get(HOME_DIR).resolve(datasetInfoFilename).toString();
+		if (index == null) {
+			messages.accept("Dataset changes detected. Reloading dataset\n" +
+					"Please wait");
+			return Dataset.build(dataset, indexDirectory, new CosineSimilarity(),
+					Dataset.DEFAULT_SIMILARITY_THRESHOLD, textCache);
+		}
 
-		md5Filename = MD5_PREFIX + "_" + filename + ".hash";
-		md5Filename = Paths.get(HOME_DIR).resolve(md5Filename).toString();
+		Dataset d = Dataset.open(index, new CosineSimilarity(), Dataset.DEFAULT_SIMILARITY_THRESHOLD, textCache);
+		Manifest manifest = index.getManifest();
+		Manifest.Changes changes = manifest.detectChanges(dataset);
+		if (!changes.isEmpty()) {
+			messages.accept("Dataset changes detected. Updating dataset\n" +
+					"Please wait");
+			d.update(changes);
+		} else if (!changes.getTouched().isEmpty()) {
+			d.update(changes); // only the manifest is committed
+		}
+		return d;
 	}
 
 	/**
-	 * Checks if the dataset serialization file exists and whether the
-	 * MD5 hash file matches the current hash.
+	 * Creates a unique name for the index directory.
 	 *
 	 * @param dataset the path to the dataset
-	 * @return true iff the serialized file exists and the MD5 hashes
-	 * match
-	 * @throws IOException if an error occurs while reading the files
+	 * @return the index directory of the dataset
 	 */
-	private static boolean isDatasetCorrect(Path dataset) throws IOException {
-		String md5 = new MD5Visitor(dataset).getMd5();
-		String md5Real;
-
-		if (new File(md5Filename).exists()) {
-			md5Real = IOUtils.readFromTextFile(md5Filename);
-		} else {
-			IOUtils.writeToTextFile(md5Filename, md5);
-			return false;
-		}
+	private static Path indexDirectory(Path dataset) {
+		String filename = DigestUtils.md5Hex(dataset.toString());
 
-		if (new File(datasetInfoFilename).exists()) {
-			if (md5.equals(md5Real)) {
-				return true;
-			} else {
-				IOUtils.writeToTextFile(md5Filename, md5);
-				return false;
-			}
-		} else {
-			return false;
-		}
+		return Paths.get(HOME_DIR).resolve(INDEX_PREFIX + "_" + filename);
 	}
 }
@@ -0,0 +1,70 @@
+package hr.fer.zemris.zavrsni;
+
+import hr.fer.zemris.zavrsni.ranking.Dataset;
+import hr.fer.zemris.zavrsni.ranking.QueryCache;
+import hr.fer.zemris.zavrsni.server.SearchServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs the search system as a headless HTTP service, instead of the
+ * {@link GUI}. The program expects the path to the dataset, optionally
+ * followed by the port and the executor handling the requests, which is
+ * either {@code virtual} or the number of threads; see
+ * {@link SearchServer#newExecutor(String)}.
+ *
+ * @author Luka Cupic
+ */
+public class Server {
+
+	/**
+	 * The time to wait for the running requests when stopping, in seconds.
+	 */
+	private static final int STOP_DELAY = 5;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("Usage: Server <dataset> [port] [virtual|threads]");
+			System.exit(1);
+		}
+
+		Path dataset = Paths.get(args[0]);
+		if (!Files.isDirectory(dataset)) {
+			System.err.println("The dataset is not a directory: " + dataset);
+			System.exit(1);
+		}
+
+		int port;
+		ExecutorService executor;
+		try {
+			port = args.length > 1 ? Integer.parseInt(args[1]) : SearchServer.DEFAULT_PORT;
+			executor = args.length > 2 ? SearchServer.newExecutor(args[2]) : SearchServer.newDefaultExecutor();
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		Dataset d = Initializer.init(dataset, message -> System.out.println(message.replace('\n', ' ')));
+
+		// every request searches the current index, which is replaced by the background merges
+		QueryCache cache = new QueryCache();
+		SearchServer server = new SearchServer(() -> d.newSearcher(cache), new InetSocketAddress(port), executor);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.stop(STOP_DELAY);
+			try {
+				d.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}));
+		server.start();
+		System.out.println("Serving " + d.getIndex().getNumberOfDocuments()
+				+ " documents on port " + server.getAddress().getPort());
+	}
+}
@@ -6,9 +6,9 @@ import edu.uci.ics.jung.graph.DirectedSparseGraph;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
 import edu.uci.ics.jung.visualization.control.GraphMouseListener;
 import edu.uci.ics.jung.visualization.decorators.EdgeShape;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
 import hr.fer.zemris.zavrsni.model.Document;
-import hr.fer.zemris.zavrsni.ranking.RankingFunction;
-import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo.DocumentPair;
+import hr.fer.zemris.zavrsni.ranking.IndexSearcher;
 import org.apache.commons.math3.ml.clustering.CentroidCluster;
 import org.apache.commons.math3.ml.clustering.Clusterable;
 import org.apache.commons.math3.ml.clustering.KMeansPlusPlusClusterer;
@@ -54,21 +54,21 @@ public class GraphViewer {
 
 	};
 
-	private static double threshold = 0.07;
-
-	public static Map<DocumentPair, Double> similarities = new HashMap<>();
-
-	public static void createViewer(int width, int height, Document document) {
-		List<Document> documents = new ArrayList<>(RankingFunction.datasetInfo.documents.values());
-
-		similarities.clear();
-		similarities.putAll(RankingFunction.datasetInfo.similarities);
-		computeExtraSimilarities(documents, document);
+	public static void createViewer(int width, int height, Document document, IndexSearcher searcher, double threshold) {
+		List<Document> documents = searcher.getIndex().getDocuments();
 
 		DirectedSparseGraph<Document, String> g = new DirectedSparseGraph<>();
-		documents.add(document);
 		documents.forEach(g::addVertex);
-		initGraph(g, documents);
+		initGraph(g, documents, searcher.getIndex(), threshold);
+
+		// the document is not indexed, so its similarities are calculated here
+		g.addVertex(document);
+		for (Document d : documents) {
+			if (!d.equals(document)) {
+				addSimilarity(d, document, g, searcher.sim(d, document), threshold);
+			}
+		}
+		documents.add(document);
 
 		FRLayout<Document, String> layout = new FRLayout<>(g);
 		layout.setSize(new Dimension(width, height));
@@ -96,16 +96,13 @@ public class GraphViewer {
 		frame.add(vv);
 	}
 
-	public static VisualizationViewer createViewer(int width, int height) {
-		similarities.clear();
-		similarities.putAll(RankingFunction.datasetInfo.similarities);
-
-		List<Document> documents = new ArrayList<>(RankingFunction.datasetInfo.documents.values());
+	public static VisualizationViewer createViewer(int width, int height, IndexSearcher searcher, double threshold) {
+		List<Document> documents = searcher.getIndex().getDocuments();
 
 		DirectedSparseGraph<Document, String> g = new DirectedSparseGraph<>();
 		documents.forEach(g::addVertex);
 
-		initGraph(g, documents);
+		initGraph(g, documents, searcher.getIndex(), threshold);
 
 		FRLayout<Document, String> layout = new FRLayout<>(g);
 		layout.setSize(new Dimension(width, height));
@@ -128,29 +125,23 @@ public class GraphViewer {
 		return vv;
 	}
 
-	private static void initGraph(DirectedSparseGraph<Document, String> g, List<Document> documents) {
-		for (int i = 0; i < documents.size(); i++) {
-			for (int j = 0; j < documents.size(); j++) {
-				if (i >= j) continue;
-
-				Document d1 = documents.get(i);
-				Document d2 = documents.get(j);
-				addSimilarity(d1, d2, g);
-			}
-		}
+	/**
+	 * Connects the indexed documents whose stored similarity exceeds the
+	 * given threshold.
+	 *
+	 * @param g         the graph
+	 * @param documents the indexed documents, ordered by their IDs
+	 * @param index     the index holding the similarities
+	 * @param threshold the similarity two documents need to exceed in order
+	 *                  to be connected
+	 */
+	private static void initGraph(DirectedSparseGraph<Document, String> g, List<Document> documents, MappedIndex index,
+	                              double threshold) {
+		index.forEachSimilarity((doc1, doc2, sim) -> addSimilarity(documents.get(doc1), documents.get(doc2), g, sim, threshold));
 	}
 
-	private static void computeExtraSimilarities(List<Document> documents, Document document) {
-		for (Document d : documents) {
-			if (d.equals(document)) continue;
-			similarities.put(new DocumentPair(d, document), d.sim(document));
-		}
-	}
-
-	private static void addSimilarity(Document d1, Document d2, DirectedSparseGraph<Document, String> g) {
-		if (d1.equals(d2)) return;
-
-		double sim = similarities.get(new DocumentPair(d1, d2));
+	private static void addSimilarity(Document d1, Document d2, DirectedSparseGraph<Document, String> g, double sim,
+	                                  double threshold) {
 		if (sim > threshold) {
 			g.addEdge(d1.hashCode() + " " + d2.hashCode(), d1, d2);
 		}
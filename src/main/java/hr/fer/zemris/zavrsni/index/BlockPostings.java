@@ -0,0 +1,78 @@
+package hr.fer.zemris.zavrsni.index;
+
+/**
+ * The postings of a single term which are split into blocks, with the
+ * metadata of each block: its last document ID, its largest term frequency
+ * and the length of its shortest document. The metadata is used for
+ * skipping through the postings and for bounding the scores of the
+ * documents in a block. The positions of the term in each document are
+ * available as well, but they are stored separately and read only when
+ * asked for.
+ *
+ * @author Luka Cupic
+ */
+public interface BlockPostings extends Postings {
+
+	/**
+	 * Gets the number of blocks of postings.
+	 *
+	 * @return the number of blocks
+	 */
+	int getNumberOfBlocks();
+
+	/**
+	 * Gets the block containing the i-th posting.
+	 *
+	 * @param i the index of the posting
+	 * @return the index of the block
+	 */
+	int getBlock(int i);
+
+	/**
+	 * Gets the last document ID of the given block.
+	 *
+	 * @param block the index of the block
+	 * @return the last document ID of the block
+	 */
+	int getBlockLastDocId(int block);
+
+	/**
+	 * Gets the largest term frequency in the given block.
+	 *
+	 * @param block the index of the block
+	 * @return the largest frequency of the block
+	 */
+	int getBlockMaxFreq(int block);
+
+	/**
+	 * Gets the length of the shortest document in the given block.
+	 *
+	 * @param block the index of the block
+	 * @return the smallest document length of the block
+	 */
+	long getBlockMinLength(int block);
+
+	/**
+	 * Finds the first posting, starting from the given one, whose document
+	 * ID is at least the given target. The blocks ending before the target
+	 * are skipped without reading their postings.
+	 *
+	 * @param from   the index of the posting to start from
+	 * @param target the target document ID
+	 * @return the index of the found posting, or {@link #size()} if there
+	 * is no such posting
+	 */
+	int advance(int from, int target);
+
+	/**
+	 * Reads the positions of the term in the document of the i-th posting,
+	 * in increasing order. There are as many positions as the frequency of
+	 * the posting.
+	 *
+	 * @param i         the index of the posting
+	 * @param positions the buffer for the positions, at least as long as
+	 *                  the frequency of the posting
+	 * @see Positions
+	 */
+	void getPositions(int i, int[] positions);
+}
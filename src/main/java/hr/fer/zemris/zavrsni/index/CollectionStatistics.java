@@ -0,0 +1,428 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.model.Vector;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The collection statistics of an index consisting of multiple segments:
+ * the single numbering of the words of all the segments, the document
+ * frequencies, the IDFs and the largest BM25 term scores of the words, the
+ * average length of the documents and their length normalization factors.
+ * They depend on all the
+ * segments, so they are calculated by the {@link IndexWriter} whenever the
+ * segments of the index change, and stored with the commit in a numbered
+ * file of the index, which {@link MappedIndex} maps into memory instead of
+ * calculating them again. Like the segment files, the file is read in
+ * place; only the IDFs, the length normalization factors and the largest
+ * term scores, which are read by every query, are copied to the heap.
+ * <p>
+ * The words are numbered in their sorted order, so the dictionaries of the
+ * segments, which store the sorted order of their words, are merged in a
+ * single pass. For each word, the statistics keep the segments containing
+ * it, together with its IDs in them. The largest term score of a word is
+ * bounded by the metadata of the blocks of its postings in those segments,
+ * so the postings are not decoded; the scores stored by the segments are
+ * calculated with their own average lengths, so they cannot be reused.
+ * <p>
+ * The TF-IDF norms and the keywords of the documents depend on the IDFs of
+ * all their words, so they are not stored, but calculated a segment at a
+ * time, when they are first read. A commit thus does not calculate them
+ * for the segments whose documents are not read.
+ *
+ * @author Luka Cupic
+ */
+class CollectionStatistics {
+
+	/**
+	 * The number of words in the index.
+	 */
+	final int numTerms;
+
+	/**
+	 * The IDF vector, calculated from the document frequencies.
+	 */
+	final Vector idf;
+
+	/**
+	 * The IDF of every word.
+	 */
+	final float[] idfs;
+
+	/**
+	 * The average length of the documents.
+	 */
+	final double averageLength;
+
+	/**
+	 * The BM25 length normalization factor of every document.
+	 */
+	final float[] lengthNorms;
+
+	/**
+	 * The largest BM25 term score of every word.
+	 */
+	final float[] maxTermScores;
+
+	/**
+	 * The segments, in the order of their documents.
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * The statistics file.
+	 */
+	private final MappedFile file;
+
+	/**
+	 * The position of the IDs of the words of each segment in the
+	 * {@link #file}, by the IDs of the words in the segment.
+	 */
+	private final long[] termIds;
+
+	/**
+	 * The positions of the sections of the {@link #file}: the index of the
+	 * first entry of each word, followed by the number of the entries; the
+	 * segment of each entry, where the entries of a word are ordered by
+	 * their segments; the ID of the word of each entry in its segment, and
+	 * the number of documents containing each word.
+	 */
+	private final long entryOffsets, entrySegments, entryTermIds, docFreqs;
+
+	/**
+	 * The TF-IDF norm of every document of each segment, or null for the
+	 * segments whose norms have not been calculated yet.
+	 */
+	private final AtomicReferenceArray<double[]> norms;
+
+	/**
+	 * The keywords of every document of each segment, or null for the
+	 * segments whose keywords have not been calculated yet.
+	 */
+	private final AtomicReferenceArray<int[][]> keywords;
+
+	/**
+	 * Maps the collection statistics of the given segments from the given
+	 * numbered file of the index.
+	 *
+	 * @param dir      the index directory
+	 * @param number   the number of the file
+	 * @param segments the segments, in the order of their documents
+	 * @throws IOException if an I/O error occurs, or if the file does not
+	 *                     belong to the segments
+	 */
+	CollectionStatistics(Path dir, int number, Segment[] segments) throws IOException {
+		String name = IndexFormat.name(IndexFormat.COLLECTION, number);
+		this.segments = segments;
+
+		file = IndexFormat.map(dir, name);
+		long position = IndexFormat.HEADER_LENGTH;
+		numTerms = file.getInt(position);
+		int numDocs = file.getInt(position + 8);
+		averageLength = file.getDouble(position + 12);
+		if (file.getInt(position + 4) != segments.length) {
+			throw new IOException("Invalid collection statistics: " + name);
+		}
+		position += 20;
+
+		int docs = 0;
+		termIds = new long[segments.length];
+		long next = position + segments.length * 4L;
+		for (int s = 0; s < segments.length; s++) {
+			int segmentTerms = file.getInt(position + s * 4L);
+			if (segmentTerms != segments[s].getNumberOfTerms()) {
+				throw new IOException("Invalid collection statistics: " + name);
+			}
+			termIds[s] = next;
+			next += segmentTerms * 4L;
+			docs += segments[s].getNumberOfDocuments();
+		}
+		if (docs != numDocs) {
+			throw new IOException("Invalid collection statistics: " + name);
+		}
+
+		int entries = (int) ((next - position - segments.length * 4L) / 4);
+		entryOffsets = next;
+		entrySegments = entryOffsets + (numTerms + 1) * 4L;
+		entryTermIds = entrySegments + entries * 4L;
+		docFreqs = entryTermIds + entries * 4L;
+
+		// the IDFs and the length normalization factors are read in the innermost loops, so they are copied to the heap
+		double[] values = new double[numTerms];
+		idfs = new float[numTerms];
+		for (int t = 0; t < numTerms; t++) {
+			values[t] = IndexFormat.idf(numDocs, getDocumentFrequency(t));
+			idfs[t] = (float) values[t];
+		}
+		idf = new Vector(values);
+		lengthNorms = new float[numDocs];
+		file.getFloats(docFreqs + numTerms * 4L, lengthNorms);
+		maxTermScores = new float[numTerms];
+		file.getFloats(docFreqs + (numTerms + (long) numDocs) * 4, maxTermScores);
+
+		norms = new AtomicReferenceArray<>(segments.length);
+		keywords = new AtomicReferenceArray<>(segments.length);
+	}
+
+	/**
+	 * Calculates the collection statistics of the given segments and writes
+	 * them to the given output. The sorted dictionaries of the segments are
+	 * merged in a single pass, with a heap of the segments ordered by their
+	 * next words.
+	 *
+	 * @param segments the segments, in the order of their documents
+	 * @param out      the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void write(Segment[] segments, DataOutputStream out) throws IOException {
+		int total = 0;
+		int[][] termIds = new int[segments.length][];
+		for (int s = 0; s < segments.length; s++) {
+			termIds[s] = new int[segments[s].getNumberOfTerms()];
+			total += termIds[s].length;
+		}
+
+		// every word of every segment is a single entry, and there are at most as many distinct words
+		int[] entryOffsets = new int[total + 1];
+		int[] entrySegments = new int[total];
+		int[] entryTermIds = new int[total];
+		int[] docFreqs = new int[total];
+
+		int[] ranks = new int[segments.length];
+		byte[][] next = new byte[segments.length][];
+		int[] heap = new int[segments.length];
+		int heapSize = 0;
+		for (int s = 0; s < segments.length; s++) {
+			if (termIds[s].length == 0) continue;
+			next[s] = segments[s].getTermBytes(segments[s].getSortedTermId(0));
+			heap[heapSize++] = s;
+		}
+		for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(heap, heapSize, i, next);
+
+		int numTerms = 0;
+		int entries = 0;
+		while (heapSize > 0) {
+			byte[] term = next[heap[0]];
+			entryOffsets[numTerms] = entries;
+
+			// the segments with the same word are ordered by their positions, so the entries are as well
+			while (heapSize > 0 && compare(next[heap[0]], term) == 0) {
+				int s = heap[0];
+				int local = segments[s].getSortedTermId(ranks[s]);
+				termIds[s][local] = numTerms;
+				docFreqs[numTerms] += segments[s].getDocumentFrequency(local);
+				entrySegments[entries] = s;
+				entryTermIds[entries] = local;
+				entries++;
+
+				if (++ranks[s] < termIds[s].length) {
+					next[s] = segments[s].getTermBytes(segments[s].getSortedTermId(ranks[s]));
+				} else {
+					heap[0] = heap[--heapSize];
+				}
+				siftDown(heap, heapSize, 0, next);
+			}
+			numTerms++;
+		}
+		entryOffsets[numTerms] = entries;
+
+		int numDocs = 0;
+		long totalLength = 0;
+		for (Segment segment : segments) {
+			numDocs += segment.getNumberOfDocuments();
+			for (int id = 0; id < segment.getNumberOfDocuments(); id++) {
+				totalLength += segment.getDocumentLength(id);
+			}
+		}
+		double averageLength = numDocs == 0 ? 0 : totalLength / (double) numDocs;
+
+		out.writeInt(numTerms);
+		out.writeInt(segments.length);
+		out.writeInt(numDocs);
+		out.writeDouble(averageLength);
+		for (int[] ids : termIds) out.writeInt(ids.length);
+		for (int[] ids : termIds) {
+			for (int id : ids) out.writeInt(id);
+		}
+		for (int t = 0; t <= numTerms; t++) out.writeInt(entryOffsets[t]);
+		for (int s : entrySegments) out.writeInt(s);
+		for (int termId : entryTermIds) out.writeInt(termId);
+		for (int t = 0; t < numTerms; t++) out.writeInt(docFreqs[t]);
+		for (Segment segment : segments) {
+			for (int id = 0; id < segment.getNumberOfDocuments(); id++) {
+				out.writeFloat(IndexFormat.lengthNorm(segment.getDocumentLength(id), averageLength));
+			}
+		}
+		for (int t = 0; t < numTerms; t++) {
+			float max = 0;
+			for (int e = entryOffsets[t]; e < entryOffsets[t + 1]; e++) {
+				BlockPostings postings = segments[entrySegments[e]].getPostings(entryTermIds[e]);
+				for (int block = 0; block < postings.getNumberOfBlocks(); block++) {
+					float norm = IndexFormat.lengthNorm(postings.getBlockMinLength(block), averageLength);
+					max = Math.max(max, IndexFormat.maxTermScore(postings.getBlockMaxFreq(block), norm));
+				}
+			}
+			out.writeFloat(max);
+		}
+	}
+
+	/**
+	 * Restores the heap property of the given heap of segments, ordered by
+	 * their next words and then by their positions, below the given node.
+	 *
+	 * @param heap the positions of the segments
+	 * @param size the size of the heap
+	 * @param i    the node
+	 * @param next the next word of each segment
+	 */
+	private static void siftDown(int[] heap, int size, int i, byte[][] next) {
+		while (true) {
+			int smallest = i;
+			for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+				int cmp = compare(next[heap[child]], next[heap[smallest]]);
+				if (cmp < 0 || cmp == 0 && heap[child] < heap[smallest]) smallest = child;
+			}
+			if (smallest == i) return;
+
+			int tmp = heap[i];
+			heap[i] = heap[smallest];
+			heap[smallest] = tmp;
+			i = smallest;
+		}
+	}
+
+	/**
+	 * Compares two words by their UTF-8 bytes.
+	 *
+	 * @param a the first word
+	 * @param b the second word
+	 * @return the result of the comparison
+	 * @see TermDictionary#compare(byte[], int, int, byte[], int, int)
+	 */
+	private static int compare(byte[] a, byte[] b) {
+		return TermDictionary.compare(a, 0, a.length, b, 0, b.length);
+	}
+
+	/**
+	 * Gets the ID of the given word of the given segment.
+	 *
+	 * @param s      the position of the segment
+	 * @param termId the ID of the word in the segment
+	 * @return the ID of the word in the index
+	 */
+	int getTermId(int s, int termId) {
+		return file.getInt(termIds[s] + termId * 4L);
+	}
+
+	/**
+	 * Gets the index of the first entry of the given word. The entries of
+	 * the word end where the entries of the next word start.
+	 *
+	 * @param termId the ID of the word
+	 * @return the index of the first entry
+	 */
+	int firstEntry(int termId) {
+		return file.getInt(entryOffsets + termId * 4L);
+	}
+
+	/**
+	 * Gets the position of the segment of the given entry.
+	 *
+	 * @param entry the index of the entry
+	 * @return the position of the segment
+	 */
+	int entrySegment(int entry) {
+		return file.getInt(entrySegments + entry * 4L);
+	}
+
+	/**
+	 * Gets the ID of the word of the given entry in its segment.
+	 *
+	 * @param entry the index of the entry
+	 * @return the ID of the word in the segment
+	 */
+	int entryTermId(int entry) {
+		return file.getInt(entryTermIds + entry * 4L);
+	}
+
+	/**
+	 * Gets the number of documents containing the given word.
+	 *
+	 * @param termId the ID of the word
+	 * @return the document frequency of the word
+	 */
+	int getDocumentFrequency(int termId) {
+		return file.getInt(docFreqs + termId * 4L);
+	}
+
+	/**
+	 * Reads the TF vector of the given document, by the IDs of the words in
+	 * the index.
+	 *
+	 * @param s     the position of the segment
+	 * @param docId the ID of the document in the segment
+	 * @return the TF vector of the document
+	 */
+	SparseVector getTFVector(int s, int docId) {
+		return segments[s].getTFVector(docId).remap(termId -> getTermId(s, termId));
+	}
+
+	/**
+	 * Gets the TF-IDF norm of the given document, calculating the norms and
+	 * the keywords of its segment first, if needed.
+	 *
+	 * @param s     the position of the segment
+	 * @param docId the ID of the document in the segment
+	 * @return the norm of the document vector
+	 */
+	double getDocumentNorm(int s, int docId) {
+		double[] segmentNorms = norms.get(s);
+		if (segmentNorms == null) {
+			calculateDocuments(s);
+			segmentNorms = norms.get(s);
+		}
+		return segmentNorms[docId];
+	}
+
+	/**
+	 * Gets the keywords of the given document, calculating the norms and the
+	 * keywords of its segment first, if needed.
+	 *
+	 * @param s     the position of the segment
+	 * @param docId the ID of the document in the segment
+	 * @return the word IDs of the keywords; the array is shared and must
+	 * not be modified
+	 */
+	int[] getKeywords(int s, int docId) {
+		int[][] segmentKeywords = keywords.get(s);
+		if (segmentKeywords == null) {
+			calculateDocuments(s);
+			segmentKeywords = keywords.get(s);
+		}
+		return segmentKeywords[docId];
+	}
+
+	/**
+	 * Calculates the TF-IDF norms and the keywords of the documents of the
+	 * given segment, unless they have already been calculated.
+	 *
+	 * @param s the position of the segment
+	 */
+	private synchronized void calculateDocuments(int s) {
+		if (keywords.get(s) != null) return;
+
+		double[] segmentNorms = new double[segments[s].getNumberOfDocuments()];
+		int[][] segmentKeywords = new int[segmentNorms.length][];
+		for (int id = 0; id < segmentNorms.length; id++) {
+			SparseVector tf = getTFVector(s, id);
+			segmentNorms[id] = SparseVector.multiply(tf, idf).norm();
+			segmentKeywords[id] = Keywords.select(tf, idfs);
+		}
+		norms.set(s, segmentNorms);
+		keywords.set(s, segmentKeywords);
+	}
+}
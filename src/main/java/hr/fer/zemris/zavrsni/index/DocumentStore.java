@@ -0,0 +1,130 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.Document;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the documents of the dataset under dense integer IDs. The ID
+ * of a document is its position in the store, which makes it usable as
+ * an index into the primitive arrays used while scoring. The documents
+ * can additionally be looked up by their file system paths.
+ * <p>
+ * Removing a document leaves a gap in the IDs, which is closed by calling
+ * {@link #compact()}; until then, {@link #get(int)} returns null for the
+ * removed document.
+ *
+ * @author Luka Cupic
+ */
+public class DocumentStore implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The documents, indexed by their IDs.
+	 */
+	private List<Document> documents = new ArrayList<>();
+
+	/**
+	 * Maps the path of each document to its ID.
+	 */
+	private Map<String, Integer> ids = new HashMap<>();
+
+	/**
+	 * Adds the given document to the store and assigns it the next
+	 * available ID.
+	 *
+	 * @param document the document to add
+	 * @return the ID assigned to the document
+	 */
+	public int add(Document document) {
+		int id = documents.size();
+		document.setId(id);
+		documents.add(document);
+		ids.put(document.getPath().toString(), id);
+		return id;
+	}
+
+	/**
+	 * Removes the document at the given path from the store.
+	 *
+	 * @param path the path to the document
+	 * @return the removed document, or null if there is no such document
+	 */
+	public Document remove(String path) {
+		Integer id = ids.remove(path);
+		if (id == null) return null;
+		return documents.set(id, null);
+	}
+
+	/**
+	 * Closes the gaps left by the removed documents by assigning new,
+	 * dense IDs to the remaining documents. The relative order of the
+	 * documents is preserved.
+	 *
+	 * @return the new ID of each document, indexed by its old ID, or -1
+	 * for the removed documents
+	 */
+	public int[] compact() {
+		int[] newIds = new int[documents.size()];
+		List<Document> compacted = new ArrayList<>();
+		for (int id = 0; id < documents.size(); id++) {
+			Document document = documents.get(id);
+			if (document == null) {
+				newIds[id] = -1;
+				continue;
+			}
+			newIds[id] = compacted.size();
+			document.setId(newIds[id]);
+			ids.put(document.getPath().toString(), newIds[id]);
+			compacted.add(document);
+		}
+		documents = compacted;
+		return newIds;
+	}
+
+	/**
+	 * Gets the document with the given ID.
+	 *
+	 * @param id the ID of the document
+	 * @return the document
+	 */
+	public Document get(int id) {
+		return documents.get(id);
+	}
+
+	/**
+	 * Gets the ID of the document at the given path.
+	 *
+	 * @param path the path to the document
+	 * @return the ID of the document, or -1 if there is no such document
+	 */
+	public int getId(String path) {
+		Integer id = ids.get(path);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the number of documents in the store.
+	 *
+	 * @return the number of documents
+	 */
+	public int size() {
+		return documents.size();
+	}
+
+	/**
+	 * Returns an unmodifiable view of all the documents, ordered by
+	 * their IDs.
+	 *
+	 * @return all the documents from the store
+	 */
+	public List<Document> getAll() {
+		return Collections.unmodifiableList(documents);
+	}
+}
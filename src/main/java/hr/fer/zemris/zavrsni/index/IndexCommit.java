@@ -0,0 +1,142 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A commit of the index: the segments of the index, in the order of their
+ * documents, and the numbers of the manifest, the similarities and the
+ * collection statistics files belonging to them. A commit is stored in the {@value IndexFormat#SEGMENTS}
+ * file of the index directory, which is replaced by every new commit.
+ * <p>
+ * All the segments and files of the index are numbered by a single counter,
+ * which is stored with the commit, so a number is never used twice.
+ *
+ * @author Luka Cupic
+ */
+class IndexCommit {
+
+	/**
+	 * The commit of an empty index.
+	 */
+	static final IndexCommit EMPTY = new IndexCommit(new int[0], new int[0], -1, -1, -1, 0);
+
+	/**
+	 * The numbers of the segments.
+	 */
+	final int[] segments;
+
+	/**
+	 * The number of documents in each segment.
+	 */
+	final int[] sizes;
+
+	/**
+	 * The number of the manifest file, or -1 if there is none.
+	 */
+	final int manifest;
+
+	/**
+	 * The number of the similarities file, or -1 if there is none.
+	 */
+	final int similarities;
+
+	/**
+	 * The number of the collection statistics file, or -1 if there is none,
+	 * because the index has a single segment.
+	 */
+	final int collection;
+
+	/**
+	 * The next unused number.
+	 */
+	final int next;
+
+	/**
+	 * Creates a new commit.
+	 *
+	 * @param segments     the numbers of the segments
+	 * @param sizes        the number of documents in each segment
+	 * @param manifest     the number of the manifest file, or -1
+	 * @param similarities the number of the similarities file, or -1
+	 * @param collection   the number of the collection statistics file, or -1
+	 * @param next         the next unused number
+	 */
+	IndexCommit(int[] segments, int[] sizes, int manifest, int similarities, int collection, int next) {
+		this.segments = segments;
+		this.sizes = sizes;
+		this.manifest = manifest;
+		this.similarities = similarities;
+		this.collection = collection;
+		this.next = next;
+	}
+
+	/**
+	 * Finds the position of the given segment in this commit.
+	 *
+	 * @param segment the number of the segment
+	 * @return the position of the segment, or -1 if the segment is not a
+	 * part of this commit
+	 */
+	int indexOf(int segment) {
+		for (int i = 0; i < segments.length; i++) {
+			if (segments[i] == segment) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether the given number belongs to a file of this commit.
+	 *
+	 * @param number the number
+	 * @return true iff a segment or a file of this commit has the number
+	 */
+	boolean references(int number) {
+		return number == manifest || number == similarities || number == collection || indexOf(number) >= 0;
+	}
+
+	/**
+	 * Writes this commit to the index at the given directory, replacing
+	 * the previous commit.
+	 *
+	 * @param dir the index directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	void write(Path dir) throws IOException {
+		IndexFormat.writeFile(dir, IndexFormat.SEGMENTS, out -> {
+			out.writeInt(next);
+			out.writeInt(manifest);
+			out.writeInt(similarities);
+			out.writeInt(collection);
+			out.writeInt(segments.length);
+			for (int i = 0; i < segments.length; i++) {
+				out.writeInt(segments[i]);
+				out.writeInt(sizes[i]);
+			}
+		});
+	}
+
+	/**
+	 * Reads the commit of the index at the given directory.
+	 *
+	 * @param dir the index directory
+	 * @return the commit
+	 * @throws IOException if an I/O error occurs or the commit is invalid
+	 */
+	static IndexCommit read(Path dir) throws IOException {
+		try (DataInputStream in = IndexFormat.openFile(dir, IndexFormat.SEGMENTS)) {
+			int next = in.readInt();
+			int manifest = in.readInt();
+			int similarities = in.readInt();
+			int collection = in.readInt();
+			int[] segments = new int[in.readInt()];
+			int[] sizes = new int[segments.length];
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = in.readInt();
+				sizes[i] = in.readInt();
+			}
+			return new IndexCommit(segments, sizes, manifest, similarities, collection, next);
+		}
+	}
+}
@@ -0,0 +1,742 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.model.Vector;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Defines the binary on-disk format of the index and writes its segments.
+ * The index is stored as a directory holding:
+ * <ul>
+ * <li>{@value #SEGMENTS} - the current commit of the index: the list of its
+ * segments and the numbers of its manifest and similarities files (see
+ * {@link IndexCommit}),</li>
+ * <li>{@value #SEGMENT}_<i>n</i> - the directories of the segments,</li>
+ * <li>{@value #MANIFEST}_<i>n</i>.bin - the state of every indexed file, and</li>
+ * <li>{@value #SIMILARITIES}_<i>n</i>.bin - the similarities between the
+ * documents of all the segments, and</li>
+ * <li>{@value #COLLECTION}_<i>n</i>.bin - the {@link CollectionStatistics}
+ * of all the segments, if there are more of them.</li>
+ * </ul>
+ * The numbered files are never modified once written; a commit replaces
+ * them with new files, and only then replaces the commit file, so the
+ * index can always be read as of its last commit.
+ * <p>
+ * Each segment is a directory with a separate file for each of its parts:
+ * <ul>
+ * <li>{@value #TERMS} - the term dictionary with the word statistics and
+ * the sorted order of the words,</li>
+ * <li>{@value #POSTINGS} - the postings of every word, compressed in blocks
+ * of {@value #BLOCK_SIZE} postings (see {@link PostingsCodec}), with the
+ * metadata of each block,</li>
+ * <li>{@value #POSITIONS} - the {@link Positions} of every word in every
+ * document containing it, in the order of the postings, with the offset of
+ * each block of postings; the positions are read only by the phrase and
+ * proximity queries,</li>
+ * <li>{@value #DOCUMENTS} - the length and the TF-IDF norm of every document,</li>
+ * <li>{@value #STATISTICS} - the collection statistics used by BM25: the
+ * average document length, the IDF of every word, the length
+ * normalization factor of every document and the largest term score of
+ * every word (see {@link #maxTermScore(double, double)}),</li>
+ * <li>{@value #PATHS} - the path of every document,</li>
+ * <li>{@value #VECTORS} - the TF vector of every document,</li>
+ * <li>{@value #KEYWORDS} - the {@link Keywords} of every document, and</li>
+ * <li>{@value #SIGNATURES} - the MinHash signature of every document, with
+ * the LSH band tables.</li>
+ * </ul>
+ * The statistics, the norms and the keywords of a segment are calculated
+ * from the segment alone; they are used only when the index consists of
+ * that single segment.
+ * <p>
+ * Every file starts with the {@link #MAGIC} number and the {@link #VERSION}
+ * of the format, and all the values are stored in big-endian order, so the
+ * files can be mapped into memory and read in place by {@link MappedIndex}.
+ * The files are mapped in chunks (see {@link MappedFile}), and the offsets
+ * into the encoded postings and positions are stored as longs, so none of
+ * the files is limited to 2GB. The encoded sections are streamed to the
+ * files as they are encoded, after their offsets are calculated.
+ *
+ * @author Luka Cupic
+ */
+public class IndexFormat {
+
+	/**
+	 * The magic number at the beginning of every index file ("ZVRS").
+	 */
+	public static final int MAGIC = 0x5A565253;
+
+	/**
+	 * The version of the format. Indexes written in any other version are
+	 * not read, but rebuilt instead.
+	 */
+	public static final int VERSION = 14;
+
+	/**
+	 * The length of the header of every file, in bytes.
+	 */
+	public static final int HEADER_LENGTH = 8;
+
+	/**
+	 * The number of postings in a single block. The blocks are encoded
+	 * separately, so a single block is decoded at a time. For each block,
+	 * the index stores the last document ID, the largest term frequency and
+	 * the smallest document length, which allows skipping whole blocks
+	 * without decoding them and bounding the scores of their documents.
+	 */
+	public static final int BLOCK_SIZE = 128;
+
+	public static final String TERMS = "terms.bin";
+
+	public static final String POSTINGS = "postings.bin";
+
+	public static final String POSITIONS = "positions.bin";
+
+	public static final String DOCUMENTS = "documents.bin";
+
+	public static final String STATISTICS = "statistics.bin";
+
+	public static final String PATHS = "paths.bin";
+
+	public static final String VECTORS = "vectors.bin";
+
+	public static final String KEYWORDS = "keywords.bin";
+
+	public static final String SIGNATURES = "signatures.bin";
+
+	public static final String SEGMENTS = "segments.bin";
+
+	public static final String SEGMENT = "segment";
+
+	public static final String MANIFEST = "manifest";
+
+	public static final String SIMILARITIES = "similarities";
+
+	public static final String COLLECTION = "collection";
+
+	/**
+	 * The 'k1' parameter of BM25, which the length normalization factors
+	 * of the documents are calculated with.
+	 */
+	public static final double BM25_K1 = 1.6;
+
+	/**
+	 * The 'b' parameter of BM25, which the length normalization factors
+	 * of the documents are calculated with.
+	 */
+	public static final double BM25_B = 0.75;
+
+	/**
+	 * Calculates the BM25 length normalization factor of a document, which
+	 * is added to the term frequency in the denominator of the BM25 term
+	 * score. The factor only grows with the length of the document.
+	 *
+	 * @param length the length of the document
+	 * @param avgdl  the average length of the documents
+	 * @return the length normalization factor
+	 */
+	public static float lengthNorm(long length, double avgdl) {
+		return (float) (BM25_K1 * (1 - BM25_B + BM25_B * (length / avgdl)));
+	}
+
+	/**
+	 * Rounds the given BM25 term score of a word up to a float. The term
+	 * score is the saturated and length-normalized term frequency
+	 * {@code freq / (freq + norm)}, which the whole score of the word only
+	 * multiplies by the constant weight of the word. The index stores the
+	 * largest term score of every word, so the upper bound of the scores of
+	 * a query word is known without reading its postings.
+	 *
+	 * @param freq the frequency of the word in a document
+	 * @param norm the length normalization factor of the document
+	 * @return the term score, rounded up
+	 * @see #lengthNorm(long, double)
+	 */
+	public static float maxTermScore(double freq, double norm) {
+		return Math.nextUp((float) (freq / (freq + norm)));
+	}
+
+	/**
+	 * Calculates the IDF weight of a word.
+	 *
+	 * @param numDocs the number of documents in the dataset
+	 * @param docFreq the number of documents containing the word
+	 * @return the IDF weight of the word, or 0 if no document contains it
+	 */
+	public static double idf(int numDocs, int docFreq) {
+		return docFreq == 0 ? 0 : Math.log(numDocs / (double) docFreq);
+	}
+
+	/**
+	 * Gets the name of the numbered file or segment directory of the index.
+	 *
+	 * @param prefix the kind of the file; one of {@link #SEGMENT},
+	 *               {@link #MANIFEST}, {@link #SIMILARITIES} and
+	 *               {@link #COLLECTION}
+	 * @param number the number of the file
+	 * @return the name of the file
+	 */
+	public static String name(String prefix, int number) {
+		return prefix.equals(SEGMENT) ? prefix + "_" + number : prefix + "_" + number + ".bin";
+	}
+
+	/**
+	 * Writes the documents of the given dataset info as a new segment at
+	 * the given directory. The manifest of the dataset info is not written.
+	 *
+	 * @param info the dataset info
+	 * @param dir  the segment directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void write(DatasetInfo info, Path dir) throws IOException {
+		Files.createDirectories(dir);
+
+		TermDictionary vocabulary = info.vocabulary;
+		DocumentStore documents = info.documents;
+		int numTerms = vocabulary.size();
+		int numDocs = documents.size();
+
+		writeFile(dir, TERMS, vocabulary::write);
+
+		writeFile(dir, POSTINGS, out -> {
+			out.writeInt(numTerms);
+			int offset = 0;
+			for (int t = 0; t < numTerms; t++) {
+				out.writeInt(offset);
+				offset += info.index.getPostings(t).size();
+			}
+			out.writeInt(offset);
+
+			// the block metadata
+			int blocks = 0;
+			for (int t = 0; t < numTerms; t++) {
+				out.writeInt(blocks);
+				blocks += numberOfBlocks(info.index.getPostings(t).size());
+			}
+			out.writeInt(blocks);
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int start = 0; start < postings.size(); start += BLOCK_SIZE) {
+					int end = Math.min(start + BLOCK_SIZE, postings.size());
+					out.writeInt(postings.getDocId(end - 1));
+				}
+			}
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int start = 0; start < postings.size(); start += BLOCK_SIZE) {
+					int end = Math.min(start + BLOCK_SIZE, postings.size());
+					int maxFreq = 0;
+					for (int i = start; i < end; i++) maxFreq = Math.max(maxFreq, postings.getFreq(i));
+					out.writeInt(maxFreq);
+				}
+			}
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int start = 0; start < postings.size(); start += BLOCK_SIZE) {
+					int end = Math.min(start + BLOCK_SIZE, postings.size());
+					long minLength = Integer.MAX_VALUE;
+					for (int i = start; i < end; i++) {
+						minLength = Math.min(minLength, documents.get(postings.getDocId(i)).getLength());
+					}
+					out.writeInt((int) minLength);
+				}
+			}
+
+			// the positions of the encoded blocks are calculated first, so the blocks are streamed to the file
+			int[] gaps = new int[BLOCK_SIZE];
+			int[] freqs = new int[BLOCK_SIZE];
+			long position = 0;
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int start = 0; start < postings.size(); start += BLOCK_SIZE) {
+					out.writeLong(position);
+					int size = fillBlock(postings, start, gaps, freqs);
+					position += blockLength(gaps, freqs, size);
+				}
+			}
+			out.writeLong(position);
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int start = 0; start < postings.size(); start += BLOCK_SIZE) {
+					int size = fillBlock(postings, start, gaps, freqs);
+					writeBlock(gaps, freqs, size, out);
+				}
+			}
+		});
+
+		writeFile(dir, POSITIONS, out -> {
+			int blocks = 0;
+			for (int t = 0; t < numTerms; t++) {
+				blocks += numberOfBlocks(info.index.getPostings(t).size());
+			}
+			out.writeInt(blocks);
+
+			// the positions of each document are grouped by the words in the order of their IDs;
+			// the offsets of the blocks are calculated first, so the positions are streamed to the file
+			int[] offsets = new int[numDocs];
+			long position = 0;
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int i = 0; i < postings.size(); i++) {
+					if (i % BLOCK_SIZE == 0) out.writeLong(position);
+
+					int docId = postings.getDocId(i);
+					int[] positions = documents.get(docId).getPositions();
+					int previous = -1;
+					for (int end = offsets[docId] + postings.getFreq(i); offsets[docId] < end; offsets[docId]++) {
+						position += PostingsCodec.vIntLength(positions[offsets[docId]] - previous - 1);
+						previous = positions[offsets[docId]];
+					}
+				}
+			}
+			out.writeLong(position);
+
+			Arrays.fill(offsets, 0);
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int i = 0; i < postings.size(); i++) {
+					int docId = postings.getDocId(i);
+					int[] positions = documents.get(docId).getPositions();
+					int previous = -1;
+					for (int end = offsets[docId] + postings.getFreq(i); offsets[docId] < end; offsets[docId]++) {
+						PostingsCodec.writeVInt(positions[offsets[docId]] - previous - 1, out);
+						previous = positions[offsets[docId]];
+					}
+				}
+			}
+		});
+
+		double[] idf = new double[numTerms];
+		for (int t = 0; t < numTerms; t++) {
+			idf[t] = idf(numDocs, vocabulary.getDocumentFrequency(t));
+		}
+		Vector idfVector = new Vector(idf);
+		float[] idfs = new float[numTerms];
+		for (int t = 0; t < numTerms; t++) idfs[t] = (float) idf[t];
+		writeFile(dir, DOCUMENTS, out -> {
+			out.writeInt(numDocs);
+			for (Document d : documents.getAll()) out.writeLong(d.getLength());
+			for (Document d : documents.getAll()) {
+				out.writeDouble(SparseVector.multiply(d.getTFVector(), idfVector).norm());
+			}
+		});
+
+		long totalLength = 0;
+		for (Document d : documents.getAll()) totalLength += d.getLength();
+		double avgdl = numDocs == 0 ? 0 : totalLength / (double) numDocs;
+		float[] lengthNorms = new float[numDocs];
+		for (int id = 0; id < numDocs; id++) lengthNorms[id] = lengthNorm(documents.get(id).getLength(), avgdl);
+		writeFile(dir, STATISTICS, out -> {
+			out.writeDouble(avgdl);
+			out.writeInt(numTerms);
+			for (int t = 0; t < numTerms; t++) out.writeFloat(idfs[t]);
+			out.writeInt(numDocs);
+			for (float norm : lengthNorms) out.writeFloat(norm);
+
+			// the postings are at hand, so the largest term scores are exact
+			for (int t = 0; t < numTerms; t++) {
+				Postings postings = info.index.getPostings(t);
+				float max = 0;
+				for (int i = 0; i < postings.size(); i++) {
+					max = Math.max(max, maxTermScore(postings.getFreq(i), lengthNorms[postings.getDocId(i)]));
+				}
+				out.writeFloat(max);
+			}
+		});
+
+		writeFile(dir, PATHS, out -> {
+			byte[][] paths = new byte[numDocs][];
+			out.writeInt(numDocs);
+			int offset = 0;
+			for (int id = 0; id < numDocs; id++) {
+				paths[id] = documents.get(id).getPath().toString().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(offset);
+				offset += paths[id].length;
+			}
+			out.writeInt(offset);
+			for (byte[] path : paths) out.write(path);
+		});
+
+		writeFile(dir, VECTORS, out -> {
+			out.writeInt(numDocs);
+			int offset = 0;
+			for (Document d : documents.getAll()) {
+				out.writeInt(offset);
+				offset += d.getTFVector().size();
+			}
+			out.writeInt(offset);
+			for (Document d : documents.getAll()) {
+				SparseVector tf = d.getTFVector();
+				for (int i = 0; i < tf.size(); i++) out.writeInt(tf.getIndex(i));
+			}
+			for (Document d : documents.getAll()) {
+				SparseVector tf = d.getTFVector();
+				for (int i = 0; i < tf.size(); i++) out.writeInt((int) tf.getValue(i));
+			}
+		});
+
+		writeFile(dir, KEYWORDS, out -> {
+			int[][] keywords = new int[numDocs][];
+			out.writeInt(numDocs);
+			int offset = 0;
+			for (int id = 0; id < numDocs; id++) {
+				keywords[id] = Keywords.select(documents.get(id).getTFVector(), idfs);
+				out.writeInt(offset);
+				offset += keywords[id].length;
+			}
+			out.writeInt(offset);
+			for (int[] words : keywords) {
+				for (int termId : words) out.writeInt(termId);
+			}
+		});
+
+		writeFile(dir, SIGNATURES, out -> {
+			out.writeInt(numDocs);
+			out.writeInt(MinHash.NUM_HASHES);
+			for (Document d : documents.getAll()) {
+				for (int value : d.getSignature()) out.writeInt(value);
+			}
+
+			// each band table holds the band hashes of all the documents in sorted order
+			long[] entries = new long[numDocs];
+			for (int band = 0; band < MinHash.BANDS; band++) {
+				for (int id = 0; id < numDocs; id++) {
+					int hash = MinHash.bandHash(documents.get(id).getSignature(), band);
+					entries[id] = ((long) hash << 32) | id;
+				}
+				Arrays.sort(entries);
+				for (long entry : entries) out.writeInt((int) (entry >> 32));
+				for (long entry : entries) out.writeInt((int) entry);
+			}
+		});
+	}
+
+	/**
+	 * Writes the given manifest to a numbered file of the index.
+	 *
+	 * @param manifest the manifest
+	 * @param dir      the index directory
+	 * @param number   the number of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void writeManifest(Manifest manifest, Path dir, int number) throws IOException {
+		writeFile(dir, name(MANIFEST, number), manifest::write);
+	}
+
+	/**
+	 * Writes the given similarities to a numbered file of the index.
+	 *
+	 * @param similarities the similarities between the documents
+	 * @param dir          the index directory
+	 * @param number       the number of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void writeSimilarities(SimilarityList similarities, Path dir, int number) throws IOException {
+		writeFile(dir, name(SIMILARITIES, number), similarities::write);
+	}
+
+	/**
+	 * Calculates the collection statistics of the given segments and writes
+	 * them to a numbered file of the index.
+	 *
+	 * @param segments the segments, in the order of their documents
+	 * @param dir      the index directory
+	 * @param number   the number of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void writeCollection(Segment[] segments, Path dir, int number) throws IOException {
+		writeFile(dir, name(COLLECTION, number), out -> CollectionStatistics.write(segments, out));
+	}
+
+	/**
+	 * Checks whether there is a committed index of the current version at
+	 * the given directory.
+	 *
+	 * @param dir the index directory
+	 * @return true iff the index can be opened
+	 */
+	public static boolean isComplete(Path dir) {
+		try {
+			// opening the commit file checks its header
+			openFile(dir, SEGMENTS).close();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads the segment at the given directory back into a modifiable
+	 * dataset info, so that it can be rewritten or merged. The postings are
+	 * rebuilt from the TF vectors of the documents, and the positions of the
+	 * documents are read in the order of the rebuilt postings. The manifest
+	 * of the returned dataset info is empty.
+	 *
+	 * @param dir the segment directory
+	 * @return the dataset info
+	 * @throws IOException if an I/O error occurs or the segment is invalid
+	 */
+	public static DatasetInfo read(Path dir) throws IOException {
+		DatasetInfo info = new DatasetInfo();
+
+		try (DataInputStream in = openFile(dir, TERMS)) {
+			info.vocabulary = TermDictionary.read(in);
+		}
+
+		long[] lengths;
+		try (DataInputStream in = openFile(dir, DOCUMENTS)) {
+			lengths = new long[in.readInt()];
+			for (int id = 0; id < lengths.length; id++) lengths[id] = in.readLong();
+		}
+
+		String[] paths = new String[lengths.length];
+		try (DataInputStream in = openFile(dir, PATHS)) {
+			int[] offsets = readOffsets(in);
+			for (int id = 0; id < paths.length; id++) {
+				byte[] bytes = new byte[offsets[id + 1] - offsets[id]];
+				in.readFully(bytes);
+				paths[id] = new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+
+		try (DataInputStream in = openFile(dir, VECTORS)) {
+			int[] offsets = readOffsets(in);
+			int[] termIds = new int[offsets[offsets.length - 1]];
+			for (int i = 0; i < termIds.length; i++) termIds[i] = in.readInt();
+
+			for (int id = 0; id < paths.length; id++) {
+				int size = offsets[id + 1] - offsets[id];
+				int[] indices = new int[size];
+				float[] values = new float[size];
+				for (int i = 0; i < size; i++) {
+					indices[i] = termIds[offsets[id] + i];
+					values[i] = in.readInt();
+					info.index.add(indices[i], id, (int) values[i]);
+				}
+				SparseVector tf = new SparseVector(indices, values);
+				info.documents.add(new Document(Paths.get(paths[id]), tf, null, lengths[id]));
+			}
+		}
+
+		try (DataInputStream in = openFile(dir, POSITIONS)) {
+			for (int i = in.readInt(); i >= 0; i--) in.readLong();
+
+			int[] offsets = new int[paths.length];
+			for (Document d : info.documents.getAll()) {
+				d.setPositions(new int[(int) d.getLength()]);
+			}
+			for (int t = 0; t < info.vocabulary.size(); t++) {
+				Postings postings = info.index.getPostings(t);
+				for (int i = 0; i < postings.size(); i++) {
+					int[] positions = info.documents.get(postings.getDocId(i)).getPositions();
+					int position = -1;
+					for (int k = 0; k < postings.getFreq(i); k++) {
+						position += PostingsCodec.readVInt(in) + 1;
+						positions[offsets[postings.getDocId(i)]++] = position;
+					}
+				}
+			}
+		}
+
+		try (DataInputStream in = openFile(dir, SIGNATURES)) {
+			in.readInt();
+			int numHashes = in.readInt();
+			for (Document d : info.documents.getAll()) {
+				int[] signature = new int[numHashes];
+				for (int i = 0; i < numHashes; i++) signature[i] = in.readInt();
+				d.setSignature(signature);
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Checks the header of the given mapped index file.
+	 *
+	 * @param file the mapped file
+	 * @param name the name of the file
+	 * @throws IOException if the header is invalid
+	 */
+	static void checkHeader(MappedFile file, String name) throws IOException {
+		if (file.size() < HEADER_LENGTH || file.getInt(0) != MAGIC) {
+			throw new IOException("Not an index file: " + name);
+		}
+		if (file.getInt(4) != VERSION) {
+			throw new IOException("Unsupported index version: " + name);
+		}
+	}
+
+	/**
+	 * Maps the given index file into memory and checks its header. The
+	 * file is mapped in chunks, so it is not limited to 2GB.
+	 *
+	 * @param dir  the index or segment directory
+	 * @param name the name of the file
+	 * @return the mapped file
+	 * @throws IOException if an I/O error occurs or the file is invalid
+	 */
+	static MappedFile map(Path dir, String name) throws IOException {
+		try (FileChannel channel = FileChannel.open(dir.resolve(name), StandardOpenOption.READ)) {
+			MappedFile file = new MappedFile(channel);
+			checkHeader(file, name);
+			return file;
+		}
+	}
+
+	/**
+	 * Opens the given index file for sequential reading and checks its header.
+	 *
+	 * @param dir  the index or segment directory
+	 * @param name the name of the file
+	 * @return the input stream, positioned right after the header
+	 * @throws IOException if an I/O error occurs or the header is invalid
+	 */
+	static DataInputStream openFile(Path dir, String name) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(dir.resolve(name))));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not an index file: " + name);
+			}
+			if (in.readInt() != VERSION) {
+				throw new IOException("Unsupported index version: " + name);
+			}
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return in;
+	}
+
+	/**
+	 * Reads a count followed by count + 1 offsets.
+	 *
+	 * @param in the input
+	 * @return the offsets
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static int[] readOffsets(DataInputStream in) throws IOException {
+		int[] offsets = new int[in.readInt() + 1];
+		for (int i = 0; i < offsets.length; i++) offsets[i] = in.readInt();
+		return offsets;
+	}
+
+	/**
+	 * Calculates the number of blocks of the given number of postings.
+	 *
+	 * @param size the number of postings
+	 * @return the number of blocks
+	 */
+	private static int numberOfBlocks(int size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	/**
+	 * Fills the gaps and the frequencies of a single block of postings.
+	 *
+	 * @param postings the postings
+	 * @param start    the index of the first posting of the block
+	 * @param gaps     the buffer for the gaps between the document IDs, less one
+	 * @param freqs    the buffer for the frequencies, less one
+	 * @return the number of postings in the block
+	 */
+	private static int fillBlock(Postings postings, int start, int[] gaps, int[] freqs) {
+		int size = Math.min(BLOCK_SIZE, postings.size() - start);
+		int previous = start == 0 ? -1 : postings.getDocId(start - 1);
+		for (int i = 0; i < size; i++) {
+			gaps[i] = postings.getDocId(start + i) - previous - 1;
+			freqs[i] = postings.getFreq(start + i) - 1;
+			previous = postings.getDocId(start + i);
+		}
+		return size;
+	}
+
+	/**
+	 * Calculates the number of bytes of a single encoded block of postings.
+	 *
+	 * @param gaps  the gaps between the document IDs, less one
+	 * @param freqs the frequencies, less one
+	 * @param size  the number of postings in the block
+	 * @return the length of the encoded block
+	 * @see #writeBlock(int[], int[], int, DataOutput)
+	 */
+	private static int blockLength(int[] gaps, int[] freqs, int size) {
+		if (size == BLOCK_SIZE) {
+			int bits = PostingsCodec.bitsRequired(gaps, size) + PostingsCodec.bitsRequired(freqs, size);
+			return 2 + PostingsCodec.LANES * bits * 4;
+		}
+		int length = 0;
+		for (int i = 0; i < size; i++) {
+			length += PostingsCodec.vIntLength(gaps[i]) + PostingsCodec.vIntLength(freqs[i]);
+		}
+		return length;
+	}
+
+	/**
+	 * Encodes a single block of postings. A full block is bit-packed, with
+	 * the widths of its gaps and frequencies stored in its first two bytes,
+	 * and a partial block is variable-byte encoded; see {@link PostingsCodec}.
+	 *
+	 * @param gaps  the gaps between the document IDs, less one
+	 * @param freqs the frequencies, less one
+	 * @param size  the number of postings in the block
+	 * @param out   the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeBlock(int[] gaps, int[] freqs, int size, DataOutput out) throws IOException {
+		if (size == BLOCK_SIZE) {
+			int gapBits = PostingsCodec.bitsRequired(gaps, size);
+			int freqBits = PostingsCodec.bitsRequired(freqs, size);
+			out.writeByte(gapBits);
+			out.writeByte(freqBits);
+			PostingsCodec.pack(gaps, gapBits, out);
+			PostingsCodec.pack(freqs, freqBits, out);
+		} else {
+			for (int i = 0; i < size; i++) PostingsCodec.writeVInt(gaps[i], out);
+			for (int i = 0; i < size; i++) PostingsCodec.writeVInt(freqs[i], out);
+		}
+	}
+
+	/**
+	 * Writes a single index file. The file is first written under a
+	 * temporary name and then moved in place, so a reader never sees a
+	 * partially written file.
+	 *
+	 * @param dir    the index or segment directory
+	 * @param name   the name of the file
+	 * @param writer writes the contents of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void writeFile(Path dir, String name, FileWriter writer) throws IOException {
+		Path tmp = dir.resolve(name + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writer.write(out);
+		}
+		Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Writes the contents of a single index file.
+	 */
+	@FunctionalInterface
+	interface FileWriter {
+
+		void write(DataOutputStream out) throws IOException;
+	}
+}
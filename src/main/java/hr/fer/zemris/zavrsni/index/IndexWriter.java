@@ -0,0 +1,564 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Writes the index of a dataset as a sequence of immutable segments. Every
+ * commit adds the new documents as a new segment, so the existing segments
+ * are never rewritten, except for the segments holding removed documents.
+ * The segments are merged in the background, on a single thread, as chosen
+ * by the {@link MergePolicy}; meanwhile, the index can be both searched and
+ * committed to.
+ * <p>
+ * The similarities between the documents are updated incrementally: every
+ * commit keeps the stored similarities between the documents it keeps, and
+ * calculates only the similarities of the added documents. The kept
+ * similarities are not recalculated with the statistics of the new
+ * documents, such as the changed IDFs of their words, so they drift from
+ * the ones calculated from scratch as the index grows.
+ * <p>
+ * Every commit and every merge produces a new {@link MappedIndex}, while the
+ * previously opened indexes keep seeing their own segments. The files which
+ * are no longer a part of the index are deleted once they are replaced.
+ * A failed merge leaves the index as it was; the failure is thrown by the
+ * next commit or by {@link #close()}.
+ *
+ * @author Luka Cupic
+ */
+public class IndexWriter implements Closeable {
+
+	/**
+	 * The index directory.
+	 */
+	private final Path dir;
+
+	/**
+	 * The policy choosing the segments to merge.
+	 */
+	private final MergePolicy policy;
+
+	/**
+	 * Notified of every index produced by a merge, without holding the lock
+	 * of the writer.
+	 */
+	private final Consumer<MappedIndex> listener;
+
+	/**
+	 * The executor running the merges.
+	 */
+	private final ExecutorService merges = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "index-merge");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The last commit of the index.
+	 */
+	private IndexCommit commit;
+
+	/**
+	 * The index of the last commit.
+	 */
+	private MappedIndex index;
+
+	/**
+	 * The numbers of the segments being merged and of the segment being
+	 * written by the merge, which must not be deleted.
+	 */
+	private final Set<Integer> pending = new HashSet<>();
+
+	/**
+	 * Whether a merge is running.
+	 */
+	private boolean merging;
+
+	/**
+	 * Whether the writer has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * The failure of a background merge or cleanup which has not been
+	 * reported yet, with any later failures suppressed by it; it is thrown
+	 * by the next commit or by closing the writer.
+	 */
+	private IOException failure;
+
+	/**
+	 * Creates a new writer.
+	 *
+	 * @param index    the index of the last commit
+	 * @param policy   the policy choosing the segments to merge
+	 * @param listener notified of every index produced by a merge; the
+	 *                 notifications may arrive after a later commit, so
+	 *                 the listener should check the index with
+	 *                 {@link MappedIndex#isNewerThan(MappedIndex)}
+	 */
+	private IndexWriter(MappedIndex index, MergePolicy policy, Consumer<MappedIndex> listener) {
+		this.dir = index.getDirectory();
+		this.commit = index.getCommit();
+		this.index = index;
+		this.policy = policy;
+		this.listener = listener;
+	}
+
+	/**
+	 * Creates a new, empty index at the given directory. Any index already
+	 * stored at the directory is deleted.
+	 *
+	 * @param dir      the index directory
+	 * @param policy   the policy choosing the segments to merge
+	 * @param listener notified of every index produced by a merge; the
+	 *                 notifications may arrive after a later commit, so
+	 *                 the listener should check the index with
+	 *                 {@link MappedIndex#isNewerThan(MappedIndex)}
+	 * @return the writer
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static IndexWriter create(Path dir, MergePolicy policy, Consumer<MappedIndex> listener) throws IOException {
+		if (Files.exists(dir)) {
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+				for (Path entry : entries) delete(entry);
+			}
+		}
+		Files.createDirectories(dir);
+		return new IndexWriter(new MappedIndex(dir, IndexCommit.EMPTY, MappedIndex.nextGeneration()), policy, listener);
+	}
+
+	/**
+	 * Opens a writer of the given index. The files left over by an
+	 * interrupted commit or merge are deleted and the segments are merged,
+	 * if needed.
+	 *
+	 * @param index    the index of the last commit
+	 * @param policy   the policy choosing the segments to merge
+	 * @param listener notified of every index produced by a merge; the
+	 *                 notifications may arrive after a later commit, so
+	 *                 the listener should check the index with
+	 *                 {@link MappedIndex#isNewerThan(MappedIndex)}
+	 * @return the writer
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static IndexWriter open(MappedIndex index, MergePolicy policy, Consumer<MappedIndex> listener) throws IOException {
+		IndexWriter writer = new IndexWriter(index, policy, listener);
+		synchronized (writer) {
+			writer.deleteUnreferenced();
+			writer.scheduleMerge();
+		}
+		return writer;
+	}
+
+	/**
+	 * Gets the index of the last commit or merge.
+	 *
+	 * @return the index
+	 */
+	public synchronized MappedIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Commits the given changes of the dataset. The segments holding any of
+	 * the removed documents are rewritten without them, and the added
+	 * documents are written as a new segment. If the documents have changed,
+	 * the similarities of the added documents are calculated from the new
+	 * index and written, together with the kept similarities of the other
+	 * documents, before the commit is completed.
+	 *
+	 * @param added        the added documents, together with the manifest of
+	 *                     the whole dataset
+	 * @param removed      the paths of the removed documents, matched to the
+	 *                     documents by their absolute, normalized paths
+	 * @param similarities calculates the similarities of the added documents
+	 *                     of the given index
+	 * @return the index of the commit
+	 * @throws IOException if an I/O error occurs, or if a background merge or
+	 *                     cleanup has failed since the last commit, in which
+	 *                     case nothing is committed
+	 */
+	public synchronized MappedIndex commit(DatasetInfo added, Collection<String> removed,
+	                                       SimilarityFunction similarities) throws IOException {
+		throwFailure();
+
+		int next = commit.next;
+		List<Integer> segments = new ArrayList<>();
+		List<Integer> sizes = new ArrayList<>();
+		boolean changed = false;
+
+		// find the segments holding the removed documents, and number the kept documents
+		boolean[] affected = new boolean[commit.segments.length];
+		int[] newIds = new int[index.getNumberOfDocuments()];
+		int kept = 0;
+		Set<String> paths = new HashSet<>();
+		for (String path : removed) {
+			paths.add(Manifest.keyOf(Paths.get(path)));
+		}
+		for (int docId = 0; docId < newIds.length; docId++) {
+			if (!paths.isEmpty() && paths.contains(Manifest.keyOf(index.getPath(docId)))) {
+				affected[index.getSegment(docId)] = true;
+				newIds[docId] = -1;
+			} else {
+				newIds[docId] = kept++;
+			}
+		}
+
+		for (int s = 0; s < commit.segments.length; s++) {
+			if (!affected[s]) {
+				segments.add(commit.segments[s]);
+				sizes.add(commit.sizes[s]);
+				continue;
+			}
+
+			DatasetInfo info = IndexFormat.read(segmentDirectory(commit.segments[s]));
+			for (String path : paths) {
+				info.removeDocument(path);
+			}
+			info.index.remap(info.documents.compact());
+			changed = true;
+			if (info.documents.size() == 0) continue;
+
+			IndexFormat.write(info, segmentDirectory(next));
+			segments.add(next++);
+			sizes.add(info.documents.size());
+		}
+
+		if (added.documents.size() > 0) {
+			IndexFormat.write(added, segmentDirectory(next));
+			segments.add(next++);
+			sizes.add(added.documents.size());
+			changed = true;
+		}
+
+		int manifest = next++;
+		IndexFormat.writeManifest(added.manifest, dir, manifest);
+
+		IndexCommit newCommit;
+		MappedIndex newIndex;
+		if (changed) {
+			// the statistics and the similarities are calculated from the new segments before they are committed
+			int collection = segments.size() > 1 ? next + 1 : -1;
+			IndexCommit uncommitted = new IndexCommit(toArray(segments), toArray(sizes), manifest, -1, collection, next + 2);
+			MappedIndex uncommittedIndex = new MappedIndex(dir, uncommitted, MappedIndex.nextGeneration(), true);
+
+			// the documents keep their order, and the added ones follow the kept ones
+			SimilarityList pairs = index.getSimilarities(newIds);
+			if (kept < uncommittedIndex.getNumberOfDocuments()) {
+				pairs = SimilarityList.merge(pairs, similarities.calculate(uncommittedIndex, kept));
+			}
+			IndexFormat.writeSimilarities(pairs, dir, next);
+
+			newCommit = new IndexCommit(uncommitted.segments, uncommitted.sizes, manifest, next, collection, next + 2);
+			newIndex = new MappedIndex(uncommittedIndex, newCommit, uncommittedIndex.getGeneration());
+		} else {
+			newCommit = new IndexCommit(commit.segments, commit.sizes, manifest, commit.similarities, commit.collection, next);
+			newIndex = new MappedIndex(index, newCommit, index.getGeneration());
+		}
+		newCommit.write(dir);
+		commit = newCommit;
+		index = newIndex;
+
+		deleteUnreferenced();
+		scheduleMerge();
+		return newIndex;
+	}
+
+	/**
+	 * Starts merging the segments chosen by the {@link #policy}, unless a
+	 * merge is already running.
+	 */
+	private void scheduleMerge() {
+		if (closed || merging) return;
+
+		int[] run = policy.findMerge(commit.sizes);
+		if (run == null) return;
+
+		int[] inputs = Arrays.copyOfRange(commit.segments, run[0], run[1]);
+		int output = commit.next;
+		// the number of the merged segment is reserved by the next commit
+		commit = new IndexCommit(commit.segments, commit.sizes, commit.manifest, commit.similarities, commit.collection, output + 1);
+		for (int number : inputs) pending.add(number);
+		pending.add(output);
+		merging = true;
+
+		merges.execute(() -> merge(inputs, output));
+	}
+
+	/**
+	 * Merges the given segments into a new segment and replaces them with
+	 * it, unless some of them have been rewritten by a commit in the
+	 * meantime. The segments are read and written without holding the lock
+	 * of the writer.
+	 *
+	 * @param inputs the numbers of the segments to merge, in their order
+	 * @param output the number of the merged segment
+	 */
+	private void merge(int[] inputs, int output) {
+		DatasetInfo merged = null;
+		IOException error = null;
+		try {
+			merged = new DatasetInfo();
+			for (int number : inputs) {
+				DatasetInfo segment = IndexFormat.read(segmentDirectory(number));
+
+				// the words of the segment are renumbered by the merged vocabulary
+				int[] termIds = new int[segment.vocabulary.size()];
+				Arrays.fill(termIds, -1);
+				for (Document d : segment.documents.getAll()) {
+					SparseVector tf = d.getTFVector();
+					for (int i = 0; i < tf.size(); i++) {
+						int termId = tf.getIndex(i);
+						if (termIds[termId] < 0) {
+							termIds[termId] = merged.vocabulary.add(segment.vocabulary.getTerm(termId));
+						}
+					}
+
+					Document document = new Document(d.getPath(), tf.remap(termIds), null, d.getLength());
+					document.setSignature(d.getSignature());
+					document.setPositions(Positions.remap(tf, d.getPositions(), termIds));
+					merged.addDocument(document);
+				}
+			}
+			IndexFormat.write(merged, segmentDirectory(output));
+		} catch (IOException e) {
+			error = e;
+			merged = null;
+		}
+
+		MappedIndex mergedIndex;
+		synchronized (this) {
+			if (error != null) fail(error);
+			merging = false;
+			for (int number : inputs) pending.remove(number);
+			pending.remove(output);
+
+			mergedIndex = merged == null ? null : replace(inputs, output, merged.documents.size());
+			deleteUnreferenced();
+			scheduleMerge();
+		}
+
+		// the listener may take locks of its own, so it is not called while holding the lock of the writer
+		if (mergedIndex != null) {
+			listener.accept(mergedIndex);
+		}
+	}
+
+	/**
+	 * Replaces the given segments of the last commit with the merged segment
+	 * and commits the result.
+	 *
+	 * @param inputs the numbers of the merged segments, in their order
+	 * @param output the number of the merged segment
+	 * @param size   the number of documents in the merged segment
+	 * @return the index of the commit, or null if the segments are no longer
+	 * a part of the index or the commit has failed
+	 */
+	private MappedIndex replace(int[] inputs, int output, int size) {
+		int from = commit.indexOf(inputs[0]);
+		if (from < 0 || from + inputs.length > commit.segments.length
+				|| !Arrays.equals(Arrays.copyOfRange(commit.segments, from, from + inputs.length), inputs)) {
+			return null;
+		}
+
+		int length = commit.segments.length - inputs.length + 1;
+		int[] segments = new int[length];
+		int[] sizes = new int[length];
+		System.arraycopy(commit.segments, 0, segments, 0, from);
+		System.arraycopy(commit.sizes, 0, sizes, 0, from);
+		segments[from] = output;
+		sizes[from] = size;
+		System.arraycopy(commit.segments, from + inputs.length, segments, from + 1, length - from - 1);
+		System.arraycopy(commit.sizes, from + inputs.length, sizes, from + 1, length - from - 1);
+
+		try {
+			// the documents keep their IDs, so the similarities remain valid, but the words are renumbered
+			int collection = length > 1 ? commit.next : -1;
+			IndexCommit newCommit = new IndexCommit(segments, sizes, commit.manifest, commit.similarities, collection, commit.next + 1);
+			MappedIndex newIndex = new MappedIndex(dir, newCommit, MappedIndex.nextGeneration(), true);
+			newCommit.write(dir);
+			commit = newCommit;
+			index = newIndex;
+			return newIndex;
+		} catch (IOException e) {
+			fail(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the numbered files and segments of the index directory which
+	 * are neither a part of the last commit nor being merged. A file which
+	 * cannot be deleted, for example because it is still mapped by an open
+	 * index on some platforms, is deleted by a later call; a directory which
+	 * cannot be listed is recorded as a failure.
+	 */
+	private void deleteUnreferenced() {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+			for (Path entry : entries) {
+				int number = number(entry.getFileName().toString());
+				if (number < 0 || commit.references(number) || pending.contains(number)) continue;
+				try {
+					delete(entry);
+				} catch (IOException e) {
+					// retried by the next call
+				}
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Records the given failure of a background merge or cleanup, to be
+	 * thrown by the next commit or by closing the writer.
+	 *
+	 * @param e the failure
+	 */
+	private void fail(IOException e) {
+		if (failure == null) {
+			failure = e;
+		} else {
+			failure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Throws the recorded failure, if any, which is then forgotten.
+	 *
+	 * @throws IOException the recorded failure
+	 */
+	private void throwFailure() throws IOException {
+		IOException e = failure;
+		failure = null;
+		if (e != null) throw e;
+	}
+
+	/**
+	 * Waits for the running merge to finish and stops merging.
+	 *
+	 * @throws IOException if a background merge or cleanup has failed since
+	 *                     the last commit
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+		}
+		merges.shutdown();
+		try {
+			merges.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			throwFailure();
+		}
+	}
+
+	/**
+	 * Gets the directory of the given segment.
+	 *
+	 * @param number the number of the segment
+	 * @return the segment directory
+	 */
+	private Path segmentDirectory(int number) {
+		return dir.resolve(IndexFormat.name(IndexFormat.SEGMENT, number));
+	}
+
+	/**
+	 * Parses the number of the given numbered file or segment.
+	 *
+	 * @param name the name of the file
+	 * @return the number of the file, or -1 if the file is not numbered
+	 */
+	private static int number(String name) {
+		for (String prefix : new String[]{IndexFormat.SEGMENT, IndexFormat.MANIFEST, IndexFormat.SIMILARITIES, IndexFormat.COLLECTION}) {
+			if (!name.startsWith(prefix + "_")) continue;
+
+			String number = name.substring(prefix.length() + 1);
+			if (number.endsWith(".tmp")) number = number.substring(0, number.length() - 4);
+			if (number.endsWith(".bin")) number = number.substring(0, number.length() - 4);
+			try {
+				return Integer.parseInt(number);
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Deletes the given file or directory, with all its contents.
+	 *
+	 * @param path the path to the file or directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void delete(Path path) throws IOException {
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null) throw e;
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Converts the given list to an array.
+	 *
+	 * @param list the list
+	 * @return the array
+	 */
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+		return array;
+	}
+
+	/**
+	 * Calculates the similarities between the documents of an index.
+	 */
+	@FunctionalInterface
+	public interface SimilarityFunction {
+
+		/**
+		 * Calculates the similarities of the documents of the given index,
+		 * from the given one onward, to all the other documents.
+		 *
+		 * @param index the index holding the documents
+		 * @param from  the ID of the first document whose similarities are
+		 *              calculated
+		 * @return the similarities, ordered by the document IDs
+		 */
+		SimilarityList calculate(MappedIndex index, int from);
+	}
+}
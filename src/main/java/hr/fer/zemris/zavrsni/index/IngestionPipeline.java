@@ -0,0 +1,404 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.input.DocumentReader;
+import hr.fer.zemris.zavrsni.input.InputProcessor;
+import hr.fer.zemris.zavrsni.input.PDFReader;
+import hr.fer.zemris.zavrsni.input.TextCache;
+import hr.fer.zemris.zavrsni.utils.XXHash64;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A pipeline which reads every document of the dataset exactly once and
+ * hands the processed words to a single indexer. The pipeline consists of
+ * three stages:
+ * <ol>
+ * <li>a walker thread, which traverses the dataset directory (or a given
+ * list of files),</li>
+ * <li>a pool of workers, which read, hash and process the documents
+ * in parallel, and</li>
+ * <li>the indexer, which runs on the calling thread and receives the
+ * processed documents one at a time.</li>
+ * </ol>
+ * The stages are connected by bounded queues, so the walker and the
+ * workers never get too far ahead of the indexer.
+ *
+ * @author Luka Cupic
+ */
+public class IngestionPipeline {
+
+	/**
+	 * The default capacity of the queues between the stages.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	/**
+	 * The size of the largest file which is read into memory at once (16 MB).
+	 * Larger files are hashed and parsed straight from the disk.
+	 */
+	public static final long MAX_IN_MEMORY_SIZE = 16L * 1024 * 1024;
+
+	/**
+	 * Marks the end of the input for a single worker.
+	 */
+	private static final Task END_OF_INPUT = new Task(null);
+
+	/**
+	 * The number of worker threads.
+	 */
+	private final int threads;
+
+	/**
+	 * The cache of the extracted texts, or null if the texts are not cached.
+	 */
+	private final TextCache textCache;
+
+	/**
+	 * The memory usage setting of the documents read by the workers.
+	 */
+	private final MemoryUsageSetting memoryUsage;
+
+	/**
+	 * The queue of files waiting to be processed by the workers.
+	 */
+	private final BlockingQueue<Task> tasks;
+
+	/**
+	 * The queue of processed files waiting for the indexer.
+	 */
+	private final BlockingQueue<Processed> processed;
+
+	/**
+	 * The first error which occurred in any of the stages.
+	 */
+	private volatile IOException error;
+
+	/**
+	 * Creates a new pipeline with one worker per available processor.
+	 */
+	public IngestionPipeline() {
+		this(null);
+	}
+
+	/**
+	 * Creates a new pipeline with one worker per available processor,
+	 * which takes the texts of the unchanged documents from the given
+	 * cache instead of parsing them.
+	 *
+	 * @param textCache the cache of the extracted texts, or null
+	 */
+	public IngestionPipeline(TextCache textCache) {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, textCache);
+	}
+
+	/**
+	 * Creates a new pipeline.
+	 *
+	 * @param threads       the number of worker threads
+	 * @param queueCapacity the capacity of the queues between the stages
+	 * @param textCache     the cache of the extracted texts, or null
+	 */
+	public IngestionPipeline(int threads, int queueCapacity, TextCache textCache) {
+		this(threads, queueCapacity, textCache, PDFReader.defaultMemoryUsage());
+	}
+
+	/**
+	 * Creates a new pipeline whose workers read the documents with the
+	 * given memory usage, so the memory taken by the large documents can
+	 * be bounded.
+	 *
+	 * @param threads       the number of worker threads
+	 * @param queueCapacity the capacity of the queues between the stages
+	 * @param textCache     the cache of the extracted texts, or null
+	 * @param memoryUsage   the memory usage setting of the documents
+	 */
+	public IngestionPipeline(int threads, int queueCapacity, TextCache textCache, MemoryUsageSetting memoryUsage) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive!");
+		}
+		this.threads = threads;
+		this.textCache = textCache;
+		this.memoryUsage = Objects.requireNonNull(memoryUsage);
+		this.tasks = new ArrayBlockingQueue<>(queueCapacity);
+		this.processed = new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	/**
+	 * Runs the pipeline over all the files at the given path. The given
+	 * indexer is called on the calling thread, once for each file.
+	 *
+	 * @param dataset the path to the folder containing the documents
+	 * @param indexer the indexer which receives the processed documents
+	 * @throws IOException if an error occurs in any of the stages
+	 */
+	public void run(Path dataset, Indexer indexer) throws IOException {
+		run(() -> Files.walkFileTree(dataset, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+				return queue(path) ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+			}
+		}), indexer);
+	}
+
+	/**
+	 * Runs the pipeline over the given files. The given indexer is called
+	 * on the calling thread, once for each file.
+	 *
+	 * @param files   the files to process
+	 * @param indexer the indexer which receives the processed documents
+	 * @throws IOException if an error occurs in any of the stages
+	 */
+	public void run(Collection<Path> files, Indexer indexer) throws IOException {
+		run(() -> {
+			for (Path path : files) {
+				if (!queue(path)) break;
+			}
+		}, indexer);
+	}
+
+	/**
+	 * Runs the pipeline over the files provided by the given source.
+	 *
+	 * @param source  the source of the files
+	 * @param indexer the indexer which receives the processed documents
+	 * @throws IOException if an error occurs in any of the stages
+	 */
+	private void run(Source source, Indexer indexer) throws IOException {
+		Thread walker = new Thread(() -> walk(source), "ingestion-walker");
+		walker.setDaemon(true);
+		walker.start();
+
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.execute(this::work);
+		}
+
+		try {
+			int finished = 0;
+			while (finished < threads) {
+				Processed p = processed.take();
+				if (p.task == END_OF_INPUT) {
+					finished++;
+					continue;
+				}
+				// keep draining the queue after a failure so that no worker stays blocked
+				if (error != null) continue;
+
+				try {
+					indexer.index(p.task.path, p.entry, p.words, p.positions);
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+			// a worker which has stopped unexpectedly may have left the walker waiting for space
+			if (error != null) walker.interrupt();
+			walker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(new InterruptedIOException("Ingestion interrupted!"));
+		} finally {
+			workers.shutdownNow();
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * The walker stage; queues every file provided by the given source.
+	 *
+	 * @param source the source of the files
+	 */
+	private void walk(Source source) {
+		try {
+			source.feed();
+		} catch (IOException e) {
+			fail(e);
+		} finally {
+			for (int i = 0; i < threads; i++) {
+				try {
+					put(tasks, END_OF_INPUT);
+				} catch (InterruptedIOException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queues the given file for processing, unless the pipeline has
+	 * already failed.
+	 *
+	 * @param path the file to queue
+	 * @return true if the file was queued, false if the pipeline has failed
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	private boolean queue(Path path) throws InterruptedIOException {
+		if (error != null) return false;
+		put(tasks, new Task(path));
+		return true;
+	}
+
+	/**
+	 * The worker stage; reads, hashes and processes the queued files. The
+	 * end of the worker's input is passed on to the indexer however the
+	 * worker stops, so the indexer never waits for a stopped worker.
+	 */
+	private void work() {
+		boolean finished = false;
+		try {
+			while (true) {
+				Task task = tasks.take();
+				if (task == END_OF_INPUT) {
+					finished = true;
+					return;
+				}
+				if (error != null) continue;
+
+				try {
+					byte[] content = null;
+					String hash;
+					if (Files.size(task.path) <= MAX_IN_MEMORY_SIZE) {
+						content = Files.readAllBytes(task.path);
+						hash = XXHash64.hash(content);
+					} else {
+						hash = XXHash64.hash(task.path);
+					}
+					Manifest.Entry entry = Manifest.Entry.of(task.path, hash);
+					DocumentReader reader = new PDFReader(task.path, content, memoryUsage);
+					if (textCache != null) {
+						reader = textCache.wrap(reader, hash);
+					}
+					List<String> words = new ArrayList<>();
+					int[] positions = InputProcessor.process(reader, words);
+					processed.put(new Processed(task, entry, words, positions));
+				} catch (IOException | RuntimeException e) {
+					// PDFBox throws runtime exceptions on some malformed documents
+					fail(new IOException("Could not process " + task.path + "!", e));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (!finished) {
+				fail(new IOException("An ingestion worker has stopped unexpectedly!"));
+			}
+			try {
+				put(processed, new Processed(END_OF_INPUT, null, null, null));
+			} catch (InterruptedIOException e) {
+				// the indexer has stopped waiting
+			}
+		}
+	}
+
+	/**
+	 * Records the given error, unless an error has already been recorded.
+	 *
+	 * @param e the error
+	 */
+	private synchronized void fail(IOException e) {
+		if (error == null) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Puts the given element in the given queue, waiting for space if
+	 * necessary.
+	 *
+	 * @param queue   the queue
+	 * @param element the element
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	private static <T> void put(BlockingQueue<T> queue, T element) throws InterruptedIOException {
+		try {
+			queue.put(element);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Ingestion interrupted!");
+		}
+	}
+
+	/**
+	 * The indexer stage of the pipeline. The indexer is always called
+	 * from a single thread, so it does not need to be thread-safe.
+	 */
+	@FunctionalInterface
+	public interface Indexer {
+
+		/**
+		 * Indexes the processed words of the document at the given path.
+		 *
+		 * @param path      the path to the document
+		 * @param entry     the manifest entry of the document
+		 * @param words     the processed words of the document
+		 * @param positions the positions of the words in the text of the
+		 *                  document, counting the stop words as well
+		 * @throws IOException if an error occurs while indexing
+		 */
+		void index(Path path, Manifest.Entry entry, List<String> words, int[] positions) throws IOException;
+	}
+
+	/**
+	 * The source of the files processed by the pipeline.
+	 */
+	@FunctionalInterface
+	private interface Source {
+
+		/**
+		 * Queues all the files through {@link #queue(Path)}.
+		 *
+		 * @throws IOException if an error occurs while listing the files
+		 */
+		void feed() throws IOException;
+	}
+
+	/**
+	 * A file waiting to be processed.
+	 */
+	private static class Task {
+
+		final Path path;
+
+		Task(Path path) {
+			this.path = path;
+		}
+	}
+
+	/**
+	 * A processed file waiting to be indexed.
+	 */
+	private static class Processed {
+
+		final Task task;
+
+		final Manifest.Entry entry;
+
+		final List<String> words;
+
+		final int[] positions;
+
+		Processed(Task task, Manifest.Entry entry, List<String> words, int[] positions) {
+			this.task = task;
+			this.entry = entry;
+			this.words = words;
+			this.positions = positions;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An inverted index which maps each term ID from the vocabulary to its
+ * {@link PostingsList}. Queries are evaluated term-at-a-time by walking
+ * only the postings of the query terms, instead of visiting every document
+ * from the dataset.
+ *
+ * @author Luka Cupic
+ */
+public class InvertedIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * An empty postings list, returned for the terms which are not indexed.
+	 */
+	private static final PostingsList EMPTY = new PostingsList();
+
+	/**
+	 * The postings lists, indexed by term ID.
+	 */
+	private List<PostingsList> postings = new ArrayList<>();
+
+	/**
+	 * Adds a posting for the given term. Postings of a single term must
+	 * be added in the increasing order of document IDs.
+	 *
+	 * @param termId the ID of the term
+	 * @param docId  the ID of the document
+	 * @param freq   the frequency of the term in the document
+	 */
+	public void add(int termId, int docId, int freq) {
+		while (postings.size() <= termId) {
+			postings.add(new PostingsList());
+		}
+		postings.get(termId).add(docId, freq);
+	}
+
+	/**
+	 * Gets the postings list of the given term. If the term has no
+	 * postings, an empty list is returned.
+	 *
+	 * @param termId the ID of the term
+	 * @return the postings list of the term
+	 */
+	public PostingsList getPostings(int termId) {
+		if (termId < 0 || termId >= postings.size()) return EMPTY;
+		return postings.get(termId);
+	}
+
+	/**
+	 * Gets the number of documents containing the given term.
+	 *
+	 * @param termId the ID of the term
+	 * @return the document frequency of the term
+	 */
+	public int getDocumentFrequency(int termId) {
+		return getPostings(termId).size();
+	}
+
+	/**
+	 * Renumbers the documents of all the postings lists according to the
+	 * given mapping and removes the postings of the documents mapped to -1.
+	 *
+	 * @param newIds the new ID of each document, indexed by its old ID
+	 * @see DocumentStore#compact()
+	 */
+	public void remap(int[] newIds) {
+		for (PostingsList list : postings) {
+			list.remap(newIds);
+		}
+	}
+}
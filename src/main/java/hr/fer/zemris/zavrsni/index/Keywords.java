@@ -0,0 +1,65 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.SparseVector;
+
+import java.util.Arrays;
+
+/**
+ * Selects the keywords of documents. The keywords of a document are its
+ * most discriminative words: the (at most) {@value #NUM_KEYWORDS} words with
+ * the largest TF-IDF weights in the document. A document is compared to the
+ * other documents through its keywords only, in the same way the "more like
+ * this" queries of the search engines work, so comparing a long document
+ * costs about as much as a short query.
+ *
+ * @author Luka Cupic
+ */
+public class Keywords {
+
+	/**
+	 * The maximal number of keywords of a document.
+	 */
+	public static final int NUM_KEYWORDS = 25;
+
+	/**
+	 * Selects the keywords of a document.
+	 *
+	 * @param tf   the TF vector of the document
+	 * @param idfs the IDF of every word, by the word IDs
+	 * @return the word IDs of the keywords, from the most to the least
+	 * discriminative one
+	 */
+	public static int[] select(SparseVector tf, float[] idfs) {
+		return select(tf, idfs, NUM_KEYWORDS);
+	}
+
+	/**
+	 * Selects the given number of the keywords of a document. The words
+	 * which occur in every document, and therefore have no weight, are
+	 * never selected. The words of equal weights are ordered by their IDs.
+	 *
+	 * @param tf   the TF vector of the document
+	 * @param idfs the IDF of every word, by the word IDs
+	 * @param n    the maximal number of keywords
+	 * @return the word IDs of the keywords, from the most to the least
+	 * discriminative one
+	 */
+	public static int[] select(SparseVector tf, float[] idfs, int n) {
+		// the weights are positive, so their bits are ordered as the weights themselves
+		long[] entries = new long[tf.size()];
+		int size = 0;
+		for (int i = 0; i < tf.size(); i++) {
+			int termId = tf.getIndex(i);
+			float weight = tf.getValue(i) * idfs[termId];
+			if (weight <= 0) continue;
+			entries[size++] = ((long) Float.floatToIntBits(weight) << 32) | (~termId & 0xFFFFFFFFL);
+		}
+		Arrays.sort(entries, 0, size);
+
+		int[] keywords = new int[Math.min(n, size)];
+		for (int i = 0; i < keywords.length; i++) {
+			keywords[i] = ~(int) entries[size - 1 - i];
+		}
+		return keywords;
+	}
+}
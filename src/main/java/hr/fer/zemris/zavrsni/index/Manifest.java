@@ -0,0 +1,327 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.utils.XXHash64;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Describes the state of every file from the dataset at the time it was
+ * indexed: its size, its last modification time and the hash of its
+ * contents. By comparing the manifest to the current state of the dataset,
+ * only the files which were added, changed or deleted need to be processed
+ * again.
+ *
+ * @author Luka Cupic
+ */
+public class Manifest implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The entries of the indexed files, mapped to by their absolute paths.
+	 */
+	private Map<String, Entry> entries = new HashMap<>();
+
+	/**
+	 * Gets the key of the file at the given path: its absolute, normalized
+	 * path, which is also the path of the indexed document. The same file
+	 * therefore has the same key however the dataset was given.
+	 *
+	 * @param path the path to the file
+	 * @return the key of the file
+	 */
+	public static String keyOf(Path path) {
+		return path.toAbsolutePath().normalize().toString();
+	}
+
+	/**
+	 * Gets the entry of the file at the given path.
+	 *
+	 * @param path the absolute path to the file
+	 * @return the entry of the file, or null if the file is not indexed
+	 */
+	public Entry get(String path) {
+		return entries.get(path);
+	}
+
+	/**
+	 * Stores the entry of the file at the given path.
+	 *
+	 * @param path  the absolute path to the file
+	 * @param entry the entry of the file
+	 */
+	public void put(String path, Entry entry) {
+		entries.put(path, entry);
+	}
+
+	/**
+	 * Removes the entry of the file at the given path.
+	 *
+	 * @param path the absolute path to the file
+	 */
+	public void remove(String path) {
+		entries.remove(path);
+	}
+
+	/**
+	 * Writes this manifest to the given output.
+	 *
+	 * @param out the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(entries.size());
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeLong(e.getValue().size);
+			out.writeLong(e.getValue().lastModified);
+			out.writeUTF(e.getValue().hash);
+		}
+	}
+
+	/**
+	 * Reads a manifest written by {@link #write(DataOutput)}.
+	 *
+	 * @param in the input
+	 * @return the manifest
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static Manifest read(DataInput in) throws IOException {
+		Manifest manifest = new Manifest();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			String path = in.readUTF();
+			manifest.put(path, new Entry(in.readLong(), in.readLong(), in.readUTF()));
+		}
+		return manifest;
+	}
+
+	/**
+	 * Compares this manifest to the current state of the given dataset
+	 * and returns the files which have been added, changed or deleted
+	 * since the manifest was created. A file whose size and modification
+	 * time match its entry is considered unchanged without being read.
+	 * The other files are hashed in parallel, and a file is considered
+	 * changed only if the hash of its contents differs.
+	 *
+	 * @param dataset the path to the dataset
+	 * @return the changes of the dataset
+	 * @throws IOException if an error occurs while traversing the dataset
+	 *                     or reading a file
+	 */
+	public Changes detectChanges(Path dataset) throws IOException {
+		Changes changes = new Changes();
+		Set<String> present = new HashSet<>();
+		List<Path> suspicious = new ArrayList<>();
+
+		Files.walkFileTree(dataset, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				Path path = file.toAbsolutePath().normalize();
+				present.add(path.toString());
+
+				Entry entry = entries.get(path.toString());
+				if (entry == null) {
+					changes.added.add(path);
+				} else if (entry.size != attrs.size() || entry.lastModified != attrs.lastModifiedTime().toMillis()) {
+					suspicious.add(path);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		List<Entry> current;
+		try {
+			current = suspicious.parallelStream().map(Manifest::entryOf).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		for (int i = 0; i < suspicious.size(); i++) {
+			String path = suspicious.get(i).toString();
+			Entry entry = current.get(i);
+			if (entry == null) {
+				// deleted while the dataset was being traversed
+				present.remove(path);
+			} else if (!entry.hash.equals(entries.get(path).hash)) {
+				changes.changed.add(suspicious.get(i));
+			} else {
+				changes.touched.put(path, entry);
+			}
+		}
+
+		for (String path : entries.keySet()) {
+			if (!present.contains(path)) {
+				changes.deleted.add(path);
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Creates the current entry of the file at the given path.
+	 *
+	 * @param path the path to the file
+	 * @return the entry of the file, or null if the file no longer exists
+	 * @throws UncheckedIOException if the file cannot be read
+	 */
+	private static Entry entryOf(Path path) {
+		try {
+			return Entry.of(path, XXHash64.hash(path));
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(new IOException("Could not read " + path + "!", e));
+		}
+	}
+
+	/**
+	 * The state of a single indexed file.
+	 */
+	public static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The size of the file, in bytes.
+		 */
+		private long size;
+
+		/**
+		 * The last modification time of the file, in milliseconds.
+		 */
+		private long lastModified;
+
+		/**
+		 * The hash of the file contents.
+		 */
+		private String hash;
+
+		/**
+		 * Creates a new entry.
+		 *
+		 * @param size         the size of the file, in bytes
+		 * @param lastModified the last modification time of the file, in milliseconds
+		 * @param hash         the hash of the file contents
+		 */
+		public Entry(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+
+		/**
+		 * Creates a new entry for the file at the given path.
+		 *
+		 * @param path the path to the file
+		 * @param hash the hash of the file contents
+		 * @return the entry of the file
+		 * @throws IOException if the attributes of the file cannot be read
+		 */
+		public static Entry of(Path path, String hash) throws IOException {
+			return new Entry(Files.size(path), Files.getLastModifiedTime(path).toMillis(), hash);
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+	}
+
+	/**
+	 * The differences between a manifest and the current state of the
+	 * dataset.
+	 */
+	public static class Changes {
+
+		/**
+		 * The files which are not in the manifest.
+		 */
+		private List<Path> added = new ArrayList<>();
+
+		/**
+		 * The files whose contents have changed.
+		 */
+		private List<Path> changed = new ArrayList<>();
+
+		/**
+		 * The absolute paths of the files which no longer exist.
+		 */
+		private List<String> deleted = new ArrayList<>();
+
+		/**
+		 * The current entries of the files whose size or modification time
+		 * have changed, but whose contents have not, by their absolute paths.
+		 */
+		private Map<String, Entry> touched = new HashMap<>();
+
+		/**
+		 * Returns the files which have to be removed from the index; these
+		 * are the deleted files and the old versions of the changed files.
+		 *
+		 * @return the absolute paths of the files to remove
+		 */
+		public List<String> getRemoved() {
+			List<String> removed = new ArrayList<>(deleted);
+			changed.forEach(path -> removed.add(path.toString()));
+			return removed;
+		}
+
+		/**
+		 * Returns the files which have to be (re)indexed; these are the
+		 * added and the changed files.
+		 *
+		 * @return the paths of the files to index
+		 */
+		public List<Path> getModified() {
+			List<Path> modified = new ArrayList<>(added);
+			modified.addAll(changed);
+			return Collections.unmodifiableList(modified);
+		}
+
+		/**
+		 * Returns the current entries of the files whose contents have not
+		 * changed, although their size or modification time have. Storing
+		 * them in the manifest spares hashing the files the next time.
+		 *
+		 * @return the current entries, by the absolute paths of the files
+		 */
+		public Map<String, Entry> getTouched() {
+			return Collections.unmodifiableMap(touched);
+		}
+
+		/**
+		 * Checks whether there are any changes.
+		 *
+		 * @return true iff no file was added, changed or deleted
+		 */
+		public boolean isEmpty() {
+			return added.isEmpty() && changed.isEmpty() && deleted.isEmpty();
+		}
+	}
+}
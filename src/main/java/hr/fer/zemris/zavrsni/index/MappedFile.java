@@ -0,0 +1,155 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only index file mapped into memory. A single mapping is limited
+ * to 2GB, so the file is mapped in chunks of 2<sup>chunkShift</sup> bytes,
+ * and the chunk holding a value is selected by the highest bits of its
+ * position. Each chunk extends {@value #OVERLAP} bytes into the next one,
+ * so every value of up to eight bytes is read from a single chunk.
+ * <p>
+ * All the reads are absolute, so a single instance can be used by multiple
+ * threads at once.
+ *
+ * @author Luka Cupic
+ */
+class MappedFile {
+
+	/**
+	 * The default binary logarithm of the size of a chunk.
+	 */
+	static final int CHUNK_SHIFT = 30;
+
+	/**
+	 * The number of bytes by which each chunk extends into the next one.
+	 */
+	static final int OVERLAP = Long.BYTES;
+
+	/**
+	 * The mapped chunks of the file.
+	 */
+	private final ByteBuffer[] chunks;
+
+	/**
+	 * The binary logarithm of the size of a chunk.
+	 */
+	private final int chunkShift;
+
+	/**
+	 * The mask of the position of a byte within its chunk.
+	 */
+	private final long chunkMask;
+
+	/**
+	 * The size of the file, in bytes.
+	 */
+	private final long size;
+
+	/**
+	 * Maps the given file into memory in chunks of the default size.
+	 *
+	 * @param channel the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	MappedFile(FileChannel channel) throws IOException {
+		this(channel, CHUNK_SHIFT);
+	}
+
+	/**
+	 * Maps the given file into memory in chunks of the given size.
+	 *
+	 * @param channel    the file
+	 * @param chunkShift the binary logarithm of the size of a chunk; at
+	 *                   most {@value #CHUNK_SHIFT}
+	 * @throws IOException if an I/O error occurs
+	 */
+	MappedFile(FileChannel channel, int chunkShift) throws IOException {
+		if (chunkShift < 4 || chunkShift > CHUNK_SHIFT) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkShift);
+		}
+		this.chunkShift = chunkShift;
+		this.chunkMask = (1L << chunkShift) - 1;
+		this.size = channel.size();
+
+		chunks = new ByteBuffer[(int) Math.max(1, (size + chunkMask) >>> chunkShift)];
+		for (int i = 0; i < chunks.length; i++) {
+			long start = (long) i << chunkShift;
+			long length = Math.min(size - start, (1L << chunkShift) + OVERLAP);
+			chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		}
+	}
+
+	/**
+	 * Gets the size of the file.
+	 *
+	 * @return the size of the file, in bytes
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Reads the byte at the given position.
+	 *
+	 * @param position the position of the byte
+	 * @return the byte
+	 */
+	byte get(long position) {
+		return chunks[(int) (position >>> chunkShift)].get((int) (position & chunkMask));
+	}
+
+	/**
+	 * Reads the int at the given position.
+	 *
+	 * @param position the position of the int
+	 * @return the int
+	 */
+	int getInt(long position) {
+		return chunks[(int) (position >>> chunkShift)].getInt((int) (position & chunkMask));
+	}
+
+	/**
+	 * Reads the long at the given position.
+	 *
+	 * @param position the position of the long
+	 * @return the long
+	 */
+	long getLong(long position) {
+		return chunks[(int) (position >>> chunkShift)].getLong((int) (position & chunkMask));
+	}
+
+	/**
+	 * Reads the float at the given position.
+	 *
+	 * @param position the position of the float
+	 * @return the float
+	 */
+	float getFloat(long position) {
+		return chunks[(int) (position >>> chunkShift)].getFloat((int) (position & chunkMask));
+	}
+
+	/**
+	 * Reads the double at the given position.
+	 *
+	 * @param position the position of the double
+	 * @return the double
+	 */
+	double getDouble(long position) {
+		return chunks[(int) (position >>> chunkShift)].getDouble((int) (position & chunkMask));
+	}
+
+	/**
+	 * Reads consecutive floats, starting at the given position.
+	 *
+	 * @param position the position of the first float
+	 * @param values   the buffer for the floats, filled completely
+	 */
+	void getFloats(long position, float[] values) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getFloat(position + i * 4L);
+		}
+	}
+}
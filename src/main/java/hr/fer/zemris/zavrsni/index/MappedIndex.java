@@ -0,0 +1,695 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.model.Vector;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-only view of a single commit of the index written by
+ * {@link IndexWriter}. The documents of the segments of the commit are
+ * numbered consecutively, in the order of the segments, and the words of
+ * all the segments share a single numbering, so the view can be used as if
+ * the index were a single segment; the postings of a word are concatenated
+ * from all the segments containing it.
+ * <p>
+ * The collection statistics (the numbering and the IDFs of the words, the
+ * average length of the documents and their length normalization factors)
+ * depend on all the segments, so they are stored with the commit (see
+ * {@link CollectionStatistics}) and mapped when the index is opened, unless
+ * the index consists of a single segment, whose own statistics are then
+ * used. The TF-IDF norms and the keywords of the documents are calculated
+ * from the collection statistics a segment at a time, when they are first
+ * read.
+ * <p>
+ * The segment files are mapped into memory and never modified, so an
+ * opened index keeps seeing the same documents after the index has been
+ * changed. All the reads are absolute, so a single instance can be used by
+ * multiple threads at once.
+ *
+ * @author Luka Cupic
+ */
+public class MappedIndex {
+
+	/**
+	 * The last generation given to an opened index.
+	 */
+	private static final AtomicLong GENERATIONS = new AtomicLong();
+
+	/**
+	 * The generation of this index.
+	 */
+	private final long generation;
+
+	/**
+	 * The index directory.
+	 */
+	private final Path dir;
+
+	/**
+	 * The commit this index is a view of.
+	 */
+	private final IndexCommit commit;
+
+	/**
+	 * The segments of the index.
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * The ID of the first document of each segment, followed by the number
+	 * of documents in the index.
+	 */
+	private final int[] docBases;
+
+	/**
+	 * The collection statistics of the segments, or null if the index has
+	 * a single segment, whose own statistics are used instead, or no
+	 * segments at all.
+	 */
+	private final CollectionStatistics statistics;
+
+	/**
+	 * The number of words in the index.
+	 */
+	private final int numTerms;
+
+	/**
+	 * The IDF vector, calculated from the document frequencies.
+	 */
+	private final Vector idf;
+
+	/**
+	 * The IDF of every word.
+	 */
+	private final float[] idfs;
+
+	/**
+	 * The average length of the documents.
+	 */
+	private final double averageLength;
+
+	/**
+	 * The BM25 length normalization factor of every document.
+	 */
+	private final float[] lengthNorms;
+
+	/**
+	 * The largest BM25 term score of every word.
+	 */
+	private final float[] maxTermScores;
+
+	/**
+	 * The similarities file, or null if the similarities have not been
+	 * written yet.
+	 */
+	private final MappedFile similarities;
+
+	/**
+	 * Opens the given commit of the index.
+	 *
+	 * @param dir        the index directory
+	 * @param commit     the commit
+	 * @param generation the generation of the index
+	 * @throws IOException if an I/O error occurs or the index is invalid
+	 */
+	MappedIndex(Path dir, IndexCommit commit, long generation) throws IOException {
+		this(dir, commit, generation, false);
+	}
+
+	/**
+	 * Opens the given commit of the index, optionally calculating and
+	 * writing the collection statistics file of the commit first.
+	 *
+	 * @param dir             the index directory
+	 * @param commit          the commit
+	 * @param generation      the generation of the index
+	 * @param writeStatistics whether the collection statistics of the
+	 *                        segments are to be written before they are
+	 *                        read; they are written only if there are
+	 *                        more segments
+	 * @throws IOException if an I/O error occurs or the index is invalid
+	 */
+	MappedIndex(Path dir, IndexCommit commit, long generation, boolean writeStatistics) throws IOException {
+		this.dir = dir;
+		this.commit = commit;
+		this.generation = generation;
+
+		segments = new Segment[commit.segments.length];
+		docBases = new int[segments.length + 1];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s] = new Segment(dir.resolve(IndexFormat.name(IndexFormat.SEGMENT, commit.segments[s])));
+			docBases[s + 1] = docBases[s] + segments[s].getNumberOfDocuments();
+		}
+		similarities = mapSimilarities(dir, commit);
+
+		if (segments.length == 1) {
+			Segment segment = segments[0];
+			statistics = null;
+			numTerms = segment.getNumberOfTerms();
+			idf = segment.getIDFVector();
+			idfs = segment.getIDFs();
+			averageLength = segment.getAverageDocumentLength();
+			lengthNorms = segment.getLengthNorms();
+			maxTermScores = segment.getMaxTermScores();
+			return;
+		}
+
+		if (segments.length == 0) {
+			statistics = null;
+			numTerms = 0;
+			idf = new Vector(new double[0]);
+			idfs = new float[0];
+			averageLength = 0;
+			lengthNorms = new float[0];
+			maxTermScores = new float[0];
+			return;
+		}
+		if (commit.collection < 0) {
+			throw new IOException("Missing collection statistics: " + dir);
+		}
+		if (writeStatistics) {
+			IndexFormat.writeCollection(segments, dir, commit.collection);
+		}
+		statistics = new CollectionStatistics(dir, commit.collection, segments);
+		numTerms = statistics.numTerms;
+		idf = statistics.idf;
+		idfs = statistics.idfs;
+		averageLength = statistics.averageLength;
+		lengthNorms = statistics.lengthNorms;
+		maxTermScores = statistics.maxTermScores;
+	}
+
+	/**
+	 * Creates a view of the given commit which has the same segments as the
+	 * given index, sharing its segments and statistics.
+	 *
+	 * @param index      the index with the same segments
+	 * @param commit     the commit
+	 * @param generation the generation of the index
+	 * @throws IOException if an I/O error occurs or the index is invalid
+	 */
+	MappedIndex(MappedIndex index, IndexCommit commit, long generation) throws IOException {
+		this.dir = index.dir;
+		this.commit = commit;
+		this.generation = generation;
+		this.segments = index.segments;
+		this.docBases = index.docBases;
+		this.numTerms = index.numTerms;
+		this.statistics = index.statistics;
+		this.idf = index.idf;
+		this.idfs = index.idfs;
+		this.averageLength = index.averageLength;
+		this.lengthNorms = index.lengthNorms;
+		this.maxTermScores = index.maxTermScores;
+		this.similarities = mapSimilarities(dir, commit);
+	}
+
+	/**
+	 * Opens the last commit of the index at the given directory.
+	 *
+	 * @param dir the index directory
+	 * @return the opened index
+	 * @throws IOException if an I/O error occurs or the index is invalid
+	 */
+	public static MappedIndex open(Path dir) throws IOException {
+		return new MappedIndex(dir, IndexCommit.read(dir), nextGeneration());
+	}
+
+	/**
+	 * Gets a new generation, higher than all the generations given so far.
+	 *
+	 * @return the generation
+	 */
+	static long nextGeneration() {
+		return GENERATIONS.incrementAndGet();
+	}
+
+	/**
+	 * Gets the generation of this index. Every index opened after the
+	 * documents or the segments of the index have changed has a higher
+	 * generation than all the indexes opened before it.
+	 *
+	 * @return the generation
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Checks whether this index is a view of a later commit of the index
+	 * than the given one. The commits of the index are ordered by the
+	 * counter numbering their files, which grows with every commit and
+	 * merge; unlike the generation, it also distinguishes the commits which
+	 * have changed only the manifest.
+	 *
+	 * @param index an index of the same directory
+	 * @return true iff this index is newer than the given one
+	 */
+	public boolean isNewerThan(MappedIndex index) {
+		return commit.next > index.commit.next;
+	}
+
+	/**
+	 * Gets the index directory.
+	 *
+	 * @return the index directory
+	 */
+	Path getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * Gets the commit this index is a view of.
+	 *
+	 * @return the commit
+	 */
+	IndexCommit getCommit() {
+		return commit;
+	}
+
+	/**
+	 * Gets the number of segments of the index.
+	 *
+	 * @return the number of segments
+	 */
+	public int getNumberOfSegments() {
+		return segments.length;
+	}
+
+	/**
+	 * Finds the segment holding the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the position of the segment
+	 */
+	int getSegment(int docId) {
+		int s = Arrays.binarySearch(docBases, 0, segments.length, docId);
+		return s >= 0 ? s : -s - 2;
+	}
+
+	/**
+	 * Gets the ID of the given word.
+	 *
+	 * @param word the word
+	 * @return the ID of the word, or -1 if the word is not in the index
+	 */
+	public int getTermId(CharSequence word) {
+		if (statistics == null) {
+			return segments.length == 0 ? -1 : segments[0].getTermId(word);
+		}
+		for (int s = 0; s < segments.length; s++) {
+			int local = segments[s].getTermId(word);
+			if (local >= 0) return statistics.getTermId(s, local);
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the word with the given ID.
+	 *
+	 * @param termId the ID of the word
+	 * @return the word
+	 */
+	public String getTerm(int termId) {
+		if (statistics == null) return segments[0].getTerm(termId);
+		int entry = statistics.firstEntry(termId);
+		return segments[statistics.entrySegment(entry)].getTerm(statistics.entryTermId(entry));
+	}
+
+	/**
+	 * Gets the number of words in the index.
+	 *
+	 * @return the number of words
+	 */
+	public int getNumberOfTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * Gets the number of documents containing the given word.
+	 *
+	 * @param termId the ID of the word
+	 * @return the document frequency of the word
+	 */
+	public int getDocumentFrequency(int termId) {
+		if (statistics == null) return segments[0].getDocumentFrequency(termId);
+		return statistics.getDocumentFrequency(termId);
+	}
+
+	/**
+	 * Gets the total number of occurrences of the given word in the dataset.
+	 *
+	 * @param termId the ID of the word
+	 * @return the total frequency of the word
+	 */
+	public long getTotalFrequency(int termId) {
+		if (statistics == null) return segments[0].getTotalFrequency(termId);
+		long totalFreq = 0;
+		for (int entry = statistics.firstEntry(termId); entry < statistics.firstEntry(termId + 1); entry++) {
+			totalFreq += segments[statistics.entrySegment(entry)].getTotalFrequency(statistics.entryTermId(entry));
+		}
+		return totalFreq;
+	}
+
+	/**
+	 * Gets the postings of the given word. The postings are read directly
+	 * from the mapped files of the segments.
+	 *
+	 * @param termId the ID of the word
+	 * @return the postings of the word
+	 */
+	public BlockPostings getPostings(int termId) {
+		if (termId < 0 || termId >= numTerms) return MappedPostings.EMPTY;
+		if (statistics == null) return segments[0].getPostings(termId);
+
+		int first = statistics.firstEntry(termId);
+		int last = statistics.firstEntry(termId + 1);
+		MappedPostings[] parts = new MappedPostings[last - first];
+		int[] bases = new int[last - first];
+		int size = 0;
+		for (int entry = first; entry < last; entry++) {
+			int s = statistics.entrySegment(entry);
+			MappedPostings postings = segments[s].getPostings(statistics.entryTermId(entry));
+			if (postings.size() == 0) continue;
+			parts[size] = postings;
+			bases[size] = docBases[s];
+			size++;
+		}
+		if (size == 0) return MappedPostings.EMPTY;
+		if (size == 1 && bases[0] == 0) return parts[0];
+		return new MultiPostings(Arrays.copyOf(parts, size), Arrays.copyOf(bases, size));
+	}
+
+	/**
+	 * Gets the IDF vector of the index.
+	 *
+	 * @return the IDF vector
+	 */
+	public Vector getIDFVector() {
+		return idf;
+	}
+
+	/**
+	 * Gets the IDF of every word, by the word IDs. The array is shared and
+	 * must not be modified.
+	 *
+	 * @return the IDFs of the words
+	 */
+	public float[] getIDFs() {
+		return idfs;
+	}
+
+	/**
+	 * Gets the BM25 length normalization factor of every document, by the
+	 * document IDs. The array is shared and must not be modified.
+	 *
+	 * @return the length normalization factors of the documents
+	 * @see IndexFormat#lengthNorm(long, double)
+	 */
+	public float[] getLengthNorms() {
+		return lengthNorms;
+	}
+
+	/**
+	 * Gets the largest BM25 term score of every word, by the word IDs, which
+	 * bounds the scores of the word in all the documents. The array is
+	 * shared and must not be modified.
+	 *
+	 * @return the largest term scores of the words
+	 * @see IndexFormat#maxTermScore(double, double)
+	 */
+	public float[] getMaxTermScores() {
+		return maxTermScores;
+	}
+
+	/**
+	 * Gets the number of documents in the index.
+	 *
+	 * @return the number of documents
+	 */
+	public int getNumberOfDocuments() {
+		return docBases[segments.length];
+	}
+
+	/**
+	 * Gets the length (in words) of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the length of the document
+	 */
+	public long getDocumentLength(int docId) {
+		int s = getSegment(docId);
+		return segments[s].getDocumentLength(docId - docBases[s]);
+	}
+
+	/**
+	 * Gets the average length (in words) of the documents.
+	 *
+	 * @return the average document length
+	 */
+	public double getAverageDocumentLength() {
+		return averageLength;
+	}
+
+	/**
+	 * Gets the norm of the TF-IDF vector of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the norm of the document vector
+	 */
+	public double getDocumentNorm(int docId) {
+		if (statistics == null) return segments[0].getDocumentNorm(docId);
+		int s = getSegment(docId);
+		return statistics.getDocumentNorm(s, docId - docBases[s]);
+	}
+
+	/**
+	 * Gets the path to the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the path to the document
+	 */
+	public Path getPath(int docId) {
+		int s = getSegment(docId);
+		return segments[s].getPath(docId - docBases[s]);
+	}
+
+	/**
+	 * Gets the given document. The returned document only carries its ID,
+	 * path and length; its vectors are available through
+	 * {@link #getTFVector(int)}.
+	 *
+	 * @param docId the ID of the document
+	 * @return the document
+	 */
+	public Document getDocument(int docId) {
+		Document d = new Document(getPath(docId), null, null, getDocumentLength(docId));
+		d.setId(docId);
+		return d;
+	}
+
+	/**
+	 * Gets all the documents from the index, ordered by their IDs.
+	 *
+	 * @return the documents
+	 * @see #getDocument(int)
+	 */
+	public List<Document> getDocuments() {
+		int numDocs = getNumberOfDocuments();
+		List<Document> list = new ArrayList<>(numDocs);
+		for (int id = 0; id < numDocs; id++) {
+			list.add(getDocument(id));
+		}
+		return list;
+	}
+
+	/**
+	 * Reads the TF vector of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the TF vector of the document
+	 */
+	public SparseVector getTFVector(int docId) {
+		if (statistics == null) return segments[0].getTFVector(docId);
+		int s = getSegment(docId);
+		return statistics.getTFVector(s, docId - docBases[s]);
+	}
+
+	/**
+	 * Reads the keywords of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the word IDs of the keywords, from the most to the least
+	 * discriminative one
+	 * @see Keywords
+	 */
+	public int[] getKeywords(int docId) {
+		if (statistics == null) return segments[0].getKeywords(docId);
+		int s = getSegment(docId);
+		return statistics.getKeywords(s, docId - docBases[s]).clone();
+	}
+
+	/**
+	 * Reads the MinHash signature of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the signature of the document
+	 */
+	public int[] getSignature(int docId) {
+		int s = getSegment(docId);
+		return segments[s].getSignature(docId - docBases[s]);
+	}
+
+	/**
+	 * Finds the documents whose signatures agree with the given signature
+	 * on at least one LSH band. Each band of each segment is looked up by
+	 * binary search, so the lookup takes logarithmic time in the number of
+	 * documents.
+	 *
+	 * @param signature the signature
+	 * @return the IDs of the candidate documents, in increasing order
+	 */
+	public int[] getCandidates(int[] signature) {
+		if (segments.length == 1) return segments[0].getCandidates(signature);
+
+		int[] candidates = new int[0];
+		for (int s = 0; s < segments.length; s++) {
+			int[] local = segments[s].getCandidates(signature);
+			int size = candidates.length;
+			candidates = Arrays.copyOf(candidates, size + local.length);
+			for (int i = 0; i < local.length; i++) {
+				candidates[size + i] = docBases[s] + local[i];
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Gets the stored similarity coefficient of the given documents.
+	 *
+	 * @param doc1 the ID of the first document
+	 * @param doc2 the ID of the second document
+	 * @return the similarity of the documents, or 0 if it is not stored
+	 */
+	public double getSimilarity(int doc1, int doc2) {
+		if (similarities == null) return 0;
+		if (doc1 > doc2) {
+			int tmp = doc1;
+			doc1 = doc2;
+			doc2 = tmp;
+		}
+
+		long base = IndexFormat.HEADER_LENGTH + 4;
+		int low = 0;
+		int high = similarities.getInt(IndexFormat.HEADER_LENGTH) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long position = base + mid * 12L;
+			int cmp = Integer.compare(similarities.getInt(position), doc1);
+			if (cmp == 0) cmp = Integer.compare(similarities.getInt(position + 4), doc2);
+
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return similarities.getFloat(position + 8);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Passes every stored similarity coefficient to the given consumer, in
+	 * the order of the document IDs. Only the similarities exceeding the
+	 * threshold of the index are stored.
+	 *
+	 * @param consumer the consumer of the similarities
+	 */
+	public void forEachSimilarity(SimilarityConsumer consumer) {
+		if (similarities == null) return;
+
+		int size = similarities.getInt(IndexFormat.HEADER_LENGTH);
+		long position = IndexFormat.HEADER_LENGTH + 4;
+		for (int i = 0; i < size; i++, position += 12) {
+			consumer.accept(similarities.getInt(position), similarities.getInt(position + 4),
+					similarities.getFloat(position + 8));
+		}
+	}
+
+	/**
+	 * Reads the stored similarities of the documents kept by the given
+	 * renumbering of the documents, under their new IDs. The renumbering
+	 * must preserve the order of the kept documents.
+	 *
+	 * @param newIds the new ID of every document, or -1 for the documents
+	 *               which are not kept
+	 * @return the similarities of the kept documents, ordered by their new IDs
+	 */
+	SimilarityList getSimilarities(int[] newIds) {
+		SimilarityList list = new SimilarityList();
+		if (similarities == null) return list;
+
+		int size = similarities.getInt(IndexFormat.HEADER_LENGTH);
+		long position = IndexFormat.HEADER_LENGTH + 4;
+		for (int i = 0; i < size; i++, position += 12) {
+			int doc1 = newIds[similarities.getInt(position)];
+			int doc2 = newIds[similarities.getInt(position + 4)];
+			if (doc1 >= 0 && doc2 >= 0) {
+				list.add(doc1, doc2, similarities.getFloat(position + 8));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Reads the manifest of the index.
+	 *
+	 * @return the manifest
+	 * @throws IOException if an I/O error occurs
+	 */
+	public Manifest getManifest() throws IOException {
+		if (commit.manifest < 0) return new Manifest();
+
+		try (DataInputStream in = IndexFormat.openFile(dir, IndexFormat.name(IndexFormat.MANIFEST, commit.manifest))) {
+			return Manifest.read(in);
+		}
+	}
+
+	/**
+	 * Maps the similarities file of the given commit into memory.
+	 *
+	 * @param dir    the index directory
+	 * @param commit the commit
+	 * @return the mapped file, or null if the commit has no similarities
+	 * @throws IOException if an I/O error occurs or the file is invalid
+	 */
+	private static MappedFile mapSimilarities(Path dir, IndexCommit commit) throws IOException {
+		if (commit.similarities < 0) return null;
+		return IndexFormat.map(dir, IndexFormat.name(IndexFormat.SIMILARITIES, commit.similarities));
+	}
+
+	/**
+	 * Consumes the stored similarities of the documents.
+	 */
+	@FunctionalInterface
+	public interface SimilarityConsumer {
+
+		/**
+		 * Consumes the similarity of the given documents.
+		 *
+		 * @param doc1       the ID of the first document
+		 * @param doc2       the ID of the second document, larger than {@code doc1}
+		 * @param similarity the similarity coefficient
+		 */
+		void accept(int doc1, int doc2, double similarity);
+	}
+}
@@ -0,0 +1,298 @@
+package hr.fer.zemris.zavrsni.index;
+
+/**
+ * The postings of a single term in a single segment, decoded directly from
+ * the mapped postings file. Every block holds {@value IndexFormat#BLOCK_SIZE}
+ * postings, except for the last one, and is decoded as a whole the first
+ * time one of its postings is read; the frequencies of a block are decoded
+ * only if they are read as well. The blocks skipped by
+ * {@link #advance(int, int)} are never decoded. The positions are read from
+ * the separate positions file, only for the postings they are asked for.
+ * <p>
+ * Since the decoded block is kept by the instance, an instance must not be
+ * used by multiple threads at once; every call of
+ * {@link Segment#getPostings(int)} returns a new one.
+ *
+ * @author Luka Cupic
+ */
+public class MappedPostings implements BlockPostings {
+
+	/**
+	 * An empty list of postings.
+	 */
+	static final MappedPostings EMPTY = new MappedPostings(null, 0, 0, 0, 0, 0, 0, 0, null, 0, 0);
+
+	/**
+	 * The mapped postings file.
+	 */
+	private final MappedFile buffer;
+
+	/**
+	 * The number of postings.
+	 */
+	private final int size;
+
+	/**
+	 * The position of the last document ID of the first block of the term.
+	 */
+	private final long blockLastDocIds;
+
+	/**
+	 * The position of the largest frequency of the first block of the term.
+	 */
+	private final long blockMaxFreqs;
+
+	/**
+	 * The position of the smallest document length of the first block of the term.
+	 */
+	private final long blockMinLengths;
+
+	/**
+	 * The position of the offset of the encoded first block of the term.
+	 */
+	private final long blockPositions;
+
+	/**
+	 * The position of the encoded blocks of all the terms.
+	 */
+	private final long blockData;
+
+	/**
+	 * The number of blocks.
+	 */
+	private final int blocks;
+
+	/**
+	 * The mapped positions file.
+	 */
+	private final MappedFile positions;
+
+	/**
+	 * The position of the offset of the positions of the first block of the term.
+	 */
+	private final long positionBlocks;
+
+	/**
+	 * The position of the positions of all the terms.
+	 */
+	private final long positionData;
+
+	/**
+	 * The document IDs of the decoded block.
+	 */
+	private int[] docIds;
+
+	/**
+	 * The frequencies of the decoded block.
+	 */
+	private int[] freqs;
+
+	/**
+	 * The buffer for the packed words of a block.
+	 */
+	private int[] words;
+
+	/**
+	 * The block whose document IDs are decoded, or -1.
+	 */
+	private int docBlock = -1;
+
+	/**
+	 * The block whose frequencies are decoded, or -1.
+	 */
+	private int freqBlock = -1;
+
+	/**
+	 * The position of the encoded frequencies of the {@link #docBlock}.
+	 */
+	private long freqPosition;
+
+	/**
+	 * The number of bits of the packed frequencies of the {@link #docBlock},
+	 * or -1 if they are variable-byte encoded.
+	 */
+	private int freqBits;
+
+	/**
+	 * The index of the posting whose positions are read next, if they are
+	 * read in order, or -1.
+	 */
+	private int nextPositions = -1;
+
+	/**
+	 * The position of the encoded positions of the {@link #nextPositions}
+	 * posting.
+	 */
+	private long nextPositionsOffset;
+
+	/**
+	 * Creates a new view of the postings of a term.
+	 *
+	 * @param buffer          the mapped postings file
+	 * @param size            the number of postings
+	 * @param blockLastDocIds the position of the last document ID of the first block
+	 * @param blockMaxFreqs   the position of the largest frequency of the first block
+	 * @param blockMinLengths the position of the smallest document length of the first block
+	 * @param blockPositions  the position of the offset of the encoded first block
+	 * @param blockData       the position of the encoded blocks of all the terms
+	 * @param blocks          the number of blocks
+	 * @param positions       the mapped positions file
+	 * @param positionBlocks  the position of the offset of the positions of the first block
+	 * @param positionData    the position of the positions of all the terms
+	 */
+	MappedPostings(MappedFile buffer, int size, long blockLastDocIds, long blockMaxFreqs,
+	               long blockMinLengths, long blockPositions, long blockData, int blocks,
+	               MappedFile positions, long positionBlocks, long positionData) {
+		this.buffer = buffer;
+		this.size = size;
+		this.blockLastDocIds = blockLastDocIds;
+		this.blockMaxFreqs = blockMaxFreqs;
+		this.blockMinLengths = blockMinLengths;
+		this.blockPositions = blockPositions;
+		this.blockData = blockData;
+		this.blocks = blocks;
+		this.positions = positions;
+		this.positionBlocks = positionBlocks;
+		this.positionData = positionData;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getDocId(int i) {
+		int block = getBlock(i);
+		if (block != docBlock) decodeDocIds(block);
+		return docIds[i % IndexFormat.BLOCK_SIZE];
+	}
+
+	@Override
+	public int getFreq(int i) {
+		int block = getBlock(i);
+		if (block != freqBlock) decodeFreqs(block);
+		return freqs[i % IndexFormat.BLOCK_SIZE];
+	}
+
+	@Override
+	public int getNumberOfBlocks() {
+		return blocks;
+	}
+
+	@Override
+	public int getBlock(int i) {
+		return i / IndexFormat.BLOCK_SIZE;
+	}
+
+	@Override
+	public int getBlockLastDocId(int block) {
+		return buffer.getInt(blockLastDocIds + block * 4L);
+	}
+
+	@Override
+	public int getBlockMaxFreq(int block) {
+		return buffer.getInt(blockMaxFreqs + block * 4L);
+	}
+
+	@Override
+	public long getBlockMinLength(int block) {
+		return buffer.getInt(blockMinLengths + block * 4L);
+	}
+
+	@Override
+	public int advance(int from, int target) {
+		int block = getBlock(from);
+		while (block < blocks && getBlockLastDocId(block) < target) {
+			block++;
+		}
+		if (block == blocks) return size;
+
+		int i = Math.max(from, block * IndexFormat.BLOCK_SIZE);
+		while (getDocId(i) < target) {
+			i++;
+		}
+		return i;
+	}
+
+	@Override
+	public void getPositions(int i, int[] positions) {
+		// the positions of the earlier postings of the block are skipped, unless they have just been read
+		int block = getBlock(i);
+		int start = block * IndexFormat.BLOCK_SIZE;
+		long offset;
+		if (nextPositions >= start && nextPositions <= i) {
+			start = nextPositions;
+			offset = nextPositionsOffset;
+		} else {
+			offset = positionData + this.positions.getLong(positionBlocks + block * 8L);
+		}
+		int skipped = 0;
+		for (int j = start; j < i; j++) {
+			skipped += getFreq(j);
+		}
+		offset = PostingsCodec.skipVInts(this.positions, offset, skipped);
+
+		int freq = getFreq(i);
+		nextPositionsOffset = PostingsCodec.readVInts(this.positions, offset, positions, freq);
+		nextPositions = i + 1;
+
+		int position = -1;
+		for (int k = 0; k < freq; k++) {
+			position += positions[k] + 1;
+			positions[k] = position;
+		}
+	}
+
+	/**
+	 * Decodes the document IDs of the given block. The gaps between the
+	 * IDs are decoded first and then summed up in a separate pass.
+	 *
+	 * @param block the index of the block
+	 */
+	private void decodeDocIds(int block) {
+		if (docIds == null) {
+			docIds = new int[IndexFormat.BLOCK_SIZE];
+			freqs = new int[IndexFormat.BLOCK_SIZE];
+			words = new int[PostingsCodec.WORDS_LENGTH];
+		}
+
+		long position = blockData + buffer.getLong(blockPositions + block * 8L);
+		int length = Math.min(IndexFormat.BLOCK_SIZE, size - block * IndexFormat.BLOCK_SIZE);
+		if (length == IndexFormat.BLOCK_SIZE) {
+			int gapBits = buffer.get(position);
+			freqBits = buffer.get(position + 1);
+			freqPosition = PostingsCodec.unpack(buffer, position + 2, gapBits, words, docIds);
+		} else {
+			freqBits = -1;
+			freqPosition = PostingsCodec.readVInts(buffer, position, docIds, length);
+		}
+
+		int docId = block == 0 ? -1 : getBlockLastDocId(block - 1);
+		for (int i = 0; i < length; i++) {
+			docId += docIds[i] + 1;
+			docIds[i] = docId;
+		}
+		docBlock = block;
+	}
+
+	/**
+	 * Decodes the frequencies of the given block.
+	 *
+	 * @param block the index of the block
+	 */
+	private void decodeFreqs(int block) {
+		if (block != docBlock) decodeDocIds(block);
+
+		int length = Math.min(IndexFormat.BLOCK_SIZE, size - block * IndexFormat.BLOCK_SIZE);
+		if (freqBits >= 0) {
+			PostingsCodec.unpack(buffer, freqPosition, freqBits, words, freqs);
+		} else {
+			PostingsCodec.readVInts(buffer, freqPosition, freqs, length);
+		}
+		for (int i = 0; i < length; i++) {
+			freqs[i]++;
+		}
+		freqBlock = block;
+	}
+}
@@ -0,0 +1,95 @@
+package hr.fer.zemris.zavrsni.index;
+
+/**
+ * A tiered merge policy: the segments are divided into tiers by their
+ * sizes, each tier holding segments up to {@link #mergeFactor} times larger
+ * than the previous one, and once {@link #mergeFactor} segments of the same
+ * tier follow each other, they are merged into a single segment of the next
+ * tier. Every document is therefore rewritten only a logarithmic number of
+ * times, while the number of segments stays logarithmic in the number of
+ * documents.
+ * <p>
+ * Only adjacent segments are merged, so merging never changes the order of
+ * the documents and their IDs stay the same.
+ *
+ * @author Luka Cupic
+ */
+public class MergePolicy {
+
+	/**
+	 * The default number of segments merged at once.
+	 */
+	public static final int DEFAULT_MERGE_FACTOR = 10;
+
+	/**
+	 * The default size of the segments of the lowest tier.
+	 */
+	public static final int DEFAULT_MIN_SEGMENT_SIZE = 100;
+
+	/**
+	 * The number of segments merged at once.
+	 */
+	private final int mergeFactor;
+
+	/**
+	 * The number of documents up to which the segments belong to the lowest
+	 * tier.
+	 */
+	private final int minSegmentSize;
+
+	/**
+	 * Creates a new policy with the default parameters.
+	 */
+	public MergePolicy() {
+		this(DEFAULT_MERGE_FACTOR, DEFAULT_MIN_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates a new policy.
+	 *
+	 * @param mergeFactor    the number of segments merged at once
+	 * @param minSegmentSize the number of documents up to which the segments
+	 *                       belong to the lowest tier
+	 */
+	public MergePolicy(int mergeFactor, int minSegmentSize) {
+		if (mergeFactor < 2) {
+			throw new IllegalArgumentException("At least two segments must be merged at once.");
+		}
+		if (minSegmentSize < 1) {
+			throw new IllegalArgumentException("The minimal segment size must be positive.");
+		}
+		this.mergeFactor = mergeFactor;
+		this.minSegmentSize = minSegmentSize;
+	}
+
+	/**
+	 * Finds the segments to merge next.
+	 *
+	 * @param sizes the number of documents in each segment, in the order of
+	 *              the segments
+	 * @return the position of the first segment to merge and the position
+	 * after the last one, or null if no segments need merging
+	 */
+	public int[] findMerge(int[] sizes) {
+		int from = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			if (tier(sizes[i]) != tier(sizes[from])) from = i;
+			if (i - from + 1 == mergeFactor) return new int[]{from, i + 1};
+		}
+		return null;
+	}
+
+	/**
+	 * Calculates the tier of a segment.
+	 *
+	 * @param size the number of documents in the segment
+	 * @return the tier of the segment
+	 */
+	private int tier(int size) {
+		int tier = 0;
+		for (long limit = minSegmentSize; size > limit; limit *= mergeFactor) {
+			tier++;
+		}
+		return tier;
+	}
+}
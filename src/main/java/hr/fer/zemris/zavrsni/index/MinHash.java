@@ -0,0 +1,133 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calculates MinHash signatures of documents. A document is represented by
+ * the set of its shingles (sequences of {@value #SHINGLE_SIZE} consecutive
+ * processed words), and its signature holds the minimal hash of its shingles
+ * for each of {@value #NUM_HASHES} hash functions. The fraction of equal
+ * elements of two signatures estimates the Jaccard similarity of the two
+ * shingle sets.
+ * <p>
+ * For locality-sensitive hashing, a signature is split into {@value #BANDS}
+ * bands of {@value #ROWS} elements. Documents whose signatures agree on all
+ * the elements of at least one band are candidates for being similar.
+ *
+ * @author Luka Cupic
+ */
+public class MinHash {
+
+	/**
+	 * The number of words in a shingle.
+	 */
+	public static final int SHINGLE_SIZE = 3;
+
+	/**
+	 * The number of hash functions, i.e. the length of a signature.
+	 */
+	public static final int NUM_HASHES = 128;
+
+	/**
+	 * The number of LSH bands.
+	 */
+	public static final int BANDS = 32;
+
+	/**
+	 * The number of signature elements in a band.
+	 */
+	public static final int ROWS = NUM_HASHES / BANDS;
+
+	/**
+	 * The multipliers of the hash functions (odd numbers).
+	 */
+	private static final long[] MULTIPLIERS = new long[NUM_HASHES];
+
+	/**
+	 * The increments of the hash functions.
+	 */
+	private static final long[] INCREMENTS = new long[NUM_HASHES];
+
+	static {
+		// the hash functions must never change, since the signatures are stored in the index
+		long seed = 0x2545F4914F6CDD1DL;
+		for (int i = 0; i < NUM_HASHES; i++) {
+			seed = mix64(seed + 0x9E3779B97F4A7C15L);
+			MULTIPLIERS[i] = seed | 1;
+			seed = mix64(seed + 0x9E3779B97F4A7C15L);
+			INCREMENTS[i] = seed;
+		}
+	}
+
+	/**
+	 * Calculates the signature of the document with the given words.
+	 *
+	 * @param words the processed words of the document
+	 * @return the signature of the document
+	 */
+	public static int[] signature(List<String> words) {
+		int[] signature = new int[NUM_HASHES];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+
+		int shingles = Math.max(words.size() - SHINGLE_SIZE + 1, words.isEmpty() ? 0 : 1);
+		for (int start = 0; start < shingles; start++) {
+			int h = 0;
+			for (int i = start; i < Math.min(start + SHINGLE_SIZE, words.size()); i++) {
+				h = 31 * h + words.get(i).hashCode();
+			}
+			long x = h & 0xFFFFFFFFL;
+
+			for (int i = 0; i < NUM_HASHES; i++) {
+				int value = (int) ((x * MULTIPLIERS[i] + INCREMENTS[i]) >>> 33);
+				if (value < signature[i]) {
+					signature[i] = value;
+				}
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * Calculates the hash of the given band of the signature.
+	 *
+	 * @param signature the signature
+	 * @param band      the index of the band
+	 * @return the hash of the band
+	 */
+	public static int bandHash(int[] signature, int band) {
+		int h = band;
+		for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+			h = 31 * h + signature[i];
+		}
+		return (int) mix64(h);
+	}
+
+	/**
+	 * Estimates the Jaccard similarity of the documents with the given
+	 * signatures.
+	 *
+	 * @param s1 the first signature
+	 * @param s2 the second signature
+	 * @return the estimated similarity, from the interval [0, 1]
+	 */
+	public static double similarity(int[] s1, int[] s2) {
+		int equal = 0;
+		for (int i = 0; i < NUM_HASHES; i++) {
+			if (s1[i] == s2[i]) equal++;
+		}
+		return equal / (double) NUM_HASHES;
+	}
+
+	/**
+	 * Mixes the bits of the given value (the finalizer of SplitMix64).
+	 *
+	 * @param z the value
+	 * @return the mixed value
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,133 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.util.Arrays;
+
+/**
+ * The postings of a single term in several segments, concatenated in the
+ * order of the segments. The document IDs of each segment are shifted by
+ * the ID of the first document of the segment, so the postings remain
+ * ordered by the document IDs; the blocks of the segments are concatenated
+ * in the same way.
+ *
+ * @author Luka Cupic
+ */
+class MultiPostings implements BlockPostings {
+
+	/**
+	 * The postings of the term in each segment.
+	 */
+	private final MappedPostings[] parts;
+
+	/**
+	 * The ID of the first document of each segment.
+	 */
+	private final int[] docBases;
+
+	/**
+	 * The index of the first posting of each segment, followed by the
+	 * total number of postings.
+	 */
+	private final int[] starts;
+
+	/**
+	 * The index of the first block of each segment, followed by the total
+	 * number of blocks.
+	 */
+	private final int[] blockStarts;
+
+	/**
+	 * Creates a new view of the postings of a term.
+	 *
+	 * @param parts    the postings of the term in each segment, none of
+	 *                 which may be empty
+	 * @param docBases the ID of the first document of each segment
+	 */
+	MultiPostings(MappedPostings[] parts, int[] docBases) {
+		this.parts = parts;
+		this.docBases = docBases;
+		this.starts = new int[parts.length + 1];
+		this.blockStarts = new int[parts.length + 1];
+		for (int p = 0; p < parts.length; p++) {
+			starts[p + 1] = starts[p] + parts[p].size();
+			blockStarts[p + 1] = blockStarts[p] + parts[p].getNumberOfBlocks();
+		}
+	}
+
+	@Override
+	public int size() {
+		return starts[parts.length];
+	}
+
+	@Override
+	public int getDocId(int i) {
+		int p = part(starts, i);
+		return docBases[p] + parts[p].getDocId(i - starts[p]);
+	}
+
+	@Override
+	public int getFreq(int i) {
+		int p = part(starts, i);
+		return parts[p].getFreq(i - starts[p]);
+	}
+
+	@Override
+	public int getNumberOfBlocks() {
+		return blockStarts[parts.length];
+	}
+
+	@Override
+	public int getBlock(int i) {
+		int p = part(starts, i);
+		return blockStarts[p] + parts[p].getBlock(i - starts[p]);
+	}
+
+	@Override
+	public int getBlockLastDocId(int block) {
+		int p = part(blockStarts, block);
+		return docBases[p] + parts[p].getBlockLastDocId(block - blockStarts[p]);
+	}
+
+	@Override
+	public int getBlockMaxFreq(int block) {
+		int p = part(blockStarts, block);
+		return parts[p].getBlockMaxFreq(block - blockStarts[p]);
+	}
+
+	@Override
+	public long getBlockMinLength(int block) {
+		int p = part(blockStarts, block);
+		return parts[p].getBlockMinLength(block - blockStarts[p]);
+	}
+
+	@Override
+	public void getPositions(int i, int[] positions) {
+		int p = part(starts, i);
+		parts[p].getPositions(i - starts[p], positions);
+	}
+
+	@Override
+	public int advance(int from, int target) {
+		for (int p = from < size() ? part(starts, from) : parts.length; p < parts.length; p++) {
+			// the segments holding only smaller documents are skipped as a whole, by their block metadata
+			MappedPostings postings = parts[p];
+			if (docBases[p] + postings.getBlockLastDocId(postings.getNumberOfBlocks() - 1) < target) continue;
+
+			int local = postings.advance(Math.max(from - starts[p], 0), target - docBases[p]);
+			return starts[p] + local;
+		}
+		return size();
+	}
+
+	/**
+	 * Finds the part containing the given element.
+	 *
+	 * @param starts the index of the first element of each part, followed
+	 *               by the total number of elements
+	 * @param i      the index of the element
+	 * @return the index of the part
+	 */
+	private int part(int[] starts, int i) {
+		int p = Arrays.binarySearch(starts, 0, parts.length, i);
+		return p >= 0 ? p : -p - 2;
+	}
+}
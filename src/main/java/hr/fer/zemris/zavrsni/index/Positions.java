@@ -0,0 +1,91 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.SparseVector;
+
+import java.util.Arrays;
+
+/**
+ * Records the positions of the words of documents. The position of a word
+ * is its index among all the words of the text of the document, so the stop
+ * words are not indexed, but they keep the words they separate apart (see
+ * {@link hr.fer.zemris.zavrsni.input.InputProcessor#process(hr.fer.zemris.zavrsni.input.DocumentReader, java.util.List)}).
+ * The positions of a document are kept grouped
+ * by the words, in the order of the word IDs (which is the order of the TF
+ * vector of the document), and the positions of each word are increasing.
+ *
+ * @author Luka Cupic
+ * @see hr.fer.zemris.zavrsni.model.Document#getPositions()
+ */
+public class Positions {
+
+	/**
+	 * Groups the positions of the words of a document by the words, when
+	 * the words follow each other.
+	 *
+	 * @param termIds the IDs of the words of the document, in order
+	 * @param length  the number of the words
+	 * @return the grouped positions
+	 */
+	public static int[] group(int[] termIds, int length) {
+		long[] entries = new long[length];
+		for (int i = 0; i < length; i++) {
+			entries[i] = ((long) termIds[i] << 32) | i;
+		}
+		return group(entries);
+	}
+
+	/**
+	 * Groups the positions of the words of a document by the words.
+	 *
+	 * @param termIds   the IDs of the words of the document, in order
+	 * @param positions the increasing positions of the words
+	 * @param length    the number of the words
+	 * @return the grouped positions
+	 */
+	public static int[] group(int[] termIds, int[] positions, int length) {
+		long[] entries = new long[length];
+		for (int i = 0; i < length; i++) {
+			entries[i] = ((long) termIds[i] << 32) | positions[i];
+		}
+		return group(entries);
+	}
+
+	/**
+	 * Groups the given (word, position) pairs by the words.
+	 *
+	 * @param entries the pairs, each with the ID of the word in the upper
+	 *                half and the position in the lower one
+	 * @return the grouped positions
+	 */
+	private static int[] group(long[] entries) {
+		// sorting the (word, position) pairs groups the positions and keeps each group in order
+		Arrays.sort(entries);
+
+		int[] positions = new int[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			positions[i] = (int) entries[i];
+		}
+		return positions;
+	}
+
+	/**
+	 * Regroups the positions of the words of a document after the words
+	 * have been given new IDs.
+	 *
+	 * @param tf         the TF vector of the document, with the old IDs
+	 * @param positions  the positions, grouped by the old IDs
+	 * @param newTermIds the new ID of each old ID of a word
+	 * @return the positions, grouped by the new IDs
+	 */
+	public static int[] remap(SparseVector tf, int[] positions, int[] newTermIds) {
+		long[] entries = new long[positions.length];
+		int offset = 0;
+		for (int i = 0; i < tf.size(); i++) {
+			long termId = newTermIds[tf.getIndex(i)];
+			for (int end = offset + (int) tf.getValue(i); offset < end; offset++) {
+				entries[offset] = (termId << 32) | positions[offset];
+			}
+		}
+		return group(entries);
+	}
+}
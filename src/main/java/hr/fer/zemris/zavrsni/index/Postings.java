@@ -0,0 +1,34 @@
+package hr.fer.zemris.zavrsni.index;
+
+/**
+ * A read-only view of the postings of a single term. Each posting is a
+ * pair of a document ID and the frequency of the term in that document,
+ * and the postings are ordered by document ID.
+ *
+ * @author Luka Cupic
+ */
+public interface Postings {
+
+	/**
+	 * Gets the number of postings (i.e. the document frequency of the term).
+	 *
+	 * @return the number of postings
+	 */
+	int size();
+
+	/**
+	 * Gets the document ID of the i-th posting.
+	 *
+	 * @param i the index of the posting
+	 * @return the document ID
+	 */
+	int getDocId(int i);
+
+	/**
+	 * Gets the term frequency of the i-th posting.
+	 *
+	 * @param i the index of the posting
+	 * @return the term frequency
+	 */
+	int getFreq(int i);
+}
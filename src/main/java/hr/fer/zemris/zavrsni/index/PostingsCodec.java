@@ -0,0 +1,206 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes and decodes the blocks of postings and positions. A full block of
+ * {@value IndexFormat#BLOCK_SIZE} values is bit-packed with the smallest
+ * width which fits all its values (frame of reference), while the last,
+ * partial block of a term is variable-byte encoded, so the short postings
+ * of the rare words are not padded to a whole block. The gaps between the
+ * positions of the words are variable-byte encoded as well.
+ * <p>
+ * The packed values are interleaved in {@value #LANES} lanes: the i-th value
+ * is stored in the lane i % {@value #LANES}, and the values of each lane are
+ * packed one after another into its own words, which alternate with the
+ * words of the other lanes. The values at the same position of every lane
+ * therefore share their word and their shift, so the decoder unpacks them
+ * with identical, branch-free operations on adjacent array elements, which
+ * the JIT compiler is able to vectorize.
+ *
+ * @author Luka Cupic
+ */
+class PostingsCodec {
+
+	/**
+	 * The number of lanes the packed values are interleaved in.
+	 */
+	static final int LANES = 4;
+
+	/**
+	 * The number of values in a single lane of a full block.
+	 */
+	private static final int LANE_SIZE = IndexFormat.BLOCK_SIZE / LANES;
+
+	/**
+	 * The length of the buffer holding the words of a packed block, which
+	 * includes a padding of a single zero word for every lane.
+	 */
+	static final int WORDS_LENGTH = LANES * (Integer.SIZE + 1);
+
+	/**
+	 * Calculates the number of bits needed to store the given values.
+	 *
+	 * @param values the values
+	 * @param size   the number of the values
+	 * @return the number of bits needed to store the largest value
+	 */
+	static int bitsRequired(int[] values, int size) {
+		int or = 0;
+		for (int i = 0; i < size; i++) or |= values[i];
+		return Integer.SIZE - Integer.numberOfLeadingZeros(or);
+	}
+
+	/**
+	 * Bit-packs a full block of values. The packed block takes exactly
+	 * {@value #LANES} * bits words.
+	 *
+	 * @param values the {@value IndexFormat#BLOCK_SIZE} values
+	 * @param bits   the number of bits of each value
+	 * @param out    the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void pack(int[] values, int bits, DataOutput out) throws IOException {
+		int[] words = new int[WORDS_LENGTH];
+		for (int i = 0; i < IndexFormat.BLOCK_SIZE; i++) {
+			int offset = (i / LANES) * bits;
+			int word = (offset >>> 5) * LANES + i % LANES;
+			int shift = offset & 31;
+			long value = values[i] & 0xFFFFFFFFL;
+			words[word] |= (int) (value << shift);
+			words[word + LANES] |= (int) (value >>> (32 - shift));
+		}
+		for (int i = 0; i < LANES * bits; i++) out.writeInt(words[i]);
+	}
+
+	/**
+	 * Unpacks a full block of values.
+	 *
+	 * @param buffer   the encoded data
+	 * @param position the position of the packed block
+	 * @param bits     the number of bits of each value
+	 * @param words    the buffer for the packed words, of length
+	 *                 {@link #WORDS_LENGTH}
+	 * @param values   the buffer for the {@value IndexFormat#BLOCK_SIZE}
+	 *                 unpacked values
+	 * @return the position right after the packed block
+	 */
+	static long unpack(MappedFile buffer, long position, int bits, int[] words, int[] values) {
+		int length = LANES * bits;
+		for (int i = 0; i < length; i++) {
+			words[i] = buffer.getInt(position + i * 4L);
+		}
+		for (int i = length; i < length + LANES; i++) {
+			words[i] = 0;
+		}
+
+		long mask = (1L << bits) - 1;
+		for (int j = 0; j < LANE_SIZE; j++) {
+			int offset = j * bits;
+			int word = (offset >>> 5) * LANES;
+			int shift = offset & 31;
+			for (int lane = 0; lane < LANES; lane++) {
+				long window = (words[word + lane] & 0xFFFFFFFFL) | ((long) words[word + LANES + lane] << 32);
+				values[j * LANES + lane] = (int) ((window >>> shift) & mask);
+			}
+		}
+		return position + length * 4L;
+	}
+
+	/**
+	 * Writes the given non-negative value in the variable-byte encoding:
+	 * seven bits in every byte, starting from the lowest ones, with the
+	 * highest bit set in every byte but the last.
+	 *
+	 * @param value the value
+	 * @param out   the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void writeVInt(int value, DataOutput out) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Calculates the number of bytes of the given non-negative value in the
+	 * variable-byte encoding.
+	 *
+	 * @param value the value
+	 * @return the length of the encoded value
+	 * @see #writeVInt(int, DataOutput)
+	 */
+	static int vIntLength(int value) {
+		int length = 1;
+		while ((value & ~0x7F) != 0) {
+			length++;
+			value >>>= 7;
+		}
+		return length;
+	}
+
+	/**
+	 * Reads a single variable-byte encoded value.
+	 *
+	 * @param in the input
+	 * @return the value
+	 * @throws IOException if an I/O error occurs
+	 * @see #writeVInt(int, DataOutput)
+	 */
+	static int readVInt(DataInput in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/**
+	 * Skips the given number of variable-byte encoded values.
+	 *
+	 * @param buffer   the encoded data
+	 * @param position the position of the first value
+	 * @param size     the number of the values
+	 * @return the position right after the last skipped value
+	 */
+	static long skipVInts(MappedFile buffer, long position, int size) {
+		// every value ends with the only one of its bytes whose highest bit is clear
+		while (size > 0) {
+			if (buffer.get(position++) >= 0) size--;
+		}
+		return position;
+	}
+
+	/**
+	 * Reads the given number of variable-byte encoded values.
+	 *
+	 * @param buffer   the encoded data
+	 * @param position the position of the first value
+	 * @param values   the buffer for the decoded values
+	 * @param size     the number of the values
+	 * @return the position right after the last value
+	 * @see #writeVInt(int, DataOutput)
+	 */
+	static long readVInts(MappedFile buffer, long position, int[] values, int size) {
+		for (int i = 0; i < size; i++) {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get(position++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			values[i] = value;
+		}
+		return position;
+	}
+}
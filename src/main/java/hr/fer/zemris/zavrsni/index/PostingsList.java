@@ -0,0 +1,89 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents the postings list of a single term from the
+ * vocabulary. Each posting is a pair of a document ID and the number
+ * of occurrences of the term in that document (the term frequency).
+ * <p>
+ * The postings are stored in two parallel primitive arrays and are
+ * expected to be added in the increasing order of document IDs.
+ *
+ * @author Luka Cupic
+ */
+public class PostingsList implements Postings, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The initial capacity of the postings arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * The IDs of the documents containing the term.
+	 */
+	private int[] docIds = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The term frequencies; {@code freqs[i]} belongs to {@code docIds[i]}.
+	 */
+	private int[] freqs = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The number of postings in this list.
+	 */
+	private int size;
+
+	/**
+	 * Appends a new posting to the end of this list.
+	 *
+	 * @param docId the ID of the document
+	 * @param freq  the frequency of the term in the document
+	 */
+	public void add(int docId, int freq) {
+		if (size == docIds.length) {
+			docIds = Arrays.copyOf(docIds, size * 2);
+			freqs = Arrays.copyOf(freqs, size * 2);
+		}
+		docIds[size] = docId;
+		freqs[size] = freq;
+		size++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getDocId(int i) {
+		return docIds[i];
+	}
+
+	@Override
+	public int getFreq(int i) {
+		return freqs[i];
+	}
+
+	/**
+	 * Renumbers the documents of this list according to the given mapping.
+	 * The postings of the documents mapped to -1 are removed. The mapping
+	 * must preserve the order of the remaining documents.
+	 *
+	 * @param newIds the new ID of each document, indexed by its old ID
+	 */
+	public void remap(int[] newIds) {
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			int newId = newIds[docIds[i]];
+			if (newId < 0) continue;
+			docIds[newSize] = newId;
+			freqs[newSize] = freqs[i];
+			newSize++;
+		}
+		size = newSize;
+	}
+}
@@ -0,0 +1,565 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.model.Vector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A single segment of the index written by {@link IndexFormat}. A segment
+ * holds the documents which have been added to the index together, with
+ * their own term dictionary and postings; the document and word IDs of a
+ * segment are local to it. Once written, a segment is never modified, but
+ * only replaced by merging it with the other segments, or by rewriting it
+ * without its deleted documents.
+ * <p>
+ * The segment files are mapped into memory, so opening a segment only
+ * reads the file headers; the rest of the data is paged in by the operating
+ * system as it is accessed. All the reads are absolute, so a single
+ * instance can be used by multiple threads at once.
+ *
+ * @author Luka Cupic
+ * @see MappedIndex
+ */
+class Segment {
+
+	/**
+	 * The number of words in the segment.
+	 */
+	private final int numTerms;
+
+	/**
+	 * The number of documents in the segment.
+	 */
+	private final int numDocs;
+
+	/**
+	 * The term dictionary file.
+	 */
+	private final MappedFile terms;
+
+	/**
+	 * The positions of the sections of the {@link #terms} file.
+	 */
+	private final long termOffsets, termHashes, termDocFreqs, termTotalFreqs, termTable, termSorted, termPool;
+
+	/**
+	 * The size of the hash table of the term dictionary.
+	 */
+	private final int tableLength;
+
+	/**
+	 * The postings file.
+	 */
+	private final MappedFile postings;
+
+	/**
+	 * The position of the offsets of the postings in the {@link #postings} file.
+	 */
+	private final long postingOffsets;
+
+	/**
+	 * The positions of the block sections of the {@link #postings} file.
+	 */
+	private final long blockOffsets, blockLastDocIds, blockMaxFreqs, blockMinLengths, blockPositions, blockData;
+
+	/**
+	 * The positions file.
+	 */
+	private final MappedFile positions;
+
+	/**
+	 * The positions of the sections of the {@link #positions} file.
+	 */
+	private final long positionBlocks, positionData;
+
+	/**
+	 * The document lengths and norms file.
+	 */
+	private final MappedFile documents;
+
+	/**
+	 * The document paths file.
+	 */
+	private final MappedFile paths;
+
+	/**
+	 * The document TF vectors file.
+	 */
+	private final MappedFile vectors;
+
+	/**
+	 * The positions of the sections of the {@link #vectors} file.
+	 */
+	private final long vectorTermIds, vectorFreqs;
+
+	/**
+	 * The document keywords file.
+	 */
+	private final MappedFile keywords;
+
+	/**
+	 * The signatures file.
+	 */
+	private final MappedFile signatures;
+
+	/**
+	 * The position of the first band table in the {@link #signatures} file.
+	 */
+	private final long bandTables;
+
+	/**
+	 * The segment directory.
+	 */
+	private final Path dir;
+
+	/**
+	 * The IDF vector, calculated from the document frequencies.
+	 */
+	private final Vector idf;
+
+	/**
+	 * The average length of the documents.
+	 */
+	private final double averageLength;
+
+	/**
+	 * The IDF of every word, as stored in the statistics file.
+	 */
+	private final float[] idfs;
+
+	/**
+	 * The BM25 length normalization factor of every document.
+	 */
+	private final float[] lengthNorms;
+
+	/**
+	 * The largest BM25 term score of every word.
+	 */
+	private final float[] maxTermScores;
+
+	/**
+	 * Opens the segment at the given directory.
+	 *
+	 * @param dir the segment directory
+	 * @throws IOException if an I/O error occurs or the segment is invalid
+	 */
+	Segment(Path dir) throws IOException {
+		this.dir = dir;
+
+		terms = IndexFormat.map(dir, IndexFormat.TERMS);
+		numTerms = terms.getInt(IndexFormat.HEADER_LENGTH);
+		tableLength = terms.getInt(IndexFormat.HEADER_LENGTH + 4);
+		termOffsets = IndexFormat.HEADER_LENGTH + 8;
+		termHashes = termOffsets + (numTerms + 1) * 4L;
+		termDocFreqs = termHashes + numTerms * 4L;
+		termTotalFreqs = termDocFreqs + numTerms * 4L;
+		termTable = termTotalFreqs + numTerms * 8L;
+		termSorted = termTable + tableLength * 4L;
+		termPool = termSorted + numTerms * 4L;
+
+		postings = IndexFormat.map(dir, IndexFormat.POSTINGS);
+		postingOffsets = IndexFormat.HEADER_LENGTH + 4;
+		blockOffsets = postingOffsets + (numTerms + 1) * 4L;
+		int numBlocks = postings.getInt(blockOffsets + numTerms * 4L);
+		blockLastDocIds = blockOffsets + (numTerms + 1) * 4L;
+		blockMaxFreqs = blockLastDocIds + numBlocks * 4L;
+		blockMinLengths = blockMaxFreqs + numBlocks * 4L;
+		blockPositions = blockMinLengths + numBlocks * 4L;
+		blockData = blockPositions + (numBlocks + 1) * 8L;
+
+		positions = IndexFormat.map(dir, IndexFormat.POSITIONS);
+		positionBlocks = IndexFormat.HEADER_LENGTH + 4;
+		positionData = positionBlocks + (numBlocks + 1) * 8L;
+
+		documents = IndexFormat.map(dir, IndexFormat.DOCUMENTS);
+		numDocs = documents.getInt(IndexFormat.HEADER_LENGTH);
+
+		paths = IndexFormat.map(dir, IndexFormat.PATHS);
+
+		vectors = IndexFormat.map(dir, IndexFormat.VECTORS);
+		vectorTermIds = IndexFormat.HEADER_LENGTH + 4 + (numDocs + 1) * 4L;
+		vectorFreqs = vectorTermIds + vectors.getInt(vectorTermIds - 4) * 4L;
+
+		keywords = IndexFormat.map(dir, IndexFormat.KEYWORDS);
+
+		signatures = IndexFormat.map(dir, IndexFormat.SIGNATURES);
+		bandTables = IndexFormat.HEADER_LENGTH + 8 + (long) numDocs * MinHash.NUM_HASHES * 4;
+
+		double[] values = new double[numTerms];
+		for (int t = 0; t < numTerms; t++) {
+			values[t] = IndexFormat.idf(numDocs, getDocumentFrequency(t));
+		}
+		idf = new Vector(values);
+
+		// the statistics are small and read in the innermost loops, so they are copied to the heap
+		MappedFile statistics = IndexFormat.map(dir, IndexFormat.STATISTICS);
+		averageLength = statistics.getDouble(IndexFormat.HEADER_LENGTH);
+		idfs = new float[numTerms];
+		statistics.getFloats(IndexFormat.HEADER_LENGTH + 12, idfs);
+		lengthNorms = new float[numDocs];
+		statistics.getFloats(IndexFormat.HEADER_LENGTH + 16 + numTerms * 4L, lengthNorms);
+		maxTermScores = new float[numTerms];
+		statistics.getFloats(IndexFormat.HEADER_LENGTH + 16 + (numTerms + (long) numDocs) * 4, maxTermScores);
+	}
+
+	/**
+	 * Gets the directory of the segment.
+	 *
+	 * @return the segment directory
+	 */
+	public Path getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * Gets the ID of the given word.
+	 *
+	 * @param word the word
+	 * @return the ID of the word, or -1 if the word is not in the segment
+	 */
+	public int getTermId(CharSequence word) {
+		if (tableLength == 0) return -1;
+
+		int hash = TermDictionary.hash(word);
+		int mask = tableLength - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			int id = terms.getInt(termTable + slot * 4L) - 1;
+			if (id < 0) return -1;
+			if (terms.getInt(termHashes + id * 4L) == hash && termEquals(id, word)) return id;
+		}
+	}
+
+	/**
+	 * Gets the word with the given ID.
+	 *
+	 * @param termId the ID of the word
+	 * @return the word
+	 */
+	public String getTerm(int termId) {
+		return new String(getTermBytes(termId), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Gets the UTF-8 bytes of the word with the given ID.
+	 *
+	 * @param termId the ID of the word
+	 * @return the bytes of the word
+	 */
+	byte[] getTermBytes(int termId) {
+		int offset = terms.getInt(termOffsets + termId * 4L);
+		int length = terms.getInt(termOffsets + (termId + 1) * 4L) - offset;
+		return readBytes(terms, termPool + offset, length);
+	}
+
+	/**
+	 * Gets the ID of the word at the given position of the sorted order of
+	 * the words of the segment, by their UTF-8 bytes.
+	 *
+	 * @param rank the position of the word in the sorted order
+	 * @return the ID of the word
+	 */
+	int getSortedTermId(int rank) {
+		return terms.getInt(termSorted + rank * 4L);
+	}
+
+	/**
+	 * Gets the number of words in the segment.
+	 *
+	 * @return the number of words
+	 */
+	public int getNumberOfTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * Gets the number of documents containing the given word.
+	 *
+	 * @param termId the ID of the word
+	 * @return the document frequency of the word
+	 */
+	public int getDocumentFrequency(int termId) {
+		return terms.getInt(termDocFreqs + termId * 4L);
+	}
+
+	/**
+	 * Gets the total number of occurrences of the given word in the dataset.
+	 *
+	 * @param termId the ID of the word
+	 * @return the total frequency of the word
+	 */
+	public long getTotalFrequency(int termId) {
+		return terms.getLong(termTotalFreqs + termId * 8L);
+	}
+
+	/**
+	 * Gets the postings of the given word. The postings are decoded
+	 * directly from the mapped file, a block at a time.
+	 *
+	 * @param termId the ID of the word
+	 * @return the postings of the word
+	 */
+	public MappedPostings getPostings(int termId) {
+		if (termId < 0 || termId >= numTerms) return MappedPostings.EMPTY;
+
+		int start = postings.getInt(postingOffsets + termId * 4L);
+		int end = postings.getInt(postingOffsets + (termId + 1) * 4L);
+		int firstBlock = postings.getInt(blockOffsets + termId * 4L);
+		int lastBlock = postings.getInt(blockOffsets + (termId + 1) * 4L);
+		return new MappedPostings(postings,
+				end - start,
+				blockLastDocIds + firstBlock * 4L,
+				blockMaxFreqs + firstBlock * 4L,
+				blockMinLengths + firstBlock * 4L,
+				blockPositions + firstBlock * 8L,
+				blockData,
+				lastBlock - firstBlock,
+				positions,
+				positionBlocks + firstBlock * 8L,
+				positionData);
+	}
+
+	/**
+	 * Gets the IDF vector of the segment.
+	 *
+	 * @return the IDF vector
+	 */
+	public Vector getIDFVector() {
+		return idf;
+	}
+
+	/**
+	 * Gets the IDF of every word, by the word IDs. The array is shared and
+	 * must not be modified.
+	 *
+	 * @return the IDFs of the words
+	 */
+	public float[] getIDFs() {
+		return idfs;
+	}
+
+	/**
+	 * Gets the BM25 length normalization factor of every document, by the
+	 * document IDs. The array is shared and must not be modified.
+	 *
+	 * @return the length normalization factors of the documents
+	 * @see IndexFormat#lengthNorm(long, double)
+	 */
+	public float[] getLengthNorms() {
+		return lengthNorms;
+	}
+
+	/**
+	 * Gets the largest BM25 term score of every word, by the word IDs. The
+	 * array is shared and must not be modified.
+	 *
+	 * @return the largest term scores of the words
+	 * @see IndexFormat#maxTermScore(double, double)
+	 */
+	public float[] getMaxTermScores() {
+		return maxTermScores;
+	}
+
+	/**
+	 * Gets the number of documents in the segment.
+	 *
+	 * @return the number of documents
+	 */
+	public int getNumberOfDocuments() {
+		return numDocs;
+	}
+
+	/**
+	 * Gets the length (in words) of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the length of the document
+	 */
+	public long getDocumentLength(int docId) {
+		return documents.getLong(IndexFormat.HEADER_LENGTH + 4 + docId * 8L);
+	}
+
+	/**
+	 * Gets the average length (in words) of the documents.
+	 *
+	 * @return the average document length
+	 */
+	public double getAverageDocumentLength() {
+		return averageLength;
+	}
+
+	/**
+	 * Gets the norm of the TF-IDF vector of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the norm of the document vector
+	 */
+	public double getDocumentNorm(int docId) {
+		return documents.getDouble(IndexFormat.HEADER_LENGTH + 4 + numDocs * 8L + docId * 8L);
+	}
+
+	/**
+	 * Gets the path to the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the path to the document
+	 */
+	public Path getPath(int docId) {
+		long base = IndexFormat.HEADER_LENGTH + 4;
+		int offset = paths.getInt(base + docId * 4L);
+		int length = paths.getInt(base + (docId + 1) * 4L) - offset;
+		return Paths.get(readString(paths, base + (numDocs + 1) * 4L + offset, length));
+	}
+
+	/**
+	 * Reads the TF vector of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the TF vector of the document
+	 */
+	public SparseVector getTFVector(int docId) {
+		long base = IndexFormat.HEADER_LENGTH + 4;
+		int start = vectors.getInt(base + docId * 4L);
+		int size = vectors.getInt(base + (docId + 1) * 4L) - start;
+
+		int[] indices = new int[size];
+		float[] values = new float[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = vectors.getInt(vectorTermIds + (start + i) * 4L);
+			values[i] = vectors.getInt(vectorFreqs + (start + i) * 4L);
+		}
+		return new SparseVector(indices, values);
+	}
+
+	/**
+	 * Reads the keywords of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the word IDs of the keywords, from the most to the least
+	 * discriminative one
+	 * @see Keywords
+	 */
+	public int[] getKeywords(int docId) {
+		long base = IndexFormat.HEADER_LENGTH + 4;
+		int start = keywords.getInt(base + docId * 4L);
+		int[] termIds = new int[keywords.getInt(base + (docId + 1) * 4L) - start];
+		long first = base + (numDocs + 1) * 4L;
+		for (int i = 0; i < termIds.length; i++) {
+			termIds[i] = keywords.getInt(first + (start + i) * 4L);
+		}
+		return termIds;
+	}
+
+	/**
+	 * Reads the MinHash signature of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the signature of the document
+	 */
+	public int[] getSignature(int docId) {
+		int[] signature = new int[MinHash.NUM_HASHES];
+		long base = IndexFormat.HEADER_LENGTH + 8 + (long) docId * MinHash.NUM_HASHES * 4;
+		for (int i = 0; i < signature.length; i++) {
+			signature[i] = signatures.getInt(base + i * 4L);
+		}
+		return signature;
+	}
+
+	/**
+	 * Finds the documents whose signatures agree with the given signature
+	 * on at least one LSH band. Each band is looked up by binary search, so
+	 * the lookup takes logarithmic time in the number of documents.
+	 *
+	 * @param signature the signature
+	 * @return the IDs of the candidate documents, in increasing order
+	 */
+	public int[] getCandidates(int[] signature) {
+		int[] candidates = new int[16];
+		int size = 0;
+		for (int band = 0; band < MinHash.BANDS; band++) {
+			int hash = MinHash.bandHash(signature, band);
+			long keys = bandTables + (long) band * numDocs * 8;
+			long docs = keys + numDocs * 4L;
+
+			// find the first entry with the band hash
+			int low = 0;
+			int high = numDocs;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (signatures.getInt(keys + mid * 4L) < hash) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			for (int i = low; i < numDocs && signatures.getInt(keys + i * 4L) == hash; i++) {
+				if (size == candidates.length) candidates = Arrays.copyOf(candidates, size * 2);
+				candidates[size++] = signatures.getInt(docs + i * 4L);
+			}
+		}
+
+		Arrays.sort(candidates, 0, size);
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique == 0 || candidates[unique - 1] != candidates[i]) {
+				candidates[unique++] = candidates[i];
+			}
+		}
+		return Arrays.copyOf(candidates, unique);
+	}
+
+	/**
+	 * Checks whether the word with the given ID equals the given word.
+	 *
+	 * @param id   the ID of the stored word
+	 * @param word the word to compare to
+	 * @return true iff the words are equal
+	 */
+	private boolean termEquals(int id, CharSequence word) {
+		long offset = termPool + terms.getInt(termOffsets + id * 4L);
+		int length = terms.getInt(termOffsets + (id + 1) * 4L) - terms.getInt(termOffsets + id * 4L);
+		if (length < word.length()) return false;
+
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (c >= 0x80) {
+				// not plain ASCII; compare the decoded word instead
+				return readString(terms, offset, length).contentEquals(word);
+			}
+			if (terms.get(offset + i) != c) return false;
+		}
+		return length == word.length();
+	}
+
+	/**
+	 * Decodes the UTF-8 string at the given position of the file.
+	 *
+	 * @param buffer   the mapped file
+	 * @param position the position of the string
+	 * @param length   the length of the string in bytes
+	 * @return the decoded string
+	 */
+	private static String readString(MappedFile buffer, long position, int length) {
+		return new String(readBytes(buffer, position, length), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the bytes at the given position of the file.
+	 *
+	 * @param buffer   the mapped file
+	 * @param position the position of the bytes
+	 * @param length   the number of bytes
+	 * @return the bytes
+	 */
+	private static byte[] readBytes(MappedFile buffer, long position, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(position + i);
+		}
+		return bytes;
+	}
+}
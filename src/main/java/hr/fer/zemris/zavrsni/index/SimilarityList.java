@@ -0,0 +1,132 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A growable list of document similarities. Each element is a pair of
+ * document IDs (where the first ID is smaller than the second one) and
+ * the similarity coefficient of the two documents. The elements are
+ * stored in parallel primitive arrays.
+ *
+ * @author Luka Cupic
+ */
+public class SimilarityList {
+
+	/**
+	 * The initial capacity of the list.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The first document of each pair.
+	 */
+	private int[] first = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The second document of each pair.
+	 */
+	private int[] second = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The similarity coefficient of each pair.
+	 */
+	private float[] values = new float[INITIAL_CAPACITY];
+
+	/**
+	 * The number of pairs in the list.
+	 */
+	private int size;
+
+	/**
+	 * Adds the similarity of the given documents to the list. Pairs must
+	 * be added in the increasing order of the first, and then the second
+	 * document ID.
+	 *
+	 * @param doc1  the ID of the first document
+	 * @param doc2  the ID of the second document, larger than {@code doc1}
+	 * @param value the similarity coefficient
+	 */
+	public void add(int doc1, int doc2, double value) {
+		if (size == first.length) {
+			first = Arrays.copyOf(first, size * 2);
+			second = Arrays.copyOf(second, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		first[size] = doc1;
+		second[size] = doc2;
+		values[size] = (float) value;
+		size++;
+	}
+
+	/**
+	 * Appends all the pairs of the given list to this list. The pairs of
+	 * the given list must all come after the pairs of this list.
+	 *
+	 * @param other the list to append
+	 */
+	public void addAll(SimilarityList other) {
+		if (size + other.size > first.length) {
+			int capacity = Math.max(size + other.size, first.length * 2);
+			first = Arrays.copyOf(first, capacity);
+			second = Arrays.copyOf(second, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		System.arraycopy(other.first, 0, first, size, other.size);
+		System.arraycopy(other.second, 0, second, size, other.size);
+		System.arraycopy(other.values, 0, values, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * Merges the given lists into a new list. Both lists must be ordered by
+	 * the document IDs and have no pair in common.
+	 *
+	 * @param a the first list
+	 * @param b the second list
+	 * @return the pairs of both lists, ordered by the document IDs
+	 */
+	static SimilarityList merge(SimilarityList a, SimilarityList b) {
+		SimilarityList merged = new SimilarityList();
+		int i = 0;
+		int j = 0;
+		while (i < a.size || j < b.size) {
+			boolean fromA = j == b.size || i < a.size
+					&& (a.first[i] < b.first[j] || a.first[i] == b.first[j] && a.second[i] < b.second[j]);
+			if (fromA) {
+				merged.add(a.first[i], a.second[i], a.values[i]);
+				i++;
+			} else {
+				merged.add(b.first[j], b.second[j], b.values[j]);
+				j++;
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Gets the number of pairs in the list.
+	 *
+	 * @return the number of pairs
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes the list to the given output, in the layout expected by
+	 * {@link MappedIndex#getSimilarity(int, int)}.
+	 *
+	 * @param out the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeInt(first[i]);
+			out.writeInt(second[i]);
+			out.writeFloat(values[i]);
+		}
+	}
+}
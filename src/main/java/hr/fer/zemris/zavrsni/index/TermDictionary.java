@@ -0,0 +1,334 @@
+package hr.fer.zemris.zavrsni.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact dictionary of all the words from the dataset. Each word is
+ * assigned a stable integer ID, which is simply the number of words added
+ * before it. The words themselves are stored as UTF-8 bytes in a single
+ * shared array and are looked up through an open-addressing hash table,
+ * so looking up a word does not create any objects.
+ * <p>
+ * Besides the words, the dictionary keeps the statistics of each word
+ * (the document frequency and the total frequency in the dataset) in
+ * primitive arrays indexed by the word's ID.
+ *
+ * @author Luka Cupic
+ */
+public class TermDictionary implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The initial number of words the dictionary can hold without resizing.
+	 */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The UTF-8 bytes of all the words, one after another.
+	 */
+	private byte[] pool = new byte[INITIAL_CAPACITY * 8];
+
+	/**
+	 * The offset of each word in the {@link #pool}. The word with the ID
+	 * {@code i} spans from {@code offsets[i]} to {@code offsets[i + 1]}.
+	 */
+	private int[] offsets = new int[INITIAL_CAPACITY + 1];
+
+	/**
+	 * The hash code of each word.
+	 */
+	private int[] hashes = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The number of documents containing each word.
+	 */
+	private int[] docFreqs = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The total number of occurrences of each word in the dataset.
+	 */
+	private long[] totalFreqs = new long[INITIAL_CAPACITY];
+
+	/**
+	 * The hash table; each slot holds the ID of a word plus one, or
+	 * zero if the slot is empty.
+	 */
+	private int[] table = new int[INITIAL_CAPACITY * 2];
+
+	/**
+	 * The number of words in the dictionary.
+	 */
+	private int size;
+
+	/**
+	 * Gets the ID of the given word.
+	 *
+	 * @param word the word
+	 * @return the ID of the word, or -1 if the word is not in the dictionary
+	 */
+	public int get(CharSequence word) {
+		int hash = hash(word);
+		int mask = table.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (id < 0) return -1;
+			if (hashes[id] == hash && equals(id, word)) return id;
+		}
+	}
+
+	/**
+	 * Adds the given word to the dictionary, unless it's already there.
+	 *
+	 * @param word the word
+	 * @return the ID of the word
+	 */
+	public int add(CharSequence word) {
+		int hash = hash(word);
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		for (; table[slot] != 0; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (hashes[id] == hash && equals(id, word)) return id;
+		}
+
+		int id = size;
+		byte[] bytes = word.toString().getBytes(StandardCharsets.UTF_8);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, pool, offsets[id], bytes.length);
+		offsets[id + 1] = offsets[id] + bytes.length;
+		hashes[id] = hash;
+		table[slot] = id + 1;
+		size++;
+
+		if (size * 2 > table.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the word with the given ID.
+	 *
+	 * @param id the ID of the word
+	 * @return the word
+	 */
+	public String getTerm(int id) {
+		return new String(pool, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Records that a document contains the given word the given number
+	 * of times.
+	 *
+	 * @param id   the ID of the word
+	 * @param freq the number of occurrences of the word in the document
+	 */
+	public void addOccurrences(int id, int freq) {
+		docFreqs[id]++;
+		totalFreqs[id] += freq;
+	}
+
+	/**
+	 * Records that a document containing the given word the given number
+	 * of times has been removed from the dataset.
+	 *
+	 * @param id   the ID of the word
+	 * @param freq the number of occurrences of the word in the removed document
+	 */
+	public void removeOccurrences(int id, int freq) {
+		docFreqs[id]--;
+		totalFreqs[id] -= freq;
+	}
+
+	/**
+	 * Gets the number of documents containing the given word.
+	 *
+	 * @param id the ID of the word
+	 * @return the document frequency of the word
+	 */
+	public int getDocumentFrequency(int id) {
+		return docFreqs[id];
+	}
+
+	/**
+	 * Gets the total number of occurrences of the given word in the dataset.
+	 *
+	 * @param id the ID of the word
+	 * @return the total frequency of the word
+	 */
+	public long getTotalFrequency(int id) {
+		return totalFreqs[id];
+	}
+
+	/**
+	 * Gets the number of words in the dictionary.
+	 *
+	 * @return the size of the dictionary
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes this dictionary to the given output. The layout is the one
+	 * expected by {@link #read(DataInput)} and by {@link MappedIndex}:
+	 * the number of words, the size of the hash table, the offsets, the
+	 * hash codes, the document frequencies, the total frequencies, the
+	 * hash table, the IDs of the words in the sorted order of the words
+	 * (see {@link #compare(byte[], int, int, byte[], int, int)}) and
+	 * finally the bytes of the words.
+	 *
+	 * @param out the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(table.length);
+		for (int i = 0; i <= size; i++) out.writeInt(offsets[i]);
+		for (int i = 0; i < size; i++) out.writeInt(hashes[i]);
+		for (int i = 0; i < size; i++) out.writeInt(docFreqs[i]);
+		for (int i = 0; i < size; i++) out.writeLong(totalFreqs[i]);
+		for (int slot : table) out.writeInt(slot);
+
+		Integer[] sorted = new Integer[size];
+		for (int i = 0; i < size; i++) sorted[i] = i;
+		Arrays.sort(sorted, (a, b) -> compare(pool, offsets[a], offsets[a + 1] - offsets[a],
+				pool, offsets[b], offsets[b + 1] - offsets[b]));
+		for (int id : sorted) out.writeInt(id);
+		out.write(pool, 0, offsets[size]);
+	}
+
+	/**
+	 * Reads a dictionary written by {@link #write(DataOutput)}.
+	 *
+	 * @param in the input
+	 * @return the dictionary
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static TermDictionary read(DataInput in) throws IOException {
+		TermDictionary dictionary = new TermDictionary();
+		int size = in.readInt();
+		int capacity = Math.max(INITIAL_CAPACITY, size + 1);
+
+		dictionary.size = size;
+		dictionary.table = new int[in.readInt()];
+		dictionary.offsets = new int[capacity + 1];
+		dictionary.hashes = new int[capacity];
+		dictionary.docFreqs = new int[capacity];
+		dictionary.totalFreqs = new long[capacity];
+		for (int i = 0; i <= size; i++) dictionary.offsets[i] = in.readInt();
+		for (int i = 0; i < size; i++) dictionary.hashes[i] = in.readInt();
+		for (int i = 0; i < size; i++) dictionary.docFreqs[i] = in.readInt();
+		for (int i = 0; i < size; i++) dictionary.totalFreqs[i] = in.readLong();
+		for (int i = 0; i < dictionary.table.length; i++) dictionary.table[i] = in.readInt();
+		// the sorted order is only read by the segments
+		for (int i = 0; i < size; i++) in.readInt();
+		dictionary.pool = new byte[Math.max(dictionary.offsets[size], 1)];
+		in.readFully(dictionary.pool, 0, dictionary.offsets[size]);
+		return dictionary;
+	}
+
+	/**
+	 * Compares two words by their UTF-8 bytes, as unsigned values. This is
+	 * the order in which the words are sorted in the written dictionary.
+	 *
+	 * @param a       the bytes of the first word
+	 * @param aOffset the offset of the first word
+	 * @param aLength the length of the first word
+	 * @param b       the bytes of the second word
+	 * @param bOffset the offset of the second word
+	 * @param bLength the length of the second word
+	 * @return a negative number, zero or a positive number if the first word
+	 * is less than, equal to or greater than the second one
+	 */
+	static int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+		int length = Math.min(aLength, bLength);
+		for (int i = 0; i < length; i++) {
+			int cmp = Integer.compare(a[aOffset + i] & 0xFF, b[bOffset + i] & 0xFF);
+			if (cmp != 0) return cmp;
+		}
+		return Integer.compare(aLength, bLength);
+	}
+
+	/**
+	 * Checks whether the word with the given ID equals the given word.
+	 *
+	 * @param id   the ID of the stored word
+	 * @param word the word to compare to
+	 * @return true iff the words are equal
+	 */
+	private boolean equals(int id, CharSequence word) {
+		int offset = offsets[id];
+		int length = offsets[id + 1] - offset;
+		if (length < word.length()) return false;
+
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (c >= 0x80) {
+				// not plain ASCII; compare the encoded bytes instead
+				byte[] bytes = word.toString().getBytes(StandardCharsets.UTF_8);
+				return bytes.length == length && Arrays.equals(bytes, Arrays.copyOfRange(pool, offset, offset + length));
+			}
+			if (pool[offset + i] != c) return false;
+		}
+		return length == word.length();
+	}
+
+	/**
+	 * Makes sure there is enough space for one more word of the given
+	 * encoded length.
+	 *
+	 * @param length the length of the word in bytes
+	 */
+	private void ensureCapacity(int length) {
+		if (size == hashes.length) {
+			int capacity = hashes.length * 2;
+			offsets = Arrays.copyOf(offsets, capacity + 1);
+			hashes = Arrays.copyOf(hashes, capacity);
+			docFreqs = Arrays.copyOf(docFreqs, capacity);
+			totalFreqs = Arrays.copyOf(totalFreqs, capacity);
+		}
+		int required = offsets[size] + length;
+		if (required > pool.length) {
+			pool = Arrays.copyOf(pool, Math.max(required, pool.length * 2));
+		}
+	}
+
+	/**
+	 * Doubles the size of the hash table and reinserts all the words.
+	 */
+	private void rehash() {
+		table = new int[table.length * 2];
+		int mask = table.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Calculates the hash code of the given word. The characters are
+	 * combined like in {@link String#hashCode()} and the result is mixed,
+	 * so that similar words do not end up in neighbouring slots.
+	 *
+	 * @param word the word
+	 * @return the hash code of the word
+	 */
+	static int hash(CharSequence word) {
+		int h = 0;
+		for (int i = 0; i < word.length(); i++) {
+			h = 31 * h + word.charAt(i);
+		}
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,258 @@
+package hr.fer.zemris.zavrsni.input;
+
+import java.io.Writer;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Turns a text into the list of processed words in a single pass over its
+ * characters. The text is split into words on every character which is not
+ * an English letter, the words are lower-cased, the stop words are skipped
+ * and the remaining words are stemmed. The words are built in a reusable
+ * buffer, and both the stop words and the stems are looked up by hashing
+ * the buffer, so a word which has been seen before causes no allocation.
+ * <p>
+ * The position of a word is its index among all the words of the text, the
+ * stop words included, so the words separated by a stop word are not
+ * adjacent.
+ * <p>
+ * The analyzer is immutable and can be used by multiple threads at once.
+ *
+ * @author Luka Cupic
+ */
+public class Analyzer {
+
+	/**
+	 * The hash table of the stop words (open addressing).
+	 */
+	private final String[] stopWords;
+
+	/**
+	 * The mask selecting a slot of the {@link #stopWords} table.
+	 */
+	private final int mask;
+
+	/**
+	 * The cache of the stems.
+	 */
+	private final StemCache stems;
+
+	/**
+	 * Creates a new analyzer.
+	 *
+	 * @param stopWords the stop words, in lower case
+	 * @param stems     the cache of the stems
+	 */
+	public Analyzer(Collection<String> stopWords, StemCache stems) {
+		int size = Integer.highestOneBit(Math.max(stopWords.size(), 1) * 4);
+		this.stopWords = new String[size];
+		this.mask = size - 1;
+		this.stems = stems;
+
+		for (String word : stopWords) {
+			int slot = word.hashCode() & mask;
+			while (this.stopWords[slot] != null && !this.stopWords[slot].equals(word)) {
+				slot = (slot + 1) & mask;
+			}
+			this.stopWords[slot] = word;
+		}
+	}
+
+	/**
+	 * Analyzes the given text and passes the stem of each of its words
+	 * which is not a stop word to the given consumer, in order.
+	 *
+	 * @param text     the text
+	 * @param consumer the consumer of the stems
+	 */
+	public void analyze(CharSequence text, Consumer<String> consumer) {
+		analyzePositions(text, (stem, position) -> consumer.accept(stem));
+	}
+
+	/**
+	 * Analyzes the given text and passes the stem of each of its words
+	 * which is not a stop word to the given consumer, in order, together
+	 * with the position of the word in the text.
+	 *
+	 * @param text     the text
+	 * @param consumer the consumer of the stems and their positions
+	 */
+	public void analyzePositions(CharSequence text, ObjIntConsumer<String> consumer) {
+		Token token = new Token();
+		for (int i = 0, n = text.length(); i < n; i++) {
+			accept(text.charAt(i), token, consumer);
+		}
+		finish(token, consumer);
+	}
+
+	/**
+	 * Creates a writer which analyzes the text written to it, as it is being
+	 * written, and passes the stems to the given consumer. The last word is
+	 * passed when the writer is closed.
+	 *
+	 * @param consumer the consumer of the stems
+	 * @return the analyzing writer
+	 */
+	public Writer writer(Consumer<String> consumer) {
+		return positionsWriter((stem, position) -> consumer.accept(stem));
+	}
+
+	/**
+	 * Creates a writer which analyzes the text written to it, as it is being
+	 * written, and passes the stems to the given consumer, together with the
+	 * positions of the words in the text. The last word is passed when the
+	 * writer is closed.
+	 *
+	 * @param consumer the consumer of the stems and their positions
+	 * @return the analyzing writer
+	 */
+	public Writer positionsWriter(ObjIntConsumer<String> consumer) {
+		return new Writer() {
+
+			private final Token token = new Token();
+
+			@Override
+			public void write(char[] chars, int offset, int length) {
+				for (int i = offset, end = offset + length; i < end; i++) {
+					accept(chars[i], token, consumer);
+				}
+			}
+
+			@Override
+			public void write(String text, int offset, int length) {
+				for (int i = offset, end = offset + length; i < end; i++) {
+					accept(text.charAt(i), token, consumer);
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+				finish(token, consumer);
+			}
+		};
+	}
+
+	/**
+	 * Adds the given character to the current word, or ends the word if the
+	 * character is not a letter.
+	 *
+	 * @param c        the character
+	 * @param token    the current word
+	 * @param consumer the consumer of the stems and their positions
+	 */
+	private void accept(char c, Token token, ObjIntConsumer<String> consumer) {
+		if (c >= 'a' && c <= 'z') {
+			token.append(c);
+		} else if (c >= 'A' && c <= 'Z') {
+			token.append((char) (c + ('a' - 'A')));
+		} else {
+			finish(token, consumer);
+		}
+	}
+
+	/**
+	 * Passes the stem of the current word to the consumer, unless the word
+	 * is empty or a stop word, and clears the word. The stop words take up
+	 * a position as well.
+	 *
+	 * @param token    the current word
+	 * @param consumer the consumer of the stems and their positions
+	 */
+	private void finish(Token token, ObjIntConsumer<String> consumer) {
+		if (token.length == 0) return;
+
+		if (!isStopWord(token)) {
+			consumer.accept(stems.stem(token, token.hash), token.position);
+		}
+		token.position++;
+		token.clear();
+	}
+
+	/**
+	 * Checks whether the given word is a stop word.
+	 *
+	 * @param token the word
+	 * @return true iff the word is a stop word
+	 */
+	private boolean isStopWord(Token token) {
+		for (int slot = token.hash & mask; stopWords[slot] != null; slot = (slot + 1) & mask) {
+			if (stopWords[slot].contentEquals(token)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A reusable word buffer, which keeps track of the hash of the word
+	 * (equal to the hash of the corresponding {@link String}).
+	 */
+	private static class Token implements CharSequence {
+
+		/**
+		 * The characters of the word.
+		 */
+		private char[] chars = new char[32];
+
+		/**
+		 * The length of the word.
+		 */
+		private int length;
+
+		/**
+		 * The hash of the word.
+		 */
+		private int hash;
+
+		/**
+		 * The position of the word in the text.
+		 */
+		private int position;
+
+		/**
+		 * Appends the given character to the word.
+		 *
+		 * @param c the character
+		 */
+		void append(char c) {
+			if (length == chars.length) {
+				char[] resized = new char[chars.length * 2];
+				System.arraycopy(chars, 0, resized, 0, length);
+				chars = resized;
+			}
+			chars[length++] = c;
+			hash = 31 * hash + c;
+		}
+
+		/**
+		 * Clears the word, keeping its position.
+		 */
+		void clear() {
+			length = 0;
+			hash = 0;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return chars[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(chars, start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, length);
+		}
+	}
+}
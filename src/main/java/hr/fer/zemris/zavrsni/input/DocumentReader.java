@@ -1,10 +1,33 @@
 package hr.fer.zemris.zavrsni.input;
 
+import hr.fer.zemris.zavrsni.utils.TextUtils;
+
 import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 public interface DocumentReader {
 
+	/**
+	 * Reads a document specified by the given path and returns its text.
+	 *
+	 * @return the text of the document
+	 * @throws IOException if an error occurs while reading the document
+	 */
+	CharSequence readText() throws IOException;
+
+	/**
+	 * Reads a document specified by the given path and writes its text to
+	 * the given writer. Readers of large documents should write the text
+	 * in parts, as it is being read.
+	 *
+	 * @param out the writer to write the text to
+	 * @throws IOException if an error occurs while reading the document
+	 */
+	default void writeText(Writer out) throws IOException {
+		out.append(readText());
+	}
+
 	/**
 	 * Reads a document specified by the given path and returns a list of words extracted
 	 * from  the document. All non-letter characters will be ignored in the end result.
@@ -13,5 +36,7 @@ public interface DocumentReader {
 	 * @return a list of words representing the contents of the document
 	 * @throws IOException if an error occurs while reading the document
 	 */
-	List<String> readDocument() throws IOException;
+	default List<String> readDocument() throws IOException {
+		return TextUtils.getWordsFromText(readText());
+	}
 }
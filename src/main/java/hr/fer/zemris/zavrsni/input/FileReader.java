@@ -9,6 +9,12 @@ public abstract class FileReader implements DocumentReader {
 
 	protected Path path;
 
+	/**
+	 * The contents of the file, if they have already been read into
+	 * memory, or null if the file should be read from the {@link #path}.
+	 */
+	protected byte[] content;
+
 	public FileReader() {
 	}
 
@@ -16,11 +22,17 @@ public abstract class FileReader implements DocumentReader {
 		this.path = path;
 	}
 
+	public FileReader(Path path, byte[] content) {
+		this.path = path;
+		this.content = content;
+	}
+
 	public Path getPath() {
 		return path;
 	}
 
 	public void setPath(Path path) {
 		this.path = path;
+		this.content = null;
 	}
 }
@@ -4,9 +4,13 @@ import hr.fer.zemris.zavrsni.utils.IOUtils;
 import hr.fer.zemris.zavrsni.utils.TextUtils;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 /**
  * The InputProcessor class processes the documents read by
@@ -18,51 +22,122 @@ import java.util.stream.Collectors;
 public class InputProcessor {
 
 	/**
-	 * A list of stop words.
+	 * The set of stop words, loaded once when the class is initialized.
 	 */
-	private static List<String> stopWords = new ArrayList<>();
+	private static final Set<String> STOP_WORDS = loadStopWords();
 
 	/**
-	 * The word stemmer.
+	 * The cache of word stems, shared by all the threads.
 	 */
-	private static Stemmer stemmer = new Stemmer();
+	private static final StemCache STEMS = new StemCache();
 
 	/**
-	 * The document reader.
+	 * The analyzer turning the texts into the processed words. It is never
+	 * replaced, so it can be used by multiple threads at once.
 	 */
-	private static DocumentReader reader;
+	private static final Analyzer ANALYZER = new Analyzer(STOP_WORDS, STEMS);
 
 	/**
-	 * Creates a new InputProcessor.
+	 * Loads the stop words from the resources.
 	 *
-	 * @param stopWordsPath path to the file containing stop words
+	 * @return the unmodifiable set of stop words
 	 */
-	public static void setStopWords(String stopWordsPath) {
+	private static Set<String> loadStopWords() {
 		String text = IOUtils.readFromInputStream(IOUtils.getResource("stop_words.txt"));
-		stopWords.addAll(TextUtils.getWordsFromText(text));
+		return Collections.unmodifiableSet(new HashSet<>(TextUtils.getWordsFromText(text)));
 	}
 
 	/**
-	 * Reads the document through the {@link #reader} object, removes
-	 * the stop words, stems the remaining words and returns the list
-	 * of processed words.
+	 * Reads the document through the given reader, removes the stop
+	 * words, stems the remaining words and returns the list of processed
+	 * words. The method can be called from multiple threads at once.
 	 *
+	 * @param reader the reader to read the document through
 	 * @return the list of processed words
 	 * @throws IOException if an I/O error occurs
 	 */
-	public static List<String> process() throws IOException {
-		List<String> words = reader.readDocument();
-		words = words.stream().filter(s -> !stopWords.contains(s)).collect(Collectors.toList());
-		words = words.stream().map(stemmer::stripAffixes).collect(Collectors.toList());
+	public static List<String> process(DocumentReader reader) throws IOException {
+		List<String> words = new ArrayList<>();
+		try (Writer out = ANALYZER.writer(words::add)) {
+			reader.writeText(out);
+		}
 		return words;
 	}
 
 	/**
-	 * Sets the document current reader of this InputProcessor.
+	 * Reads the document through the given reader, removes the stop
+	 * words, stems the remaining words and adds them to the given list. The
+	 * position of each word in the text is returned, counting the stop
+	 * words as well, so the words which were separated by a stop word are
+	 * not adjacent. The method can be called from multiple threads at once.
 	 *
-	 * @param reader the reader
+	 * @param reader the reader to read the document through
+	 * @param words  the list the processed words are added to
+	 * @return the position of each added word
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static int[] process(DocumentReader reader, List<String> words) throws IOException {
+		int start = words.size();
+		int[][] positions = {new int[16]};
+		try (Writer out = ANALYZER.positionsWriter((word, position) -> {
+			int i = words.size() - start;
+			if (i == positions[0].length) positions[0] = Arrays.copyOf(positions[0], i * 2);
+			positions[0][i] = position;
+			words.add(word);
+		})) {
+			reader.writeText(out);
+		}
+		return Arrays.copyOf(positions[0], words.size() - start);
+	}
+
+	/**
+	 * Processes the given textual query. The text enclosed in double
+	 * quotes is an exact phrase, or a proximity phrase if the closing quote
+	 * is followed by a tilde and a number of words, as in
+	 * {@code "power supply"~3}; a phrase left without the closing quote
+	 * runs to the end of the query. The words of the phrases are processed
+	 * like the rest of the words and are a part of the bag of words of the
+	 * query, while the phrases which are left without words are dropped.
+	 * The stop words of a phrase are removed as well, but the positions of
+	 * its remaining words are kept.
+	 *
+	 * @param text the text of the query
+	 * @return the processed query
+	 * @throws IOException if an I/O error occurs
 	 */
-	public static void setReader(DocumentReader reader) {
-		InputProcessor.reader = reader;
+	public static Query processQuery(String text) throws IOException {
+		List<String> words = new ArrayList<>();
+		List<Query.Phrase> phrases = new ArrayList<>();
+
+		int start = 0;
+		int quote;
+		while ((quote = text.indexOf('"', start)) >= 0) {
+			words.addAll(process(new QueryReader(text.substring(start, quote))));
+
+			int end = text.indexOf('"', quote + 1);
+			if (end < 0) end = text.length();
+			List<String> phraseWords = new ArrayList<>();
+			int[] positions = process(new QueryReader(text.substring(quote + 1, end)), phraseWords);
+			words.addAll(phraseWords);
+
+			start = Math.min(end + 1, text.length());
+			int slop = Query.Phrase.EXACT;
+			if (start < text.length() && text.charAt(start) == '~') {
+				long value = 0;
+				int digits = start + 1;
+				for (; digits < text.length() && text.charAt(digits) >= '0' && text.charAt(digits) <= '9'; digits++) {
+					value = Math.min(value * 10 + text.charAt(digits) - '0', Integer.MAX_VALUE);
+				}
+				if (digits > start + 1) {
+					slop = (int) value;
+					start = digits;
+				}
+			}
+			if (!phraseWords.isEmpty()) {
+				phrases.add(new Query.Phrase(phraseWords, positions, slop));
+			}
+		}
+		words.addAll(process(new QueryReader(text.substring(start))));
+		return new Query(words, phrases);
 	}
 }
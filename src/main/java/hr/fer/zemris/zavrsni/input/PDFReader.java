@@ -1,20 +1,36 @@
 package hr.fer.zemris.zavrsni.input;
 
 import hr.fer.zemris.zavrsni.utils.TextUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.Objects;
 
 public class PDFReader extends FileReader {
 
+	/**
+	 * The default amount of main memory a single document may use for
+	 * its buffers before they are moved to temporary files (32 MB).
+	 */
+	public static final long DEFAULT_MAX_MAIN_MEMORY = 32L * 1024 * 1024;
+
+	/**
+	 * Defines how much memory PDFBox may use for the buffers of a document,
+	 * and whether the rest is kept in temporary files.
+	 */
+	private final MemoryUsageSetting memoryUsage;
+
 	/**
 	 * The default constructor.
 	 */
 	public PDFReader() {
 		super();
+		this.memoryUsage = defaultMemoryUsage();
 	}
 
 	/**
@@ -22,16 +38,77 @@ public class PDFReader extends FileReader {
 	 */
 	public PDFReader(Path path) {
 		super(path);
+		this.memoryUsage = defaultMemoryUsage();
+	}
+
+	/**
+	 * Creates a new PDFReader which reads the already loaded contents
+	 * of the file at the given path.
+	 */
+	public PDFReader(Path path, byte[] content) {
+		this(path, content, defaultMemoryUsage());
+	}
+
+	/**
+	 * Creates a new PDFReader which reads the already loaded contents of
+	 * the file at the given path, or the file itself if the contents are
+	 * null, with the given memory usage.
+	 *
+	 * @param path        the path to the file
+	 * @param content     the contents of the file, or null
+	 * @param memoryUsage the memory usage setting of the loaded document
+	 */
+	public PDFReader(Path path, byte[] content, MemoryUsageSetting memoryUsage) {
+		super(path, content);
+		this.memoryUsage = Objects.requireNonNull(memoryUsage);
 	}
 
+	/**
+	 * Creates the default memory usage setting, which keeps up to
+	 * {@link #DEFAULT_MAX_MAIN_MEMORY} bytes of the buffers of a document in
+	 * main memory and the rest in temporary files.
+	 *
+	 * @return the default memory usage setting
+	 */
+	public static MemoryUsageSetting defaultMemoryUsage() {
+		return MemoryUsageSetting.setupMixed(DEFAULT_MAX_MAIN_MEMORY);
+	}
+
+	@Override
+	public CharSequence readText() throws IOException {
+		StringWriter out = new StringWriter();
+		writeText(out);
+		return out.toString();
+	}
+
+	/**
+	 * Writes the text of the document to the given writer page by page,
+	 * so the whole text is never held in memory.
+	 *
+	 * @param out the writer to write the text to
+	 * @throws IOException if an error occurs while reading the document
+	 */
 	@Override
-	public List<String> readDocument() throws IOException {
+	public void writeText(Writer out) throws IOException {
 		if (!TextUtils.getFileExtension(path).equals("pdf")) {
 			throw new IOException("Unreadable extension!");
 		}
-		try (PDDocument doc = PDDocument.load(path.toFile())) {
-			String text = new PDFTextStripper().getText(doc);
-			return TextUtils.getWordsFromText(text);
+		try (PDDocument doc = load()) {
+			new PDFTextStripper().writeText(doc, out);
+		}
+	}
+
+	/**
+	 * Loads the document, either from the already loaded contents or from
+	 * the file, using the configured memory usage.
+	 *
+	 * @return the loaded document
+	 * @throws IOException if the document cannot be loaded
+	 */
+	private PDDocument load() throws IOException {
+		if (content != null) {
+			return PDDocument.load(content, "", null, null, memoryUsage);
 		}
+		return PDDocument.load(path.toFile(), memoryUsage);
 	}
 }
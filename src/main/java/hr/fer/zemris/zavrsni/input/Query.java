@@ -0,0 +1,235 @@
+package hr.fer.zemris.zavrsni.input;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A processed textual query: the bag of its processed words, which the
+ * documents are scored by, and the phrases the matching documents must
+ * contain. The words of the phrases are a part of the bag of words as well.
+ * <p>
+ * A query may also be made of the words of a whole document (see
+ * {@link #ofDocument(List)}), in which case the ranking function may reduce
+ * it to the words which are the most characteristic of the document.
+ *
+ * @author Luka Cupic
+ * @see InputProcessor#processQuery(String)
+ */
+public class Query {
+
+	/**
+	 * The processed words of the query.
+	 */
+	private final List<String> words;
+
+	/**
+	 * The phrases of the query.
+	 */
+	private final List<Phrase> phrases;
+
+	/**
+	 * Whether the query is made of the words of a whole document.
+	 */
+	private final boolean document;
+
+	/**
+	 * Creates a new query without phrases.
+	 *
+	 * @param words the processed words of the query
+	 */
+	public Query(List<String> words) {
+		this(words, Collections.emptyList());
+	}
+
+	/**
+	 * Creates a new query.
+	 *
+	 * @param words   the processed words of the query
+	 * @param phrases the phrases of the query
+	 */
+	public Query(List<String> words, List<Phrase> phrases) {
+		this(words, phrases, false);
+	}
+
+	/**
+	 * Creates a new query.
+	 *
+	 * @param words    the processed words of the query
+	 * @param phrases  the phrases of the query
+	 * @param document whether the query is made of the words of a whole
+	 *                 document
+	 */
+	private Query(List<String> words, List<Phrase> phrases, boolean document) {
+		this.words = Objects.requireNonNull(words);
+		this.phrases = Objects.requireNonNull(phrases);
+		this.document = document;
+	}
+
+	/**
+	 * Creates a new query made of the words of a whole document.
+	 *
+	 * @param words the processed words of the document
+	 * @return the query
+	 */
+	public static Query ofDocument(List<String> words) {
+		return new Query(words, Collections.emptyList(), true);
+	}
+
+	/**
+	 * Gets the processed words of the query.
+	 *
+	 * @return the processed words
+	 */
+	public List<String> getWords() {
+		return words;
+	}
+
+	/**
+	 * Gets the phrases of the query.
+	 *
+	 * @return the phrases, which may be empty
+	 */
+	public List<Phrase> getPhrases() {
+		return phrases;
+	}
+
+	/**
+	 * Checks whether the query is made of the words of a whole document.
+	 *
+	 * @return true iff the query is a document
+	 * @see #ofDocument(List)
+	 */
+	public boolean isDocument() {
+		return document;
+	}
+
+	/**
+	 * A phrase of a query. An exact phrase matches the documents in which
+	 * its words follow each other in the given order. A proximity phrase,
+	 * written as {@code "..."~N}, matches the documents in which all of its
+	 * distinct words occur, in any order, within a span of at most N words
+	 * more than there are distinct words. The stop words are not indexed,
+	 * but they keep their positions, so the words of an exact phrase must be
+	 * as far apart as in the phrase, and the stop words within the span of
+	 * a proximity phrase count as extra words.
+	 */
+	public static class Phrase {
+
+		/**
+		 * The slop of an exact phrase.
+		 */
+		public static final int EXACT = -1;
+
+		/**
+		 * The processed words of the phrase, in order.
+		 */
+		private final List<String> words;
+
+		/**
+		 * The position of each word of the phrase, relative to the first one.
+		 */
+		private final int[] positions;
+
+		/**
+		 * The maximal number of the extra words within the span of the
+		 * phrase, or {@link #EXACT}.
+		 */
+		private final int slop;
+
+		/**
+		 * Creates a new phrase whose words follow each other.
+		 *
+		 * @param words the processed words of the phrase, in order
+		 * @param slop  the maximal number of the extra words within the span
+		 *              of the phrase, or {@link #EXACT}
+		 */
+		public Phrase(List<String> words, int slop) {
+			this(words, null, slop);
+		}
+
+		/**
+		 * Creates a new phrase.
+		 *
+		 * @param words     the processed words of the phrase, in order
+		 * @param positions the increasing positions of the words in the text
+		 *                  of the phrase, or null if they follow each other
+		 * @param slop      the maximal number of the extra words within the
+		 *                  span of the phrase, or {@link #EXACT}
+		 */
+		public Phrase(List<String> words, int[] positions, int slop) {
+			if (slop < EXACT) {
+				throw new IllegalArgumentException("Invalid slop: " + slop);
+			}
+			this.words = Objects.requireNonNull(words);
+			this.positions = new int[words.size()];
+			if (positions == null) {
+				Arrays.setAll(this.positions, w -> w);
+			} else if (positions.length != words.size()) {
+				throw new IllegalArgumentException("Expected " + words.size() + " positions, got " + positions.length);
+			} else {
+				Arrays.setAll(this.positions, w -> positions[w] - positions[0]);
+			}
+			this.slop = slop;
+		}
+
+		/**
+		 * Gets the processed words of the phrase.
+		 *
+		 * @return the processed words, in order
+		 */
+		public List<String> getWords() {
+			return words;
+		}
+
+		/**
+		 * Gets the positions of the words of the phrase, relative to the
+		 * position of the first word. The positions of the words separated
+		 * by the stop words are not consecutive.
+		 *
+		 * @return the positions, in the order of the words
+		 */
+		public int[] getPositions() {
+			return positions;
+		}
+
+		/**
+		 * Gets the maximal number of the extra words within the span of the
+		 * phrase.
+		 *
+		 * @return the slop, or {@link #EXACT}
+		 */
+		public int getSlop() {
+			return slop;
+		}
+
+		/**
+		 * Checks whether the phrase is exact.
+		 *
+		 * @return true iff the words must follow each other in order
+		 */
+		public boolean isExact() {
+			return slop == EXACT;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Phrase)) return false;
+			Phrase phrase = (Phrase) o;
+			return slop == phrase.slop && words.equals(phrase.words) && Arrays.equals(positions, phrase.positions);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * words.hashCode() + Arrays.hashCode(positions)) + slop;
+		}
+
+		@Override
+		public String toString() {
+			String phrase = "\"" + String.join(" ", words) + "\"";
+			return isExact() ? phrase : phrase + "~" + slop;
+		}
+	}
+}
@@ -1,9 +1,5 @@
 package hr.fer.zemris.zavrsni.input;
 
-import hr.fer.zemris.zavrsni.utils.TextUtils;
-
-import java.util.List;
-
 public class QueryReader implements DocumentReader {
 
 	private String text;
@@ -16,7 +12,7 @@ public class QueryReader implements DocumentReader {
 	}
 
 	@Override
-	public List<String> readDocument() {
-		return TextUtils.getWordsFromText(text);
+	public CharSequence readText() {
+		return text;
 	}
 }
\ No newline at end of file
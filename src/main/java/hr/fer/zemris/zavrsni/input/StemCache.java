@@ -0,0 +1,119 @@
+package hr.fer.zemris.zavrsni.input;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, thread-safe cache of word stems. The cache is a direct-mapped
+ * table: each word can only be stored in the slot selected by its hash, and
+ * a word whose slot is taken simply replaces the previous entry. Since the
+ * entries are immutable, the cache needs no locking; a racing reader sees
+ * either the old or the new entry, and both are correct.
+ * <p>
+ * The words are stemmed by a separate {@link Stemmer} for each thread.
+ *
+ * @author Luka Cupic
+ */
+public class StemCache {
+
+	/**
+	 * The default number of cached stems.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * The stemmer of each thread.
+	 */
+	private static final ThreadLocal<Stemmer> STEMMERS = ThreadLocal.withInitial(Stemmer::new);
+
+	/**
+	 * The cached entries.
+	 */
+	private final AtomicReferenceArray<Entry> entries;
+
+	/**
+	 * The mask selecting a slot from a hash.
+	 */
+	private final int mask;
+
+	/**
+	 * Creates a new cache with the default capacity.
+	 */
+	public StemCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param capacity the maximum number of cached stems, rounded up to a power of two
+	 */
+	public StemCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive.");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) size <<= 1;
+
+		entries = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Gets the stem of the given word, stemming the word if it is not cached.
+	 *
+	 * @param word the word
+	 * @return the stem of the word
+	 */
+	public String stem(String word) {
+		return stem(word, word.hashCode());
+	}
+
+	/**
+	 * Gets the stem of the given word, stemming the word if it is not cached.
+	 * A cached stem is found without copying the word.
+	 *
+	 * @param word the word
+	 * @param hash the hash of the word, equal to the hash of the corresponding {@link String}
+	 * @return the stem of the word
+	 */
+	String stem(CharSequence word, int hash) {
+		int slot = (hash ^ (hash >>> 16)) & mask;
+
+		Entry entry = entries.get(slot);
+		if (entry != null && entry.word.contentEquals(word)) {
+			return entry.stem;
+		}
+
+		String copy = word.toString();
+		String stem = STEMMERS.get().stripAffixes(copy);
+		entries.lazySet(slot, new Entry(copy, stem));
+		return stem;
+	}
+
+	/**
+	 * A cached word and its stem.
+	 */
+	private static class Entry {
+
+		/**
+		 * The word.
+		 */
+		final String word;
+
+		/**
+		 * The stem of the word.
+		 */
+		final String stem;
+
+		/**
+		 * Creates a new entry.
+		 *
+		 * @param word the word
+		 * @param stem the stem of the word
+		 */
+		Entry(String word, String stem) {
+			this.word = word;
+			this.stem = stem;
+		}
+	}
+}
@@ -1,392 +1,427 @@
 package hr.fer.zemris.zavrsni.input;
 
+/**
+ * An implementation of the Porter stemming algorithm, which additionally
+ * strips a few common prefixes. The word is stemmed in place, inside a
+ * reusable character buffer, and the suffix tables are created only once,
+ * so stemming a word allocates nothing but the resulting string.
+ * <p>
+ * Because of the shared buffer, a single stemmer must not be used by
+ * multiple threads at once.
+ *
+ * @author Luka Cupic
+ */
 public class Stemmer {
 
-	String Clean(String str) {
-		int last = str.length();
-
-		new Character(str.charAt(0));
-		String temp = "";
-
-		for (int i = 0; i < last; i++) {
-			if (Character.isLetterOrDigit(str.charAt(i)))
-				temp += str.charAt(i);
+	/**
+	 * The prefixes which are stripped before stemming.
+	 */
+	private static final char[][] PREFIXES = chars(
+			"kilo", "micro", "milli", "intra", "ultra", "mega", "nano", "pico", "pseudo");
+
+	/**
+	 * The suffixes of step 2 and their replacements.
+	 */
+	private static final char[][][] STEP2_SUFFIXES = pairs(
+			"ational", "ate",
+			"tional", "tion",
+			"enci", "ence",
+			"anci", "ance",
+			"izer", "ize",
+			"iser", "ize",
+			"abli", "able",
+			"alli", "al",
+			"entli", "ent",
+			"eli", "e",
+			"ousli", "ous",
+			"ization", "ize",
+			"isation", "ize",
+			"ation", "ate",
+			"ator", "ate",
+			"alism", "al",
+			"iveness", "ive",
+			"fulness", "ful",
+			"ousness", "ous",
+			"aliti", "al",
+			"iviti", "ive",
+			"biliti", "ble");
+
+	/**
+	 * The suffixes of step 3 and their replacements.
+	 */
+	private static final char[][][] STEP3_SUFFIXES = pairs(
+			"icate", "ic",
+			"ative", "",
+			"alize", "al",
+			"alise", "al",
+			"iciti", "ic",
+			"ical", "ic",
+			"ful", "",
+			"ness", "");
+
+	/**
+	 * The suffixes removed by step 4.
+	 */
+	private static final char[][] STEP4_SUFFIXES = chars(
+			"al", "ance", "ence", "er", "ic", "able", "ible", "ant", "ement", "ment", "ent", "sion", "tion",
+			"ou", "ism", "ate", "iti", "ous", "ive", "ize", "ise");
+
+	private static final char[] SSES = "sses".toCharArray();
+	private static final char[] IES = "ies".toCharArray();
+	private static final char[] EED = "eed".toCharArray();
+	private static final char[] ED = "ed".toCharArray();
+	private static final char[] ING = "ing".toCharArray();
+	private static final char[] AT = "at".toCharArray();
+	private static final char[] BL = "bl".toCharArray();
+	private static final char[] IZ = "iz".toCharArray();
+	private static final char[] Y = "y".toCharArray();
+
+	/**
+	 * The buffer holding the word being stemmed.
+	 */
+	private char[] buffer = new char[32];
+
+	/**
+	 * The length of the word in the {@link #buffer}.
+	 */
+	private int length;
+
+	/**
+	 * Stems the given word. The word is lower-cased, all the characters
+	 * other than letters and digits are removed, and then the prefixes and
+	 * the suffixes are stripped from words longer than two characters.
+	 *
+	 * @param word the word
+	 * @return the stem of the word
+	 */
+	public String stripAffixes(CharSequence word) {
+		if (!isAscii(word)) {
+			// lower-casing some characters depends on their context
+			word = word.toString().toLowerCase();
 		}
 
-		return temp;
-	} //clean
-
-	boolean hasSuffix(String word, String suffix, NewString stem) {
-
-		String tmp = "";
-
-		if (word.length() <= suffix.length())
-			return false;
-		if (suffix.length() > 1)
-			if (word.charAt(word.length() - 2) != suffix.charAt(suffix.length() - 2))
-				return false;
-
-		stem.str = "";
-
-		for (int i = 0; i < word.length() - suffix.length(); i++)
-			stem.str += word.charAt(i);
-		tmp = stem.str;
-
-		for (int i = 0; i < suffix.length(); i++)
-			tmp += suffix.charAt(i);
-
-		if (tmp.compareTo(word) == 0)
-			return true;
-		else
-			return false;
-	}
-
-	boolean vowel(char ch, char prev) {
-		switch (ch) {
-			case 'a':
-			case 'e':
-			case 'i':
-			case 'o':
-			case 'u':
-				return true;
-			case 'y': {
-
-				switch (prev) {
-					case 'a':
-					case 'e':
-					case 'i':
-					case 'o':
-					case 'u':
-						return false;
-
-					default:
-						return true;
-				}
-			}
-
-			default:
-				return false;
+		length = 0;
+		if (buffer.length < word.length()) {
+			buffer = new char[Math.max(word.length(), buffer.length * 2)];
 		}
-	}
-
-	int measure(String stem) {
-
-		int i = 0, count = 0;
-		int length = stem.length();
-
-		while (i < length) {
-			for (; i < length; i++) {
-				if (i > 0) {
-					if (vowel(stem.charAt(i), stem.charAt(i - 1)))
-						break;
-				} else {
-					if (vowel(stem.charAt(i), 'a'))
-						break;
-				}
-			}
-
-			for (i++; i < length; i++) {
-				if (i > 0) {
-					if (!vowel(stem.charAt(i), stem.charAt(i - 1)))
-						break;
-				} else {
-					if (!vowel(stem.charAt(i), '?'))
-						break;
-				}
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
 			}
-			if (i < length) {
-				count++;
-				i++;
+			if (Character.isLetterOrDigit(c)) {
+				buffer[length++] = c;
 			}
-		} //while
-
-		return (count);
-	}
-
-	boolean containsVowel(String word) {
+		}
 
-		for (int i = 0; i < word.length(); i++)
-			if (i > 0) {
-				if (vowel(word.charAt(i), word.charAt(i - 1)))
-					return true;
-			} else {
-				if (vowel(word.charAt(0), 'a'))
-					return true;
+		if (length > 2) {
+			stripPrefixes();
+			if (length > 0) {
+				stripSuffixes();
 			}
-
-		return false;
+		}
+		return new String(buffer, 0, length);
 	}
 
-	boolean cvc(String str) {
-		int length = str.length();
-
-		if (length < 3)
-			return false;
-
-		if ((!vowel(str.charAt(length - 1), str.charAt(length - 2)))
-				&& (str.charAt(length - 1) != 'w') && (str.charAt(length - 1) != 'x') && (str.charAt(length - 1) != 'y')
-				&& (vowel(str.charAt(length - 2), str.charAt(length - 3)))) {
-
-			if (length == 3) {
-				if (!vowel(str.charAt(0), '?'))
-					return true;
-				else
-					return false;
-			} else {
-				if (!vowel(str.charAt(length - 3), str.charAt(length - 4)))
-					return true;
-				else
-					return false;
+	/**
+	 * Strips the first matching prefix from the word.
+	 */
+	private void stripPrefixes() {
+		for (char[] prefix : PREFIXES) {
+			if (startsWith(prefix)) {
+				System.arraycopy(buffer, prefix.length, buffer, 0, length - prefix.length);
+				length -= prefix.length;
+				return;
 			}
 		}
-
-		return false;
 	}
 
-	String step1(String str) {
-
-		NewString stem = new NewString();
+	/**
+	 * Strips the suffixes from the word.
+	 */
+	private void stripSuffixes() {
+		step1();
+		if (length >= 1) step2();
+		if (length >= 1) step3();
+		if (length >= 1) step4();
+		if (length >= 1) step5();
+	}
 
-		if (str.charAt(str.length() - 1) == 's') {
-			if ((hasSuffix(str, "sses", stem)) || (hasSuffix(str, "ies", stem))) {
-				String tmp = "";
-				for (int i = 0; i < str.length() - 2; i++)
-					tmp += str.charAt(i);
-				str = tmp;
+	/**
+	 * Removes the plurals and the -ed and -ing suffixes.
+	 */
+	private void step1() {
+		if (buffer[length - 1] == 's') {
+			if (hasSuffix(SSES) || hasSuffix(IES)) {
+				length -= 2;
 			} else {
-				if ((str.length() == 1) && (str.charAt(str.length() - 1) == 's')) {
-					str = "";
-					return str;
+				if (length == 1) {
+					length = 0;
+					return;
 				}
-				if (str.charAt(str.length() - 2) != 's') {
-					String tmp = "";
-					for (int i = 0; i < str.length() - 1; i++)
-						tmp += str.charAt(i);
-					str = tmp;
+				if (buffer[length - 2] != 's') {
+					length--;
 				}
 			}
 		}
 
-		if (hasSuffix(str, "eed", stem)) {
-			if (measure(stem.str) > 0) {
-				String tmp = "";
-				for (int i = 0; i < str.length() - 1; i++)
-					tmp += str.charAt(i);
-				str = tmp;
+		if (hasSuffix(EED)) {
+			if (measure(length - EED.length) > 0) {
+				length--;
 			}
 		} else {
-			if ((hasSuffix(str, "ed", stem)) || (hasSuffix(str, "ing", stem))) {
-				if (containsVowel(stem.str)) {
-
-					String tmp = "";
-					for (int i = 0; i < stem.str.length(); i++)
-						tmp += str.charAt(i);
-					str = tmp;
-					if (str.length() == 1)
-						return str;
-
-					if ((hasSuffix(str, "at", stem)) || (hasSuffix(str, "bl", stem)) || (hasSuffix(str, "iz", stem))) {
-						str += "e";
-
-					} else {
-						int length = str.length();
-						if ((str.charAt(length - 1) == str.charAt(length - 2))
-								&& (str.charAt(length - 1) != 'l') && (str.charAt(length - 1) != 's') && (str.charAt(length - 1) != 'z')) {
-
-							tmp = "";
-							for (int i = 0; i < str.length() - 1; i++)
-								tmp += str.charAt(i);
-							str = tmp;
-						} else if (measure(str) == 1) {
-							if (cvc(str))
-								str += "e";
-						}
+			int stem = hasSuffix(ED) ? length - ED.length : hasSuffix(ING) ? length - ING.length : -1;
+			if (stem >= 0 && containsVowel(stem)) {
+				length = stem;
+				if (length == 1) return;
+
+				if (hasSuffix(AT) || hasSuffix(BL) || hasSuffix(IZ)) {
+					append('e');
+				} else {
+					char last = buffer[length - 1];
+					if (last == buffer[length - 2] && last != 'l' && last != 's' && last != 'z') {
+						length--;
+					} else if (measure(length) == 1) {
+						if (cvc(length)) append('e');
 					}
 				}
 			}
 		}
 
-		if (hasSuffix(str, "y", stem))
-			if (containsVowel(stem.str)) {
-				String tmp = "";
-				for (int i = 0; i < str.length() - 1; i++)
-					tmp += str.charAt(i);
-				str = tmp + "i";
-			}
-		return str;
-	}
-
-	String step2(String str) {
-
-		String[][] suffixes = {{"ational", "ate"},
-				{"tional", "tion"},
-				{"enci", "ence"},
-				{"anci", "ance"},
-				{"izer", "ize"},
-				{"iser", "ize"},
-				{"abli", "able"},
-				{"alli", "al"},
-				{"entli", "ent"},
-				{"eli", "e"},
-				{"ousli", "ous"},
-				{"ization", "ize"},
-				{"isation", "ize"},
-				{"ation", "ate"},
-				{"ator", "ate"},
-				{"alism", "al"},
-				{"iveness", "ive"},
-				{"fulness", "ful"},
-				{"ousness", "ous"},
-				{"aliti", "al"},
-				{"iviti", "ive"},
-				{"biliti", "ble"}};
-		NewString stem = new NewString();
-
-
-		for (int index = 0; index < suffixes.length; index++) {
-			if (hasSuffix(str, suffixes[index][0], stem)) {
-				if (measure(stem.str) > 0) {
-					str = stem.str + suffixes[index][1];
-					return str;
-				}
-			}
+		if (hasSuffix(Y) && containsVowel(length - 1)) {
+			buffer[length - 1] = 'i';
 		}
-
-		return str;
 	}
 
-	String step3(String str) {
-
-		String[][] suffixes = {{"icate", "ic"},
-				{"ative", ""},
-				{"alize", "al"},
-				{"alise", "al"},
-				{"iciti", "ic"},
-				{"ical", "ic"},
-				{"ful", ""},
-				{"ness", ""}};
-		NewString stem = new NewString();
-
-		for (int index = 0; index < suffixes.length; index++) {
-			if (hasSuffix(str, suffixes[index][0], stem))
-				if (measure(stem.str) > 0) {
-					str = stem.str + suffixes[index][1];
-					return str;
-				}
-		}
-		return str;
+	/**
+	 * Maps the double suffixes to single ones.
+	 */
+	private void step2() {
+		replaceSuffix(STEP2_SUFFIXES);
 	}
 
-	String step4(String str) {
-
-		String[] suffixes = {"al", "ance", "ence", "er", "ic", "able", "ible", "ant", "ement", "ment", "ent", "sion", "tion",
-				"ou", "ism", "ate", "iti", "ous", "ive", "ize", "ise"};
-
-		NewString stem = new NewString();
-
-		for (int index = 0; index < suffixes.length; index++) {
-			if (hasSuffix(str, suffixes[index], stem)) {
+	/**
+	 * Handles the -ic-, -full, -ness etc. suffixes.
+	 */
+	private void step3() {
+		replaceSuffix(STEP3_SUFFIXES);
+	}
 
-				if (measure(stem.str) > 1) {
-					str = stem.str;
-					return str;
-				}
+	/**
+	 * Removes the -ant, -ence etc. suffixes.
+	 */
+	private void step4() {
+		for (char[] suffix : STEP4_SUFFIXES) {
+			if (hasSuffix(suffix) && measure(length - suffix.length) > 1) {
+				length -= suffix.length;
+				return;
 			}
 		}
-		return str;
 	}
 
-	String step5(String str) {
-
-		if (str.charAt(str.length() - 1) == 'e') {
-			if (measure(str) > 1) {/* measure(str)==measure(stem) if ends in vowel */
-				String tmp = "";
-				for (int i = 0; i < str.length() - 1; i++)
-					tmp += str.charAt(i);
-				str = tmp;
-			} else if (measure(str) == 1) {
-				String stem = "";
-				for (int i = 0; i < str.length() - 1; i++)
-					stem += str.charAt(i);
-
-				if (!cvc(stem))
-					str = stem;
+	/**
+	 * Removes the final -e and changes -ll to -l.
+	 */
+	private void step5() {
+		if (buffer[length - 1] == 'e') {
+			int m = measure(length);
+			if (m > 1) {
+				length--;
+			} else if (m == 1 && !cvc(length - 1)) {
+				length--;
 			}
 		}
 
-		if (str.length() == 1)
-			return str;
-		if ((str.charAt(str.length() - 1) == 'l') && (str.charAt(str.length() - 2) == 'l') && (measure(str) > 1))
-			if (measure(str) > 1) {/* measure(str)==measure(stem) if ends in vowel */
-				String tmp = "";
-				for (int i = 0; i < str.length() - 1; i++)
-					tmp += str.charAt(i);
-				str = tmp;
-			}
-		return str;
+		if (length == 1) return;
+		if (buffer[length - 1] == 'l' && buffer[length - 2] == 'l' && measure(length) > 1) {
+			length--;
+		}
 	}
 
-	String stripPrefixes(String str) {
-
-		String[] prefixes = {"kilo", "micro", "milli", "intra", "ultra", "mega", "nano", "pico", "pseudo"};
-
-		int last = prefixes.length;
-		for (int i = 0; i < last; i++) {
-			if (str.startsWith(prefixes[i])) {
-				String temp = "";
-				for (int j = 0; j < str.length() - prefixes[i].length(); j++)
-					temp += str.charAt(j + prefixes[i].length());
-				return temp;
+	/**
+	 * Replaces the first suffix from the table which the word ends with and
+	 * whose stem has a positive measure.
+	 *
+	 * @param suffixes the pairs of suffixes and their replacements
+	 */
+	private void replaceSuffix(char[][][] suffixes) {
+		for (char[][] pair : suffixes) {
+			if (hasSuffix(pair[0]) && measure(length - pair[0].length) > 0) {
+				length -= pair[0].length;
+				for (char c : pair[1]) append(c);
+				return;
 			}
 		}
-
-		return str;
 	}
 
-
-	private String stripSuffixes(String str) {
-
-		str = step1(str);
-		if (str.length() >= 1)
-			str = step2(str);
-		if (str.length() >= 1)
-			str = step3(str);
-		if (str.length() >= 1)
-			str = step4(str);
-		if (str.length() >= 1)
-			str = step5(str);
-
-		return str;
+	/**
+	 * Checks whether the word is longer than the given suffix and ends with it.
+	 *
+	 * @param suffix the suffix
+	 * @return true iff the word has the given suffix
+	 */
+	private boolean hasSuffix(char[] suffix) {
+		if (length <= suffix.length) return false;
+		int offset = length - suffix.length;
+		for (int i = suffix.length - 1; i >= 0; i--) {
+			if (buffer[offset + i] != suffix[i]) return false;
+		}
+		return true;
 	}
 
+	/**
+	 * Checks whether the word starts with the given prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return true iff the word starts with the prefix
+	 */
+	private boolean startsWith(char[] prefix) {
+		if (length < prefix.length) return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer[i] != prefix[i]) return false;
+		}
+		return true;
+	}
 
-	public String stripAffixes(String str) {
-
-		str = str.toLowerCase();
-		str = Clean(str);
+	/**
+	 * Appends the given character to the word.
+	 *
+	 * @param c the character
+	 */
+	private void append(char c) {
+		if (length == buffer.length) {
+			char[] resized = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, resized, 0, length);
+			buffer = resized;
+		}
+		buffer[length++] = c;
+	}
 
-		if ((str != "") && (str.length() > 2)) {
-			str = stripPrefixes(str);
+	/**
+	 * Checks whether the character at the given position is a vowel. The
+	 * letter 'y' is a vowel unless it follows a vowel; at the start of the
+	 * word it is treated as a consonant.
+	 *
+	 * @param i the position of the character
+	 * @return true iff the character is a vowel
+	 */
+	private boolean vowel(int i) {
+		return vowel(buffer[i], i == 0 ? 'a' : buffer[i - 1]);
+	}
 
-			if (str != "")
-				str = stripSuffixes(str);
+	/**
+	 * Checks whether the given character is a vowel.
+	 *
+	 * @param ch   the character
+	 * @param prev the preceding character
+	 * @return true iff the character is a vowel
+	 */
+	private static boolean vowel(char ch, char prev) {
+		switch (ch) {
+			case 'a':
+			case 'e':
+			case 'i':
+			case 'o':
+			case 'u':
+				return true;
+			case 'y':
+				return !vowel(prev, 'a');
+			default:
+				return false;
+		}
+	}
 
+	/**
+	 * Calculates the measure of the given prefix of the word, i.e. the
+	 * number of vowel-consonant sequences in it.
+	 *
+	 * @param end the length of the prefix
+	 * @return the measure of the prefix
+	 */
+	private int measure(int end) {
+		int i = 0, count = 0;
+		while (i < end) {
+			while (i < end && !vowel(i)) i++;
+			for (i++; i < end; i++) {
+				if (!vowel(i)) break;
+			}
+			if (i < end) {
+				count++;
+				i++;
+			}
 		}
+		return count;
+	}
 
-		return str;
-	} //stripAffixes
+	/**
+	 * Checks whether the given prefix of the word contains a vowel.
+	 *
+	 * @param end the length of the prefix
+	 * @return true iff the prefix contains a vowel
+	 */
+	private boolean containsVowel(int end) {
+		for (int i = 0; i < end; i++) {
+			if (vowel(i)) return true;
+		}
+		return false;
+	}
 
-	public static void main(String[] args) {
-		Stemmer s2 = new Stemmer();
-		System.out.println();
+	/**
+	 * Checks whether the given prefix of the word ends with a consonant,
+	 * vowel and consonant sequence, where the last consonant is not 'w',
+	 * 'x' or 'y'.
+	 *
+	 * @param end the length of the prefix
+	 * @return true iff the prefix ends with a cvc sequence
+	 */
+	private boolean cvc(int end) {
+		if (end < 3) return false;
+
+		char last = buffer[end - 1];
+		if (vowel(end - 1) || last == 'w' || last == 'x' || last == 'y' || !vowel(end - 2)) return false;
+		// a leading 'y' counts as a vowel here
+		return end == 3 ? !vowel(buffer[0], '?') : !vowel(end - 3);
 	}
 
-	private class NewString {
-		public String str;
+	/**
+	 * Checks whether the given word consists of ASCII characters only.
+	 *
+	 * @param word the word
+	 * @return true iff the word is ASCII
+	 */
+	private static boolean isAscii(CharSequence word) {
+		for (int i = 0; i < word.length(); i++) {
+			if (word.charAt(i) >= 128) return false;
+		}
+		return true;
+	}
 
-		NewString() {
-			str = "";
+	/**
+	 * Converts the given strings to character arrays.
+	 *
+	 * @param strings the strings
+	 * @return the character arrays
+	 */
+	private static char[][] chars(String... strings) {
+		char[][] chars = new char[strings.length][];
+		for (int i = 0; i < strings.length; i++) {
+			chars[i] = strings[i].toCharArray();
 		}
+		return chars;
 	}
 
-} //class
\ No newline at end of file
+	/**
+	 * Converts the given alternating suffixes and replacements to pairs of
+	 * character arrays.
+	 *
+	 * @param strings the suffixes, each followed by its replacement
+	 * @return the pairs of suffixes and replacements
+	 */
+	private static char[][][] pairs(String... strings) {
+		char[][][] pairs = new char[strings.length / 2][][];
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = chars(strings[2 * i], strings[2 * i + 1]);
+		}
+		return pairs;
+	}
+}
@@ -0,0 +1,494 @@
+package hr.fer.zemris.zavrsni.input;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A persistent cache of the texts extracted from the documents. The text of
+ * a document is stored in its own file, named after the hash of the document
+ * contents, so a document whose contents have not changed never has to be
+ * parsed again, even when the index is rebuilt from scratch.
+ * <p>
+ * The total size of the cached files is bounded; when it is exceeded, the
+ * least recently used texts are evicted. The order of use survives restarts,
+ * since it is kept in the modification times of the files.
+ * <p>
+ * The cache can be used by multiple threads at once.
+ *
+ * @author Luka Cupic
+ */
+public class TextCache {
+
+	/**
+	 * The default maximum size of the cache (1 GB).
+	 */
+	public static final long DEFAULT_MAX_SIZE = 1L << 30;
+
+	/**
+	 * The suffix of the plain text files.
+	 */
+	private static final String SUFFIX = ".txt";
+
+	/**
+	 * The suffix of the compressed text files.
+	 */
+	private static final String COMPRESSED_SUFFIX = ".txt.gz";
+
+	/**
+	 * The suffix of the files which are still being written.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The size of the buffer used for copying the cached texts.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The directory holding the cached texts.
+	 */
+	private final Path dir;
+
+	/**
+	 * The maximum total size of the cached files, in bytes.
+	 */
+	private final long maxSize;
+
+	/**
+	 * Whether the new texts are compressed.
+	 */
+	private final boolean compress;
+
+	/**
+	 * The cached files, by the hashes of the documents, from the least
+	 * to the most recently used.
+	 */
+	private final Map<String, Path> files = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The total size of the cached files, in bytes.
+	 */
+	private long size;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param dir      the directory holding the cached texts
+	 * @param maxSize  the maximum total size of the cached files, in bytes
+	 * @param compress whether the new texts are compressed
+	 */
+	private TextCache(Path dir, long maxSize, boolean compress) {
+		this.dir = dir;
+		this.maxSize = maxSize;
+		this.compress = compress;
+	}
+
+	/**
+	 * Opens the cache in the given directory, creating the directory if
+	 * it does not exist.
+	 *
+	 * @param dir      the directory holding the cached texts
+	 * @param maxSize  the maximum total size of the cached files, in bytes
+	 * @param compress whether the new texts are compressed
+	 * @return the cache
+	 * @throws IOException if the directory cannot be read
+	 */
+	public static TextCache open(Path dir, long maxSize, boolean compress) throws IOException {
+		Files.createDirectories(dir);
+		TextCache cache = new TextCache(dir, maxSize, compress);
+
+		List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path path : stream) {
+				if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+					// left behind by an interrupted run
+					Files.deleteIfExists(path);
+				} else if (hashOf(path) != null) {
+					paths.add(path);
+				}
+			}
+		}
+
+		paths.sort((p1, p2) -> lastModified(p1).compareTo(lastModified(p2)));
+		synchronized (cache) {
+			for (Path path : paths) {
+				cache.files.put(hashOf(path), path);
+				cache.size += sizeOf(path);
+			}
+			cache.evict();
+		}
+		return cache;
+	}
+
+	/**
+	 * Wraps the given reader, so the text of the document is read from the
+	 * cache if it is present, and stored into the cache otherwise.
+	 *
+	 * @param reader the reader of the document
+	 * @param hash   the hash of the document contents
+	 * @return the caching reader
+	 */
+	public DocumentReader wrap(DocumentReader reader, String hash) {
+		return new DocumentReader() {
+
+			@Override
+			public CharSequence readText() throws IOException {
+				StringWriter out = new StringWriter();
+				writeText(out);
+				return out.toString();
+			}
+
+			@Override
+			public void writeText(Writer out) throws IOException {
+				if (!read(hash, out)) {
+					write(reader, hash, out);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Gets the number of cached texts.
+	 *
+	 * @return the number of cached texts
+	 */
+	public synchronized int getNumberOfTexts() {
+		return files.size();
+	}
+
+	/**
+	 * Gets the total size of the cached files.
+	 *
+	 * @return the size of the cache, in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Copies the cached text of the document with the given hash to the
+	 * given writer. A compressed text is decompressed only once, but it is
+	 * held back until the end of the file, where the trailer verifies the
+	 * checksum and the length of the text, so that no text of a truncated
+	 * or corrupt file reaches the writer; such a file is removed from the
+	 * cache, and the text is treated as not cached.
+	 *
+	 * @param hash the hash of the document contents
+	 * @param out  the writer to copy the text to
+	 * @return true if the text was cached, false otherwise
+	 * @throws IOException if an error occurs while copying the text
+	 */
+	private boolean read(String hash, Writer out) throws IOException {
+		Path path;
+		synchronized (this) {
+			path = files.get(hash);
+		}
+		if (path == null) return false;
+
+		boolean compressed = path.getFileName().toString().endsWith(COMPRESSED_SUFFIX);
+		CharArrayWriter text = compressed ? new CharArrayWriter() : null;
+		try {
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+			try (Reader in = newReader(path)) {
+				copy(in, compressed ? text : out);
+			}
+		} catch (NoSuchFileException e) {
+			// evicted in the meantime
+			return false;
+		} catch (IOException e) {
+			if (!compressed) throw e;
+			// covers the ZipException of a corrupt file and the EOFException of a truncated one
+			remove(hash, path);
+			return false;
+		}
+
+		if (compressed) {
+			text.writeTo(out);
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the text read by the given reader to the given writer.
+	 *
+	 * @param in  the reader
+	 * @param out the writer
+	 * @throws IOException if an error occurs while copying the text
+	 */
+	private static void copy(Reader in, Writer out) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		for (int n; (n = in.read(buffer)) != -1; ) {
+			out.write(buffer, 0, n);
+		}
+	}
+
+	/**
+	 * Removes the given file from the cache, unless the text of the document
+	 * has been replaced by another file in the meantime.
+	 *
+	 * @param hash the hash of the document contents
+	 * @param path the path to the file
+	 */
+	private synchronized void remove(String hash, Path path) {
+		if (!path.equals(files.get(hash))) return;
+
+		files.remove(hash);
+		size -= sizeOf(path);
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			// the file is no longer a part of the cache anyway
+		}
+	}
+
+	/**
+	 * Reads the text of the document through the given reader, writing it
+	 * both to the given writer and to the cache. A failure to write the
+	 * cache does not affect the reading.
+	 *
+	 * @param reader the reader of the document
+	 * @param hash   the hash of the document contents
+	 * @param out    the writer to write the text to
+	 * @throws IOException if an error occurs while reading the document
+	 */
+	private void write(DocumentReader reader, String hash, Writer out) throws IOException {
+		Path temp = Files.createTempFile(dir, hash, TEMP_SUFFIX);
+		TeeWriter tee = new TeeWriter(out, newWriter(temp));
+		try {
+			reader.writeText(tee);
+		} catch (IOException | RuntimeException e) {
+			tee.closeCopy();
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		if (tee.closeCopy()) {
+			store(hash, temp);
+		} else {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Moves the given file into the cache as the text of the document with
+	 * the given hash, and evicts the least recently used texts if the cache
+	 * has grown too large.
+	 *
+	 * @param hash the hash of the document contents
+	 * @param temp the file holding the text
+	 * @throws IOException if the file cannot be moved
+	 */
+	private synchronized void store(String hash, Path temp) throws IOException {
+		Path path = dir.resolve(hash + (compress ? COMPRESSED_SUFFIX : SUFFIX));
+		Path old = files.remove(hash);
+		if (old != null) {
+			size -= sizeOf(old);
+		}
+
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (old != null && !old.equals(path)) {
+			Files.deleteIfExists(old);
+		}
+
+		files.put(hash, path);
+		size += sizeOf(path);
+		evict();
+	}
+
+	/**
+	 * Evicts the least recently used texts until the cache fits into its
+	 * maximum size.
+	 */
+	private void evict() {
+		Iterator<Path> it = files.values().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Path path = it.next();
+			size -= sizeOf(path);
+			it.remove();
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				// the file is no longer a part of the cache anyway
+			}
+		}
+	}
+
+	/**
+	 * Opens a reader of the cached file at the given path.
+	 *
+	 * @param path the path to the file
+	 * @return the reader of the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	private static Reader newReader(Path path) throws IOException {
+		InputStream in = Files.newInputStream(path);
+		if (path.getFileName().toString().endsWith(COMPRESSED_SUFFIX)) {
+			in = new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	/**
+	 * Opens a writer of the file at the given path.
+	 *
+	 * @param path the path to the file
+	 * @return the writer of the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	private Writer newWriter(Path path) throws IOException {
+		OutputStream out = Files.newOutputStream(path);
+		if (compress) {
+			out = new GZIPOutputStream(out, BUFFER_SIZE);
+		}
+		return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	/**
+	 * Extracts the hash of the document from the name of the cached file.
+	 *
+	 * @param path the path to the cached file
+	 * @return the hash, or null if the file is not a cached text
+	 */
+	private static String hashOf(Path path) {
+		String name = path.getFileName().toString();
+		if (name.endsWith(COMPRESSED_SUFFIX)) {
+			return name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+		} else if (name.endsWith(SUFFIX)) {
+			return name.substring(0, name.length() - SUFFIX.length());
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the size of the file at the given path.
+	 *
+	 * @param path the path to the file
+	 * @return the size of the file, or 0 if it cannot be read
+	 */
+	private static long sizeOf(Path path) {
+		try {
+			return Files.size(path);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Gets the modification time of the file at the given path.
+	 *
+	 * @param path the path to the file
+	 * @return the modification time, or the epoch if it cannot be read
+	 */
+	private static FileTime lastModified(Path path) {
+		try {
+			return Files.getLastModifiedTime(path);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	/**
+	 * A writer which writes the text to a target writer and a copy of it
+	 * to a cache file. Once writing the copy fails, the copy is abandoned,
+	 * while the target keeps receiving the text.
+	 */
+	private static class TeeWriter extends Writer {
+
+		/**
+		 * The target writer.
+		 */
+		private final Writer target;
+
+		/**
+		 * The writer of the copy.
+		 */
+		private final Writer copy;
+
+		/**
+		 * Whether writing the copy has failed.
+		 */
+		private boolean failed;
+
+		/**
+		 * Creates a new writer.
+		 *
+		 * @param target the target writer
+		 * @param copy   the writer of the copy
+		 */
+		TeeWriter(Writer target, Writer copy) {
+			this.target = target;
+			this.copy = copy;
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) throws IOException {
+			target.write(chars, offset, length);
+			if (failed) return;
+			try {
+				copy.write(chars, offset, length);
+			} catch (IOException e) {
+				failed = true;
+			}
+		}
+
+		@Override
+		public void write(String text, int offset, int length) throws IOException {
+			target.write(text, offset, length);
+			if (failed) return;
+			try {
+				copy.write(text, offset, length);
+			} catch (IOException e) {
+				failed = true;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target.flush();
+		}
+
+		/**
+		 * Leaves the target open, since it belongs to the caller.
+		 */
+		@Override
+		public void close() {
+		}
+
+		/**
+		 * Closes the writer of the copy.
+		 *
+		 * @return true if the whole copy has been written
+		 */
+		boolean closeCopy() {
+			try {
+				copy.close();
+			} catch (IOException e) {
+				failed = true;
+			}
+			return !failed;
+		}
+	}
+}
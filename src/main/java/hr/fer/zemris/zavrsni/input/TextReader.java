@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
 
 public class TextReader extends FileReader {
 
@@ -24,12 +23,19 @@ public class TextReader extends FileReader {
 		super(path);
 	}
 
+	/**
+	 * Creates a new {@link TextReader} object which reads the already
+	 * loaded contents of the file at the given path.
+	 */
+	public TextReader(Path path, byte[] content) {
+		super(path, content);
+	}
+
 	@Override
-	public List<String> readDocument() throws IOException {
+	public CharSequence readText() throws IOException {
 		if (!TextUtils.getFileExtension(path).equals("txt")) {
 			throw new IOException("Unreadable extension!");
 		}
-		String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-		return TextUtils.getWordsFromText(text);
+		return new String(content != null ? content : Files.readAllBytes(path), StandardCharsets.UTF_8);
 	}
 }
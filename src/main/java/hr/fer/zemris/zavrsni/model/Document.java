@@ -1,7 +1,5 @@
 package hr.fer.zemris.zavrsni.model;
 
-import hr.fer.zemris.zavrsni.ranking.RankingFunction;
-
 import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -19,6 +17,12 @@ public class Document implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The dense ID of the document in the dataset, or -1 if the document
+	 * is not a part of the dataset.
+	 */
+	private int id = -1;
+
 	/**
 	 * Represents the file system path to the document.
 	 */
@@ -27,20 +31,31 @@ public class Document implements Serializable {
 	/**
 	 * Represents the TF-IDF vector for the document.
 	 */
-	private Vector vector;
+	private SparseVector vector;
 
 	/**
 	 * Represents the TF vector component for the document. This
 	 * vector is used as a helper-vector while creating the full
 	 * {@link #vector} object.
 	 */
-	private Vector tfVector;
+	private SparseVector tfVector;
 
 	/**
 	 * The length of the document (in words).
 	 */
 	private long length;
 
+	/**
+	 * The MinHash signature of the document.
+	 */
+	private int[] signature;
+
+	/**
+	 * The positions of the words of the document, grouped by the words in
+	 * the order of the TF vector.
+	 */
+	private int[] positions;
+
 	private boolean isCustom;
 
 	public boolean isCustom() {
@@ -54,31 +69,35 @@ public class Document implements Serializable {
 	/**
 	 * Creates a new document object.
 	 *
-	 * @param path   the path to the represented document
+	 * @param path   the path to the represented document, which is stored
+	 *               as an absolute, normalized path
 	 * @param tf     the TF vector component
 	 * @param tfidf  the full TF-IDF vector representing the document
 	 * @param length the length of the document (in words)
 	 */
-	public Document(Path path, Vector tf, Vector tfidf, long length) {
-		this.path = path != null ? path.toAbsolutePath().toString() : null;
+	public Document(Path path, SparseVector tf, SparseVector tfidf, long length) {
+		this.path = path != null ? path.toAbsolutePath().normalize().toString() : null;
 		this.tfVector = tf;
 		this.vector = tfidf;
 		this.length = length;
 	}
 
 	/**
-	 * Returns the similarity coefficient between this and the specified
-	 * document. In reality, the similarity coefficient is nothing other
-	 * than the scalar product of this and the specified vector. The
-	 * coefficient is a value on the interval [0, 1] where 0 means that
-	 * the documents share no similarity whereas 1 means that the documents
-	 * are identical.
+	 * Gets the ID of this document.
 	 *
-	 * @param other the document to compare to
-	 * @return the similarity between this and the provided document
+	 * @return the ID of the document
 	 */
-	public double sim(Document other) {
-		return RankingFunction.getCurrent().sim(this, other);
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the ID of this document.
+	 *
+	 * @param id the ID of the document
+	 */
+	public void setId(int id) {
+		this.id = id;
 	}
 
 	/**
@@ -95,7 +114,7 @@ public class Document implements Serializable {
 	 *
 	 * @return the TF-IDF vector
 	 */
-	public Vector getVector() {
+	public SparseVector getVector() {
 		return vector;
 	}
 
@@ -104,7 +123,7 @@ public class Document implements Serializable {
 	 *
 	 * @param vector the TF-IDF vector
 	 */
-	public void setVector(Vector vector) {
+	public void setVector(SparseVector vector) {
 		this.vector = vector;
 	}
 
@@ -113,10 +132,49 @@ public class Document implements Serializable {
 	 *
 	 * @return the TF vector component
 	 */
-	public Vector getTFVector() {
+	public SparseVector getTFVector() {
 		return tfVector;
 	}
 
+	/**
+	 * Gets the MinHash signature of this document.
+	 *
+	 * @return the signature, or null if it was not calculated
+	 */
+	public int[] getSignature() {
+		return signature;
+	}
+
+	/**
+	 * Sets the MinHash signature of this document.
+	 *
+	 * @param signature the signature
+	 */
+	public void setSignature(int[] signature) {
+		this.signature = signature;
+	}
+
+	/**
+	 * Gets the positions of the words of this document: the positions of
+	 * each word of the TF vector, in the order of the vector, each word's
+	 * positions in increasing order.
+	 *
+	 * @return the positions, or null if they were not recorded
+	 */
+	public int[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * Sets the positions of the words of this document.
+	 *
+	 * @param positions the positions
+	 * @see #getPositions()
+	 */
+	public void setPositions(int[] positions) {
+		this.positions = positions;
+	}
+
 	/**
 	 * Gets the length (in words) of this document.
 	 *
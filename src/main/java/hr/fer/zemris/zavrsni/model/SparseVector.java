@@ -0,0 +1,274 @@
+package hr.fer.zemris.zavrsni.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class represents an immutable sparse vector. Only the non-zero
+ * elements are stored, as pairs of a (strictly increasing) index and
+ * the value at that index. All the operations are performed by merging
+ * the index arrays, so their complexity depends only on the number of
+ * non-zero elements and not on the dimension of the vector.
+ *
+ * @author Luka Cupic
+ */
+public class SparseVector implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The indices of the non-zero elements, sorted in increasing order.
+	 */
+	private int[] indices;
+
+	/**
+	 * The values of the non-zero elements; {@code values[i]} is the
+	 * value at the index {@code indices[i]}.
+	 */
+	private float[] values;
+
+	/**
+	 * The cached norm of the vector, or NaN if not yet calculated.
+	 */
+	private double norm = Double.NaN;
+
+	/**
+	 * Creates a new sparse vector from the given indices and values.
+	 * The indices must be sorted in strictly increasing order.
+	 *
+	 * @param indices the indices of the non-zero elements
+	 * @param values  the values of the non-zero elements
+	 */
+	public SparseVector(int[] indices, float[] values) {
+		if (indices.length != values.length) {
+			throw new IllegalArgumentException("Indices and values must be of the same length!");
+		}
+		this.indices = indices;
+		this.values = values;
+	}
+
+	/**
+	 * Creates a new sparse vector which counts the occurrences of each
+	 * of the given indices. For example, for the indices {@code [4, 1, 4]}
+	 * the vector {@code {1: 1, 4: 2}} is created.
+	 *
+	 * @param indices the indices to count; the array is sorted in place
+	 * @param length  the number of indices from the array to use
+	 * @return a new sparse vector holding the counts of the indices
+	 */
+	public static SparseVector fromOccurrences(int[] indices, int length) {
+		Arrays.sort(indices, 0, length);
+
+		int[] newIndices = new int[length];
+		float[] newValues = new float[length];
+		int size = 0;
+		for (int i = 0; i < length; i++) {
+			if (size > 0 && newIndices[size - 1] == indices[i]) {
+				newValues[size - 1]++;
+			} else {
+				newIndices[size] = indices[i];
+				newValues[size] = 1;
+				size++;
+			}
+		}
+		return new SparseVector(Arrays.copyOf(newIndices, size), Arrays.copyOf(newValues, size));
+	}
+
+	/**
+	 * Creates a new sparse vector with the same values as this vector, but
+	 * at different indices: the value at the index {@code i} is moved to the
+	 * index {@code newIndices[i]}. The new indices of the non-zero elements
+	 * must be distinct.
+	 *
+	 * @param newIndices the new index of each index of this vector
+	 * @return a new sparse vector with the moved values
+	 */
+	public SparseVector remap(int[] newIndices) {
+		return remap(i -> newIndices[i]);
+	}
+
+	/**
+	 * Creates a new sparse vector with the same values as this vector, but
+	 * at different indices: the value at the index {@code i} is moved to the
+	 * index {@code newIndices.applyAsInt(i)}. The new indices of the non-zero
+	 * elements must be distinct.
+	 *
+	 * @param newIndices gives the new index of each index of this vector
+	 * @return a new sparse vector with the moved values
+	 */
+	public SparseVector remap(IntUnaryOperator newIndices) {
+		// sort the new indices together with the positions of their values
+		long[] entries = new long[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			entries[i] = ((long) newIndices.applyAsInt(indices[i]) << 32) | i;
+		}
+		Arrays.sort(entries);
+
+		int[] remapped = new int[entries.length];
+		float[] newValues = new float[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			remapped[i] = (int) (entries[i] >>> 32);
+			newValues[i] = values[(int) entries[i]];
+		}
+		return new SparseVector(remapped, newValues);
+	}
+
+	/**
+	 * Gets the norm of the vector. The norm is calculated only once and
+	 * cached for later calls.
+	 *
+	 * @return the norm of the vector
+	 */
+	public double norm() {
+		if (Double.isNaN(norm)) {
+			double sum = 0;
+			for (float value : values) {
+				sum += value * value;
+			}
+			norm = Math.sqrt(sum);
+		}
+		return norm;
+	}
+
+	/**
+	 * Returns the dot product of this vector and the specified vector.
+	 *
+	 * @param other the other vector
+	 * @return the value of the dot product
+	 */
+	public double dot(SparseVector other) {
+		double sum = 0;
+		int i = 0, j = 0;
+		while (i < indices.length && j < other.indices.length) {
+			if (indices[i] < other.indices[j]) {
+				i++;
+			} else if (indices[i] > other.indices[j]) {
+				j++;
+			} else {
+				sum += values[i++] * (double) other.values[j++];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the cosine of the angle between this vector and
+	 * the specified vector.
+	 *
+	 * @param other the vector
+	 */
+	public double cos(SparseVector other) {
+		return this.dot(other) / (this.norm() * other.norm());
+	}
+
+	/**
+	 * Performs the element-wise multiplication of the given sparse vectors.
+	 * Only the indices present in both vectors can produce a non-zero
+	 * element, so the resulting vector is at most as large as the smaller
+	 * of the two.
+	 *
+	 * @param v1 the first vector
+	 * @param v2 the second vector
+	 * @return a new vector, where each element represents the product
+	 * of the corresponding elements from the given vectors
+	 */
+	public static SparseVector multiply(SparseVector v1, SparseVector v2) {
+		int capacity = Math.min(v1.indices.length, v2.indices.length);
+		int[] indices = new int[capacity];
+		float[] values = new float[capacity];
+
+		int size = 0;
+		int i = 0, j = 0;
+		while (i < v1.indices.length && j < v2.indices.length) {
+			if (v1.indices[i] < v2.indices[j]) {
+				i++;
+			} else if (v1.indices[i] > v2.indices[j]) {
+				j++;
+			} else {
+				float value = v1.values[i] * v2.values[j];
+				if (value != 0) {
+					indices[size] = v1.indices[i];
+					values[size++] = value;
+				}
+				i++;
+				j++;
+			}
+		}
+		return new SparseVector(Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+	}
+
+	/**
+	 * Performs the element-wise multiplication of the given sparse vector
+	 * and the given dense vector. Only the non-zero elements of the sparse
+	 * vector are visited.
+	 *
+	 * @param v1 the sparse vector
+	 * @param v2 the dense vector
+	 * @return a new sparse vector, where each element represents the product
+	 * of the corresponding elements from the given vectors
+	 */
+	public static SparseVector multiply(SparseVector v1, Vector v2) {
+		int[] indices = new int[v1.indices.length];
+		float[] values = new float[v1.indices.length];
+
+		int size = 0;
+		for (int i = 0; i < v1.indices.length; i++) {
+			float value = (float) (v1.values[i] * v2.get(v1.indices[i]));
+			if (value == 0) continue;
+			indices[size] = v1.indices[i];
+			values[size++] = value;
+		}
+		return new SparseVector(Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+	}
+
+	/**
+	 * Gets the value at the given index. The lookup is performed by
+	 * binary search over the non-zero elements.
+	 *
+	 * @param index the index
+	 * @return the value at the given index
+	 */
+	public double get(int index) {
+		int i = Arrays.binarySearch(indices, index);
+		return i < 0 ? 0 : values[i];
+	}
+
+	/**
+	 * Gets the number of non-zero elements of this vector.
+	 *
+	 * @return the number of non-zero elements
+	 */
+	public int size() {
+		return indices.length;
+	}
+
+	/**
+	 * Gets the index of the i-th non-zero element.
+	 *
+	 * @param i the position of the element
+	 * @return the index of the element
+	 */
+	public int getIndex(int i) {
+		return indices[i];
+	}
+
+	/**
+	 * Gets the value of the i-th non-zero element.
+	 *
+	 * @param i the position of the element
+	 * @return the value of the element
+	 */
+	public float getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * Gets the indices of the non-zero elements of this vector.
+	 *
+	 * @return the indices of the non-zero elements
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+}
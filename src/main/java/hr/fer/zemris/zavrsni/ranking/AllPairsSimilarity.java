@@ -0,0 +1,161 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calculates the similarities between all the pairs of indexed documents.
+ * Instead of comparing every document to every other one, the similarities
+ * of a document are accumulated by walking the postings of its words (see
+ * {@link RankingFunction#accumulateSimilarities(MappedIndex, int, int, SimilarityAccumulator)}),
+ * so only the documents sharing a word with it are ever visited. Only the
+ * pairs whose similarity exceeds the threshold are kept. The pairs of the
+ * documents before a given one can be left out, in which case those
+ * documents are compared only to the documents from the given one onward.
+ * <p>
+ * The documents are split into blocks which are processed in parallel by
+ * one worker task per thread of the fork/join pool. Each worker takes the
+ * next unprocessed block until none are left, so the workers stay busy
+ * even when the blocks take different times, and reuses a single
+ * accumulator for all its blocks. The pairs of each block are ordered by
+ * the document IDs, and the blocks are joined in order.
+ *
+ * @author Luka Cupic
+ */
+class AllPairsSimilarity extends RecursiveTask<SimilarityList> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of documents in a block.
+	 */
+	private static final int BLOCK_SIZE = 64;
+
+	/**
+	 * The ranking function defining the similarity.
+	 */
+	private final RankingFunction function;
+
+	/**
+	 * The index holding the documents.
+	 */
+	private final MappedIndex index;
+
+	/**
+	 * The similarity a pair has to exceed in order to be kept.
+	 */
+	private final double threshold;
+
+	/**
+	 * The first document whose similarities to all the other documents are
+	 * calculated; the documents before it are not compared to each other.
+	 */
+	private final int added;
+
+	/**
+	 * The next block to be taken by a worker.
+	 */
+	private final AtomicInteger nextBlock = new AtomicInteger();
+
+	/**
+	 * The pairs of each block, filled in by the workers.
+	 */
+	private SimilarityList[] blocks;
+
+	/**
+	 * Creates a new task.
+	 *
+	 * @param function  the ranking function defining the similarity
+	 * @param index     the index holding the documents
+	 * @param threshold the similarity a pair has to exceed in order to be kept
+	 * @param added     the first document whose similarities to all the
+	 *                  other documents are calculated
+	 */
+	AllPairsSimilarity(RankingFunction function, MappedIndex index, double threshold, int added) {
+		this.function = function;
+		this.index = index;
+		this.threshold = threshold;
+		this.added = added;
+	}
+
+	@Override
+	protected SimilarityList compute() {
+		int numDocs = index.getNumberOfDocuments();
+		blocks = new SimilarityList[(numDocs + BLOCK_SIZE - 1) / BLOCK_SIZE];
+
+		// the pool may run the task in the thread invoking it, and its workers are then forked to the common pool
+		ForkJoinPool pool = getPool() != null ? getPool() : ForkJoinPool.commonPool();
+		int numWorkers = Math.min(pool.getParallelism(), blocks.length);
+		List<Worker> workers = new ArrayList<>(numWorkers);
+		for (int i = 0; i < numWorkers; i++) {
+			workers.add(new Worker());
+		}
+		invokeAll(workers);
+
+		SimilarityList pairs = new SimilarityList();
+		for (SimilarityList block : blocks) {
+			pairs.addAll(block);
+		}
+		return pairs;
+	}
+
+	/**
+	 * Calculates the similarities of the documents from the given block to
+	 * all the documents with larger IDs, or only to the {@link #added} ones
+	 * for the documents before them. Each similarity is normalized by the
+	 * similarity of the first document to itself.
+	 *
+	 * @param from        the first document of the block (inclusive)
+	 * @param to          the last document of the block (exclusive)
+	 * @param accumulator the accumulator of the similarities of a document
+	 * @return the similarities exceeding the threshold
+	 */
+	private SimilarityList computeBlock(int from, int to, SimilarityAccumulator accumulator) {
+		SimilarityList pairs = new SimilarityList();
+
+		for (int docId = from; docId < to; docId++) {
+			accumulator.reset();
+			function.accumulateSimilarities(index, docId, added, accumulator);
+
+			double self = accumulator.get(docId);
+			if (self == 0 || Double.isNaN(self)) continue;
+
+			accumulator.sort();
+			for (int i = 0; i < accumulator.size(); i++) {
+				int other = accumulator.getDocId(i);
+				if (other <= docId) continue;
+
+				double sim = accumulator.get(other) / self;
+				if (sim > threshold) {
+					pairs.add(docId, other, sim);
+				}
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * Processes the blocks until none are left.
+	 */
+	private class Worker extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute() {
+			int numDocs = index.getNumberOfDocuments();
+			SimilarityAccumulator accumulator = new SimilarityAccumulator(numDocs);
+			for (int block; (block = nextBlock.getAndIncrement()) < blocks.length; ) {
+				int from = block * BLOCK_SIZE;
+				blocks[block] = computeBlock(from, Math.min(from + BLOCK_SIZE, numDocs), accumulator);
+			}
+		}
+	}
+}
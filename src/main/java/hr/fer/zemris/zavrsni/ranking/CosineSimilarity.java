@@ -1,17 +1,18 @@
 package hr.fer.zemris.zavrsni.ranking;
 
+import hr.fer.zemris.zavrsni.index.BlockPostings;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.Postings;
 import hr.fer.zemris.zavrsni.model.Document;
-import hr.fer.zemris.zavrsni.model.Result;
+import hr.fer.zemris.zavrsni.model.SparseVector;
 import hr.fer.zemris.zavrsni.model.Vector;
 
 import java.io.IOException;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 /**
- * The implementation of the Okapi BM25 ranking function.
+ * The implementation of the cosine similarity ranking function, which
+ * compares the TF-IDF vectors of the documents.
  *
  * @author Luka Cupic
  * @see <a href="https://en.wikipedia.org/wiki/Cosine_similarity">
@@ -19,6 +20,12 @@ import java.util.List;
  */
 public class CosineSimilarity extends RankingFunction {
 
+	/**
+	 * The accumulators of the query scores, one for each searching thread,
+	 * so that the scores are not allocated anew for every query.
+	 */
+	private static final ThreadLocal<SimilarityAccumulator> ACCUMULATORS = new ThreadLocal<>();
+
 	/**
 	 * The default constructor. Used when constructing the object
 	 * through deserialization.
@@ -27,37 +34,110 @@ public class CosineSimilarity extends RankingFunction {
 		super();
 	}
 
+	@Override
+	public Document createDocument(MappedIndex index, List<String> words) {
+		SparseVector tf = createTFVector(index, words);
+		return new Document(null, null, SparseVector.multiply(tf, index.getIDFVector()), words.size());
+	}
+
+	@Override
+	protected void collect(MappedIndex index, List<String> words, TopKCollector collector) {
+		SparseVector query = createDocument(index, words).getVector();
+		collect(index, query, query.norm(), collector);
+	}
+
+	@Override
+	protected void collectMoreLikeThis(MappedIndex index, int docId, TopKCollector collector) {
+		SparseVector query = SparseVector.multiply(index.getTFVector(docId), index.getIDFVector());
+		collect(index, query, index.getDocumentNorm(docId), collector);
+	}
+
 	/**
-	 * Creates a new {@link CosineSimilarity} function.
+	 * Scores the documents by the cosine similarity of their TF-IDF vectors
+	 * to the given vector and offers them to the given collector. Only the
+	 * documents in the postings of the query words are touched, so the cost
+	 * of a query does not depend on the size of the index.
 	 *
-	 * @param dataset the path to the dataset
-	 * @throws IOException if an I/O error occurs
+	 * @param index     the index to search
+	 * @param query     the TF-IDF vector of the query
+	 * @param queryNorm the norm of the vector
+	 * @param collector the collector of the best scoring documents
 	 */
-	public CosineSimilarity(Path dataset) throws IOException {
-		super(dataset);
+	private static void collect(MappedIndex index, SparseVector query, double queryNorm, TopKCollector collector) {
+		SimilarityAccumulator accumulator = getAccumulator(index.getNumberOfDocuments());
+
+		// accumulate the dot products term-at-a-time
+		for (int t = 0; t < query.size(); t++) {
+			int termId = query.getIndex(t);
+			double weight = query.getValue(t) * index.getIDFVector().get(termId);
+
+			Postings postings = index.getPostings(termId);
+			for (int i = 0; i < postings.size(); i++) {
+				accumulator.add(postings.getDocId(i), weight * postings.getFreq(i));
+			}
+		}
+
+		// collect the best results, in the order of the IDs expected by the phrase filters
+		accumulator.sort();
+		for (int i = 0; i < accumulator.size(); i++) {
+			int id = accumulator.getDocId(i);
+			double score = accumulator.get(id);
+			if (score == 0) continue;
+			collector.collect(id, score / (queryNorm * index.getDocumentNorm(id)));
+		}
 	}
 
-	@Override
-	public Document createDocument(List<String> words) {
-		Vector tf = createTFVector(words);
-		return new Document(null, null, Vector.multiply(tf, datasetInfo.idf), words.size());
+	/**
+	 * Gets the accumulator of the current thread, emptied and large enough
+	 * for the given number of documents.
+	 *
+	 * @param numDocs the number of documents in the index
+	 * @return the accumulator
+	 */
+	private static SimilarityAccumulator getAccumulator(int numDocs) {
+		SimilarityAccumulator accumulator = ACCUMULATORS.get();
+		if (accumulator == null || accumulator.capacity() < numDocs) {
+			accumulator = new SimilarityAccumulator(numDocs);
+			ACCUMULATORS.set(accumulator);
+		} else {
+			accumulator.reset();
+		}
+		return accumulator;
 	}
 
 	@Override
-	public List<Result> process(List<String> words) {
-		Document inputDoc = createDocument(words);
+	protected void accumulateSimilarities(MappedIndex index, int docId, int from, SimilarityAccumulator accumulator) {
+		Vector idf = index.getIDFVector();
+		SparseVector vector = SparseVector.multiply(index.getTFVector(docId), idf);
+
+		// accumulate the dot products
+		for (int t = 0; t < vector.size(); t++) {
+			int termId = vector.getIndex(t);
+			float value = vector.getValue(t);
+
+			BlockPostings postings = index.getPostings(termId);
+			for (int i = postings.advance(0, docId); i < postings.size(); i++) {
+				int otherId = postings.getDocId(i);
+				if (otherId > docId && otherId < from) {
+					i = postings.advance(i, from) - 1;
+					continue;
+				}
+				float other = (float) (postings.getFreq(i) * idf.get(termId));
+				accumulator.add(otherId, value * (double) other);
+			}
+		}
 
-		// get the results
-		List<Result> results = new ArrayList<>();
-		for (Document d : datasetInfo.documents.values()) {
-			results.add(new Result(inputDoc.sim(d) / d.sim(d), d));
+		// divide them by the norms
+		double norm = index.getDocumentNorm(docId);
+		for (int i = 0; i < accumulator.size(); i++) {
+			int other = accumulator.getDocId(i);
+			accumulator.set(other, accumulator.get(other) / (norm * index.getDocumentNorm(other)));
 		}
-		results.sort(Comparator.reverseOrder());
-		return filterResults(results);
 	}
 
 	@Override
-	public double sim(Document d1, Document d2) {
-		return d1.getVector().cos(d2.getVector());
+	public double sim(MappedIndex index, Document d1, Document d2) {
+		// the norms of the indexed documents are stored, so only the dot product is calculated
+		return getVector(index, d1).dot(getVector(index, d2)) / (getNorm(index, d1) * getNorm(index, d2));
 	}
 }
@@ -0,0 +1,285 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.IndexWriter;
+import hr.fer.zemris.zavrsni.index.IngestionPipeline;
+import hr.fer.zemris.zavrsni.index.Manifest;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.MergePolicy;
+import hr.fer.zemris.zavrsni.index.MinHash;
+import hr.fer.zemris.zavrsni.index.Positions;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+import hr.fer.zemris.zavrsni.input.TextCache;
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A dataset of documents together with its index. The dataset holds the
+ * current index, which is replaced whenever the index is built, updated or
+ * merged, and the writer of the index. The queries are answered through the
+ * {@link IndexSearcher}s created by {@link #newSearcher(QueryCache)}, each of
+ * which keeps using the index current at the time of its creation.
+ *
+ * @author Luka Cupic
+ */
+public class Dataset implements Closeable {
+
+	/**
+	 * The default value of the {@link #similarityThreshold}.
+	 */
+	public static final double DEFAULT_SIMILARITY_THRESHOLD = 0.07;
+
+	/**
+	 * The ranking function comparing the documents.
+	 */
+	private final RankingFunction function;
+
+	/**
+	 * The similarity two documents need to exceed in order to be
+	 * considered similar; the similarities of the other pairs are
+	 * not stored in the index.
+	 */
+	private final double similarityThreshold;
+
+	/**
+	 * The cache of the texts extracted from the documents, or null.
+	 */
+	private final TextCache textCache;
+
+	/**
+	 * The current index of the dataset, which is only ever replaced by a
+	 * newer one.
+	 */
+	private final AtomicReference<MappedIndex> index = new AtomicReference<>();
+
+	/**
+	 * The writer of the index, which merges its segments in the background;
+	 * null if the index has not been built or updated yet.
+	 */
+	private IndexWriter writer;
+
+	/**
+	 * Creates a new dataset.
+	 *
+	 * @param function            the ranking function comparing the documents
+	 * @param similarityThreshold the similarity two documents need to exceed
+	 *                            in order to be considered similar
+	 * @param textCache           the cache of the extracted texts, or null
+	 */
+	private Dataset(RankingFunction function, double similarityThreshold, TextCache textCache) {
+		this.function = Objects.requireNonNull(function);
+		this.similarityThreshold = similarityThreshold;
+		this.textCache = textCache;
+	}
+
+	/**
+	 * Builds the index of the dataset at the given path from scratch. Every
+	 * document is read only once, by the {@link IngestionPipeline}, which
+	 * builds the vocabulary and the index on the fly. The index is then
+	 * written to the given directory as a single segment and opened.
+	 *
+	 * @param dataset             the path to the folder containing the documents
+	 * @param directory           the index directory; any index already stored
+	 *                            there is deleted
+	 * @param function            the ranking function comparing the documents
+	 * @param similarityThreshold the similarity two documents need to exceed
+	 *                            in order to be considered similar
+	 * @param textCache           the cache of the extracted texts, or null
+	 * @return the dataset
+	 * @throws IOException if an error occurs while building the index
+	 */
+	public static Dataset build(Path dataset, Path directory, RankingFunction function,
+	                            double similarityThreshold, TextCache textCache) throws IOException {
+		Dataset d = new Dataset(function, similarityThreshold, textCache);
+		d.writer = IndexWriter.create(directory, new MergePolicy(), d::publish);
+
+		DatasetInfo info = new DatasetInfo();
+		new IngestionPipeline(textCache).run(dataset, (path, entry, words, positions) -> indexDocument(info, path, entry, words, positions));
+
+		d.commit(info, Collections.emptyList());
+		return d;
+	}
+
+	/**
+	 * Opens the dataset with the given, already built index. The index is
+	 * not written to until the dataset is updated.
+	 *
+	 * @param index               the index of the dataset
+	 * @param function            the ranking function comparing the documents
+	 * @param similarityThreshold the similarity two documents need to exceed
+	 *                            in order to be considered similar
+	 * @param textCache           the cache of the extracted texts, or null
+	 * @return the dataset
+	 */
+	public static Dataset open(MappedIndex index, RankingFunction function,
+	                           double similarityThreshold, TextCache textCache) {
+		Dataset d = new Dataset(function, similarityThreshold, textCache);
+		d.index.set(Objects.requireNonNull(index));
+		return d;
+	}
+
+	/**
+	 * Brings the current index up to date with the given changes of the
+	 * dataset. Only the added and changed documents are read, and they are
+	 * written as a new segment; the deleted and changed documents are
+	 * removed by rewriting only the segments holding them.
+	 *
+	 * @param changes the changes of the dataset
+	 * @throws IOException if an error occurs while reading the documents
+	 */
+	public synchronized void update(Manifest.Changes changes) throws IOException {
+		if (writer == null) {
+			writer = IndexWriter.open(getIndex(), new MergePolicy(), this::publish);
+		}
+
+		DatasetInfo info = new DatasetInfo();
+		info.manifest = getIndex().getManifest();
+		changes.getTouched().forEach(info.manifest::put);
+		changes.getRemoved().forEach(info.manifest::remove);
+
+		new IngestionPipeline(textCache).run(changes.getModified(), (path, entry, words, positions) -> indexDocument(info, path, entry, words, positions));
+
+		commit(info, changes.getRemoved());
+	}
+
+	/**
+	 * Commits the given added and removed documents through the
+	 * {@link #writer} and opens the committed index.
+	 *
+	 * @param added   the added documents, together with the manifest of
+	 *                the whole dataset
+	 * @param removed the absolute paths of the removed documents
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void commit(DatasetInfo added, Collection<String> removed) throws IOException {
+		publish(writer.commit(added, removed, this::calculateSimilarities));
+	}
+
+	/**
+	 * Replaces the current index with the given one, produced by a commit
+	 * or by a background merge of its segments, unless the current index
+	 * is newer. The merged indexes are published by the merge thread,
+	 * while the committed ones are published by the committing thread, so
+	 * an index may be published after a newer one.
+	 *
+	 * @param newIndex the new index
+	 */
+	private void publish(MappedIndex newIndex) {
+		index.accumulateAndGet(newIndex, (current, candidate) ->
+				current == null || candidate.isNewerThan(current) ? candidate : current);
+	}
+
+	/**
+	 * Calculates the similarity coefficients between all the documents of
+	 * the given index, keeping only those exceeding the
+	 * {@link #similarityThreshold}.
+	 *
+	 * @param index the index holding the documents
+	 * @return the similarities, ordered by the document IDs
+	 */
+	SimilarityList calculateSimilarities(MappedIndex index) {
+		return calculateSimilarities(index, 0);
+	}
+
+	/**
+	 * Calculates the similarity coefficients of the documents of the given
+	 * index from the given one onward to all the other documents, keeping
+	 * only those exceeding the {@link #similarityThreshold}.
+	 *
+	 * @param index the index holding the documents
+	 * @param from  the ID of the first document whose similarities are
+	 *              calculated
+	 * @return the similarities, ordered by the document IDs
+	 */
+	private SimilarityList calculateSimilarities(MappedIndex index, int from) {
+		return function.calculateSimilarities(index, from, similarityThreshold);
+	}
+
+	/**
+	 * Adds the given document to the given dataset info. New words are added
+	 * to the vocabulary as they are encountered, the positions of the words
+	 * are recorded and the document is added through
+	 * {@link DatasetInfo#addDocument(Document)}.
+	 *
+	 * @param info      the dataset info
+	 * @param path      the path to the document
+	 * @param entry     the manifest entry of the document
+	 * @param words     the processed words of the document
+	 * @param positions the positions of the words in the text of the document
+	 */
+	private static void indexDocument(DatasetInfo info, Path path, Manifest.Entry entry, List<String> words, int[] positions) {
+		int[] indices = new int[words.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = info.vocabulary.add(words.get(i));
+		}
+		int[] grouped = Positions.group(indices, positions, indices.length);
+
+		SparseVector tf = SparseVector.fromOccurrences(indices, indices.length);
+		Document document = new Document(path, tf, null, words.size());
+		document.setSignature(MinHash.signature(words));
+		document.setPositions(grouped);
+
+		info.addDocument(document);
+		info.manifest.put(Manifest.keyOf(path), entry);
+	}
+
+	/**
+	 * Creates a new searcher of the current index.
+	 *
+	 * @param cache the cache of the query results, or null
+	 * @return the searcher
+	 */
+	public IndexSearcher newSearcher(QueryCache cache) {
+		return new IndexSearcher(index.get(), function, cache);
+	}
+
+	/**
+	 * Gets the current index of the dataset.
+	 *
+	 * @return the index
+	 */
+	public MappedIndex getIndex() {
+		return index.get();
+	}
+
+	/**
+	 * Gets the ranking function comparing the documents.
+	 *
+	 * @return the ranking function
+	 */
+	public RankingFunction getFunction() {
+		return function;
+	}
+
+	/**
+	 * Gets the similarity two documents need to exceed in order to be
+	 * considered similar.
+	 *
+	 * @return the similarity threshold
+	 */
+	public double getSimilarityThreshold() {
+		return similarityThreshold;
+	}
+
+	/**
+	 * Closes the writer of the index, if any, after waiting for its merges
+	 * to finish, so that the index is not written to by two writers.
+	 *
+	 * @throws IOException if a background merge of the index has failed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		IndexWriter closing = writer;
+		writer = null;
+		if (closing != null) closing.close();
+	}
+}
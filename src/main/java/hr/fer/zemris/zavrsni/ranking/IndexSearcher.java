@@ -0,0 +1,214 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.input.DocumentReader;
+import hr.fer.zemris.zavrsni.input.InputProcessor;
+import hr.fer.zemris.zavrsni.input.Query;
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.Result;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Answers the queries against a single index with a single ranking function.
+ * The searcher keeps using the index it was created with, even after the
+ * index of the dataset is rebuilt or updated, and it holds no other state
+ * but an optional, thread-safe {@link QueryCache}; every query is read
+ * through its own reader and scored with its own collector. A single
+ * searcher can therefore be used by any number of threads at once.
+ *
+ * @author Luka Cupic
+ */
+public class IndexSearcher {
+
+	/**
+	 * The index which is searched.
+	 */
+	private final MappedIndex index;
+
+	/**
+	 * The ranking function scoring the documents.
+	 */
+	private final RankingFunction function;
+
+	/**
+	 * The cache of the query results, or null.
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * Creates a new searcher, which does not cache the results.
+	 *
+	 * @param index    the index to search
+	 * @param function the ranking function scoring the documents
+	 */
+	public IndexSearcher(MappedIndex index, RankingFunction function) {
+		this(index, function, null);
+	}
+
+	/**
+	 * Creates a new searcher, which takes the results of the repeated
+	 * queries from the given cache. The cache can be shared by the
+	 * searchers of different indexes; it only keeps the results from the
+	 * newest index.
+	 *
+	 * @param index    the index to search
+	 * @param function the ranking function scoring the documents
+	 * @param cache    the cache of the query results, or null
+	 */
+	public IndexSearcher(MappedIndex index, RankingFunction function, QueryCache cache) {
+		this.index = Objects.requireNonNull(index);
+		this.function = Objects.requireNonNull(function);
+		this.cache = cache;
+	}
+
+	/**
+	 * Searches for the given textual query and returns a single page of the
+	 * matching documents, ordered by their scores. The query may contain
+	 * exact phrases, such as {@code "power supply"}, and proximity phrases,
+	 * such as {@code "power supply"~3}, which the matching documents must
+	 * contain.
+	 *
+	 * @param query  the query
+	 * @param offset the number of the best matching documents to skip
+	 * @param count  the maximum number of results
+	 * @return the list of results
+	 * @throws IOException if an error occurs while processing
+	 * @see InputProcessor#processQuery(String)
+	 */
+	public List<Result> search(String query, int offset, int count) throws IOException {
+		return search(InputProcessor.processQuery(query), offset, count);
+	}
+
+	/**
+	 * Searches for the document read by the given reader and returns a
+	 * single page of the matching documents, ordered by their scores.
+	 *
+	 * @param reader the reader of the query document
+	 * @param offset the number of the best matching documents to skip
+	 * @param count  the maximum number of results
+	 * @return the list of results
+	 * @throws IOException if an error occurs while processing
+	 */
+	public List<Result> search(DocumentReader reader, int offset, int count) throws IOException {
+		return search(Query.ofDocument(InputProcessor.process(reader)), offset, count);
+	}
+
+	/**
+	 * Searches for the given processed query and returns a single page of
+	 * the matching documents, ordered by their scores.
+	 *
+	 * @param query  the processed query
+	 * @param offset the number of the best matching documents to skip
+	 * @param count  the maximum number of results
+	 * @return the list of results
+	 * @throws IOException if an error occurs while processing
+	 */
+	private List<Result> search(Query query, int offset, int count) throws IOException {
+		if (cache != null) {
+			return cache.process(function, index, query, offset, count);
+		}
+		return function.process(index, query, offset, count);
+	}
+
+	/**
+	 * Searches for the documents like the indexed document with the given
+	 * ID, using the document as the query. Unlike {@link #findSimilar(int, int)},
+	 * every document is considered, and the documents are scored by the
+	 * ranking function.
+	 *
+	 * @param docId  the ID of the document
+	 * @param offset the number of the best matching documents to skip
+	 * @param count  the maximum number of results
+	 * @return the list of results, without the document itself
+	 * @throws IllegalArgumentException if there is no document with the given ID
+	 */
+	public List<Result> moreLikeThis(int docId, int offset, int count) {
+		if (docId < 0 || docId >= index.getNumberOfDocuments()) {
+			throw new IllegalArgumentException("No document with the ID " + docId + ".");
+		}
+		return function.moreLikeThis(index, docId, offset, count);
+	}
+
+	/**
+	 * Finds the documents similar to the document read by the given reader,
+	 * among the candidates found through the MinHash signatures.
+	 *
+	 * @param reader the reader of the document
+	 * @param k      the maximum number of results
+	 * @return the list of results
+	 * @throws IOException if an error occurs while reading the document
+	 * @see RankingFunction#findSimilar(MappedIndex, List, int)
+	 */
+	public List<Result> findSimilar(DocumentReader reader, int k) throws IOException {
+		return function.findSimilar(index, InputProcessor.process(reader), k);
+	}
+
+	/**
+	 * Finds the documents similar to the indexed document with the given ID,
+	 * among the candidates found through the MinHash signatures.
+	 *
+	 * @param docId the ID of the document
+	 * @param k     the maximum number of results
+	 * @return the list of results, without the document itself
+	 * @throws IllegalArgumentException if there is no document with the given ID
+	 */
+	public List<Result> findSimilar(int docId, int k) {
+		if (docId < 0 || docId >= index.getNumberOfDocuments()) {
+			throw new IllegalArgumentException("No document with the ID " + docId + ".");
+		}
+		return function.findSimilar(index, docId, k);
+	}
+
+	/**
+	 * Creates a document which is not a part of the index from the document
+	 * read by the given reader.
+	 *
+	 * @param reader the reader of the document
+	 * @return the document
+	 * @throws IOException if an error occurs while reading the document
+	 */
+	public Document createDocument(DocumentReader reader) throws IOException {
+		return function.createDocument(index, InputProcessor.process(reader));
+	}
+
+	/**
+	 * Compares the given two documents.
+	 *
+	 * @param d1 the first document
+	 * @param d2 the second document
+	 * @return the similarity of the documents
+	 */
+	public double sim(Document d1, Document d2) {
+		return function.sim(index, d1, d2);
+	}
+
+	/**
+	 * Gets the index which is searched.
+	 *
+	 * @return the index
+	 */
+	public MappedIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Gets the cache of the query results.
+	 *
+	 * @return the cache, or null if the results are not cached
+	 */
+	public QueryCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Gets the ranking function scoring the documents.
+	 *
+	 * @return the ranking function
+	 */
+	public RankingFunction getFunction() {
+		return function;
+	}
+}
@@ -1,14 +1,16 @@
 package hr.fer.zemris.zavrsni.ranking;
 
+import hr.fer.zemris.zavrsni.index.BlockPostings;
+import hr.fer.zemris.zavrsni.index.IndexFormat;
+import hr.fer.zemris.zavrsni.index.Keywords;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
 import hr.fer.zemris.zavrsni.model.Document;
-import hr.fer.zemris.zavrsni.model.Result;
+import hr.fer.zemris.zavrsni.model.SparseVector;
 
 import java.io.IOException;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * The implementation of the Okapi BM25 ranking function.
@@ -20,14 +22,11 @@ import java.util.Map;
 public class OkapiBM25 extends RankingFunction {
 
 	/**
-	 * The 'k1' constant.
+	 * The 'k1' constant. The 'b' constant is only used through the length
+	 * normalization factors of the documents, which are precomputed by the
+	 * index; see {@link IndexFormat#lengthNorm(long, double)}.
 	 */
-	private static final double k1 = 1.6;
-
-	/**
-	 * The 'b' constant.
-	 */
-	private static final double b = 0.75;
+	private static final double k1 = IndexFormat.BM25_K1;
 
 	/**
 	 * The default constructor. Used when constructing the object
@@ -37,104 +36,395 @@ public class OkapiBM25 extends RankingFunction {
 		super();
 	}
 
+	@Override
+	public Document createDocument(MappedIndex index, List<String> words) {
+		SparseVector tf = createTFVector(index, words);
+		return new Document(null, tf, SparseVector.multiply(tf, index.getIDFVector()), words.size());
+	}
+
 	/**
-	 * Creates a new {@link CosineSimilarity} function.
-	 *
-	 * @param dataset the path to the dataset
-	 * @throws IOException if an I/O error occurs
+	 * {@inheritDoc} The query is scored by all of its words, each of which
+	 * is counted as many times as it occurs in the query.
 	 */
-	public OkapiBM25(Path dataset) throws IOException {
-		super(dataset);
+	@Override
+	protected void collect(MappedIndex index, List<String> words, TopKCollector collector) {
+		SparseVector tf = createTFVector(index, words);
+		int[] occurrences = new int[tf.size()];
+		for (int t = 0; t < occurrences.length; t++) {
+			occurrences[t] = (int) tf.getValue(t);
+		}
+		collect(index, tf.getIndices(), occurrences, collector);
 	}
 
+	/**
+	 * {@inheritDoc} The document is reduced to its {@link Keywords}, each of
+	 * which is counted only once, as in {@link #collectMoreLikeThis} and
+	 * {@link #sim(MappedIndex, Document, Document)}.
+	 */
 	@Override
-	public Document createDocument(List<String> words) {
-		throw new UnsupportedOperationException();
+	protected void collectDocument(MappedIndex index, List<String> words, TopKCollector collector) {
+		collect(index, Keywords.select(createTFVector(index, words), index.getIDFs()), null, collector);
 	}
 
 	@Override
-	public List<Result> process(List<String> words) {
-		double avgdl = calculateAvgdl();
+	protected void collectMoreLikeThis(MappedIndex index, int docId, TopKCollector collector) {
+		collect(index, index.getKeywords(docId), null, collector);
+	}
+
+	/**
+	 * Scores the documents matching the given words and offers them to the
+	 * given collector. The documents are visited document-at-a-time, and
+	 * the documents which cannot score above the current threshold of the
+	 * collector are skipped. When the current blocks of the essential
+	 * cursors cannot score above the threshold together, all the documents
+	 * up to the end of the first of those blocks are skipped at once.
+	 *
+	 * @param index       the index to search
+	 * @param termIds     the distinct word IDs of the query
+	 * @param occurrences the number of occurrences of each word in the
+	 *                    query, or null if every word occurs once
+	 * @param collector   the collector of the best scoring documents
+	 */
+	private static void collect(MappedIndex index, int[] termIds, int[] occurrences, TopKCollector collector) {
+		double avgdl = calculateAvgdl(index);
 
-		// calculate the results
-		List<Result> results = new ArrayList<>();
-		for (Document d : datasetInfo.documents.values()) {
-			double score = processOne(words, d, avgdl);
-			results.add(new Result(score, d));
+		List<TermCursor> cursors = new ArrayList<>(termIds.length);
+		for (int t = 0; t < termIds.length; t++) {
+			cursors.add(new TermCursor(index, termIds[t], occurrences != null ? occurrences[t] : 1, avgdl));
 		}
+		if (cursors.isEmpty()) return;
+
+		// order the cursors by their upper bounds, so that the non-essential ones come first
+		cursors.sort(Comparator.comparingDouble(TermCursor::getMaxScore));
+		int n = cursors.size();
+		double[] bounds = new double[n];
+		for (int i = 0; i < n; i++) {
+			bounds[i] = (i > 0 ? bounds[i - 1] : 0) + cursors.get(i).getMaxScore();
+		}
+
+		double threshold = collector.getMinScore();
+		int essential = firstEssential(bounds, threshold, 0);
+		while (essential < n) {
+			// the next candidate is the smallest document of the essential cursors
+			int doc = TermCursor.NO_MORE_DOCS;
+			for (int i = essential; i < n; i++) {
+				doc = Math.min(doc, cursors.get(i).doc);
+			}
+			if (doc == TermCursor.NO_MORE_DOCS) break;
+
+			// bound the score by the maximal scores of the current blocks
+			double nonEssential = essential > 0 ? bounds[essential - 1] : 0;
+			double bound = nonEssential;
+			for (int i = essential; i < n; i++) {
+				TermCursor cursor = cursors.get(i);
+				if (cursor.doc == doc) bound += cursor.getBlockMaxScore();
+			}
 
-		results.sort(Comparator.reverseOrder());
-		return filterResults(results);
+			if (bound > threshold) {
+				double score = 0;
+				for (int i = essential; i < n; i++) {
+					TermCursor cursor = cursors.get(i);
+					if (cursor.doc == doc) score += cursor.score();
+				}
+				for (int i = essential - 1; i >= 0 && score + bounds[i] > threshold; i--) {
+					TermCursor cursor = cursors.get(i);
+					cursor.advance(doc);
+					if (cursor.doc == doc) score += cursor.score();
+				}
+
+				if (score > threshold && collector.collect(doc, score)) {
+					threshold = collector.getMinScore();
+					essential = firstEssential(bounds, threshold, essential);
+				}
+			} else if (skipBlocks(cursors, essential, nonEssential, threshold)) {
+				continue;
+			}
+
+			for (int i = essential; i < n; i++) {
+				TermCursor cursor = cursors.get(i);
+				if (cursor.doc == doc) cursor.next();
+			}
+		}
+	}
+
+	/**
+	 * Skips the documents up to the end of the first ending current block of
+	 * the essential cursors, if the current blocks of all of them bound the
+	 * scores of those documents to at most the given threshold. Every
+	 * essential cursor is positioned in a block ending at or after the
+	 * skipped documents, and it matches none of them before its current
+	 * document, so its current block bounds its scores for all of them.
+	 *
+	 * @param cursors      the cursors, ordered by their upper bounds
+	 * @param essential    the index of the first essential cursor
+	 * @param nonEssential the sum of the upper bounds of the non-essential
+	 *                     cursors
+	 * @param threshold    the score a document has to exceed
+	 * @return true if the documents were skipped, or false if they can
+	 * score above the threshold
+	 */
+	private static boolean skipBlocks(List<TermCursor> cursors, int essential, double nonEssential, double threshold) {
+		double bound = nonEssential;
+		int last = TermCursor.NO_MORE_DOCS;
+		for (int i = essential; i < cursors.size(); i++) {
+			TermCursor cursor = cursors.get(i);
+			if (cursor.doc == TermCursor.NO_MORE_DOCS) continue;
+			bound += cursor.getBlockMaxScore();
+			last = Math.min(last, cursor.getBlockLastDocId());
+		}
+		if (bound > threshold) return false;
+
+		for (int i = essential; i < cursors.size(); i++) {
+			cursors.get(i).advance(last + 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the first essential cursor. The documents matching only the
+	 * cursors before it cannot score above the threshold, so they do not
+	 * have to be considered as candidates.
+	 *
+	 * @param bounds    the cumulative upper bounds of the cursors
+	 * @param threshold the score a document has to exceed
+	 * @param from      the index of the current first essential cursor
+	 * @return the index of the first essential cursor
+	 */
+	private static int firstEssential(double[] bounds, double threshold, int from) {
+		int i = from;
+		while (i < bounds.length && bounds[i] <= threshold) {
+			i++;
+		}
+		return i;
 	}
 
 	/**
 	 * Performs the BM25 calculation for the given document and query.
 	 *
-	 * @param words the list of words from the query
-	 * @param d     the document
-	 * @param avgdl the average length of the documents
+	 * @param index   the index holding the document
+	 * @param termIds the vocabulary IDs of the words from the query
+	 * @param d       the document
+	 * @param avgdl   the average length of the documents
 	 * @return the similarity measure of the given document and query
 	 */
-	private static double processOne(List<String> words, Document d, double avgdl) {
-		double score = 0;
-		for (String w : words) {
-			Integer wordIndex = datasetInfo.vocabulary.get(w);
-			if (wordIndex == null) continue;
+	private static double processOne(MappedIndex index, int[] termIds, Document d, double avgdl) {
+		float[] idfs = index.getIDFs();
+		double norm = d.getId() >= 0
+				? index.getLengthNorms()[d.getId()]
+				: IndexFormat.lengthNorm(d.getLength(), avgdl);
+		SparseVector tf = getTFVector(index, d);
 
-			double freq = d.getTFVector().get(wordIndex);
-			double num = freq * (k1 + 1);
-			double den = freq + k1 * (1 - b + b * (d.getLength() / avgdl));
-			score += calculateIDF(w) * num / den;
+		double score = 0;
+		for (int termId : termIds) {
+			score += idfs[termId] * termScore(tf.get(termId), norm);
 		}
 		return score;
 	}
 
+	/**
+	 * Calculates the term frequency component of the BM25 score.
+	 *
+	 * @param freq the frequency of the term in the document
+	 * @param norm the length normalization factor of the document
+	 * @return the saturated and length-normalized term frequency
+	 */
+	private static double termScore(double freq, double norm) {
+		return freq * (k1 + 1) / (freq + norm);
+	}
+
 	/**
 	 * Calculates the avgdl parameter.
 	 *
+	 * @param index the index holding the documents
 	 * @return the avgdl value, as defined in the BM25 method
 	 */
-	private static double calculateAvgdl() {
-		return datasetInfo.documents.values().stream()
-				.mapToLong(Document::getLength)
-				.average()
-				.getAsDouble();
+	private static double calculateAvgdl(MappedIndex index) {
+		return index.getAverageDocumentLength();
 	}
 
 	/**
-	 * A helper method for calculating the IDF of the given
-	 * word (and the collection of documents).
-	 *
-	 * @param word the word
-	 * @return the IDF value of all the documents and the given
-	 * word
+	 * {@inheritDoc} Only the {@link Keywords} of the document are walked,
+	 * as in {@link #sim(MappedIndex, Document, Document)}.
 	 */
-	private static double calculateIDF(String word) {
-		int freq = datasetInfo.wordFrequency.get(word);
-		//return Math.log((documents.size() - freq + 0.5) / (freq + 0.5));
-		return Math.log(datasetInfo.documents.size() / (double) freq);
+	@Override
+	protected void accumulateSimilarities(MappedIndex index, int docId, int from, SimilarityAccumulator accumulator) {
+		float[] idfs = index.getIDFs();
+		float[] norms = index.getLengthNorms();
+
+		for (int termId : index.getKeywords(docId)) {
+			double weight = idfs[termId] * (k1 + 1);
+
+			BlockPostings postings = index.getPostings(termId);
+			for (int i = postings.advance(0, docId); i < postings.size(); i++) {
+				int other = postings.getDocId(i);
+				if (other > docId && other < from) {
+					i = postings.advance(i, from) - 1;
+					continue;
+				}
+				double freq = postings.getFreq(i);
+				accumulator.add(other, weight * freq / (freq + norms[other]));
+			}
+		}
 	}
 
+	/**
+	 * {@inheritDoc} The first document is used as a query made of its
+	 * {@link Keywords}, against which the second document is scored.
+	 */
 	@Override
-	public double sim(Document d1, Document d2) {
-		List<String> words = getWordsFrom(d1);
-		return processOne(words, d2, calculateAvgdl());
+	public double sim(MappedIndex index, Document d1, Document d2) {
+		return processOne(index, getKeywords(index, d1), d2, calculateAvgdl(index));
 	}
 
 	/**
-	 * Returns all the words contained in the given document.
+	 * Gets the keywords of the given document. The keywords of the indexed
+	 * documents are read from the index.
 	 *
-	 * @param d the document
-	 * @return all the words contained in the given document
+	 * @param index the index holding the document
+	 * @param d     the document
+	 * @return the word IDs of the keywords
+	 */
+	private static int[] getKeywords(MappedIndex index, Document d) {
+		if (d.getTFVector() != null || d.getId() < 0) return Keywords.select(d.getTFVector(), index.getIDFs());
+		return index.getKeywords(d.getId());
+	}
+
+	/**
+	 * Iterates through the postings of a single query word, document by
+	 * document, and provides the upper bounds of the word's scores.
 	 */
-	private static List<String> getWordsFrom(Document d) {
-		List<String> words = new ArrayList<>();
+	private static class TermCursor {
 
-		for (Map.Entry<String, Integer> e : datasetInfo.vocabulary.entrySet()) {
-			if (d.getVector().getValues()[e.getValue()] != 0) {
-				words.add(e.getKey());
-			}
+		/**
+		 * The document of an exhausted cursor.
+		 */
+		static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+		/**
+		 * The postings of the word.
+		 */
+		private final BlockPostings postings;
+
+		/**
+		 * The length normalization factors of the documents.
+		 */
+		private final float[] norms;
+
+		/**
+		 * The average length of the documents.
+		 */
+		private final double avgdl;
+
+		/**
+		 * The factor of all the scores of the word: the number of its
+		 * occurrences in the query, its IDF and (k1 + 1).
+		 */
+		private final double weight;
+
+		/**
+		 * The upper bound of the scores of all the documents.
+		 */
+		private final double maxScore;
+
+		/**
+		 * The index of the current posting.
+		 */
+		private int position;
+
+		/**
+		 * The current document, or {@link #NO_MORE_DOCS}.
+		 */
+		int doc;
+
+		/**
+		 * Creates a new cursor positioned at the first posting of the word.
+		 *
+		 * @param index       the index holding the documents
+		 * @param termId      the ID of the word
+		 * @param occurrences the number of occurrences of the word in the query
+		 * @param avgdl       the average length of the documents
+		 */
+		TermCursor(MappedIndex index, int termId, int occurrences, double avgdl) {
+			this.postings = index.getPostings(termId);
+			this.norms = index.getLengthNorms();
+			this.avgdl = avgdl;
+			this.weight = occurrences * index.getIDFs()[termId] * (k1 + 1);
+			this.maxScore = weight * index.getMaxTermScores()[termId];
+			this.doc = postings.size() > 0 ? postings.getDocId(0) : NO_MORE_DOCS;
+		}
+
+		/**
+		 * Moves the cursor to the next posting.
+		 */
+		void next() {
+			position++;
+			doc = position < postings.size() ? postings.getDocId(position) : NO_MORE_DOCS;
+		}
+
+		/**
+		 * Moves the cursor to the first posting whose document is at least
+		 * the given target.
+		 *
+		 * @param target the target document
+		 */
+		void advance(int target) {
+			if (doc >= target) return;
+			position = postings.advance(position, target);
+			doc = position < postings.size() ? postings.getDocId(position) : NO_MORE_DOCS;
+		}
+
+		/**
+		 * Scores the current document.
+		 *
+		 * @return the score of the word for the current document
+		 */
+		double score() {
+			double freq = postings.getFreq(position);
+			return weight * freq / (freq + norms[doc]);
+		}
+
+		/**
+		 * Gets the upper bound of the scores in the current block.
+		 *
+		 * @return the maximal score of the current block
+		 */
+		double getBlockMaxScore() {
+			return blockMaxScore(postings.getBlock(position));
+		}
+
+		/**
+		 * Gets the last document of the current block.
+		 *
+		 * @return the last document ID of the current block
+		 */
+		int getBlockLastDocId() {
+			return postings.getBlockLastDocId(postings.getBlock(position));
+		}
+
+		/**
+		 * Gets the upper bound of the scores of all the documents, which is
+		 * stored in the index.
+		 *
+		 * @return the maximal score of the word
+		 * @see MappedIndex#getMaxTermScores()
+		 */
+		double getMaxScore() {
+			return maxScore;
+		}
+
+		/**
+		 * Calculates the upper bound of the scores in the given block. Since
+		 * the score grows with the frequency and falls with the length of the
+		 * document, the score of the largest frequency in the shortest
+		 * document of the block bounds all the others.
+		 *
+		 * @param block the index of the block
+		 * @return the maximal score of the block
+		 */
+		private double blockMaxScore(int block) {
+			double freq = postings.getBlockMaxFreq(block);
+			float norm = IndexFormat.lengthNorm(postings.getBlockMinLength(block), avgdl);
+			return weight * freq / (freq + norm);
 		}
-		return words;
 	}
-}
\ No newline at end of file
+}
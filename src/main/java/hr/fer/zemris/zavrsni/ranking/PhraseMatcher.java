@@ -0,0 +1,201 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.BlockPostings;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.input.Query.Phrase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Checks whether the documents contain a phrase. A document is checked in
+ * two steps: first the postings of every word of the phrase are advanced to
+ * the document, which rejects the documents missing any of the words
+ * without reading a single position, and only then the positions of the
+ * words in the document are read and intersected.
+ * <p>
+ * The documents are expected in increasing order of their IDs, so that the
+ * postings are only ever advanced; checking an earlier document starts the
+ * postings over. A matcher must not be used by multiple threads at once.
+ *
+ * @author Luka Cupic
+ */
+class PhraseMatcher implements IntPredicate {
+
+	/**
+	 * The phrase.
+	 */
+	private final Phrase phrase;
+
+	/**
+	 * The postings of each distinct word of the phrase.
+	 */
+	private final BlockPostings[] postings;
+
+	/**
+	 * The index of the distinct word of each word of the phrase.
+	 */
+	private final int[] words;
+
+	/**
+	 * The position of each word of the phrase, relative to the first one.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * The index of the current posting of each distinct word.
+	 */
+	private final int[] cursors;
+
+	/**
+	 * The positions of each distinct word in the current document.
+	 */
+	private final int[][] positions;
+
+	/**
+	 * The number of the positions of each distinct word in the current
+	 * document.
+	 */
+	private final int[] sizes;
+
+	/**
+	 * The ID of the last checked document.
+	 */
+	private int lastDocId = -1;
+
+	/**
+	 * Creates a new matcher.
+	 *
+	 * @param phrase  the phrase
+	 * @param termIds the IDs of the distinct words of the phrase
+	 * @param words   the index of the distinct word of each word of the phrase
+	 * @param index   the index whose documents are checked
+	 */
+	private PhraseMatcher(Phrase phrase, List<Integer> termIds, int[] words, MappedIndex index) {
+		this.phrase = phrase;
+		this.words = words;
+		this.offsets = phrase.getPositions();
+		this.postings = new BlockPostings[termIds.size()];
+		for (int t = 0; t < postings.length; t++) {
+			postings[t] = index.getPostings(termIds.get(t));
+		}
+		this.cursors = new int[postings.length];
+		this.positions = new int[postings.length][];
+		this.sizes = new int[postings.length];
+	}
+
+	/**
+	 * Creates a filter accepting the documents of the given index which
+	 * contain all the given phrases.
+	 *
+	 * @param index   the index whose documents are checked
+	 * @param phrases the phrases
+	 * @return the filter, or null if there are no phrases
+	 */
+	static IntPredicate filter(MappedIndex index, List<Phrase> phrases) {
+		IntPredicate filter = null;
+		for (Phrase phrase : phrases) {
+			IntPredicate matcher = create(index, phrase);
+			filter = filter == null ? matcher : filter.and(matcher);
+		}
+		return filter;
+	}
+
+	/**
+	 * Creates a filter accepting the documents of the given index which
+	 * contain the given phrase.
+	 *
+	 * @param index  the index whose documents are checked
+	 * @param phrase the phrase
+	 * @return the filter
+	 */
+	private static IntPredicate create(MappedIndex index, Phrase phrase) {
+		List<Integer> termIds = new ArrayList<>();
+		int[] words = new int[phrase.getWords().size()];
+		for (int w = 0; w < words.length; w++) {
+			int termId = index.getTermId(phrase.getWords().get(w));
+			if (termId < 0) return docId -> false;
+
+			words[w] = termIds.indexOf(termId);
+			if (words[w] < 0) {
+				words[w] = termIds.size();
+				termIds.add(termId);
+			}
+		}
+		return new PhraseMatcher(phrase, termIds, words, index);
+	}
+
+	@Override
+	public boolean test(int docId) {
+		if (docId < lastDocId) {
+			for (int t = 0; t < cursors.length; t++) cursors[t] = 0;
+		}
+		lastDocId = docId;
+
+		for (int t = 0; t < postings.length; t++) {
+			cursors[t] = postings[t].advance(cursors[t], docId);
+			if (cursors[t] == postings[t].size() || postings[t].getDocId(cursors[t]) != docId) return false;
+		}
+
+		for (int t = 0; t < postings.length; t++) {
+			sizes[t] = postings[t].getFreq(cursors[t]);
+			if (positions[t] == null || positions[t].length < sizes[t]) {
+				positions[t] = new int[Math.max(sizes[t], 16)];
+			}
+			postings[t].getPositions(cursors[t], positions[t]);
+		}
+		return phrase.isExact() ? matchExact() : matchProximity(phrase.getSlop());
+	}
+
+	/**
+	 * Checks whether the words of the phrase follow each other in the
+	 * current document, as far apart as they are in the phrase.
+	 *
+	 * @return true iff the document contains the exact phrase
+	 */
+	private boolean matchExact() {
+		// the word w has to be found at the position p + offsets[w], for some position p of the first word
+		int[] next = new int[words.length];
+		int[] first = positions[words[0]];
+		for (int i = 0, n = sizes[words[0]]; i < n; i++) {
+			boolean match = true;
+			for (int w = 1; w < words.length && match; w++) {
+				int[] current = positions[words[w]];
+				int size = sizes[words[w]];
+				int target = first[i] + offsets[w];
+				while (next[w] < size && current[next[w]] < target) {
+					next[w]++;
+				}
+				if (next[w] == size) return false;
+				match = current[next[w]] == target;
+			}
+			if (match) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the distinct words of the phrase occur in the current
+	 * document within a span of at most the given number of words more than
+	 * there are distinct words. The smallest spans are found by repeatedly
+	 * moving past the earliest of the current positions of the words.
+	 *
+	 * @param slop the maximal number of the extra words within the span
+	 * @return true iff the document contains the proximity phrase
+	 */
+	private boolean matchProximity(int slop) {
+		int[] next = new int[postings.length];
+		while (true) {
+			int min = 0;
+			int max = Integer.MIN_VALUE;
+			for (int t = 0; t < postings.length; t++) {
+				int position = positions[t][next[t]];
+				if (position < positions[min][next[min]]) min = t;
+				max = Math.max(max, position);
+			}
+			if (max - positions[min][next[min]] - (postings.length - 1) <= slop) return true;
+			if (++next[min] == sizes[min]) return false;
+		}
+	}
+}
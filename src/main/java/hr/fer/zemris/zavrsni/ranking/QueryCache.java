@@ -0,0 +1,240 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.input.Query;
+import hr.fer.zemris.zavrsni.input.Query.Phrase;
+import hr.fer.zemris.zavrsni.model.Result;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the query results. A query is identified by its
+ * processed words and its phrases, regardless of their order, since the
+ * order does not affect the results, by whether it is a document, by the
+ * ranking function and by the number of the best results it asks for; the
+ * pages of the same query therefore share the cached results as long as
+ * they fit into them.
+ * <p>
+ * The cached results belong to the generation of the index they have been
+ * calculated from. Once a query is made against an index of a newer
+ * generation, the whole cache is cleared; the queries made against an
+ * older index are not cached at all.
+ * <p>
+ * When the cache is full, the least recently used results are evicted.
+ * The cache can be used by multiple threads at once.
+ *
+ * @author Luka Cupic
+ */
+public class QueryCache {
+
+	/**
+	 * The default maximum number of cached queries.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The maximum number of cached queries.
+	 */
+	private final int capacity;
+
+	/**
+	 * The cached results, from the least to the most recently used.
+	 */
+	private final Map<Key, List<Result>> results;
+
+	/**
+	 * The generation of the index the cached results belong to.
+	 */
+	private long generation;
+
+	/**
+	 * The number of the queries answered from the cache.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * The number of the queries which had to be scored.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a new cache with the default capacity.
+	 */
+	public QueryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param capacity the maximum number of cached queries
+	 */
+	public QueryCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.results = new LinkedHashMap<Key, List<Result>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, List<Result>> eldest) {
+				return size() > QueryCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Searches the given index and returns a single page of the documents
+	 * matching the given query, taking the results from the cache if the
+	 * query has been answered before.
+	 *
+	 * @param function the ranking function scoring the documents
+	 * @param index    the index to search
+	 * @param query    the processed query
+	 * @param offset   the number of the best matching documents to skip
+	 * @param count    the maximum number of results
+	 * @return the list of results, which must not be modified
+	 * @throws IOException if an error occurs while processing
+	 */
+	public List<Result> process(RankingFunction function, MappedIndex index, Query query,
+	                            int offset, int count) throws IOException {
+		if (offset < 0 || count < 0) {
+			throw new IllegalArgumentException("The offset and the count must not be negative.");
+		}
+		int k = (int) Math.min((long) offset + count, index.getNumberOfDocuments());
+		Key key = new Key(function, query, k);
+
+		List<Result> top;
+		synchronized (this) {
+			if (index.getGeneration() > generation) {
+				results.clear();
+				generation = index.getGeneration();
+			}
+			top = index.getGeneration() == generation ? results.get(key) : null;
+		}
+
+		if (top != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			top = Collections.unmodifiableList(function.process(index, query, 0, k));
+			synchronized (this) {
+				if (index.getGeneration() == generation) {
+					results.put(key, top);
+				}
+			}
+		}
+		return top.subList(Math.min(offset, top.size()), top.size());
+	}
+
+	/**
+	 * Removes all the cached results.
+	 */
+	public synchronized void clear() {
+		results.clear();
+	}
+
+	/**
+	 * Gets the number of the cached queries.
+	 *
+	 * @return the number of the cached queries
+	 */
+	public synchronized int size() {
+		return results.size();
+	}
+
+	/**
+	 * Gets the number of the queries answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of the queries which were not found in the cache.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * The identity of a cached query.
+	 */
+	private static class Key {
+
+		/**
+		 * The ranking function scoring the documents.
+		 */
+		private final RankingFunction function;
+
+		/**
+		 * The processed words of the query, sorted.
+		 */
+		private final String[] words;
+
+		/**
+		 * The phrases of the query.
+		 */
+		private final Set<Phrase> phrases;
+
+		/**
+		 * Whether the query is a document.
+		 */
+		private final boolean document;
+
+		/**
+		 * The number of the best results.
+		 */
+		private final int k;
+
+		/**
+		 * The hash of the key.
+		 */
+		private final int hash;
+
+		/**
+		 * Creates a new key.
+		 *
+		 * @param function the ranking function scoring the documents
+		 * @param query    the processed query
+		 * @param k        the number of the best results
+		 */
+		Key(RankingFunction function, Query query, int k) {
+			this.function = function;
+			this.words = query.getWords().toArray(new String[0]);
+			this.phrases = new HashSet<>(query.getPhrases());
+			this.document = query.isDocument();
+			this.k = k;
+			Arrays.sort(this.words);
+			hash = 31 * (31 * (31 * (31 * System.identityHashCode(function) + Arrays.hashCode(this.words))
+					+ phrases.hashCode()) + Boolean.hashCode(document)) + k;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key key = (Key) o;
+			return function == key.function && k == key.k && document == key.document
+					&& Arrays.equals(words, key.words) && phrases.equals(key.phrases);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
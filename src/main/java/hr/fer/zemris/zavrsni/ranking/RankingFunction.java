@@ -1,267 +1,319 @@
 package hr.fer.zemris.zavrsni.ranking;
 
-import hr.fer.zemris.zavrsni.Initializer;
-import hr.fer.zemris.zavrsni.input.FileReader;
-import hr.fer.zemris.zavrsni.input.InputProcessor;
-import hr.fer.zemris.zavrsni.input.PDFReader;
+import hr.fer.zemris.zavrsni.index.DocumentStore;
+import hr.fer.zemris.zavrsni.index.InvertedIndex;
+import hr.fer.zemris.zavrsni.index.Manifest;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.MinHash;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+import hr.fer.zemris.zavrsni.index.TermDictionary;
+import hr.fer.zemris.zavrsni.input.Query;
 import hr.fer.zemris.zavrsni.model.Document;
 import hr.fer.zemris.zavrsni.model.Result;
+import hr.fer.zemris.zavrsni.model.SparseVector;
 import hr.fer.zemris.zavrsni.model.Vector;
-import hr.fer.zemris.zavrsni.utils.IOUtils;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
 
 public abstract class RankingFunction {
 
 	/**
-	 * The object holding all the information about the function
-	 * dataset.
+	 * The default constructor. Used when constructing the object
+	 * through deserialization.
 	 */
-	public static DatasetInfo datasetInfo = new DatasetInfo();
+	public RankingFunction() {
+	}
 
-	/**
-	 * The ranking function used to compare the documents.
-	 */
-	private static RankingFunction function;
+
+	// ----------------------------- abstract methods -----------------------------
 
 	/**
-	 * The concrete reader responsible for reading the documents
-	 * from the dataset.
+	 * Scores the documents matching the given query and offers them to
+	 * the given collector.
+	 *
+	 * @param index     the index to search
+	 * @param words     the words from the input source (console, document, ...)
+	 * @param collector the collector of the best scoring documents
+	 * @throws IOException if an error occurs while processing
 	 */
-	private static FileReader reader = new PDFReader();
+	protected abstract void collect(MappedIndex index, List<String> words, TopKCollector collector) throws IOException;
 
 	/**
-	 * The default constructor. Used when constructing the object
-	 * through deserialization.
+	 * Scores the documents matching the given document, which is not a part
+	 * of the index, and offers them to the given collector. By default, the
+	 * document is scored like any other query.
+	 *
+	 * @param index     the index to search
+	 * @param words     the processed words of the document
+	 * @param collector the collector of the best scoring documents
+	 * @throws IOException if an error occurs while processing
+	 * @see Query#ofDocument(List)
 	 */
-	public RankingFunction() {
-		function = this;
-		InputProcessor.setStopWords(Initializer.STOP_WORDS_PATH);
-		InputProcessor.setReader(reader);
+	protected void collectDocument(MappedIndex index, List<String> words, TopKCollector collector) throws IOException {
+		collect(index, words, collector);
 	}
 
 	/**
-	 * Creates a new {@link RankingFunction} function.
+	 * Scores the documents like the indexed document with the given ID and
+	 * offers them to the given collector. The document itself may be
+	 * offered as well.
 	 *
-	 * @param dataset the path to the dataset
-	 * @throws IOException if an I/O error occurs
+	 * @param index     the index to search
+	 * @param docId     the ID of the document
+	 * @param collector the collector of the best scoring documents
 	 */
-	public RankingFunction(Path dataset) throws IOException {
-		this();
-		init(dataset);
-		// we're here the first time, so serialize the dataset info
-		IOUtils.serialize(datasetInfo, Initializer.datasetInfoFilename);
-	}
-
-
-	// ----------------------------- abstract methods -----------------------------
+	protected abstract void collectMoreLikeThis(MappedIndex index, int docId, TopKCollector collector);
 
 	/**
-	 * Parses the given query, processes it, and returns a list of results.
+	 * Creates a document which is not a part of the index.
 	 *
-	 * @param words the words from the input source (console, document, ...)
-	 * @return the list of results
-	 * @throws IOException if an error occurs while processing
+	 * @param index the index providing the vocabulary and the statistics
+	 * @param words the processed words of the document
+	 * @return the document
 	 */
-	public abstract List<Result> process(List<String> words) throws IOException;
-
-	public abstract Document createDocument(List<String> words);
+	public abstract Document createDocument(MappedIndex index, List<String> words);
 
 	/**
 	 * Compares the given two documents and returns the result.
 	 *
-	 * @param d1 the first document
-	 * @param d2 the second document
+	 * @param index the index holding the documents
+	 * @param d1    the first document
+	 * @param d2    the second document
 	 */
-	public abstract double sim(Document d1, Document d2);
+	public abstract double sim(MappedIndex index, Document d1, Document d2);
 
-	// -------------------------- end of abstract methods --------------------------
+	/**
+	 * Accumulates the similarities of the given indexed document to itself
+	 * and to all the indexed documents whose IDs are larger than its own ID
+	 * and not smaller than the given one. The similarities are accumulated
+	 * by walking the postings of the words of the document, so that only the
+	 * documents sharing a word with it are visited, and the postings of the
+	 * documents before the given one are skipped. The accumulated
+	 * similarities must equal the ones calculated by
+	 * {@link #sim(MappedIndex, Document, Document)}.
+	 *
+	 * @param index       the index holding the documents
+	 * @param docId       the ID of the document
+	 * @param from        the ID of the first document the document is
+	 *                    compared to, unless it is smaller than its own ID
+	 * @param accumulator the accumulator of the similarities
+	 */
+	protected abstract void accumulateSimilarities(MappedIndex index, int docId, int from, SimilarityAccumulator accumulator);
 
+	// -------------------------- end of abstract methods --------------------------
 
-	// ------------------------------- static methods -------------------------------
 
 	/**
-	 * Filters the given results and removes the one with similarity
-	 * of 0.0 and NaN.
+	 * Searches the given index and returns a single page of the documents
+	 * matching the given query, ordered by their scores.
 	 *
-	 * @param results the results to filter
-	 * @return filtered results
+	 * @param index  the index to search
+	 * @param words  the words from the input source (console, document, ...)
+	 * @param offset the number of the best matching documents to skip
+	 * @param count  the maximum number of results
+	 * @return the list of results
+	 * @throws IOException if an error occurs while processing
 	 */
-	public static List<Result> filterResults(List<Result> results) {
-		return results.stream().filter(new Predicate<Result>() {
-			@Override
-			public boolean test(Result result) {
-				return result.getSim() != 0.0 && !Double.isNaN(result.getSim());
-			}
-		}).collect(Collectors.toList());
+	List<Result> process(MappedIndex index, List<String> words, int offset, int count) throws IOException {
+		return process(index, new Query(words), offset, count);
 	}
 
-	// ---------------------------- end of static methods ---------------------------
+	/**
+	 * Searches the given index and returns a single page of the documents
+	 * matching the given query, ordered by their scores. The documents are
+	 * scored by the bag of words of the query, and only those which would
+	 * make it into the results are checked for the phrases of the query.
+	 *
+	 * @param index  the index to search
+	 * @param query  the processed query
+	 * @param offset the number of the best matching documents to skip
+	 * @param count  the maximum number of results
+	 * @return the list of results
+	 * @throws IOException if an error occurs while processing
+	 */
+	List<Result> process(MappedIndex index, Query query, int offset, int count) throws IOException {
+		if (offset < 0 || count < 0) {
+			throw new IllegalArgumentException("The offset and the count must not be negative.");
+		}
+		int k = (int) Math.min((long) offset + count, index.getNumberOfDocuments());
 
+		TopKCollector collector = new TopKCollector(k, PhraseMatcher.filter(index, query.getPhrases()));
+		if (query.isDocument()) {
+			collectDocument(index, query.getWords(), collector);
+		} else {
+			collect(index, query.getWords(), collector);
+		}
+		return collector.getResults(offset, index::getDocument);
+	}
 
 	/**
-	 * Initializes the program.
+	 * Searches the given index, using the indexed document with the given
+	 * ID as the query, and returns a single page of the matching documents,
+	 * ordered by their scores. The document itself is left out of the
+	 * results.
 	 *
-	 * @param path the path to the folder containing the documents
-	 * @throws IOException if an error occurs while initialization
+	 * @param index  the index to search
+	 * @param docId  the ID of the document
+	 * @param offset the number of the best matching documents to skip
+	 * @param count  the maximum number of results
+	 * @return the list of results
 	 */
-	private void init(Path path) throws IOException {
-		// Initialize the dataset
-		createVocabulary(path);
-		initDocuments(path);
-		calculateSimilarities();
+	List<Result> moreLikeThis(MappedIndex index, int docId, int offset, int count) {
+		if (offset < 0 || count < 0) {
+			throw new IllegalArgumentException("The offset and the count must not be negative.");
+		}
+		// one more document is collected, in case the document itself is among the best ones
+		int k = (int) Math.min((long) offset + count + 1, index.getNumberOfDocuments());
+
+		TopKCollector collector = new TopKCollector(k);
+		collectMoreLikeThis(index, docId, collector);
+		List<Result> results = collector.getResults(0, index::getDocument);
+		results.removeIf(result -> result.getDocument().getId() == docId);
+		return results.subList(Math.min(offset, results.size()), (int) Math.min((long) offset + count, results.size()));
 	}
 
 	/**
-	 * Creates the vocabulary by recursively reading all documents at the
-	 * given path. All character that are not letters will simply be ignored.
-	 * So for example, a part of the document "hitch42iker" shall be interpreted
-	 * as "hitch iker".
+	 * Finds the documents of the given index similar to the document with
+	 * the given words. Instead of scoring every document, only the
+	 * candidates found through the MinHash signatures of the documents are
+	 * considered, and they are ranked by the cosine similarity of their
+	 * TF-IDF vectors. Documents sharing few shingles with the given one are
+	 * therefore not found.
 	 *
-	 * @param path the path to the folder containing the documents
-	 * @throws IOException if an error occurs while creating the vocabulary
+	 * @param index the index to search
+	 * @param words the processed words of the document
+	 * @param k     the maximum number of results
+	 * @return the list of results
 	 */
-	private void createVocabulary(Path path) throws IOException {
-		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-			@Override
-			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-				List<String> words = readWords(path);
-				for (String word : words) {
-					if (datasetInfo.vocabulary.containsKey(word)) continue;
-					datasetInfo.vocabulary.put(word, -1);
-				}
-				return FileVisitResult.CONTINUE;
-			}
-		});
-
-		// After the vocabulary has been created, iterate it and store
-		// the index of each word as the word's value in the vocabulary map
-		List<String> words = new ArrayList<>(datasetInfo.vocabulary.keySet());
-		datasetInfo.vocabulary.keySet().forEach(key -> datasetInfo.vocabulary.put(key, words.indexOf(key)));
+	List<Result> findSimilar(MappedIndex index, List<String> words, int k) {
+		SparseVector query = SparseVector.multiply(createTFVector(index, words), index.getIDFVector());
+		return findSimilar(index, query, query.norm(), MinHash.signature(words), -1, k);
 	}
 
 	/**
-	 * Creates the TF vectors for all documents in the dataset (which are
-	 * then added to the {@link DatasetInfo#documents} map) and fills {@link DatasetInfo#wordFrequency}
-	 * with values obtained from the documents.
+	 * Finds the documents of the given index similar to the indexed document
+	 * with the given ID, which is itself left out of the results.
 	 *
-	 * @param path the path to the folder containing the documents
-	 * @throws IOException if an error occurs while creating the documents
+	 * @param index the index to search
+	 * @param docId the ID of the document
+	 * @param k     the maximum number of results
+	 * @return the list of results
+	 * @see #findSimilar(MappedIndex, List, int)
 	 */
-	private void initDocuments(Path path) throws IOException {
-		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-			@Override
-			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-				List<String> words = readWords(path);
-
-				Document doc = new Document(path, createTFVector(words), null, words.size());
-				datasetInfo.documents.put(path.toString(), doc);
-
-				// Update wordFrequency for each word
-				words.stream().distinct().forEach(word ->
-						datasetInfo.wordFrequency.merge(word, 1, (a, b) -> a + b)
-				);
-				return FileVisitResult.CONTINUE;
-			}
-		});
-		createIDFVector();
+	List<Result> findSimilar(MappedIndex index, int docId, int k) {
+		SparseVector query = SparseVector.multiply(index.getTFVector(docId), index.getIDFVector());
+		return findSimilar(index, query, index.getDocumentNorm(docId), index.getSignature(docId), docId, k);
 	}
 
 	/**
-	 * Returns a list of filtered (removal of stop words, stemming etc.) words
-	 * read from the given document by the current InputProcessor.
+	 * Ranks the candidates found through the given MinHash signature by the
+	 * cosine similarity of their TF-IDF vectors to the given vector.
 	 *
-	 * @param path the path to the document to read
-	 * @return a list of words extracted from the document
-	 * @throws IOException if the document cannot be read
+	 * @param index     the index to search
+	 * @param query     the TF-IDF vector of the document
+	 * @param norm      the norm of the vector
+	 * @param signature the MinHash signature of the document
+	 * @param exclude   the ID of the document to leave out, or -1
+	 * @param k         the maximum number of results
+	 * @return the list of results
 	 */
-	private List<String> readWords(Path path) throws IOException {
-		// implicitly change the document the InputProcessor is reading
-		reader.setPath(path);
-		return InputProcessor.process();
+	private static List<Result> findSimilar(MappedIndex index, SparseVector query, double norm,
+	                                        int[] signature, int exclude, int k) {
+		Vector idf = index.getIDFVector();
+		TopKCollector collector = new TopKCollector(Math.min(k, index.getNumberOfDocuments()));
+		for (int docId : index.getCandidates(signature)) {
+			if (docId == exclude) continue;
+			SparseVector vector = SparseVector.multiply(index.getTFVector(docId), idf);
+			collector.collect(docId, query.dot(vector) / (norm * index.getDocumentNorm(docId)));
+		}
+		return collector.getResults(0, index::getDocument);
 	}
 
 	/**
 	 * Creates the TF vector component for the given words.
 	 *
+	 * @param index the index providing the vocabulary
 	 * @param words the words of the document to build the TF
 	 *              vector from
 	 * @return the TF vector representation of the given document
 	 */
-	protected Vector createTFVector(List<String> words) {
-		double[] values = new double[datasetInfo.vocabulary.size()];
+	protected static SparseVector createTFVector(MappedIndex index, List<String> words) {
+		int[] indices = new int[words.size()];
+		int size = 0;
 		for (String word : words) {
-			Integer wordIndex = datasetInfo.vocabulary.get(word);
-			if (wordIndex == null) continue;
-			values[wordIndex]++;
+			int wordIndex = index.getTermId(word);
+			if (wordIndex < 0) continue;
+			indices[size++] = wordIndex;
 		}
-		return new Vector(values);
+		return SparseVector.fromOccurrences(indices, size);
 	}
 
 	/**
-	 * Creates the "main" IDF vector which represents the words'
-	 * frequencies in all of the documents.
+	 * Gets the TF vector of the given document. The vectors of the indexed
+	 * documents are read from the index.
+	 *
+	 * @param index the index holding the document
+	 * @param d     the document
+	 * @return the TF vector of the document
 	 */
-	protected void createIDFVector() {
-		double[] values = new double[datasetInfo.vocabulary.size()];
-
-		for (String word : datasetInfo.vocabulary.keySet()) {
-			Integer freq = datasetInfo.wordFrequency.get(word);
-			if (freq == null) continue;
-			values[datasetInfo.vocabulary.get(word)] = Math.log(datasetInfo.documents.size() / (double) freq);
-		}
-		datasetInfo.idf = new Vector(values);
+	protected static SparseVector getTFVector(MappedIndex index, Document d) {
+		if (d.getTFVector() != null || d.getId() < 0) return d.getTFVector();
+		return index.getTFVector(d.getId());
+	}
 
-		for (Document d : datasetInfo.documents.values()) {
-			d.setVector(Vector.multiply(d.getTFVector(), datasetInfo.idf));
-		}
+	/**
+	 * Gets the TF-IDF vector of the given document. The vectors of the
+	 * indexed documents are calculated from the index.
+	 *
+	 * @param index the index holding the document
+	 * @param d     the document
+	 * @return the TF-IDF vector of the document
+	 */
+	protected static SparseVector getVector(MappedIndex index, Document d) {
+		if (d.getVector() != null || d.getId() < 0) return d.getVector();
+		return SparseVector.multiply(getTFVector(index, d), index.getIDFVector());
 	}
 
 	/**
-	 * Calculates the similarity coefficients between all documents.
+	 * Gets the norm of the TF-IDF vector of the given document. The norms
+	 * of the indexed documents are stored in the index.
+	 *
+	 * @param index the index holding the document
+	 * @param d     the document
+	 * @return the norm of the document vector
 	 */
-	private void calculateSimilarities() {
-		Map<DatasetInfo.DocumentPair, Double> similiarities = new HashMap<>();
-		List<Document> documents = new ArrayList<>(datasetInfo.documents.values());
-		for (int i = 0; i < documents.size(); i++) {
-			for (int j = 0; j < documents.size(); j++) {
-				if (i >= j) continue;
-
-				Document d1 = documents.get(i);
-				Document d2 = documents.get(j);
-
-				double sim = d1.sim(d2) / d1.sim(d1);
-				similiarities.put(new DatasetInfo.DocumentPair(d1, d2), sim);
-			}
-		}
-		datasetInfo.similarities = similiarities;
+	protected static double getNorm(MappedIndex index, Document d) {
+		if (d.getVector() != null || d.getId() < 0) return d.getVector().norm();
+		return index.getDocumentNorm(d.getId());
 	}
 
 	/**
-	 * Retrieve the current ranking function.
+	 * Calculates the similarity coefficients between the documents, in
+	 * parallel. Only the pairs including at least one document with an ID
+	 * not smaller than the given one are compared, so the similarities of
+	 * the documents added to an index are calculated without comparing the
+	 * other documents again. Only the coefficients exceeding the given
+	 * threshold are kept.
 	 *
-	 * @return current ranking function
+	 * @param index     the index holding the documents
+	 * @param from      the ID of the first document whose similarities are
+	 *                  calculated; 0 for all the documents
+	 * @param threshold the similarity two documents need to exceed in order
+	 *                  to be considered similar
+	 * @return the similarities, ordered by the document IDs
 	 */
-	public static RankingFunction getCurrent() {
-		return function;
+	SimilarityList calculateSimilarities(MappedIndex index, int from, double threshold) {
+		AllPairsSimilarity task = new AllPairsSimilarity(this, index, threshold, from);
+		return ForkJoinPool.commonPool().invoke(task);
 	}
 
 	/**
-	 * Holds all the relevant information about the dataset.
+	 * Holds all the relevant information about the dataset while the index
+	 * is being built.
 	 *
 	 * @author Luka Cupic
 	 */
@@ -271,29 +323,66 @@ public abstract class RankingFunction {
 
 		/**
 		 * The collection of all words from all the documents (aka. dataset).
-		 * Each word maps to it's position (i.e. index) in the vocabulary.
+		 * Each word maps to it's position (i.e. index) in the vocabulary, which
+		 * also holds the number of occurrences in the documents for each word.
+		 */
+		public TermDictionary vocabulary = new TermDictionary();
+
+		/**
+		 * The store of all the documents, mapped to by their dense IDs and
+		 * their appropriate file system paths.
 		 */
-		public Map<String, Integer> vocabulary = new HashMap<>();
+		public DocumentStore documents = new DocumentStore();
 
 		/**
-		 * Holds the number of occurrences in the documents for each word from
-		 * the vocabulary.
+		 * The inverted index which maps each word from the vocabulary to the
+		 * postings of the documents containing it.
 		 */
-		public Map<String, Integer> wordFrequency = new LinkedHashMap<>();
+		public InvertedIndex index = new InvertedIndex();
 
 		/**
-		 * A map of all the documents, mapped to by their appropriate file system
-		 * paths.
+		 * The state of each document at the time it was indexed.
 		 */
-		public Map<String, Document> documents = new LinkedHashMap<>();
+		public Manifest manifest = new Manifest();
 
 		/**
-		 * A helper IDF vector which holds the IDF components for each of the
-		 * words from the vocabulary.
+		 * Adds the given document, whose TF vector refers to the words of the
+		 * {@link #vocabulary}. The document is added to the {@link #documents}
+		 * store, its postings are added to the {@link #index} and the
+		 * statistics of its words are updated in the vocabulary.
+		 *
+		 * @param document the document
+		 * @return the ID assigned to the document
 		 */
-		public Vector idf;
+		public int addDocument(Document document) {
+			int docId = documents.add(document);
+			SparseVector tf = document.getTFVector();
+			for (int i = 0; i < tf.size(); i++) {
+				int freq = (int) tf.getValue(i);
+				index.add(tf.getIndex(i), docId, freq);
+				vocabulary.addOccurrences(tf.getIndex(i), freq);
+			}
+			return docId;
+		}
 
-		public Map<DocumentPair, Double> similarities = new HashMap<>();
+		/**
+		 * Removes the document at the given path. The statistics of its words
+		 * are updated in the {@link #vocabulary}, while its postings are
+		 * removed once the {@link #documents} store is compacted.
+		 *
+		 * @param path the absolute path to the document
+		 * @return true iff the document was found
+		 */
+		public boolean removeDocument(String path) {
+			Document d = documents.remove(path);
+			if (d == null) return false;
+
+			SparseVector tf = d.getTFVector();
+			for (int i = 0; i < tf.size(); i++) {
+				vocabulary.removeOccurrences(tf.getIndex(i), (int) tf.getValue(i));
+			}
+			return true;
+		}
 
 		public static class DocumentPair implements Serializable {
 
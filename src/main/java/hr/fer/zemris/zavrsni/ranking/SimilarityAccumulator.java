@@ -0,0 +1,129 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the similarities of a single document, or the scores of a
+ * single query, to the documents of the index. The similarities are
+ * accumulated in a dense array indexed by the document IDs, while the IDs of
+ * the touched documents are remembered, so the accumulator can be reused for
+ * the next document without clearing the whole array.
+ *
+ * @author Luka Cupic
+ */
+public class SimilarityAccumulator {
+
+	/**
+	 * The accumulated similarities, indexed by the document IDs.
+	 */
+	private final double[] scores;
+
+	/**
+	 * The round in which each document was last touched.
+	 */
+	private final int[] rounds;
+
+	/**
+	 * The IDs of the documents touched in the current round.
+	 */
+	private final int[] docIds;
+
+	/**
+	 * The number of documents touched in the current round.
+	 */
+	private int size;
+
+	/**
+	 * The current round.
+	 */
+	private int round = 1;
+
+	/**
+	 * Creates a new accumulator.
+	 *
+	 * @param numDocs the number of documents in the index
+	 */
+	SimilarityAccumulator(int numDocs) {
+		scores = new double[numDocs];
+		rounds = new int[numDocs];
+		docIds = new int[numDocs];
+	}
+
+	/**
+	 * Adds the given value to the similarity of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @param value the value to add
+	 */
+	public void add(int docId, double value) {
+		if (rounds[docId] != round) {
+			rounds[docId] = round;
+			scores[docId] = 0;
+			docIds[size++] = docId;
+		}
+		scores[docId] += value;
+	}
+
+	/**
+	 * Gets the accumulated similarity of the given document.
+	 *
+	 * @param docId the ID of the document
+	 * @return the accumulated similarity, or 0 if the document was not touched
+	 */
+	public double get(int docId) {
+		return rounds[docId] == round ? scores[docId] : 0;
+	}
+
+	/**
+	 * Replaces the accumulated similarity of the given touched document.
+	 *
+	 * @param docId the ID of the document
+	 * @param value the new similarity
+	 */
+	public void set(int docId, double value) {
+		scores[docId] = value;
+	}
+
+	/**
+	 * Gets the number of documents the accumulator can hold.
+	 *
+	 * @return the largest document ID plus one
+	 */
+	int capacity() {
+		return scores.length;
+	}
+
+	/**
+	 * Gets the number of touched documents.
+	 *
+	 * @return the number of touched documents
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the ID of the i-th touched document.
+	 *
+	 * @param i the index of the touched document
+	 * @return the ID of the document
+	 */
+	public int getDocId(int i) {
+		return docIds[i];
+	}
+
+	/**
+	 * Orders the touched documents by their IDs.
+	 */
+	void sort() {
+		Arrays.sort(docIds, 0, size);
+	}
+
+	/**
+	 * Starts a new round, forgetting all the accumulated similarities.
+	 */
+	void reset() {
+		round++;
+		size = 0;
+	}
+}
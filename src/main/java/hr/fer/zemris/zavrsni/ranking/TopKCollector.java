@@ -0,0 +1,252 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.Result;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Collects the K best scoring documents of a query. The collected documents
+ * are kept in a binary min-heap stored in primitive arrays, whose root is
+ * the worst of the collected documents; a new document only enters the heap
+ * if it scores better than the root. Collecting M scores therefore costs
+ * O(M log K) and does not allocate any objects.
+ * <p>
+ * Documents with a score of 0 or NaN do not match the query and are ignored.
+ * Between documents with equal scores, the one with the smaller ID wins.
+ * <p>
+ * An optional filter can reject documents. Since filtering may be costly,
+ * like matching the phrases of a query, a document is filtered only once it
+ * scores well enough to be collected.
+ *
+ * @author Luka Cupic
+ */
+public class TopKCollector {
+
+	/**
+	 * The initial capacity of the heap.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The maximum number of documents to collect.
+	 */
+	private final int k;
+
+	/**
+	 * The filter of the documents, or null.
+	 */
+	private final IntPredicate filter;
+
+	/**
+	 * The IDs of the collected documents, in heap order.
+	 */
+	private int[] docIds;
+
+	/**
+	 * The scores of the collected documents, in heap order.
+	 */
+	private double[] scores;
+
+	/**
+	 * The number of collected documents.
+	 */
+	private int size;
+
+	/**
+	 * Whether the heap has been sorted; no more documents can be collected
+	 * after that.
+	 */
+	private boolean sorted;
+
+	/**
+	 * Creates a new collector.
+	 *
+	 * @param k the maximum number of documents to collect
+	 * @throws IllegalArgumentException if k is negative
+	 */
+	public TopKCollector(int k) {
+		this(k, null);
+	}
+
+	/**
+	 * Creates a new collector which collects only the documents accepted by
+	 * the given filter.
+	 *
+	 * @param k      the maximum number of documents to collect
+	 * @param filter the filter of the document IDs, or null
+	 * @throws IllegalArgumentException if k is negative
+	 */
+	public TopKCollector(int k, IntPredicate filter) {
+		if (k < 0) {
+			throw new IllegalArgumentException("The number of documents must not be negative: " + k);
+		}
+		this.k = k;
+		this.filter = filter;
+		docIds = new int[Math.min(k, INITIAL_CAPACITY)];
+		scores = new double[docIds.length];
+	}
+
+	/**
+	 * Offers the score of the given document to the collector.
+	 *
+	 * @param docId the ID of the document
+	 * @param score the score of the document
+	 * @return true iff the document was collected
+	 */
+	public boolean collect(int docId, double score) {
+		if (sorted) {
+			throw new IllegalStateException("The results have already been retrieved.");
+		}
+		if (score == 0 || Double.isNaN(score)) return false;
+
+		if (size < k) {
+			if (filter != null && !filter.test(docId)) return false;
+			if (size == docIds.length) {
+				int capacity = (int) Math.min(k, docIds.length * 2L);
+				docIds = Arrays.copyOf(docIds, capacity);
+				scores = Arrays.copyOf(scores, capacity);
+			}
+			docIds[size] = docId;
+			scores[size] = score;
+			siftUp(size++);
+			return true;
+		}
+
+		if (k == 0 || !isWorse(scores[0], docIds[0], score, docId)) return false;
+		if (filter != null && !filter.test(docId)) return false;
+		docIds[0] = docId;
+		scores[0] = score;
+		siftDown(0, size);
+		return true;
+	}
+
+	/**
+	 * Gets the score a document has to exceed in order to be collected. The
+	 * score is 0 until K documents have been collected, and then it is the
+	 * score of the worst of them.
+	 *
+	 * @return the minimal competitive score
+	 */
+	public double getMinScore() {
+		return size < k || k == 0 ? 0 : scores[0];
+	}
+
+	/**
+	 * Checks whether K documents have been collected.
+	 *
+	 * @return true iff the collector is full
+	 */
+	public boolean isFull() {
+		return size == k;
+	}
+
+	/**
+	 * Gets the number of collected documents.
+	 *
+	 * @return the number of collected documents
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the collected documents ordered by their scores, from the
+	 * best to the worst, skipping the first {@code offset} of them. Once
+	 * the results are retrieved, no more documents can be collected.
+	 *
+	 * @param offset    the number of the best documents to skip
+	 * @param documents maps the ID of a document to the document
+	 * @return the results
+	 */
+	public List<Result> getResults(int offset, IntFunction<Document> documents) {
+		sort();
+		if (offset >= size) return Collections.emptyList();
+
+		List<Result> results = new ArrayList<>(size - offset);
+		for (int i = offset; i < size; i++) {
+			results.add(new Result(scores[i], documents.apply(docIds[i])));
+		}
+		return results;
+	}
+
+	/**
+	 * Sorts the heap in place, from the best to the worst document, by
+	 * repeatedly moving the worst document to the end.
+	 */
+	private void sort() {
+		if (sorted) return;
+		for (int end = size - 1; end > 0; end--) {
+			swap(0, end);
+			siftDown(0, end);
+		}
+		sorted = true;
+	}
+
+	/**
+	 * Moves the element at the given position up the heap.
+	 *
+	 * @param i the position of the element
+	 */
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!isWorse(scores[i], docIds[i], scores[parent], docIds[parent])) break;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Moves the element at the given position down the heap.
+	 *
+	 * @param i    the position of the element
+	 * @param size the size of the heap
+	 */
+	private void siftDown(int i, int size) {
+		while (true) {
+			int worst = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < size && isWorse(scores[left], docIds[left], scores[worst], docIds[worst])) worst = left;
+			if (right < size && isWorse(scores[right], docIds[right], scores[worst], docIds[worst])) worst = right;
+			if (worst == i) return;
+			swap(i, worst);
+			i = worst;
+		}
+	}
+
+	/**
+	 * Swaps the elements at the given positions.
+	 *
+	 * @param i the position of the first element
+	 * @param j the position of the second element
+	 */
+	private void swap(int i, int j) {
+		int docId = docIds[i];
+		docIds[i] = docIds[j];
+		docIds[j] = docId;
+
+		double score = scores[i];
+		scores[i] = scores[j];
+		scores[j] = score;
+	}
+
+	/**
+	 * Checks whether the first document is worse than the second one.
+	 *
+	 * @param score1 the score of the first document
+	 * @param docId1 the ID of the first document
+	 * @param score2 the score of the second document
+	 * @param docId2 the ID of the second document
+	 * @return true iff the first document ranks below the second one
+	 */
+	private static boolean isWorse(double score1, int docId1, double score2, int docId2) {
+		return score1 < score2 || (score1 == score2 && docId1 > docId2);
+	}
+}
@@ -0,0 +1,552 @@
+package hr.fer.zemris.zavrsni.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import hr.fer.zemris.zavrsni.input.DocumentReader;
+import hr.fer.zemris.zavrsni.input.PDFReader;
+import hr.fer.zemris.zavrsni.input.QueryReader;
+import hr.fer.zemris.zavrsni.model.Result;
+import hr.fer.zemris.zavrsni.ranking.IndexSearcher;
+import hr.fer.zemris.zavrsni.ranking.QueryCache;
+import hr.fer.zemris.zavrsni.utils.JSONUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * A headless HTTP service answering the searches through the
+ * {@link IndexSearcher}s of the current index, built on the HTTP server of
+ * the JDK. Every request takes a new searcher from the given supplier, so
+ * the requests see the index as of their start, even after the index has
+ * been updated or merged. The service has the following endpoints, all of
+ * which respond with JSON:
+ * <ul>
+ * <li>{@code GET /search?q=<query>[&offset=<n>][&count=<n>]} - searches for
+ * the textual query, which may contain exact phrases in double quotes and
+ * proximity phrases, such as {@code "power supply"~3}</li>
+ * <li>{@code POST /search/document[?offset=<n>][&count=<n>]} - searches for
+ * the document sent as the request body</li>
+ * <li>{@code GET /search/like?id=<document ID>[&offset=<n>][&count=<n>]} -
+ * searches for the documents like an indexed document</li>
+ * <li>{@code GET /similar?id=<document ID>[&k=<n>]} - finds the documents
+ * similar to an indexed document</li>
+ * <li>{@code POST /similar/document[?k=<n>]} - finds the documents similar
+ * to the document sent as the request body</li>
+ * <li>{@code GET /stats} - the number of the documents and the segments of
+ * the index and the hits and the misses of the query cache</li>
+ * </ul>
+ * A document is sent either as a PDF file or, if the content type of the
+ * request is {@code text/*}, as plain text in UTF-8.
+ * <p>
+ * The requests are handled by the given executor, so the number of
+ * concurrent searches is bounded only by the executor; see
+ * {@link #newExecutor(String)}.
+ *
+ * @author Luka Cupic
+ */
+public class SearchServer {
+
+	/**
+	 * The default port of the service.
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * The default number of results of a single request.
+	 */
+	public static final int DEFAULT_COUNT = 10;
+
+	/**
+	 * The maximum number of results of a single request.
+	 */
+	public static final int MAX_COUNT = 1000;
+
+	/**
+	 * The maximum size of an uploaded document (64 MB).
+	 */
+	public static final int MAX_UPLOAD_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * The name given to the uploaded PDF documents, which have no path.
+	 */
+	private static final String UPLOAD_NAME = "upload.pdf";
+
+	/**
+	 * The HTTP server.
+	 */
+	private final HttpServer server;
+
+	/**
+	 * The executor handling the requests.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Supplies the searcher answering each request.
+	 */
+	private final Supplier<IndexSearcher> searchers;
+
+	/**
+	 * Creates a new service answering all the requests with the given
+	 * searcher, which is not started yet.
+	 *
+	 * @param searcher the searcher answering the requests
+	 * @param address  the address to listen on
+	 * @param executor the executor handling the requests, shut down when
+	 *                 the service is stopped
+	 * @throws IOException if the server cannot be bound to the address
+	 */
+	public SearchServer(IndexSearcher searcher, InetSocketAddress address, ExecutorService executor) throws IOException {
+		this(constant(Objects.requireNonNull(searcher)), address, executor);
+	}
+
+	/**
+	 * Creates a new service, which is not started yet.
+	 *
+	 * @param searchers supplies the searcher answering each request, such
+	 *                  as {@code () -> dataset.newSearcher(cache)}
+	 * @param address   the address to listen on
+	 * @param executor  the executor handling the requests, shut down when
+	 *                  the service is stopped
+	 * @throws IOException if the server cannot be bound to the address
+	 */
+	public SearchServer(Supplier<IndexSearcher> searchers, InetSocketAddress address, ExecutorService executor) throws IOException {
+		this.searchers = Objects.requireNonNull(searchers);
+		this.executor = Objects.requireNonNull(executor);
+
+		server = HttpServer.create(address, 0);
+		server.setExecutor(executor);
+		server.createContext("/search", handler("GET", this::search));
+		server.createContext("/search/document", handler("POST", this::searchDocument));
+		server.createContext("/search/like", handler("GET", this::searchLike));
+		server.createContext("/similar", handler("GET", this::similar));
+		server.createContext("/similar/document", handler("POST", this::similarDocument));
+		server.createContext("/stats", handler("GET", this::stats));
+		server.createContext("/", handler("GET", (exchange, params) -> {
+			throw new RequestException(404, "Not found.");
+		}));
+	}
+
+	/**
+	 * Starts the service.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops the service, waiting for the requests which are being handled
+	 * to complete, and shuts the executor down.
+	 *
+	 * @param delay the maximum time to wait for the requests, in seconds
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	 * Gets the address the service is listening on.
+	 *
+	 * @return the address
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	// -------------------------------- endpoints ---------------------------------
+
+	/**
+	 * Searches for the textual query given by the parameter {@code q}.
+	 *
+	 * @see Endpoint#handle(HttpExchange, Map)
+	 */
+	private String search(HttpExchange exchange, Map<String, String> params) throws IOException {
+		IndexSearcher searcher = searchers.get();
+		String query = params.get("q");
+		if (query == null) {
+			throw new RequestException(400, "The query parameter 'q' is missing.");
+		}
+		int offset = getInt(params, "offset", 0, Integer.MAX_VALUE, 0);
+		int count = getInt(params, "count", 0, MAX_COUNT, DEFAULT_COUNT);
+		List<Result> results = searcher.search(query, offset, count);
+
+		StringBuilder sb = new StringBuilder("{\"query\":");
+		JSONUtils.appendString(sb, query);
+		sb.append(",\"offset\":").append(offset).append(",\"results\":");
+		return JSONUtils.appendResults(sb, results).append('}').toString();
+	}
+
+	/**
+	 * Searches for the document sent as the body of the request.
+	 *
+	 * @see Endpoint#handle(HttpExchange, Map)
+	 */
+	private String searchDocument(HttpExchange exchange, Map<String, String> params) throws IOException {
+		IndexSearcher searcher = searchers.get();
+		int offset = getInt(params, "offset", 0, Integer.MAX_VALUE, 0);
+		int count = getInt(params, "count", 0, MAX_COUNT, DEFAULT_COUNT);
+		DocumentReader reader = readDocument(exchange);
+
+		List<Result> results;
+		try {
+			results = searcher.search(reader, offset, count);
+		} catch (IOException e) {
+			throw new RequestException(400, "The document could not be read.");
+		}
+
+		StringBuilder sb = new StringBuilder("{\"offset\":").append(offset).append(",\"results\":");
+		return JSONUtils.appendResults(sb, results).append('}').toString();
+	}
+
+	/**
+	 * Searches for the documents like the indexed document with the ID given
+	 * by the parameter {@code id}.
+	 *
+	 * @see Endpoint#handle(HttpExchange, Map)
+	 */
+	private String searchLike(HttpExchange exchange, Map<String, String> params) {
+		IndexSearcher searcher = searchers.get();
+		if (!params.containsKey("id")) {
+			throw new RequestException(400, "The query parameter 'id' is missing.");
+		}
+		int id = getInt(params, "id", 0, searcher.getIndex().getNumberOfDocuments() - 1, 0);
+		int offset = getInt(params, "offset", 0, Integer.MAX_VALUE, 0);
+		int count = getInt(params, "count", 0, MAX_COUNT, DEFAULT_COUNT);
+		List<Result> results = searcher.moreLikeThis(id, offset, count);
+
+		StringBuilder sb = new StringBuilder("{\"id\":").append(id);
+		sb.append(",\"offset\":").append(offset).append(",\"results\":");
+		return JSONUtils.appendResults(sb, results).append('}').toString();
+	}
+
+	/**
+	 * Finds the documents similar to the indexed document with the ID given
+	 * by the parameter {@code id}.
+	 *
+	 * @see Endpoint#handle(HttpExchange, Map)
+	 */
+	private String similar(HttpExchange exchange, Map<String, String> params) {
+		IndexSearcher searcher = searchers.get();
+		if (!params.containsKey("id")) {
+			throw new RequestException(400, "The query parameter 'id' is missing.");
+		}
+		int id = getInt(params, "id", 0, searcher.getIndex().getNumberOfDocuments() - 1, 0);
+		int k = getInt(params, "k", 0, MAX_COUNT, DEFAULT_COUNT);
+		List<Result> results = searcher.findSimilar(id, k);
+
+		StringBuilder sb = new StringBuilder("{\"id\":").append(id).append(",\"results\":");
+		return JSONUtils.appendResults(sb, results).append('}').toString();
+	}
+
+	/**
+	 * Finds the documents similar to the document sent as the body of the
+	 * request.
+	 *
+	 * @see Endpoint#handle(HttpExchange, Map)
+	 */
+	private String similarDocument(HttpExchange exchange, Map<String, String> params) throws IOException {
+		IndexSearcher searcher = searchers.get();
+		int k = getInt(params, "k", 0, MAX_COUNT, DEFAULT_COUNT);
+		DocumentReader reader = readDocument(exchange);
+
+		List<Result> results;
+		try {
+			results = searcher.findSimilar(reader, k);
+		} catch (IOException e) {
+			throw new RequestException(400, "The document could not be read.");
+		}
+
+		StringBuilder sb = new StringBuilder("{\"results\":");
+		return JSONUtils.appendResults(sb, results).append('}').toString();
+	}
+
+	/**
+	 * Reports the number of the indexed documents and the segments of the
+	 * index and, if the searcher caches the query results, the statistics
+	 * of the cache.
+	 *
+	 * @see Endpoint#handle(HttpExchange, Map)
+	 */
+	private String stats(HttpExchange exchange, Map<String, String> params) {
+		IndexSearcher searcher = searchers.get();
+		StringBuilder sb = new StringBuilder("{\"documents\":").append(searcher.getIndex().getNumberOfDocuments());
+		sb.append(",\"segments\":").append(searcher.getIndex().getNumberOfSegments());
+		QueryCache cache = searcher.getCache();
+		if (cache != null) {
+			sb.append(",\"cache\":{\"size\":").append(cache.size());
+			sb.append(",\"hits\":").append(cache.getHits());
+			sb.append(",\"misses\":").append(cache.getMisses()).append('}');
+		}
+		return sb.append('}').toString();
+	}
+
+	// ------------------------------ request handling -----------------------------
+
+	/**
+	 * Creates a supplier of the given searcher.
+	 *
+	 * @param searcher the searcher
+	 * @return the supplier
+	 */
+	private static Supplier<IndexSearcher> constant(IndexSearcher searcher) {
+		return () -> searcher;
+	}
+
+	/**
+	 * An endpoint of the service.
+	 */
+	@FunctionalInterface
+	private interface Endpoint {
+
+		/**
+		 * Handles the request.
+		 *
+		 * @param exchange the exchange of the request
+		 * @param params   the decoded query parameters
+		 * @return the JSON response
+		 * @throws IOException if an error occurs while handling the request
+		 */
+		String handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+	}
+
+	/**
+	 * Creates a handler which passes the requests with the given method and
+	 * the exact path of the context to the given endpoint, and sends the
+	 * response of the endpoint or the error.
+	 *
+	 * @param method   the HTTP method of the endpoint
+	 * @param endpoint the endpoint
+	 * @return the handler
+	 */
+	private static HttpHandler handler(String method, Endpoint endpoint) {
+		return exchange -> {
+			try {
+				if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+					throw new RequestException(404, "Not found.");
+				}
+				if (!exchange.getRequestMethod().equals(method)) {
+					exchange.getResponseHeaders().set("Allow", method);
+					throw new RequestException(405, "Method not allowed.");
+				}
+				send(exchange, 200, endpoint.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery())));
+			} catch (RequestException e) {
+				send(exchange, e.status, error(e.getMessage()));
+			} catch (IllegalArgumentException e) {
+				send(exchange, 400, error(e.getMessage()));
+			} catch (Exception e) {
+				e.printStackTrace();
+				send(exchange, 500, error("Internal server error."));
+			} finally {
+				exchange.close();
+			}
+		};
+	}
+
+	/**
+	 * Sends the given JSON response.
+	 *
+	 * @param exchange the exchange of the request
+	 * @param status   the HTTP status code
+	 * @param json     the response
+	 * @throws IOException if the response cannot be sent
+	 */
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+	/**
+	 * Creates the JSON response describing an error.
+	 *
+	 * @param message the message of the error
+	 * @return the response
+	 */
+	private static String error(String message) {
+		return JSONUtils.appendString(new StringBuilder("{\"error\":"), String.valueOf(message)).append('}').toString();
+	}
+
+	/**
+	 * Reads the document sent as the body of the request.
+	 *
+	 * @param exchange the exchange of the request
+	 * @return the reader of the document
+	 * @throws IOException if the body cannot be read
+	 */
+	private static DocumentReader readDocument(HttpExchange exchange) throws IOException {
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (length != null && Long.parseLong(length.trim()) > MAX_UPLOAD_SIZE) {
+			throw new RequestException(413, "The document is larger than " + MAX_UPLOAD_SIZE + " bytes.");
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (InputStream is = exchange.getRequestBody()) {
+			byte[] buffer = new byte[8192];
+			for (int n; (n = is.read(buffer)) != -1; ) {
+				if (body.size() + n > MAX_UPLOAD_SIZE) {
+					throw new RequestException(413, "The document is larger than " + MAX_UPLOAD_SIZE + " bytes.");
+				}
+				body.write(buffer, 0, n);
+			}
+		}
+		if (body.size() == 0) {
+			throw new RequestException(400, "The document is missing.");
+		}
+
+		String type = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (type != null && type.trim().toLowerCase().startsWith("text/")) {
+			return new QueryReader(new String(body.toByteArray(), StandardCharsets.UTF_8));
+		}
+		return new PDFReader(Paths.get(UPLOAD_NAME), body.toByteArray());
+	}
+
+	/**
+	 * Decodes the given query string into a map of parameters.
+	 *
+	 * @param query the raw query string, or null
+	 * @return the parameters
+	 * @throws UnsupportedEncodingException never, since UTF-8 is always supported
+	 */
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<>();
+		if (query == null || query.isEmpty()) return params;
+
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+		return params;
+	}
+
+	/**
+	 * Gets the value of the given integer parameter.
+	 *
+	 * @param params       the parameters
+	 * @param name         the name of the parameter
+	 * @param min          the minimum value
+	 * @param max          the maximum value
+	 * @param defaultValue the value of a missing parameter
+	 * @return the value
+	 * @throws RequestException if the value is not an integer in the range
+	 */
+	private static int getInt(Map<String, String> params, String name, int min, int max, int defaultValue) {
+		String value = params.get(name);
+		if (value == null) return defaultValue;
+		try {
+			int n = Integer.parseInt(value);
+			if (n >= min && n <= max) return n;
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new RequestException(400, "The parameter '" + name + "' must be an integer between "
+				+ min + " and " + max + ".");
+	}
+
+	/**
+	 * An error which is reported to the client with the given status.
+	 */
+	private static class RequestException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The HTTP status code.
+		 */
+		final int status;
+
+		/**
+		 * Creates a new exception.
+		 *
+		 * @param status  the HTTP status code
+		 * @param message the message for the client
+		 */
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	// -------------------------------- executors --------------------------------
+
+	/**
+	 * Creates the executor described by the given specification, which is
+	 * either {@code virtual}, for a new virtual thread per request, or the
+	 * number of threads of a fixed pool.
+	 *
+	 * @param spec the specification
+	 * @return the executor
+	 * @throws IllegalArgumentException if the specification is invalid, or
+	 *                                  if virtual threads are not supported
+	 */
+	public static ExecutorService newExecutor(String spec) {
+		if (spec.equals("virtual")) {
+			ExecutorService executor = newVirtualThreadExecutor();
+			if (executor == null) {
+				throw new IllegalArgumentException("Virtual threads are not supported by this JVM.");
+			}
+			return executor;
+		}
+
+		int threads;
+		try {
+			threads = Integer.parseInt(spec);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid executor: " + spec);
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive.");
+		}
+		return Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Creates the default executor, which starts a new virtual thread per
+	 * request if the JVM supports virtual threads, and is a fixed pool of
+	 * two threads per processor otherwise.
+	 *
+	 * @return the executor
+	 */
+	public static ExecutorService newDefaultExecutor() {
+		ExecutorService executor = newVirtualThreadExecutor();
+		if (executor != null) return executor;
+		return Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates an executor starting a new virtual thread per task. The
+	 * executor is looked up reflectively, since the project is compiled
+	 * for JVMs which do not have virtual threads.
+	 *
+	 * @return the executor, or null if virtual threads are not supported
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package hr.fer.zemris.zavrsni.utils;
+
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.Result;
+
+import java.util.List;
+
+/**
+ * Writes the results of the searches as JSON.
+ *
+ * @author Luka Cupic
+ */
+public class JSONUtils {
+
+	/**
+	 * Appends the given results to the given builder, as a JSON array of
+	 * objects holding the ID, the path, the name and the score of each
+	 * document.
+	 *
+	 * @param sb      the builder
+	 * @param results the results
+	 * @return the builder
+	 */
+	public static StringBuilder appendResults(StringBuilder sb, List<Result> results) {
+		sb.append('[');
+		for (int i = 0; i < results.size(); i++) {
+			if (i > 0) sb.append(',');
+			Result result = results.get(i);
+			Document d = result.getDocument();
+
+			sb.append("{\"id\":").append(d.getId());
+			sb.append(",\"path\":");
+			appendString(sb, String.valueOf(d.getPath()));
+			sb.append(",\"name\":");
+			appendString(sb, d.toString());
+			sb.append(",\"score\":");
+			appendNumber(sb, result.getSim());
+			sb.append('}');
+		}
+		return sb.append(']');
+	}
+
+	/**
+	 * Appends the given string to the given builder, as a JSON string.
+	 *
+	 * @param sb   the builder
+	 * @param text the string
+	 * @return the builder
+	 */
+	public static StringBuilder appendString(StringBuilder sb, String text) {
+		sb.append('"');
+		for (int i = 0, n = text.length(); i < n; i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		return sb.append('"');
+	}
+
+	/**
+	 * Appends the given number to the given builder. JSON has no notation
+	 * for infinities and NaN, so they are written as null.
+	 *
+	 * @param sb    the builder
+	 * @param value the number
+	 * @return the builder
+	 */
+	public static StringBuilder appendNumber(StringBuilder sb, double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return sb.append("null");
+		}
+		return sb.append(value);
+	}
+}
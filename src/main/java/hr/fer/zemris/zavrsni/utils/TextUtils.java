@@ -2,22 +2,31 @@ package hr.fer.zemris.zavrsni.utils;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class TextUtils {
 
 	/**
 	 * Extracts the words from the given string and returns them as a list.
+	 * The words are the maximal sequences of English letters, converted to
+	 * lower case.
 	 *
 	 * @param text the text to extract the words from
 	 * @return an {@link ArrayList} collection of extracted  words
 	 */
-	public static List<String> getWordsFromText(String text) {
-		text = text.replaceAll("[^A-Za-z[\t][\n][\r]]+", " ").trim().toLowerCase();
-		List<String> words = Arrays.asList(text.split(" "));
-		return words.stream().filter(s -> !s.isEmpty()).collect(Collectors.toList());
+	public static List<String> getWordsFromText(CharSequence text) {
+		List<String> words = new ArrayList<>();
+		StringBuilder word = new StringBuilder();
+		for (int i = 0, n = text.length(); i <= n; i++) {
+			char c = i < n ? text.charAt(i) : ' ';
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				word.append(Character.toLowerCase(c));
+			} else if (word.length() > 0) {
+				words.add(word.toString());
+				word.setLength(0);
+			}
+		}
+		return words;
 	}
 
 	/**
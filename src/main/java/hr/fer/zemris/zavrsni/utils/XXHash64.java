@@ -0,0 +1,173 @@
+package hr.fer.zemris.zavrsni.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Calculates the XXH64 hash of the file contents. XXH64 is a fast,
+ * non-cryptographic hash, which is good enough for telling whether the
+ * contents of a file have changed, while being much faster than MD5.
+ *
+ * @author Luka Cupic
+ */
+public class XXHash64 {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	/**
+	 * The number of bytes consumed by a single round of the four lanes.
+	 */
+	private static final int STRIPE = 32;
+
+	/**
+	 * The size of the buffer the files are read through; a multiple of {@link #STRIPE}.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The four lanes of the state.
+	 */
+	private long v1 = PRIME1 + PRIME2, v2 = PRIME2, v3 = 0, v4 = -PRIME1;
+
+	/**
+	 * The number of bytes hashed so far.
+	 */
+	private long length;
+
+	/**
+	 * Hashes the contents of the file at the given path.
+	 *
+	 * @param path the path to the file
+	 * @return the hash, as a hex string
+	 * @throws IOException if the file cannot be read
+	 */
+	public static String hash(Path path) throws IOException {
+		XXHash64 hash = new XXHash64();
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			boolean end;
+			do {
+				buffer.clear();
+				end = fill(channel, buffer);
+				buffer.flip();
+				hash.update(buffer);
+			} while (!end);
+		}
+		return toHex(hash.digest(buffer));
+	}
+
+	/**
+	 * Hashes the given bytes.
+	 *
+	 * @param bytes the bytes
+	 * @return the hash, as a hex string
+	 */
+	public static String hash(byte[] bytes) {
+		XXHash64 hash = new XXHash64();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		hash.update(buffer);
+		return toHex(hash.digest(buffer));
+	}
+
+	/**
+	 * Reads from the given channel until the buffer is full or the end of
+	 * the channel is reached.
+	 *
+	 * @param channel the channel
+	 * @param buffer  the buffer
+	 * @return true iff the end of the channel has been reached
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) == -1) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Consumes all the whole stripes of the given buffer.
+	 *
+	 * @param buffer the buffer, in little-endian order
+	 */
+	private void update(ByteBuffer buffer) {
+		while (buffer.remaining() >= STRIPE) {
+			v1 = round(v1, buffer.getLong());
+			v2 = round(v2, buffer.getLong());
+			v3 = round(v3, buffer.getLong());
+			v4 = round(v4, buffer.getLong());
+			length += STRIPE;
+		}
+	}
+
+	/**
+	 * Consumes the remaining bytes of the given buffer, which must be the
+	 * last bytes of the input, and calculates the hash.
+	 *
+	 * @param buffer the buffer, in little-endian order
+	 * @return the hash
+	 */
+	private long digest(ByteBuffer buffer) {
+		long h;
+		if (length >= STRIPE) {
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = merge(h, v1);
+			h = merge(h, v2);
+			h = merge(h, v3);
+			h = merge(h, v4);
+		} else {
+			h = PRIME5;
+		}
+		h += length + buffer.remaining();
+
+		while (buffer.remaining() >= 8) {
+			h ^= round(0, buffer.getLong());
+			h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+		}
+		if (buffer.remaining() >= 4) {
+			h ^= (buffer.getInt() & 0xFFFFFFFFL) * PRIME1;
+			h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+		}
+		while (buffer.hasRemaining()) {
+			h ^= (buffer.get() & 0xFF) * PRIME5;
+			h = Long.rotateLeft(h, 11) * PRIME1;
+		}
+
+		h ^= h >>> 33;
+		h *= PRIME2;
+		h ^= h >>> 29;
+		h *= PRIME3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME1;
+	}
+
+	private static long merge(long acc, long lane) {
+		acc ^= round(0, lane);
+		return acc * PRIME1 + PRIME4;
+	}
+
+	/**
+	 * Converts the given hash to a hex string of fixed length.
+	 *
+	 * @param hash the hash
+	 * @return the hex string
+	 */
+	private static String toHex(long hash) {
+		String hex = Long.toHexString(hash);
+		return "0000000000000000".substring(hex.length()) + hex;
+	}
+}
@@ -0,0 +1,400 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link IndexWriter} against rebuilding the index from scratch.
+ * The documents are added, changed and removed by a series of commits while
+ * the segments are merged in the background, and the resulting index has to
+ * hold the same documents, words, postings and statistics as the index of
+ * the remaining documents written at once. The similarities are compared as
+ * well: the similarities of the added documents are calculated exactly,
+ * while those of the kept documents are carried over unchanged.
+ *
+ * @author Luka Cupic
+ */
+public class IndexWriterTest {
+
+	/**
+	 * The number of distinct words of the documents.
+	 */
+	private static final int VOCABULARY_SIZE = 200;
+
+	/**
+	 * The cosine similarity two documents need to exceed in order to be
+	 * stored.
+	 */
+	private static final double THRESHOLD = 0.1;
+
+	/**
+	 * The tolerance of the compared statistics, which are stored as floats.
+	 */
+	private static final double EPSILON = 1e-6;
+
+	/**
+	 * The number of commits.
+	 */
+	private static final int COMMITS = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void commitsAndMergesMatchRebuild() throws IOException, InterruptedException {
+		Random random = new Random(31);
+		MergePolicy policy = new MergePolicy(2, 1);
+		AtomicInteger merges = new AtomicInteger();
+		Path dir = folder.newFolder().toPath();
+
+		// the words of the remaining documents, by their numbers, in the order of their IDs
+		Map<Integer, List<String>> documents = new LinkedHashMap<>();
+		List<Integer> removed = new ArrayList<>();
+		List<Integer> added = new ArrayList<>();
+		int next = 0;
+
+		IndexWriter writer = IndexWriter.create(dir, policy, i -> merges.incrementAndGet());
+		MappedIndex index = writer.getIndex();
+		for (int c = 0; c < COMMITS; c++) {
+			removed.clear();
+			added.clear();
+			List<Integer> numbers = new ArrayList<>(documents.keySet());
+			Collections.shuffle(numbers, random);
+
+			// some of the removed documents are changed instead, and added again under the same path
+			if (c > 0 && c != 5) {
+				for (int number : numbers.subList(0, Math.min(numbers.size(), 1 + random.nextInt(6)))) {
+					removed.add(number);
+					documents.remove(number);
+					if (random.nextBoolean()) added.add(number);
+				}
+			}
+			if (c != 3 && c != 5) {
+				for (int n = c >= COMMITS - 2 ? 1 : 5 + random.nextInt(20); n > 0; n--) {
+					added.add(next++);
+				}
+			}
+			for (int number : added) {
+				documents.put(number, SyntheticCorpus.words(random, 10 + random.nextInt(70), VOCABULARY_SIZE));
+			}
+
+			DatasetInfo info = new DatasetInfo();
+			for (int number : documents.keySet()) {
+				info.manifest.put(SyntheticCorpus.path(number).toString(), new Manifest.Entry(0, 0, ""));
+			}
+			for (int number : added) {
+				SyntheticCorpus.add(info, SyntheticCorpus.path(number), documents.get(number));
+			}
+			List<String> paths = new ArrayList<>();
+			for (int number : removed) paths.add(SyntheticCorpus.path(number).toString());
+
+			MappedIndex previous = index;
+			index = writer.commit(info, paths, IndexWriterTest::calculateSimilarities);
+
+			checkDocuments(index, documents);
+			checkSimilarities(previous, index, added.size());
+		}
+
+		// the background merges are awaited until no more merges are needed
+		for (int i = 0; i < 600 && policy.findMerge(writer.getIndex().getCommit().sizes) != null; i++) {
+			Thread.sleep(100);
+		}
+		writer.close();
+		assertTrue(merges.get() > 0);
+		MappedIndex merged = writer.getIndex();
+		assertNull(policy.findMerge(merged.getCommit().sizes));
+		checkDocuments(merged, documents);
+
+		// the remaining documents are written again, at once
+		DatasetInfo info = new DatasetInfo();
+		for (Map.Entry<Integer, List<String>> document : documents.entrySet()) {
+			SyntheticCorpus.add(info, SyntheticCorpus.path(document.getKey()), document.getValue());
+		}
+		MappedIndex rebuilt;
+		try (IndexWriter rebuilder = IndexWriter.create(folder.newFolder().toPath(), policy, i -> {})) {
+			rebuilt = rebuilder.commit(info, Collections.emptyList(), IndexWriterTest::calculateSimilarities);
+		}
+		assertEquals(1, rebuilt.getNumberOfSegments());
+
+		compare(rebuilt, merged);
+		compare(merged, MappedIndex.open(dir));
+
+		// the similarities of the last added documents are calculated with the final statistics
+		int numDocs = merged.getNumberOfDocuments();
+		for (int doc1 = 0; doc1 < numDocs; doc1++) {
+			for (int doc2 = Math.max(doc1 + 1, numDocs - added.size()); doc2 < numDocs; doc2++) {
+				assertEquals(rebuilt.getSimilarity(doc1, doc2), merged.getSimilarity(doc1, doc2), EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void removesDocumentsByEquivalentPaths() throws IOException {
+		Random random = new Random(32);
+		DatasetInfo info = new DatasetInfo();
+		for (int d = 0; d < 3; d++) {
+			// the documents are added through relative, unnormalized paths
+			Path path = Paths.get("synthetic", ".", "other", "..", "doc" + d + ".txt");
+			SyntheticCorpus.add(info, path, SyntheticCorpus.words(random, 20, VOCABULARY_SIZE));
+		}
+		try (IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(), i -> {})) {
+			MappedIndex index = writer.commit(info, Collections.emptyList(), IndexWriterTest::calculateSimilarities);
+			assertEquals(SyntheticCorpus.path(1), index.getPath(1));
+			assertNotNull(index.getManifest().get(SyntheticCorpus.path(1).toString()));
+
+			DatasetInfo changes = new DatasetInfo();
+			changes.manifest = index.getManifest();
+			changes.manifest.remove(SyntheticCorpus.path(1).toString());
+			index = writer.commit(changes, Collections.singletonList(Paths.get("synthetic", "doc1.txt").toString()),
+					IndexWriterTest::calculateSimilarities);
+
+			assertEquals(2, index.getNumberOfDocuments());
+			assertEquals(SyntheticCorpus.path(0), index.getPath(0));
+			assertEquals(SyntheticCorpus.path(2), index.getPath(1));
+		}
+	}
+
+	@Test
+	public void ordersTheCommitsAndTheMerges() throws IOException {
+		Random random = new Random(33);
+		List<MappedIndex> indexes = Collections.synchronizedList(new ArrayList<>());
+		IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(2, 1), indexes::add);
+		try {
+			MappedIndex index = null;
+			for (int c = 0; c < 6; c++) {
+				DatasetInfo info = new DatasetInfo();
+				if (index != null) info.manifest = index.getManifest();
+				SyntheticCorpus.add(info, SyntheticCorpus.path(c), SyntheticCorpus.words(random, 20, VOCABULARY_SIZE));
+				MappedIndex committed = writer.commit(info, Collections.emptyList(), IndexWriterTest::calculateSimilarities);
+				if (index != null) {
+					assertTrue(committed.isNewerThan(index));
+					assertFalse(index.isNewerThan(committed));
+				}
+				indexes.add(committed);
+				index = committed;
+			}
+
+			// a commit changing only the manifest is newer as well
+			DatasetInfo info = new DatasetInfo();
+			info.manifest = index.getManifest();
+			MappedIndex committed = writer.commit(info, Collections.emptyList(), IndexWriterTest::calculateSimilarities);
+			assertTrue(committed.isNewerThan(index));
+			indexes.add(committed);
+		} finally {
+			writer.close();
+		}
+
+		// the merged indexes may be published after the later commits, but they are ordered by their commits
+		MappedIndex newest = indexes.get(0);
+		for (MappedIndex index : indexes) {
+			if (index.isNewerThan(newest)) newest = index;
+		}
+		assertSame(writer.getIndex(), newest);
+	}
+
+	/**
+	 * Checks that the given index holds the given documents, in their order,
+	 * and that its manifest holds the same documents.
+	 *
+	 * @param index     the index
+	 * @param documents the words of the documents, by their numbers
+	 * @throws IOException if the manifest cannot be read
+	 */
+	private static void checkDocuments(MappedIndex index, Map<Integer, List<String>> documents) throws IOException {
+		assertEquals(documents.size(), index.getNumberOfDocuments());
+		Manifest manifest = index.getManifest();
+		int docId = 0;
+		for (Map.Entry<Integer, List<String>> document : documents.entrySet()) {
+			Path path = SyntheticCorpus.path(document.getKey());
+			assertEquals(path, index.getPath(docId));
+			assertEquals(document.getValue().size(), index.getDocumentLength(docId));
+			assertNotNull(manifest.get(path.toString()));
+			docId++;
+		}
+	}
+
+	/**
+	 * Checks the similarities of the given index, committed after the given
+	 * previous index. The similarities of the kept documents have to be
+	 * copied from the previous index, and those of the added documents have
+	 * to be calculated from the given index.
+	 *
+	 * @param previous the index of the previous commit
+	 * @param index    the index of the commit
+	 * @param added    the number of the added documents, which follow the
+	 *                 kept ones
+	 */
+	private static void checkSimilarities(MappedIndex previous, MappedIndex index, int added) {
+		Map<Path, Integer> previousIds = new HashMap<>();
+		for (int docId = 0; docId < previous.getNumberOfDocuments(); docId++) {
+			previousIds.put(previous.getPath(docId), docId);
+		}
+
+		int numDocs = index.getNumberOfDocuments();
+		int kept = numDocs - added;
+		for (int doc1 = 0; doc1 < numDocs; doc1++) {
+			for (int doc2 = doc1 + 1; doc2 < numDocs; doc2++) {
+				if (doc2 < kept) {
+					int previous1 = previousIds.get(index.getPath(doc1));
+					int previous2 = previousIds.get(index.getPath(doc2));
+					assertEquals(previous.getSimilarity(previous1, previous2), index.getSimilarity(doc1, doc2), 0);
+				} else {
+					double sim = cosine(index, doc1, doc2);
+					assertEquals(sim > THRESHOLD ? (float) sim : 0, index.getSimilarity(doc1, doc2), EPSILON);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that the given index holds the same documents, words, postings
+	 * and statistics as the expected one. The words may be numbered
+	 * differently, so they are matched by their strings; the words of the
+	 * removed documents may remain in the rewritten segments, but no
+	 * document contains them.
+	 *
+	 * @param expected the expected index
+	 * @param actual   the actual index
+	 */
+	private static void compare(MappedIndex expected, MappedIndex actual) {
+		int numDocs = expected.getNumberOfDocuments();
+		assertEquals(numDocs, actual.getNumberOfDocuments());
+		assertEquals(countTerms(expected), countTerms(actual));
+		assertEquals(expected.getAverageDocumentLength(), actual.getAverageDocumentLength(), EPSILON);
+
+		int[] termIds = new int[expected.getNumberOfTerms()];
+		for (int t = 0; t < termIds.length; t++) {
+			String term = expected.getTerm(t);
+			termIds[t] = actual.getTermId(term);
+			assertTrue(term, termIds[t] >= 0);
+			assertEquals(term, expected.getDocumentFrequency(t), actual.getDocumentFrequency(termIds[t]));
+			assertEquals(term, expected.getTotalFrequency(t), actual.getTotalFrequency(termIds[t]));
+			assertEquals(term, expected.getIDFs()[t], actual.getIDFs()[termIds[t]], EPSILON);
+
+			BlockPostings postings = expected.getPostings(t);
+			BlockPostings other = actual.getPostings(termIds[t]);
+			assertEquals(term, postings.size(), other.size());
+			for (int i = 0; i < postings.size(); i++) {
+				assertEquals(term, postings.getDocId(i), other.getDocId(i));
+				assertEquals(term, postings.getFreq(i), other.getFreq(i));
+				int[] positions = new int[postings.getFreq(i)];
+				int[] otherPositions = new int[postings.getFreq(i)];
+				postings.getPositions(i, positions);
+				other.getPositions(i, otherPositions);
+				assertArrayEquals(term, positions, otherPositions);
+			}
+		}
+
+		for (int docId = 0; docId < numDocs; docId++) {
+			assertEquals(expected.getPath(docId), actual.getPath(docId));
+			assertEquals(expected.getDocumentLength(docId), actual.getDocumentLength(docId));
+			assertEquals(expected.getDocumentNorm(docId), actual.getDocumentNorm(docId), EPSILON);
+			assertEquals(expected.getLengthNorms()[docId], actual.getLengthNorms()[docId], EPSILON);
+			assertArrayEquals(expected.getSignature(docId), actual.getSignature(docId));
+
+			SparseVector tf = expected.getTFVector(docId);
+			SparseVector otherTf = actual.getTFVector(docId);
+			assertEquals(tf.size(), otherTf.size());
+			for (int i = 0; i < tf.size(); i++) {
+				assertEquals(tf.getValue(i), otherTf.get(termIds[tf.getIndex(i)]), 0);
+			}
+
+			// the keywords tied by their weights may differ
+			assertArrayEquals(keywordWeights(expected, docId), keywordWeights(actual, docId), EPSILON);
+		}
+	}
+
+	/**
+	 * Counts the words of the given index contained in any document.
+	 *
+	 * @param index the index
+	 * @return the number of the words
+	 */
+	private static int countTerms(MappedIndex index) {
+		int count = 0;
+		for (int t = 0; t < index.getNumberOfTerms(); t++) {
+			if (index.getDocumentFrequency(t) > 0) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the TF-IDF weights of the keywords of the given document.
+	 *
+	 * @param index the index holding the document
+	 * @param docId the ID of the document
+	 * @return the weights of the keywords, in increasing order
+	 */
+	private static double[] keywordWeights(MappedIndex index, int docId) {
+		int[] keywords = index.getKeywords(docId);
+		SparseVector tf = index.getTFVector(docId);
+		double[] weights = new double[keywords.length];
+		for (int i = 0; i < keywords.length; i++) {
+			weights[i] = tf.get(keywords[i]) * index.getIDFs()[keywords[i]];
+		}
+		Arrays.sort(weights);
+		return weights;
+	}
+
+	/**
+	 * Calculates the cosine similarities of the documents of the given index
+	 * from the given one onward to all the other documents, by comparing
+	 * every pair of them.
+	 *
+	 * @param index the index
+	 * @param from  the ID of the first document whose similarities are
+	 *              calculated
+	 * @return the similarities exceeding the {@link #THRESHOLD}, ordered by
+	 * the document IDs
+	 */
+	private static SimilarityList calculateSimilarities(MappedIndex index, int from) {
+		SimilarityList similarities = new SimilarityList();
+		int numDocs = index.getNumberOfDocuments();
+		for (int doc1 = 0; doc1 < numDocs; doc1++) {
+			for (int doc2 = Math.max(doc1 + 1, from); doc2 < numDocs; doc2++) {
+				double sim = cosine(index, doc1, doc2);
+				if (sim > THRESHOLD) similarities.add(doc1, doc2, sim);
+			}
+		}
+		return similarities;
+	}
+
+	/**
+	 * Calculates the cosine similarity of the TF-IDF vectors of the given
+	 * documents.
+	 *
+	 * @param index the index holding the documents
+	 * @param doc1  the ID of the first document
+	 * @param doc2  the ID of the second document
+	 * @return the similarity of the documents
+	 */
+	private static double cosine(MappedIndex index, int doc1, int doc2) {
+		SparseVector v1 = SparseVector.multiply(index.getTFVector(doc1), index.getIDFVector());
+		SparseVector v2 = SparseVector.multiply(index.getTFVector(doc2), index.getIDFVector());
+		return v1.dot(v2) / (index.getDocumentNorm(doc1) * index.getDocumentNorm(doc2));
+	}
+}
@@ -0,0 +1,112 @@
+package hr.fer.zemris.zavrsni.index;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link IngestionPipeline}: every document reaches the indexer,
+ * and a failing document fails the whole run instead of leaving the indexer
+ * waiting for the workers.
+ *
+ * @author Luka Cupic
+ */
+public class IngestionPipelineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 60_000)
+	public void indexesEveryDocument() throws IOException {
+		Path dataset = folder.newFolder().toPath();
+		for (int i = 0; i < 10; i++) {
+			writePDF(dataset.resolve("doc" + i + ".pdf"), "document number" + i + " about searching");
+		}
+
+		Map<Path, List<String>> indexed = new HashMap<>();
+		new IngestionPipeline(3, 2, null).run(dataset, (path, entry, words, positions) -> indexed.put(path, words));
+
+		assertEquals(10, indexed.size());
+		for (List<String> words : indexed.values()) {
+			assertTrue(words.toString(), words.size() >= 3);
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void failingReaderFailsTheRun() throws IOException {
+		Path dataset = folder.newFolder().toPath();
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Path path = dataset.resolve("doc" + i + ".pdf");
+			writePDF(path, "document " + i);
+			files.add(path);
+		}
+		// not a PDF document, so PDFBox cannot parse it
+		Path broken = dataset.resolve("broken.pdf");
+		Files.write(broken, "not a PDF".getBytes());
+		files.add(10, broken);
+
+		try {
+			new IngestionPipeline(2, 1, null).run(files, (path, entry, words, positions) -> {});
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(broken.toString()));
+		}
+	}
+
+	@Test(timeout = 60_000)
+	public void throwingWorkerFailsTheRun() throws IOException {
+		Path dataset = folder.newFolder().toPath();
+		Path path = dataset.resolve("doc.pdf");
+		writePDF(path, "document");
+
+		// the worker throws a NullPointerException on the missing path
+		for (int threads = 1; threads <= 3; threads++) {
+			try {
+				new IngestionPipeline(threads, 1, null).run(Arrays.asList(path, null, path, path, path), (p, entry, words, positions) -> {});
+				fail();
+			} catch (IOException e) {
+				assertTrue(e.getCause() instanceof NullPointerException);
+			}
+		}
+	}
+
+	/**
+	 * Writes the given text into a single page PDF document.
+	 *
+	 * @param path the path to the document
+	 * @param text the text
+	 * @throws IOException if the document cannot be written
+	 */
+	static void writePDF(Path path, String text) throws IOException {
+		try (PDDocument doc = new PDDocument()) {
+			PDPage page = new PDPage();
+			doc.addPage(page);
+			try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+				content.beginText();
+				content.setFont(PDType1Font.HELVETICA, 12);
+				content.newLineAtOffset(40, 750);
+				content.showText(text);
+				content.endText();
+			}
+			doc.save(path.toFile());
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.utils.XXHash64;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests detecting the changes of a dataset by the {@link Manifest}: only
+ * the files whose size or modification time differ from their entries are
+ * hashed, and those whose contents are the same are reported as touched
+ * rather than changed.
+ *
+ * @author Luka Cupic
+ */
+public class ManifestTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void detectsTheChanges() throws IOException {
+		Path dataset = folder.newFolder().toPath();
+		Path deleted = write(dataset.resolve("deleted.pdf"), "deleted");
+		Path changed = write(dataset.resolve("changed.pdf"), "changed");
+		Path touched = write(dataset.resolve("touched.pdf"), "touched");
+		Path unchanged = write(dataset.resolve("sub").resolve("unchanged.pdf"), "unchanged");
+		Manifest manifest = manifestOf(deleted, changed, touched, unchanged);
+
+		Files.delete(deleted);
+		Path added = write(dataset.resolve("added.pdf"), "added");
+		// the same size, but other contents
+		write(changed, "CHANGED");
+		setLastModified(changed, 1000);
+		setLastModified(touched, 2000);
+
+		Manifest.Changes changes = manifest.detectChanges(dataset);
+		assertEquals(new HashSet<>(Arrays.asList(Manifest.keyOf(deleted), Manifest.keyOf(changed))),
+				new HashSet<>(changes.getRemoved()));
+		assertEquals(new HashSet<>(Arrays.asList(added, changed)), new HashSet<>(changes.getModified()));
+		assertEquals(Collections.singleton(Manifest.keyOf(touched)), changes.getTouched().keySet());
+		assertEquals(2000, changes.getTouched().get(Manifest.keyOf(touched)).getLastModified());
+
+		// the touched entries spare hashing the files again
+		changes.getTouched().forEach(manifest::put);
+		manifest.put(Manifest.keyOf(added), Manifest.Entry.of(added, XXHash64.hash(added)));
+		manifest.remove(Manifest.keyOf(deleted));
+		manifest.put(Manifest.keyOf(changed), Manifest.Entry.of(changed, XXHash64.hash(changed)));
+		changes = manifest.detectChanges(dataset);
+		assertTrue(changes.isEmpty());
+		assertEquals(Collections.emptyMap(), changes.getTouched());
+	}
+
+	@Test
+	public void filesWithTheSameMetadataAreNotRead() throws IOException {
+		Path dataset = folder.newFolder().toPath();
+		Path path = write(dataset.resolve("doc.pdf"), "document");
+		Manifest manifest = new Manifest();
+		manifest.put(Manifest.keyOf(path), Manifest.Entry.of(path, "not the hash of the document"));
+
+		assertTrue(manifest.detectChanges(dataset).isEmpty());
+	}
+
+	@Test
+	public void writtenManifestIsReadBack() throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.put("/a.pdf", new Manifest.Entry(10, 20, "0123456789abcdef"));
+		manifest.put("/b/č.pdf", new Manifest.Entry(0, -1, ""));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		manifest.write(new DataOutputStream(bytes));
+		Manifest read = Manifest.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		for (String path : Arrays.asList("/a.pdf", "/b/č.pdf")) {
+			assertEquals(manifest.get(path).getSize(), read.get(path).getSize());
+			assertEquals(manifest.get(path).getLastModified(), read.get(path).getLastModified());
+			assertEquals(manifest.get(path).getHash(), read.get(path).getHash());
+		}
+	}
+
+	/**
+	 * Creates a manifest of the given files in their current state.
+	 *
+	 * @param paths the paths to the files
+	 * @return the manifest
+	 */
+	private static Manifest manifestOf(Path... paths) throws IOException {
+		Manifest manifest = new Manifest();
+		for (Path path : paths) {
+			manifest.put(Manifest.keyOf(path), Manifest.Entry.of(path, XXHash64.hash(path)));
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes the given text to the file at the given path.
+	 *
+	 * @param path the path to the file
+	 * @param text the text
+	 * @return the path
+	 */
+	private static Path write(Path path, String text) throws IOException {
+		Files.createDirectories(path.getParent());
+		return Files.write(path, text.getBytes());
+	}
+
+	/**
+	 * Sets the modification time of the file at the given path.
+	 *
+	 * @param path   the path to the file
+	 * @param millis the modification time, in milliseconds
+	 */
+	private static void setLastModified(Path path, long millis) throws IOException {
+		Files.setLastModifiedTime(path, FileTime.fromMillis(millis));
+	}
+}
@@ -0,0 +1,244 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the encoding of the postings: the bit-packed and the variable-byte
+ * encoded values on their own, and the postings of whole segments whose
+ * sizes fall on both sides of the block boundaries.
+ *
+ * @author Luka Cupic
+ */
+public class PostingsCodecTest {
+
+	/**
+	 * The sizes of the postings of the segment, around the multiples of
+	 * the block size.
+	 */
+	private static final int[] SIZES = {1, 2, 127, 128, 129, 255, 256, 257, 300};
+
+	/**
+	 * The number of documents of the segment.
+	 */
+	private static final int NUM_DOCS = 300;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void packedBlocksRoundTrip() throws IOException {
+		Random random = new Random(1);
+		Path file = folder.newFile().toPath();
+
+		// the blocks are preceded by an odd number of bytes, so they straddle the small chunks
+		int[][] blocks = new int[33][IndexFormat.BLOCK_SIZE];
+		try (DataOutputStream out = open(file)) {
+			out.write(new byte[5]);
+			for (int bits = 0; bits <= 32; bits++) {
+				for (int i = 0; i < IndexFormat.BLOCK_SIZE; i++) {
+					blocks[bits][i] = bits == 0 ? 0 : random.nextInt() >>> (32 - bits);
+				}
+				blocks[bits][random.nextInt(IndexFormat.BLOCK_SIZE)] = (int) ((1L << bits) - 1);
+				assertEquals(bits, PostingsCodec.bitsRequired(blocks[bits], IndexFormat.BLOCK_SIZE));
+				PostingsCodec.pack(blocks[bits], bits, out);
+			}
+		}
+
+		for (int chunkShift : new int[]{4, 7, MappedFile.CHUNK_SHIFT}) {
+			MappedFile mapped = map(file, chunkShift);
+			int[] words = new int[PostingsCodec.WORDS_LENGTH];
+			int[] values = new int[IndexFormat.BLOCK_SIZE];
+			long position = 5;
+			for (int bits = 0; bits <= 32; bits++) {
+				long end = PostingsCodec.unpack(mapped, position, bits, words, values);
+				assertEquals(position + PostingsCodec.LANES * bits * 4L, end);
+				assertArrayEquals("bits: " + bits, blocks[bits], values);
+				position = end;
+			}
+			assertEquals(mapped.size(), position);
+		}
+	}
+
+	@Test
+	public void variableByteValuesRoundTrip() throws IOException {
+		Random random = new Random(2);
+		int[] values = new int[1000];
+		int[] edges = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, 268435455, 268435456, Integer.MAX_VALUE};
+		System.arraycopy(edges, 0, values, 0, edges.length);
+		for (int i = edges.length; i < values.length; i++) {
+			values[i] = random.nextInt() >>> random.nextInt(32);
+		}
+
+		Path file = folder.newFile().toPath();
+		long length = 0;
+		try (DataOutputStream out = open(file)) {
+			for (int value : values) {
+				PostingsCodec.writeVInt(value, out);
+				length += PostingsCodec.vIntLength(value);
+			}
+		}
+		assertEquals(Files.size(file), length);
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			for (int value : values) {
+				assertEquals(value, PostingsCodec.readVInt(in));
+			}
+		}
+
+		MappedFile mapped = map(file, 4);
+		int[] decoded = new int[values.length];
+		assertEquals(length, PostingsCodec.readVInts(mapped, 0, decoded, values.length));
+		assertArrayEquals(values, decoded);
+
+		long position = PostingsCodec.skipVInts(mapped, 0, edges.length);
+		PostingsCodec.readVInts(mapped, position, decoded, values.length - edges.length);
+		assertArrayEquals(Arrays.copyOfRange(values, edges.length, values.length),
+				Arrays.copyOf(decoded, values.length - edges.length));
+	}
+
+	@Test
+	public void segmentPostingsRoundTrip() throws IOException {
+		Random random = new Random(3);
+
+		// the word "t<size>" occurs in <size> random documents, a few times in each
+		List<List<String>> documents = new ArrayList<>();
+		for (int d = 0; d < NUM_DOCS; d++) {
+			documents.add(new ArrayList<>(Collections.singletonList("filler")));
+		}
+		List<Integer> ids = new ArrayList<>();
+		for (int d = 0; d < NUM_DOCS; d++) ids.add(d);
+		for (int size : SIZES) {
+			Collections.shuffle(ids, random);
+			for (int d : ids.subList(0, size)) {
+				for (int n = 1 + random.nextInt(random.nextInt(10) == 0 ? 40 : 3); n > 0; n--) {
+					documents.get(d).add("t" + size);
+				}
+			}
+		}
+
+		DatasetInfo info = new DatasetInfo();
+		for (int d = 0; d < NUM_DOCS; d++) {
+			Collections.shuffle(documents.get(d), random);
+			SyntheticCorpus.add(info, SyntheticCorpus.path(d), documents.get(d));
+		}
+		Path dir = folder.getRoot().toPath().resolve("segment");
+		IndexFormat.write(info, dir);
+		Segment segment = new Segment(dir);
+
+		assertEquals(NUM_DOCS, segment.getNumberOfDocuments());
+		for (int size : SIZES) {
+			String term = "t" + size;
+			List<Integer> docIds = new ArrayList<>();
+			List<int[]> positions = new ArrayList<>();
+			for (int d = 0; d < NUM_DOCS; d++) {
+				int[] found = positions(documents.get(d), term);
+				if (found.length == 0) continue;
+				docIds.add(d);
+				positions.add(found);
+			}
+
+			MappedPostings postings = segment.getPostings(segment.getTermId(term));
+			assertEquals(term, size, postings.size());
+			assertEquals(term, (size + IndexFormat.BLOCK_SIZE - 1) / IndexFormat.BLOCK_SIZE, postings.getNumberOfBlocks());
+
+			// the postings are read backwards, so every block is decoded after a later one
+			for (int i = size - 1; i >= 0; i--) {
+				assertEquals(term, (int) docIds.get(i), postings.getDocId(i));
+				assertEquals(term, positions.get(i).length, postings.getFreq(i));
+				int[] read = new int[postings.getFreq(i)];
+				postings.getPositions(i, read);
+				assertArrayEquals(term, positions.get(i), read);
+				assertEquals(term, i / IndexFormat.BLOCK_SIZE, postings.getBlock(i));
+			}
+
+			for (int block = 0; block < postings.getNumberOfBlocks(); block++) {
+				int from = block * IndexFormat.BLOCK_SIZE;
+				int to = Math.min(from + IndexFormat.BLOCK_SIZE, size);
+				int maxFreq = 0;
+				long minLength = Long.MAX_VALUE;
+				for (int i = from; i < to; i++) {
+					maxFreq = Math.max(maxFreq, positions.get(i).length);
+					minLength = Math.min(minLength, documents.get(docIds.get(i)).size());
+				}
+				assertEquals(term, (int) docIds.get(to - 1), postings.getBlockLastDocId(block));
+				assertEquals(term, maxFreq, postings.getBlockMaxFreq(block));
+				assertEquals(term, minLength, postings.getBlockMinLength(block));
+			}
+
+			for (int target = 0; target <= NUM_DOCS; target++) {
+				int expected = 0;
+				while (expected < size && docIds.get(expected) < target) expected++;
+				assertEquals(term, expected, postings.advance(0, target));
+				for (int from = Math.max(0, expected - 130); from <= expected; from += 43) {
+					assertEquals(term, expected, postings.advance(from, target));
+				}
+			}
+		}
+
+		// the segment is read back into the same documents
+		DatasetInfo read = IndexFormat.read(dir);
+		assertEquals(NUM_DOCS, read.documents.size());
+		for (int d = 0; d < NUM_DOCS; d++) {
+			assertArrayEquals(info.documents.get(d).getPositions(), read.documents.get(d).getPositions());
+			assertEquals(info.documents.get(d).getPath(), read.documents.get(d).getPath());
+		}
+	}
+
+	/**
+	 * Finds the positions of the given word.
+	 *
+	 * @param words the words of the document
+	 * @param word  the word
+	 * @return the positions of the word, in increasing order
+	 */
+	private static int[] positions(List<String> words, String word) {
+		return IntStream.range(0, words.size()).filter(i -> words.get(i).equals(word)).toArray();
+	}
+
+	/**
+	 * Opens the given file for writing.
+	 *
+	 * @param file the file
+	 * @return the output
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static DataOutputStream open(Path file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+	}
+
+	/**
+	 * Maps the given file in chunks of the given size.
+	 *
+	 * @param file       the file
+	 * @param chunkShift the binary logarithm of the size of a chunk
+	 * @return the mapped file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static MappedFile map(Path file, int chunkShift) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new MappedFile(channel, chunkShift);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package hr.fer.zemris.zavrsni.index;
+
+import hr.fer.zemris.zavrsni.model.Document;
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the synthetic documents the tests index. The words are named by
+ * their ranks, and the frequent ones are much more frequent than the rest,
+ * so the postings of the frequent words span multiple blocks while those of
+ * the rare words stay short. The documents are added to the dataset infos
+ * the same way {@code Dataset} adds the ingested documents.
+ *
+ * @author Luka Cupic
+ */
+public class SyntheticCorpus {
+
+	/**
+	 * Generates the words of a document.
+	 *
+	 * @param random     the source of randomness
+	 * @param length     the number of words
+	 * @param vocabulary the number of distinct words to pick from
+	 * @return the words
+	 */
+	public static List<String> words(Random random, int length, int vocabulary) {
+		List<String> words = new ArrayList<>(length);
+		for (int i = 0; i < length; i++) {
+			double r = random.nextDouble();
+			words.add("w" + (int) (vocabulary * r * r * r));
+		}
+		return words;
+	}
+
+	/**
+	 * Gets the absolute path of the document with the given number. The
+	 * document does not have to exist, since only its manifest entry is
+	 * indexed.
+	 *
+	 * @param number the number of the document
+	 * @return the path to the document
+	 */
+	public static Path path(int number) {
+		return Paths.get("synthetic", "doc" + number + ".txt").toAbsolutePath();
+	}
+
+	/**
+	 * Adds the document with the given words to the given dataset info,
+	 * together with its manifest entry.
+	 *
+	 * @param info  the dataset info
+	 * @param path  the path to the document
+	 * @param words the words of the document
+	 */
+	public static void add(DatasetInfo info, Path path, List<String> words) {
+		int[] positions = new int[words.size()];
+		Arrays.setAll(positions, i -> i);
+		add(info, path, words, positions);
+	}
+
+	/**
+	 * Adds the document with the given words at the given positions to the
+	 * given dataset info, together with its manifest entry.
+	 *
+	 * @param info      the dataset info
+	 * @param path      the path to the document
+	 * @param words     the words of the document
+	 * @param positions the increasing positions of the words
+	 */
+	public static void add(DatasetInfo info, Path path, List<String> words, int[] positions) {
+		int[] indices = new int[words.size()];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = info.vocabulary.add(words.get(i));
+		}
+		int[] grouped = Positions.group(indices, positions, indices.length);
+
+		SparseVector tf = SparseVector.fromOccurrences(indices, indices.length);
+		Document document = new Document(path, tf, null, words.size());
+		document.setSignature(MinHash.signature(words));
+		document.setPositions(grouped);
+
+		info.addDocument(document);
+		info.manifest.put(Manifest.keyOf(path), new Manifest.Entry(words.size(), 0, Integer.toHexString(words.hashCode())));
+	}
+}
@@ -0,0 +1,106 @@
+package hr.fer.zemris.zavrsni.input;
+
+import hr.fer.zemris.zavrsni.utils.TextUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the single pass {@link Analyzer} against the separate steps it
+ * replaces: splitting the text into the lower-cased words, removing the
+ * stop words and stemming the remaining words. The text written to the
+ * analyzing writer in pieces has to give the same words as the whole text.
+ *
+ * @author Luka Cupic
+ */
+public class AnalyzerTest {
+
+	/**
+	 * The stop words of the tests.
+	 */
+	private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("a", "of", "the", "is", "and", "to"));
+
+	/**
+	 * The pieces the random texts are made of.
+	 */
+	private static final String[] PIECES = {
+			"the", "The", "OF", "a", "is", "and", "to", "power", "Supplies", "running", "generalization", "hopeful",
+			"caresses", "e-mail", "x", "naïve", "co2", "99", " ", "  ", "\n", ".", ", ", "-", "'s", "\t", "ÆON"};
+
+	private final Analyzer analyzer = new Analyzer(STOP_WORDS, new StemCache(16));
+
+	@Test
+	public void analyzesLikeTheSeparateSteps() {
+		Random random = new Random(13);
+		for (int t = 0; t < 500; t++) {
+			String text = randomText(random);
+			List<String> words = new ArrayList<>();
+			analyzer.analyze(text, words::add);
+			assertEquals(text, expected(text), words);
+		}
+	}
+
+	@Test
+	public void writerMatchesTheWholeText() throws IOException {
+		Random random = new Random(14);
+		for (int t = 0; t < 500; t++) {
+			String text = randomText(random);
+			List<String> words = new ArrayList<>();
+			try (Writer out = analyzer.writer(words::add)) {
+				// the pieces split the words at random places
+				for (int start = 0; start < text.length(); ) {
+					int end = Math.min(text.length(), start + 1 + random.nextInt(8));
+					if (random.nextBoolean()) {
+						out.write(text, start, end - start);
+					} else {
+						out.write(text.toCharArray(), start, end - start);
+					}
+					start = end;
+				}
+			}
+			assertEquals(text, expected(text), words);
+		}
+	}
+
+	/**
+	 * Processes the given text through the separate steps.
+	 *
+	 * @param text the text
+	 * @return the processed words
+	 */
+	private static List<String> expected(String text) {
+		Stemmer stemmer = new Stemmer();
+		List<String> words = new ArrayList<>();
+		for (String word : TextUtils.getWordsFromText(text)) {
+			if (!STOP_WORDS.contains(word)) {
+				words.add(stemmer.stripAffixes(word));
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Generates a random text out of the {@link #PIECES}, which are not
+	 * always separated.
+	 *
+	 * @param random the source of randomness
+	 * @return the text
+	 */
+	private static String randomText(Random random) {
+		StringBuilder text = new StringBuilder();
+		for (int n = random.nextInt(30); n >= 0; n--) {
+			text.append(PIECES[random.nextInt(PIECES.length)]);
+			if (random.nextInt(3) > 0) text.append(' ');
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,98 @@
+package hr.fer.zemris.zavrsni.input;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the in-place {@link Stemmer} against the original implementation
+ * (see {@link ReferenceStemmer}). The words are English words exercising
+ * every step of the algorithm, followed by random words made of the
+ * prefixes and the suffixes the stemmer strips, so that the rules are
+ * tried in many combinations and on very short stems.
+ *
+ * @author Luka Cupic
+ */
+public class StemmerTest {
+
+	/**
+	 * The English words exercising the steps of the algorithm.
+	 */
+	private static final List<String> WORDS = Arrays.asList(
+			"caresses", "ponies", "ties", "caress", "cats", "feed", "agreed", "plastered", "bled", "motoring",
+			"sing", "conflated", "troubled", "sized", "hopping", "tanned", "falling", "hissing", "fizzed",
+			"failing", "filing", "happy", "sky", "relational", "conditional", "rational", "valenci", "hesitanci",
+			"digitizer", "conformabli", "radicalli", "differentli", "vileli", "analogousli", "vietnamization",
+			"predication", "operator", "feudalism", "decisiveness", "hopefulness", "callousness", "formaliti",
+			"sensitiviti", "sensibiliti", "triplicate", "formative", "formalize", "electriciti", "electrical",
+			"hopeful", "goodness", "revival", "allowance", "inference", "airliner", "gyroscopic", "adjustable",
+			"defensible", "irritant", "replacement", "adjustment", "dependent", "adoption", "homologou",
+			"communism", "activate", "angulariti", "homologous", "effective", "bowdlerize", "probate", "rate",
+			"cease", "controll", "roll", "kilogram", "micrometers", "milliseconds", "intravenous", "ultrasonic",
+			"megabytes", "nanotubes", "picofarads", "pseudorandom", "kilo", "yes", "you", "yelling", "yyy",
+			"Generalizations", "OPERATIONAL", "e-mail", "co2", "naïve", "Ærospace", "a", "is", "ss", "s1");
+
+	/**
+	 * The prefixes and the suffixes the random words are made of.
+	 */
+	private static final String[] AFFIXES = {
+			"kilo", "micro", "pseudo", "ational", "tional", "enci", "anci", "izer", "abli", "alli", "entli", "eli",
+			"ousli", "ization", "ation", "ator", "alism", "iveness", "fulness", "ousness", "aliti", "iviti",
+			"biliti", "icate", "ative", "alize", "iciti", "ical", "ful", "ness", "al", "ance", "ence", "er", "ic",
+			"able", "ible", "ant", "ement", "ment", "ent", "sion", "tion", "ou", "ism", "ate", "iti", "ous", "ive",
+			"ize", "ise", "sses", "ies", "eed", "ed", "ing", "at", "bl", "iz", "y", "s", "e", "ll"};
+
+	@Test
+	public void englishWordsMatchTheReference() {
+		check(WORDS);
+	}
+
+	@Test
+	public void randomWordsMatchTheReference() {
+		Random random = new Random(12);
+		List<String> words = new ArrayList<>();
+		for (int i = 0; i < 50_000; i++) {
+			StringBuilder word = new StringBuilder();
+			for (int n = random.nextInt(4); n >= 0; n--) {
+				if (random.nextBoolean()) {
+					word.append(AFFIXES[random.nextInt(AFFIXES.length)]);
+				} else {
+					word.append((char) ('a' + random.nextInt(26)));
+				}
+			}
+			words.add(word.toString());
+		}
+		check(words);
+	}
+
+	@Test
+	public void cachedStemsMatchTheReference() {
+		// the small cache makes the words keep replacing each other
+		StemCache cache = new StemCache(64);
+		ReferenceStemmer reference = new ReferenceStemmer();
+		for (int pass = 0; pass < 3; pass++) {
+			for (String word : WORDS) {
+				assertEquals(word, reference.stripAffixes(word), cache.stem(word));
+			}
+		}
+	}
+
+	/**
+	 * Checks that a single stemmer stems each of the given words the same
+	 * way as the reference implementation.
+	 *
+	 * @param words the words
+	 */
+	private static void check(List<String> words) {
+		Stemmer stemmer = new Stemmer();
+		ReferenceStemmer reference = new ReferenceStemmer();
+		for (String word : words) {
+			assertEquals(word, reference.stripAffixes(word), stemmer.stripAffixes(word));
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package hr.fer.zemris.zavrsni.input;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link TextCache}: a cached text is served without extracting
+ * the document again, also after the cache is reopened, the least recently
+ * used texts are evicted first, and a damaged file is extracted again
+ * instead of being served.
+ *
+ * @author Luka Cupic
+ */
+public class TextCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The number of times each document has been extracted.
+	 */
+	private final Map<String, Integer> extracted = new HashMap<>();
+
+	@Test
+	public void servesTheCachedTexts() throws IOException {
+		Path dir = folder.newFolder().toPath();
+		for (boolean compress : new boolean[]{false, true}) {
+			TextCache cache = TextCache.open(dir.resolve(String.valueOf(compress)), TextCache.DEFAULT_MAX_SIZE, compress);
+			assertEquals(text("a"), read(cache, "a"));
+			assertEquals(text("a"), read(cache, "a"));
+			assertEquals(1, cache.getNumberOfTexts());
+
+			cache = TextCache.open(dir.resolve(String.valueOf(compress)), TextCache.DEFAULT_MAX_SIZE, compress);
+			assertEquals(1, cache.getNumberOfTexts());
+			assertEquals(text("a"), read(cache, "a"));
+			assertEquals(1, (int) extracted.remove("a"));
+		}
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyUsedTexts() throws IOException {
+		// the plain texts take up exactly as many bytes as they have characters
+		TextCache cache = TextCache.open(folder.newFolder().toPath(), 2 * text("a").length() + 10, false);
+		read(cache, "a");
+		read(cache, "b");
+		read(cache, "a");
+		read(cache, "c");
+		assertEquals(2, cache.getNumberOfTexts());
+		assertEquals(2L * text("a").length(), cache.getSize());
+
+		read(cache, "a");
+		read(cache, "c");
+		assertEquals(1, (int) extracted.get("a"));
+		assertEquals(1, (int) extracted.get("c"));
+		read(cache, "b");
+		assertEquals(2, (int) extracted.get("b"));
+	}
+
+	@Test
+	public void extractsDamagedTextsAgain() throws IOException {
+		Path dir = folder.newFolder().toPath();
+		TextCache cache = TextCache.open(dir, TextCache.DEFAULT_MAX_SIZE, true);
+		for (String hash : Arrays.asList("truncated", "corrupt", "empty")) {
+			read(cache, hash);
+			Path path = dir.resolve(hash + ".txt.gz");
+			byte[] bytes = Files.readAllBytes(path);
+			if (hash.equals("truncated")) {
+				bytes = Arrays.copyOf(bytes, bytes.length - 5);
+			} else if (hash.equals("corrupt")) {
+				// the last bytes hold the checksum and the length of the text
+				bytes[bytes.length - 6] ^= 1;
+			} else {
+				bytes = new byte[0];
+			}
+			Files.write(path, bytes);
+
+			assertEquals(hash, text(hash), read(cache, hash));
+			assertEquals(hash, 2, (int) extracted.get(hash));
+			assertEquals(hash, text(hash), read(cache, hash));
+			assertEquals(hash, 2, (int) extracted.get(hash));
+		}
+		assertEquals(3, cache.getNumberOfTexts());
+	}
+
+	@Test
+	public void failedExtractionIsNotCached() throws IOException {
+		Path dir = folder.newFolder().toPath();
+		TextCache cache = TextCache.open(dir, TextCache.DEFAULT_MAX_SIZE, true);
+		DocumentReader failing = cache.wrap(() -> {
+			throw new IOException("unreadable");
+		}, "failing");
+		try {
+			failing.readText();
+			fail();
+		} catch (IOException e) {
+			assertEquals("unreadable", e.getMessage());
+		}
+		assertEquals(0, cache.getNumberOfTexts());
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(0, files.count());
+		}
+	}
+
+	/**
+	 * Reads the text of the document with the given hash through the given
+	 * cache, counting the extractions of the document.
+	 *
+	 * @param cache the cache
+	 * @param hash  the hash of the document
+	 * @return the text of the document
+	 */
+	private String read(TextCache cache, String hash) throws IOException {
+		return cache.wrap(() -> {
+			extracted.merge(hash, 1, Integer::sum);
+			return text(hash);
+		}, hash).readText().toString();
+	}
+
+	/**
+	 * Gets the text of the document with the given hash.
+	 *
+	 * @param hash the hash of the document
+	 * @return the text of the document
+	 */
+	private static String text(String hash) {
+		String word = String.format("%-10s", hash);
+		return String.join(" ", Collections.nCopies(100, word));
+	}
+}
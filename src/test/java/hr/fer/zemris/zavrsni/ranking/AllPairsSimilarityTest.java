@@ -0,0 +1,127 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.IndexWriter;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.MergePolicy;
+import hr.fer.zemris.zavrsni.index.SyntheticCorpus;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link AllPairsSimilarity} on enough documents to keep several
+ * workers busy: the stored similarities are ordered by the document IDs and
+ * match the similarities of every pair of the documents of a new index, and
+ * of every pair including an added document once more documents are added;
+ * the similarities of the other pairs are kept.
+ *
+ * @author Luka Cupic
+ */
+public class AllPairsSimilarityTest {
+
+	/**
+	 * The similarity a pair has to exceed in order to be stored.
+	 */
+	private static final double THRESHOLD = 0.3;
+
+	/**
+	 * The allowed difference between the similarities.
+	 */
+	private static final double EPSILON = 1e-5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void storesTheSimilaritiesOfAllThePairs() throws IOException {
+		RankingFunction function = new CosineSimilarity();
+		Random random = new Random(10);
+		try (IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(), i -> {})) {
+			MappedIndex index = null;
+			Map<Long, Double> previous = new HashMap<>();
+			for (int[] range : new int[][]{{0, 500}, {500, 700}}) {
+				DatasetInfo info = new DatasetInfo();
+				if (index != null) info.manifest = index.getManifest();
+				for (int d = range[0]; d < range[1]; d++) {
+					SyntheticCorpus.add(info, SyntheticCorpus.path(d), SyntheticCorpus.words(random, 15, 100));
+				}
+				index = writer.commit(info, Collections.emptyList(),
+						(idx, from) -> function.calculateSimilarities(idx, from, THRESHOLD));
+				assertEquals(range[1], index.getNumberOfDocuments());
+				previous = checkSimilarities(function, index, range[0], previous);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the stored similarities of the given index are ordered by
+	 * the document IDs, that the similarities of the documents before the
+	 * added ones are kept, and that exactly the other pairs whose similarity
+	 * exceeds the {@link #THRESHOLD} are stored.
+	 *
+	 * @param function the ranking function defining the similarity
+	 * @param index    the index
+	 * @param added    the ID of the first added document, which follow the
+	 *                 kept ones
+	 * @param previous the stored similarities of the kept documents, by
+	 *                 the keys of their pairs
+	 * @return the stored similarities, by the keys of their pairs
+	 */
+	private static Map<Long, Double> checkSimilarities(RankingFunction function, MappedIndex index, int added,
+	                                                   Map<Long, Double> previous) {
+		int numDocs = index.getNumberOfDocuments();
+		Map<Long, Double> stored = new HashMap<>();
+		long[] previous = {-1};
+		index.forEachSimilarity((doc1, doc2, sim) -> {
+			assertTrue(doc1 < doc2);
+			long key = key(doc1, doc2);
+			assertTrue(key > previous[0]);
+			previous[0] = key;
+			stored.put(key, sim);
+		});
+		assertTrue(stored.size() > 0);
+
+		int expected = previous.size();
+		for (Map.Entry<Long, Double> entry : previous.entrySet()) {
+			assertEquals(entry.getValue(), stored.get(entry.getKey()));
+		}
+		for (int doc1 = 0; doc1 < numDocs; doc1++) {
+			for (int doc2 = Math.max(doc1 + 1, added); doc2 < numDocs; doc2++) {
+				double sim = function.sim(index, index.getDocument(doc1), index.getDocument(doc2));
+				Double value = stored.get(key(doc1, doc2));
+				// the pairs this close to the threshold may fall on either side of it
+				if (Math.abs(sim - THRESHOLD) < EPSILON) {
+					if (value != null) expected++;
+				} else if (sim > THRESHOLD) {
+					assertNotNull(doc1 + " " + doc2, value);
+					assertEquals(sim, value, EPSILON);
+					expected++;
+				}
+			}
+		}
+		assertEquals(expected, stored.size());
+		return stored;
+	}
+
+	/**
+	 * Gets the key of the pair of the given documents.
+	 *
+	 * @param doc1 the ID of the first document
+	 * @param doc2 the ID of the second document
+	 * @return the key of the pair
+	 */
+	private static long key(int doc1, int doc2) {
+		return (long) doc1 << 32 | doc2;
+	}
+}
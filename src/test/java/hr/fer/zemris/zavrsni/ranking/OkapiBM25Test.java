@@ -0,0 +1,212 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.IndexFormat;
+import hr.fer.zemris.zavrsni.index.IndexWriter;
+import hr.fer.zemris.zavrsni.index.Keywords;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.MergePolicy;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+import hr.fer.zemris.zavrsni.index.SyntheticCorpus;
+import hr.fer.zemris.zavrsni.input.Query;
+import hr.fer.zemris.zavrsni.model.Result;
+import hr.fer.zemris.zavrsni.model.SparseVector;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the MaxScore search of {@link OkapiBM25} against scoring every
+ * document of the index, both by the textual queries and by the document
+ * queries, which are reduced to their keywords. The skipped documents and
+ * blocks must not change the best scores, only the cost of finding them,
+ * so the largest term scores stored in the index have to bound all the
+ * scores of their words.
+ *
+ * @author Luka Cupic
+ */
+public class OkapiBM25Test {
+
+	/**
+	 * The tolerance of the compared scores, which are summed in different
+	 * orders.
+	 */
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * The number of documents of the index.
+	 */
+	private static final int NUM_DOCS = 600;
+
+	/**
+	 * The number of distinct words of the documents.
+	 */
+	private static final int VOCABULARY_SIZE = 400;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void singleSegmentMatchesExhaustiveSearch() throws IOException {
+		checkQueries(index(1), new Random(11));
+	}
+
+	@Test
+	public void multipleSegmentsMatchExhaustiveSearch() throws IOException {
+		checkQueries(index(3), new Random(12));
+	}
+
+	@Test
+	public void storedMaxTermScoresBoundTheScores() throws IOException {
+		for (int segments : new int[]{1, 3}) {
+			MappedIndex index = index(segments);
+			float[] norms = index.getLengthNorms();
+			float[] maxTermScores = index.getMaxTermScores();
+			assertEquals(index.getNumberOfTerms(), maxTermScores.length);
+
+			float[] max = new float[maxTermScores.length];
+			for (int docId = 0; docId < index.getNumberOfDocuments(); docId++) {
+				SparseVector tf = index.getTFVector(docId);
+				for (int t = 0; t < tf.size(); t++) {
+					double freq = tf.getValue(t);
+					int termId = tf.getIndex(t);
+					assertTrue(freq / (freq + norms[docId]) <= maxTermScores[termId]);
+					max[termId] = Math.max(max[termId], IndexFormat.maxTermScore(freq, norms[docId]));
+				}
+			}
+			// a single segment stores the exact largest scores
+			if (segments == 1) assertTrue(Arrays.equals(max, maxTermScores));
+		}
+	}
+
+	/**
+	 * Runs the short and the long random queries, and the same words as
+	 * document queries, against the given index and compares their results
+	 * with the exhaustive search.
+	 *
+	 * @param index  the index
+	 * @param random the source of randomness
+	 */
+	private static void checkQueries(MappedIndex index, Random random) throws IOException {
+		OkapiBM25 function = new OkapiBM25();
+		for (int q = 0; q < 100; q++) {
+			int length = q % 4 == 3 ? 150 : 1 + random.nextInt(6);
+			List<String> words = SyntheticCorpus.words(random, length, VOCABULARY_SIZE);
+			double[] scores = score(index, words, false);
+			double[] documentScores = score(index, words, true);
+
+			for (int k : new int[]{1, 10, 100}) {
+				List<Result> results = function.process(index, words, 0, k);
+				check(words + ", k = " + k, scores, results, k);
+				results = function.process(index, Query.ofDocument(words), 0, k);
+				check("document " + words + ", k = " + k, documentScores, results, k);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the given results are the best k documents by the given
+	 * scores. The documents tied with the last result may be replaced by
+	 * each other, so only their scores are compared.
+	 *
+	 * @param message the description of the query
+	 * @param scores  the exhaustive score of every document
+	 * @param results the results of the search
+	 * @param k       the number of the requested results
+	 */
+	private static void check(String message, double[] scores, List<Result> results, int k) {
+		List<Double> expected = new ArrayList<>();
+		for (double score : scores) {
+			if (score > 0) expected.add(score);
+		}
+		expected.sort(Collections.reverseOrder());
+		expected = expected.subList(0, Math.min(k, expected.size()));
+
+		assertEquals(message, expected.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			Result result = results.get(i);
+			assertEquals(message, expected.get(i), result.getSim(), EPSILON);
+			assertEquals(message, scores[result.getDocument().getId()], result.getSim(), EPSILON);
+			if (i > 0) assertTrue(message, results.get(i - 1).getSim() >= result.getSim());
+		}
+	}
+
+	/**
+	 * Scores every document of the given index by the given query.
+	 *
+	 * @param index    the index
+	 * @param words    the words of the query
+	 * @param document whether the query is a document
+	 * @return the BM25 score of every document
+	 */
+	private static double[] score(MappedIndex index, List<String> words, boolean document) {
+		int[] indices = new int[words.size()];
+		int size = 0;
+		for (String word : words) {
+			int termId = index.getTermId(word);
+			if (termId >= 0) indices[size++] = termId;
+		}
+		SparseVector query = SparseVector.fromOccurrences(indices, size);
+
+		// the query words are counted as many times as they occur, unless the document is reduced to its keywords
+		int[] termIds;
+		int[] occurrences;
+		if (document) {
+			termIds = Keywords.select(query, index.getIDFs());
+			occurrences = new int[termIds.length];
+			Arrays.fill(occurrences, 1);
+		} else {
+			termIds = query.getIndices();
+			occurrences = new int[termIds.length];
+			for (int t = 0; t < occurrences.length; t++) occurrences[t] = (int) query.getValue(t);
+		}
+
+		float[] idfs = index.getIDFs();
+		float[] norms = index.getLengthNorms();
+		double[] scores = new double[index.getNumberOfDocuments()];
+		for (int docId = 0; docId < scores.length; docId++) {
+			SparseVector tf = index.getTFVector(docId);
+			for (int t = 0; t < termIds.length; t++) {
+				double freq = tf.get(termIds[t]);
+				scores[docId] += occurrences[t] * idfs[termIds[t]] * (IndexFormat.BM25_K1 + 1) * freq / (freq + norms[docId]);
+			}
+		}
+		return scores;
+	}
+
+	/**
+	 * Builds an index of random documents, committed in the given number of
+	 * segments, which are not merged.
+	 *
+	 * @param segments the number of segments
+	 * @return the index
+	 * @throws IOException if an I/O error occurs
+	 */
+	private MappedIndex index(int segments) throws IOException {
+		Random random = new Random(segments);
+		MappedIndex index = null;
+		try (IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(10, NUM_DOCS), i -> {})) {
+			for (int s = 0; s < segments; s++) {
+				DatasetInfo info = new DatasetInfo();
+				if (index != null) info.manifest = index.getManifest();
+				for (int d = s * NUM_DOCS / segments; d < (s + 1) * NUM_DOCS / segments; d++) {
+					List<String> words = SyntheticCorpus.words(random, 20 + random.nextInt(300), VOCABULARY_SIZE);
+					SyntheticCorpus.add(info, SyntheticCorpus.path(d), words);
+				}
+				index = writer.commit(info, Collections.emptyList(), (idx, from) -> new SimilarityList());
+			}
+		}
+		assertEquals(segments, index.getNumberOfSegments());
+		return index;
+	}
+}
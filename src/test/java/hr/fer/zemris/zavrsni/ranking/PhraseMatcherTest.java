@@ -0,0 +1,224 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.IndexWriter;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.MergePolicy;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+import hr.fer.zemris.zavrsni.index.SyntheticCorpus;
+import hr.fer.zemris.zavrsni.input.InputProcessor;
+import hr.fer.zemris.zavrsni.input.Query.Phrase;
+import hr.fer.zemris.zavrsni.input.QueryReader;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link PhraseMatcher} against searching the words of every
+ * document for the phrases. The documents are made of few distinct words,
+ * so the phrases match some of the documents and miss the others.
+ *
+ * @author Luka Cupic
+ */
+public class PhraseMatcherTest {
+
+	/**
+	 * The number of documents of the index.
+	 */
+	private static final int NUM_DOCS = 400;
+
+	/**
+	 * The number of distinct words of the documents.
+	 */
+	private static final int VOCABULARY_SIZE = 30;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The words of every document.
+	 */
+	private final List<List<String>> documents = new ArrayList<>();
+
+	/**
+	 * The index of the documents, in two segments.
+	 */
+	private MappedIndex index;
+
+	@Before
+	public void setUp() throws IOException {
+		Random random = new Random(21);
+		try (IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(), i -> {})) {
+			for (int s = 0; s < 2; s++) {
+				DatasetInfo info = new DatasetInfo();
+				if (index != null) info.manifest = index.getManifest();
+				for (int d = s * NUM_DOCS / 2; d < (s + 1) * NUM_DOCS / 2; d++) {
+					List<String> words = SyntheticCorpus.words(random, 5 + random.nextInt(60), VOCABULARY_SIZE);
+					documents.add(words);
+					SyntheticCorpus.add(info, SyntheticCorpus.path(d), words);
+				}
+				index = writer.commit(info, Collections.emptyList(), (idx, from) -> new SimilarityList());
+			}
+		}
+	}
+
+	@Test
+	public void exactPhrasesMatchBruteForce() {
+		Random random = new Random(22);
+		int matching = 0;
+		for (int q = 0; q < 200; q++) {
+			Phrase phrase = new Phrase(SyntheticCorpus.words(random, 2 + random.nextInt(2), VOCABULARY_SIZE), Phrase.EXACT);
+			matching += check(Collections.singletonList(phrase), random);
+		}
+		assertTrue(matching > 0 && matching < 200 * NUM_DOCS);
+	}
+
+	@Test
+	public void proximityPhrasesMatchBruteForce() {
+		Random random = new Random(23);
+		int matching = 0;
+		for (int q = 0; q < 200; q++) {
+			Phrase phrase = new Phrase(SyntheticCorpus.words(random, 2 + random.nextInt(3), VOCABULARY_SIZE), random.nextInt(8));
+			matching += check(Collections.singletonList(phrase), random);
+		}
+		assertTrue(matching > 0 && matching < 200 * NUM_DOCS);
+	}
+
+	@Test
+	public void multiplePhrasesMatchBruteForce() {
+		Random random = new Random(24);
+		int matching = 0;
+		for (int q = 0; q < 100; q++) {
+			Phrase exact = new Phrase(SyntheticCorpus.words(random, 2, VOCABULARY_SIZE), Phrase.EXACT);
+			Phrase proximity = new Phrase(SyntheticCorpus.words(random, 2, VOCABULARY_SIZE), 1 + random.nextInt(4));
+			matching += check(Arrays.asList(exact, proximity), random);
+		}
+		assertTrue(matching > 0 && matching < 100 * NUM_DOCS);
+	}
+
+	@Test
+	public void unknownWordsMatchNothing() {
+		IntPredicate filter = PhraseMatcher.filter(index, Collections.singletonList(
+				new Phrase(Arrays.asList("w0", "unknown"), Phrase.EXACT)));
+		for (int docId = 0; docId < NUM_DOCS; docId++) {
+			assertFalse(filter.test(docId));
+		}
+	}
+
+	@Test
+	public void stopWordsKeepTheWordsApart() throws IOException {
+		String[] texts = {"the power of the supply", "a power supply unit", "supply the power"};
+		DatasetInfo info = new DatasetInfo();
+		for (int d = 0; d < texts.length; d++) {
+			List<String> words = new ArrayList<>();
+			int[] positions = InputProcessor.process(new QueryReader(texts[d]), words);
+			SyntheticCorpus.add(info, SyntheticCorpus.path(d), words, positions);
+		}
+		MappedIndex index;
+		try (IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(), i -> {})) {
+			index = writer.commit(info, Collections.emptyList(), (idx, from) -> new SimilarityList());
+		}
+
+		assertMatches(index, "\"power supply\"", 1);
+		assertMatches(index, "\"power of the supply\"", 0);
+		assertMatches(index, "\"power supply\"~1", 1, 2);
+		assertMatches(index, "\"power supply\"~2", 0, 1, 2);
+	}
+
+	/**
+	 * Checks that the phrases of the given query match exactly the given
+	 * documents of the given index.
+	 *
+	 * @param index  the index
+	 * @param query  the text of the query
+	 * @param docIds the IDs of the matching documents
+	 */
+	private static void assertMatches(MappedIndex index, String query, Integer... docIds) throws IOException {
+		IntPredicate filter = PhraseMatcher.filter(index, InputProcessor.processQuery(query).getPhrases());
+		Set<Integer> matching = new HashSet<>();
+		for (int docId = 0; docId < index.getNumberOfDocuments(); docId++) {
+			if (filter.test(docId)) matching.add(docId);
+		}
+		assertEquals(query, new HashSet<>(Arrays.asList(docIds)), matching);
+	}
+
+	/**
+	 * Checks the filter of the given phrases against the brute force, first
+	 * on every document and then on a random subset of the documents, which
+	 * makes the matchers skip the others and start over.
+	 *
+	 * @param phrases the phrases
+	 * @param random  the source of randomness
+	 * @return the number of the matching documents
+	 */
+	private int check(List<Phrase> phrases, Random random) {
+		Set<Integer> expected = new HashSet<>();
+		for (int docId = 0; docId < NUM_DOCS; docId++) {
+			boolean match = true;
+			for (Phrase phrase : phrases) {
+				match &= matches(documents.get(docId), phrase);
+			}
+			if (match) expected.add(docId);
+		}
+
+		IntPredicate filter = PhraseMatcher.filter(index, phrases);
+		for (int docId = 0; docId < NUM_DOCS; docId++) {
+			assertEquals(phrases + ", document " + docId, expected.contains(docId), filter.test(docId));
+		}
+		for (int pass = 0; pass < 2; pass++) {
+			for (int docId = random.nextInt(20); docId < NUM_DOCS; docId += 1 + random.nextInt(150)) {
+				assertEquals(phrases + ", document " + docId, expected.contains(docId), filter.test(docId));
+			}
+		}
+		return expected.size();
+	}
+
+	/**
+	 * Checks whether the given document contains the given phrase, by trying
+	 * every position of the document.
+	 *
+	 * @param words  the words of the document
+	 * @param phrase the phrase
+	 * @return true iff the document contains the phrase
+	 */
+	private static boolean matches(List<String> words, Phrase phrase) {
+		List<String> phraseWords = phrase.getWords();
+		if (phrase.isExact()) {
+			for (int p = 0; p + phraseWords.size() <= words.size(); p++) {
+				if (words.subList(p, p + phraseWords.size()).equals(phraseWords)) return true;
+			}
+			return false;
+		}
+
+		// the smallest span of the distinct words starts at one of them
+		Set<String> distinct = new HashSet<>(phraseWords);
+		int smallest = Integer.MAX_VALUE;
+		for (int start = 0; start < words.size(); start++) {
+			if (!distinct.contains(words.get(start))) continue;
+			Set<String> found = new HashSet<>();
+			for (int end = start; end < words.size(); end++) {
+				if (distinct.contains(words.get(end))) found.add(words.get(end));
+				if (found.size() == distinct.size()) {
+					smallest = Math.min(smallest, end - start);
+					break;
+				}
+			}
+		}
+		return smallest != Integer.MAX_VALUE && smallest - (distinct.size() - 1) <= phrase.getSlop();
+	}
+}
@@ -0,0 +1,173 @@
+package hr.fer.zemris.zavrsni.ranking;
+
+import hr.fer.zemris.zavrsni.index.IndexWriter;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.MergePolicy;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+import hr.fer.zemris.zavrsni.index.SyntheticCorpus;
+import hr.fer.zemris.zavrsni.input.Query;
+import hr.fer.zemris.zavrsni.input.Query.Phrase;
+import hr.fer.zemris.zavrsni.model.Result;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link QueryCache}: the same query is scored only once, the
+ * pages of a query share its results, the different queries are told
+ * apart, the least recently used queries are evicted and a newer index
+ * replaces the cached results of the older one.
+ *
+ * @author Luka Cupic
+ */
+public class QueryCacheTest {
+
+	/**
+	 * The number of distinct words of the documents.
+	 */
+	private static final int VOCABULARY_SIZE = 50;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The ranking function of the queries.
+	 */
+	private RankingFunction function;
+
+	/**
+	 * The index of the first commit.
+	 */
+	private MappedIndex older;
+
+	/**
+	 * The index of the second commit, with more documents.
+	 */
+	private MappedIndex newer;
+
+	@Before
+	public void setUp() throws IOException {
+		function = new OkapiBM25();
+		Random random = new Random(20);
+		try (IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(), i -> {})) {
+			for (int c = 0; c < 2; c++) {
+				DatasetInfo info = new DatasetInfo();
+				if (newer != null) info.manifest = newer.getManifest();
+				for (int d = c * 100; d < (c + 1) * 100; d++) {
+					SyntheticCorpus.add(info, SyntheticCorpus.path(d), SyntheticCorpus.words(random, 20, VOCABULARY_SIZE));
+				}
+				older = newer;
+				newer = writer.commit(info, Collections.emptyList(), (idx, from) -> new SimilarityList());
+			}
+		}
+		assertTrue(newer.getGeneration() > older.getGeneration());
+	}
+
+	@Test
+	public void pagesShareTheResults() throws IOException {
+		QueryCache cache = new QueryCache();
+		Query query = new Query(Arrays.asList("w1", "w2", "w3"));
+		List<Result> expected = function.process(newer, query, 0, 20);
+
+		assertResults(expected, cache.process(function, newer, query, 0, 20));
+		assertResults(expected.subList(10, 20), cache.process(function, newer, query, 10, 10));
+		assertResults(expected.subList(5, 20), cache.process(function, newer, new Query(Arrays.asList("w3", "w1", "w2")), 5, 15));
+		assertEquals(1, cache.getMisses());
+		assertEquals(2, cache.getHits());
+
+		// asking for more results scores the query again
+		assertResults(function.process(newer, query, 0, 30), cache.process(function, newer, query, 0, 30));
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void differentQueriesAreToldApart() throws IOException {
+		QueryCache cache = new QueryCache();
+		List<String> words = Arrays.asList("w1", "w2");
+		List<Query> queries = Arrays.asList(
+				new Query(words),
+				Query.ofDocument(words),
+				new Query(words, Collections.singletonList(new Phrase(words, Phrase.EXACT))),
+				new Query(words, Collections.singletonList(new Phrase(words, new int[]{0, 2}, Phrase.EXACT))),
+				new Query(words, Collections.singletonList(new Phrase(words, 3))),
+				new Query(Arrays.asList("w1", "w2", "w2")));
+		for (Query query : queries) {
+			assertResults(function.process(newer, query, 0, 10), cache.process(function, newer, query, 0, 10));
+		}
+		assertEquals(queries.size(), cache.size());
+		assertEquals(0, cache.getHits());
+
+		// the same phrases in another order
+		Phrase first = new Phrase(Collections.singletonList("w1"), Phrase.EXACT);
+		Phrase second = new Phrase(Collections.singletonList("w2"), Phrase.EXACT);
+		cache.process(function, newer, new Query(words, Arrays.asList(first, second)), 0, 10);
+		cache.process(function, newer, new Query(words, Arrays.asList(second, first)), 0, 10);
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyUsedQueries() throws IOException {
+		QueryCache cache = new QueryCache(2);
+		List<Query> queries = new ArrayList<>();
+		for (int q = 0; q < 3; q++) {
+			queries.add(new Query(Collections.singletonList("w" + q)));
+		}
+		cache.process(function, newer, queries.get(0), 0, 10);
+		cache.process(function, newer, queries.get(1), 0, 10);
+		cache.process(function, newer, queries.get(0), 0, 10);
+		cache.process(function, newer, queries.get(2), 0, 10);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getHits());
+
+		cache.process(function, newer, queries.get(0), 0, 10);
+		assertEquals(2, cache.getHits());
+		cache.process(function, newer, queries.get(1), 0, 10);
+		assertEquals(2, cache.getHits());
+	}
+
+	@Test
+	public void newerIndexReplacesTheResults() throws IOException {
+		QueryCache cache = new QueryCache();
+		Query query = new Query(Arrays.asList("w1", "w4"));
+		List<Result> old = cache.process(function, older, query, 0, 10);
+		assertResults(function.process(older, query, 0, 10), old);
+
+		List<Result> current = cache.process(function, newer, query, 0, 10);
+		assertResults(function.process(newer, query, 0, 10), current);
+		assertEquals(2, cache.getMisses());
+
+		// the results of the older index are no longer cached, and they do not replace the newer ones
+		assertResults(old, cache.process(function, older, query, 0, 10));
+		assertEquals(3, cache.getMisses());
+		assertResults(current, cache.process(function, newer, query, 0, 10));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * Checks that the given results are the expected documents, with the
+	 * expected scores, in the expected order.
+	 *
+	 * @param expected the expected results
+	 * @param results  the results
+	 */
+	private static void assertResults(List<Result> expected, List<Result> results) {
+		assertEquals(expected.size(), results.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getDocument().getId(), results.get(i).getDocument().getId());
+			assertEquals(expected.get(i).getSim(), results.get(i).getSim(), 0);
+		}
+	}
+}
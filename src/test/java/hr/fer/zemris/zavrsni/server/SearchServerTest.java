@@ -0,0 +1,258 @@
+package hr.fer.zemris.zavrsni.server;
+
+import hr.fer.zemris.zavrsni.index.IndexWriter;
+import hr.fer.zemris.zavrsni.index.MappedIndex;
+import hr.fer.zemris.zavrsni.index.MergePolicy;
+import hr.fer.zemris.zavrsni.index.SimilarityList;
+import hr.fer.zemris.zavrsni.index.SyntheticCorpus;
+import hr.fer.zemris.zavrsni.input.InputProcessor;
+import hr.fer.zemris.zavrsni.input.QueryReader;
+import hr.fer.zemris.zavrsni.ranking.IndexSearcher;
+import hr.fer.zemris.zavrsni.ranking.OkapiBM25;
+import hr.fer.zemris.zavrsni.ranking.QueryCache;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction;
+import hr.fer.zemris.zavrsni.ranking.RankingFunction.DatasetInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link SearchServer} through HTTP: the endpoints answer from
+ * the searcher of the current index, and the invalid requests are answered
+ * with the matching error statuses.
+ *
+ * @author Luka Cupic
+ */
+public class SearchServerTest {
+
+	/**
+	 * The texts of the documents; the first two are committed first, and
+	 * the rest are added by the second commit.
+	 */
+	private static final String[] TEXTS = {
+			"power supply unit for the laptop",
+			"the power of the supply chain",
+			"solar panels and batteries",
+			"laptop batteries and chargers"};
+
+	/**
+	 * Matches a document of the results.
+	 */
+	private static final Pattern DOCUMENT = Pattern.compile("\"path\":\"[^\"]*doc(\\d+)\\.txt\"");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The index of the first commit.
+	 */
+	private MappedIndex older;
+
+	/**
+	 * The index of the second commit.
+	 */
+	private MappedIndex newer;
+
+	/**
+	 * The searcher answering the requests.
+	 */
+	private final AtomicReference<IndexSearcher> searcher = new AtomicReference<>();
+
+	private SearchServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		RankingFunction function = new OkapiBM25();
+		QueryCache cache = new QueryCache();
+		try (IndexWriter writer = IndexWriter.create(folder.newFolder().toPath(), new MergePolicy(), i -> {})) {
+			for (int c = 0; c < 2; c++) {
+				DatasetInfo info = new DatasetInfo();
+				if (newer != null) info.manifest = newer.getManifest();
+				for (int d = 2 * c; d < 2 * c + 2; d++) {
+					List<String> words = new ArrayList<>();
+					int[] positions = InputProcessor.process(new QueryReader(TEXTS[d]), words);
+					SyntheticCorpus.add(info, SyntheticCorpus.path(d), words, positions);
+				}
+				older = newer;
+				newer = writer.commit(info, Collections.emptyList(), (idx, from) -> new SimilarityList());
+			}
+		}
+		searcher.set(new IndexSearcher(newer, function, cache));
+
+		server = new SearchServer(searcher::get, new InetSocketAddress("127.0.0.1", 0), Executors.newFixedThreadPool(2));
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void searchesTheCurrentIndex() throws IOException {
+		RankingFunction function = searcher.get().getFunction();
+		searcher.set(new IndexSearcher(older, function));
+		assertEquals("{\"documents\":2,\"segments\":1}", request("GET", "/stats", null, null).body);
+		assertEquals(Collections.emptyList(), documents(request("GET", "/search?q=batteries", null, null)));
+
+		searcher.set(new IndexSearcher(newer, function));
+		assertEquals("{\"documents\":4,\"segments\":2}", request("GET", "/stats", null, null).body);
+		assertEquals(Arrays.asList(2, 3), sorted(documents(request("GET", "/search?q=batteries", null, null))));
+	}
+
+	@Test
+	public void answersTheQueries() throws IOException {
+		Response response = request("GET", "/search?q=%22power+supply%22+laptop", null, null);
+		assertEquals(200, response.status);
+		assertTrue(response.body, response.body.startsWith("{\"query\":\"\\\"power supply\\\" laptop\",\"offset\":0,"));
+		assertEquals(Collections.singletonList(0), documents(response));
+
+		List<Integer> all = documents(request("GET", "/search?q=laptop+power", null, null));
+		assertEquals(Arrays.asList(0, 1, 3), sorted(new ArrayList<>(all)));
+		assertEquals(all, documents(request("GET", "/search?q=power+laptop", null, null)));
+		assertEquals(all.subList(1, 2), documents(request("GET", "/search?q=laptop+power&offset=1&count=1", null, null)));
+
+		byte[] text = "Batteries for the laptop".getBytes(StandardCharsets.UTF_8);
+		assertEquals(documents(request("GET", "/search?q=batteries+laptop", null, null)),
+				documents(request("POST", "/search/document", "text/plain; charset=utf-8", text)));
+		assertEquals(200, request("GET", "/search/like?id=3", null, null).status);
+		assertEquals(200, request("GET", "/similar?id=3&k=5", null, null).status);
+		assertEquals(200, request("POST", "/similar/document?k=5", "text/plain", text).status);
+
+		String stats = request("GET", "/stats", null, null).body;
+		assertTrue(stats, stats.matches("\\{\"documents\":4,\"segments\":2,\"cache\":\\{\"size\":\\d+,\"hits\":1,\"misses\":\\d+}}"));
+	}
+
+	@Test
+	public void rejectsTheInvalidRequests() throws IOException {
+		assertError(400, request("GET", "/search", null, null));
+		assertError(400, request("GET", "/search?q=power&count=abc", null, null));
+		assertError(400, request("GET", "/search?q=power&count=" + (SearchServer.MAX_COUNT + 1), null, null));
+		assertError(400, request("GET", "/search?q=power&offset=-1", null, null));
+		assertError(400, request("GET", "/search/like", null, null));
+		assertError(400, request("GET", "/search/like?id=4", null, null));
+		assertError(400, request("GET", "/similar?id=-1", null, null));
+		assertError(400, request("POST", "/search/document", "text/plain", new byte[0]));
+		assertError(400, request("POST", "/similar/document", "application/pdf", "not a PDF".getBytes(StandardCharsets.UTF_8)));
+		assertError(404, request("GET", "/searches", null, null));
+		assertError(404, request("GET", "/search/like/more", null, null));
+		assertError(404, request("GET", "/", null, null));
+
+		Response response = request("POST", "/search?q=power", "text/plain", "power".getBytes(StandardCharsets.UTF_8));
+		assertError(405, response);
+		assertEquals("GET", response.allow);
+		assertEquals("POST", request("GET", "/search/document", null, null).allow);
+	}
+
+	/**
+	 * Checks that the given response reports an error with the given status.
+	 *
+	 * @param status   the expected status
+	 * @param response the response
+	 */
+	private static void assertError(int status, Response response) {
+		assertEquals(response.body, status, response.status);
+		assertTrue(response.body, response.body.matches("\\{\"error\":\".+\"}"));
+	}
+
+	/**
+	 * Gets the numbers of the documents of the results in the given
+	 * response, in the order of the results.
+	 *
+	 * @param response the response
+	 * @return the numbers of the documents
+	 */
+	private static List<Integer> documents(Response response) {
+		assertEquals(response.body, 200, response.status);
+		List<Integer> documents = new ArrayList<>();
+		Matcher matcher = DOCUMENT.matcher(response.body.substring(response.body.indexOf("\"results\":")));
+		while (matcher.find()) {
+			documents.add(Integer.parseInt(matcher.group(1)));
+		}
+		return documents;
+	}
+
+	/**
+	 * Sorts the given list.
+	 *
+	 * @param list the list
+	 * @return the list
+	 */
+	private static List<Integer> sorted(List<Integer> list) {
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * Sends a request to the server.
+	 *
+	 * @param method the HTTP method
+	 * @param path   the path and the query of the request
+	 * @param type   the content type of the body, or null
+	 * @param body   the body of the request, or null
+	 * @return the response
+	 */
+	private Response request(String method, String path, String type, byte[] body) throws IOException {
+		URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			connection.setRequestMethod(method);
+			if (body != null) {
+				connection.setDoOutput(true);
+				if (type != null) connection.setRequestProperty("Content-Type", type);
+				try (OutputStream os = connection.getOutputStream()) {
+					os.write(body);
+				}
+			}
+
+			Response response = new Response();
+			response.status = connection.getResponseCode();
+			response.allow = connection.getHeaderField("Allow");
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (InputStream is = response.status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+				byte[] buffer = new byte[8192];
+				for (int n; (n = is.read(buffer)) != -1; ) {
+					bytes.write(buffer, 0, n);
+				}
+			}
+			response.body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+			return response;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * A response of the server.
+	 */
+	private static class Response {
+
+		int status;
+
+		String body;
+
+		String allow;
+	}
+}
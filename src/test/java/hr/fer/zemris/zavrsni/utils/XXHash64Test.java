@@ -0,0 +1,68 @@
+package hr.fer.zemris.zavrsni.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link XXHash64} against the reference hashes of XXH64 with the
+ * seed 0, and hashing the files against hashing their bytes, on the
+ * lengths around the stripes and around the size of the read buffer.
+ *
+ * @author Luka Cupic
+ */
+public class XXHash64Test {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void matchesTheReferenceHashes() {
+		assertEquals("ef46db3751d8e999", hash(""));
+		assertEquals("d24ec4f1a98c6e5b", hash("a"));
+		assertEquals("44bc2cf5ad770999", hash("abc"));
+		assertEquals("fbcea83c8a378bf1", hash("Nobody inspects the spammish repetition"));
+
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31 % 251);
+		}
+		assertEquals("5836f08607dbda19", XXHash64.hash(Arrays.copyOf(bytes, 31)));
+		assertEquals("b3f0ec9d8d216dea", XXHash64.hash(Arrays.copyOf(bytes, 32)));
+		assertEquals("c480db428c35ab3e", XXHash64.hash(Arrays.copyOf(bytes, 33)));
+		assertEquals("cd8c24467b8382ad", XXHash64.hash(Arrays.copyOf(bytes, 100)));
+		assertEquals("d1bee8e4f0603bbf", XXHash64.hash(bytes));
+	}
+
+	@Test
+	public void filesHashLikeTheirBytes() throws IOException {
+		Random random = new Random(16);
+		int buffer = 64 * 1024;
+		for (int length : new int[]{0, 1, 7, 31, 32, 33, 95, buffer - 1, buffer, buffer + 1, buffer + 33, 3 * buffer + 5}) {
+			byte[] bytes = new byte[length];
+			random.nextBytes(bytes);
+			Path path = folder.newFile().toPath();
+			Files.write(path, bytes);
+			assertEquals("length " + length, XXHash64.hash(bytes), XXHash64.hash(path));
+		}
+	}
+
+	/**
+	 * Hashes the UTF-8 bytes of the given text.
+	 *
+	 * @param text the text
+	 * @return the hash
+	 */
+	private static String hash(String text) {
+		return XXHash64.hash(text.getBytes(StandardCharsets.UTF_8));
+	}
+}